@@ -0,0 +1,101 @@
+package com.avaje.ebean;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Query for plain (non entity) DTO beans using SQL.
+ * <p>
+ * The columns of the ResultSet are read directly into the DTO beans bypassing the entity
+ * bean hydration (no EntityBeanIntercept, persistence context or lazy loading) and as such
+ * this is suited to reporting queries that return a lot of rows.
+ * </p>
+ * <p>
+ * The DTO beans are populated using either:
+ * </p>
+ * <ul>
+ * <li>A public constructor that has the same number of parameters as there are columns.
+ * The columns are mapped to the constructor parameters by position.</li>
+ * <li>A public default constructor and public setter methods. The columns are mapped to
+ * the setters by name ignoring case and underscores (column <code>order_date</code> maps to
+ * <code>setOrderDate()</code>). Column aliases can be used in the SQL to match setter names.</li>
+ * </ul>
+ * <p>
+ * The mapping of a DTO type to a set of columns is determined once and then cached.
+ * </p>
+ *
+ * <pre>{@code
+ *
+ *   public class CustomerDto {
+ *
+ *     private final int id;
+ *     private final String name;
+ *
+ *     public CustomerDto(int id, String name) {
+ *       ...
+ *     }
+ *     ...
+ *   }
+ *
+ *   List<CustomerDto> list = ebeanServer.findDto(CustomerDto.class, "select id, name from customer where name like ?")
+ *       .setParameter(1, "Rob%")
+ *       .findList();
+ *
+ * }</pre>
+ *
+ * @param <T> the type of the DTO bean
+ *
+ * @see EbeanServer#findDto(Class, String)
+ */
+public interface DtoQuery<T> {
+
+  /**
+   * Execute the query returning a list of the DTO beans.
+   */
+  List<T> findList();
+
+  /**
+   * Execute the query processing the DTO beans one at a time.
+   * <p>
+   * This is appropriate to process very large query results as the DTO beans do not
+   * need to be held in memory.
+   * </p>
+   */
+  void findEach(QueryEachConsumer<T> consumer);
+
+  /**
+   * Execute the query returning a single DTO bean or null.
+   * <p>
+   * If the query returns more than one row then a PersistenceException is thrown.
+   * </p>
+   */
+  @Nullable
+  T findUnique();
+
+  /**
+   * Set a named bind parameter. Named parameters have a colon to prefix the name.
+   */
+  DtoQuery<T> setParameter(String name, Object value);
+
+  /**
+   * Set a positioned bind parameter (starting at position 1).
+   */
+  DtoQuery<T> setParameter(int position, Object value);
+
+  /**
+   * Set the maximum number of rows to read from the ResultSet.
+   */
+  DtoQuery<T> setMaxRows(int maxRows);
+
+  /**
+   * Set a timeout on this query in seconds.
+   */
+  DtoQuery<T> setTimeout(int secs);
+
+  /**
+   * A hint which for JDBC translates to the Statement.fetchSize().
+   */
+  DtoQuery<T> setBufferFetchSizeHint(int bufferFetchSizeHint);
+
+}
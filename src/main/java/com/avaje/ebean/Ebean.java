@@ -14,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avaje.ebean.annotation.CacheStrategy;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
 import com.avaje.ebean.cache.ServerCacheManager;
 import com.avaje.ebean.config.ServerConfig;
 import com.avaje.ebean.text.csv.CsvReader;
@@ -921,6 +922,15 @@ public final class Ebean {
     return serverMgr.getDefaultServer().createSqlQuery(sql);
   }
 
+  /**
+   * Create a query for plain (non entity) DTO beans using native sql.
+   *
+   * @see EbeanServer#findDto(Class, String)
+   */
+  public static <T> DtoQuery<T> findDto(Class<T> dtoType, String sql) {
+    return serverMgr.getDefaultServer().findDto(dtoType, sql);
+  }
+
   /**
    * Create a named sql query.
    * <p>
@@ -1507,6 +1517,14 @@ public final class Ebean {
     serverMgr.getDefaultServer().runCacheWarming(beanType);
   }
 
+  /**
+   * Return the progress of the most recent run of the cache warming queries for the
+   * default/primary EbeanServer.
+   */
+  public static CacheWarmingStatistics getCacheWarmingStatistics() {
+    return serverMgr.getDefaultServer().getCacheWarmingStatistics();
+  }
+
   /**
    * Return the JsonContext for reading/writing JSON.
    */
@@ -1,6 +1,7 @@
 package com.avaje.ebean;
 
 import com.avaje.ebean.annotation.CacheStrategy;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
 import com.avaje.ebean.cache.ServerCacheManager;
 import com.avaje.ebean.config.ServerConfig;
 import com.avaje.ebean.meta.MetaInfoManager;
@@ -16,6 +17,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Provides the API for fetching and saving beans to a particular DataSource.
@@ -431,6 +433,30 @@ public interface EbeanServer {
    */
   SqlQuery createSqlQuery(String sql);
 
+  /**
+   * Create a query for plain (non entity) DTO beans using native sql.
+   * <p>
+   * The columns of the ResultSet are read directly into the DTO beans (via a constructor
+   * or setters) bypassing the entity bean hydration and persistence context.
+   * </p>
+   *
+   * <pre>{@code
+   *
+   *   List<CustomerDto> list = ebeanServer.findDto(CustomerDto.class, "select id, name from customer where name like ?")
+   *       .setParameter(1, "Rob%")
+   *       .findList();
+   *
+   * }</pre>
+   *
+   * @param dtoType
+   *          the type of the DTO bean
+   * @param sql
+   *          the native sql query
+   *
+   * @see DtoQuery
+   */
+  <T> DtoQuery<T> findDto(Class<T> dtoType, String sql);
+
   /**
    * Create a named sql query.
    * <p>
@@ -842,6 +868,17 @@ public interface EbeanServer {
    */
   <T> QueryIterator<T> findIterate(Query<T> query, Transaction transaction);
 
+  /**
+   * Return a lazily evaluated Stream of the beans of the query.
+   * <p>
+   * The query is executed on the first terminal operation of the stream and the jdbc
+   * statement and resultSet are closed when the stream is fully consumed or closed.
+   * </p>
+   *
+   * @see Query#findStream()
+   */
+  <T> Stream<T> findStream(Query<T> query, Transaction transaction);
+
   /**
    * Execute the query visiting the each bean one at a time.
    * <p>
@@ -1074,6 +1111,39 @@ public interface EbeanServer {
    */
   <T> PagedList<T> findPagedList(Query<T> query, Transaction transaction);
 
+  /**
+   * Return a page of beans using keyset (seek) pagination.
+   *
+   * @param query
+   *          the query to execute (with an order by clause)
+   * @param transaction
+   *          the transaction to use (can be null)
+   * @param cursor
+   *          the cursor of the prior page or null for the first page
+   * @param pageSize
+   *          the number of beans to return per page
+   *
+   * @see Query#findKeysetPage(String, int)
+   */
+  <T> KeysetPage<T> findKeysetPage(Query<T> query, Transaction transaction, String cursor, int pageSize);
+
+  /**
+   * Return a page of beans using keyset (seek) pagination given the order by property values
+   * of the last bean of the prior page.
+   *
+   * @param query
+   *          the query to execute (with an order by clause)
+   * @param transaction
+   *          the transaction to use (can be null)
+   * @param lastKeyValues
+   *          the order by property values of the last bean of the prior page (null for the first page)
+   * @param pageSize
+   *          the number of beans to return per page
+   *
+   * @see Query#findKeysetPage(int, Object...)
+   */
+  <T> KeysetPage<T> findKeysetPage(Query<T> query, Transaction transaction, Object[] lastKeyValues, int pageSize);
+
   /**
    * Execute the query returning a set of entity beans.
    * <p>
@@ -1241,6 +1311,49 @@ public interface EbeanServer {
   @Nullable
   SqlRow findUnique(SqlQuery query, Transaction transaction);
 
+  /**
+   * Execute the DTO query returning a list of DTO beans.
+   *
+   * @param query
+   *          the query to execute.
+   * @param transaction
+   *          the transaction to use (can be null).
+   *
+   * @see DtoQuery#findList()
+   */
+  <T> List<T> findList(DtoQuery<T> query, Transaction transaction);
+
+  /**
+   * Execute the DTO query processing the DTO beans one at a time.
+   *
+   * @param query
+   *          the query to execute.
+   * @param consumer
+   *          the consumer used to process the DTO beans.
+   * @param transaction
+   *          the transaction to use (can be null).
+   *
+   * @see DtoQuery#findEach(QueryEachConsumer)
+   */
+  <T> void findEach(DtoQuery<T> query, QueryEachConsumer<T> consumer, Transaction transaction);
+
+  /**
+   * Execute the DTO query returning a single DTO bean or null.
+   * <p>
+   * This will throw a PersistenceException if the query found more than one
+   * result.
+   * </p>
+   *
+   * @param query
+   *          the query to execute.
+   * @param transaction
+   *          the transaction to use (can be null).
+   *
+   * @see DtoQuery#findUnique()
+   */
+  @Nullable
+  <T> T findUnique(DtoQuery<T> query, Transaction transaction);
+
   /**
    * Either Insert or Update the bean depending on its state.
    * <p>
@@ -1851,6 +1964,15 @@ public interface EbeanServer {
    */
   void runCacheWarming(Class<?> beanType);
 
+  /**
+   * Return the progress of the most recent run of the cache warming queries.
+   * <p>
+   * Cache warming loads large tables in ranges in parallel and this can take some time.
+   * A readiness check can use this to wait until cache warming is complete.
+   * </p>
+   */
+  CacheWarmingStatistics getCacheWarmingStatistics();
+
   /**
    * Return the JsonContext for reading/writing JSON.
    * <p>
@@ -10,6 +10,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * List of Expressions that make up a where or having clause.
@@ -137,6 +138,13 @@ public interface ExpressionList<T> extends Serializable {
    */
   QueryIterator<T> findIterate();
 
+  /**
+   * Execute the query returning a lazily evaluated Stream of the beans.
+   *
+   * @see Query#findStream()
+   */
+  Stream<T> findStream();
+
   /**
    * Execute the query process the beans one at a time.
    *
@@ -297,6 +305,21 @@ public interface ExpressionList<T> extends Serializable {
    */
   PagedList<T> findPagedList();
 
+  /**
+   * Return a page of beans using keyset (seek) pagination.
+   *
+   * @see Query#findKeysetPage(String, int)
+   */
+  KeysetPage<T> findKeysetPage(String cursor, int pageSize);
+
+  /**
+   * Return a page of beans using keyset (seek) pagination given the order by property values
+   * of the last bean of the prior page.
+   *
+   * @see Query#findKeysetPage(int, Object...)
+   */
+  KeysetPage<T> findKeysetPage(int pageSize, Object... lastKeyValues);
+
   /**
    * Return versions of a @History entity bean.
    * <p>
@@ -0,0 +1,68 @@
+package com.avaje.ebean;
+
+import java.util.List;
+
+/**
+ * A page of results using keyset (seek) pagination.
+ * <p>
+ * Rather than using limit offset (where page 5000 requires the database to read and skip the
+ * rows of the 4999 prior pages) the next page is found with a predicate on the order by
+ * properties such that the database can seek directly to the start of the page (typically
+ * using an index).
+ * </p>
+ * <p>
+ * The query must have an order by clause and the id property is appended if it is not
+ * included such that the ordering is unique. The values of the order by properties must
+ * not be null.
+ * </p>
+ *
+ * <h4>Example: iterate through all the pages</h4>
+ * <pre>{@code
+ *
+ *   KeysetPage<Order> page = ebeanServer.find(Order.class)
+ *       .where().eq("status", Order.Status.NEW)
+ *       .orderBy("orderDate, id")
+ *       .findKeysetPage(null, 100);
+ *
+ *   while (page.hasNext()) {
+ *     ...
+ *     // the cursor is typically passed back by the client requesting the next page
+ *     String cursor = page.getNextCursor();
+ *
+ *     page = ebeanServer.find(Order.class)
+ *       .where().eq("status", Order.Status.NEW)
+ *       .orderBy("orderDate, id")
+ *       .findKeysetPage(cursor, 100);
+ *   }
+ *
+ * }</pre>
+ *
+ * @param <T>
+ *          the entity bean type
+ *
+ * @see Query#findKeysetPage(String, int)
+ * @see Query#findKeysetPage(int, Object...)
+ */
+public interface KeysetPage<T> {
+
+  /**
+   * Return the beans of this page.
+   */
+  List<T> getList();
+
+  /**
+   * Return true if there is a next page.
+   */
+  boolean hasNext();
+
+  /**
+   * Return the opaque cursor used to find the next page (null if there is no next page).
+   */
+  String getNextCursor();
+
+  /**
+   * Return the values of the order by properties of the last bean of this page (null if the
+   * page is empty).
+   */
+  Object[] getLastKeyValues();
+}
@@ -695,6 +695,16 @@ public abstract class Model {
       return query().findPagedList(pageIndex, pageSize);
     }
 
+    /**
+     * Return a page of all entities of the given type using keyset (seek) pagination (use
+     * where() to specify predicates and orderBy() to specify the ordering as needed).
+     * <p>
+     * Equivalent to {@link Query#findKeysetPage(String, int)}
+     */
+    public KeysetPage<T> findKeysetPage(String cursor, int pageSize) {
+      return query().findKeysetPage(cursor, pageSize);
+    }
+
     /**
      * Executes a find row count query in a background thread.
      * <p>
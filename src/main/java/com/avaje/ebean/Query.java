@@ -9,6 +9,7 @@ import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Object relational query for finding a List, Set, Map or single entity bean.
@@ -554,7 +555,40 @@ public interface Query<T> extends Serializable {
    */
   QueryIterator<T> findIterate();
 
-
+  /**
+   * Execute the query returning a lazily evaluated Stream of the beans.
+   * <p>
+   * The query is not executed until a terminal operation is performed on the stream and
+   * the beans are read from the resultSet as the stream is consumed such that they do not
+   * need to be held in memory at the same time. Where required by the JDBC driver (for
+   * example Postgres and MySQL) the statement is configured such that the driver does not
+   * buffer the entire resultSet.
+   * </p>
+   * <p>
+   * The jdbc statement and resultSet are closed when the stream is fully consumed or
+   * when the stream is closed. As such the stream should be closed when it is not fully
+   * consumed (typically via try-with-resources).
+   * </p>
+   *
+   * <pre>{@code
+   *
+   *  try (Stream<Customer> stream = ebeanServer.find(Customer.class)
+   *     .where().eq("status", Status.NEW)
+   *     .order().asc("id")
+   *     .findStream()) {
+   *
+   *    stream.filter(...).limit(100).forEach(...);
+   *  }
+   *
+   * }</pre>
+   *
+   * <p>
+   * This query will execute against the EbeanServer that was used to create it.
+   * </p>
+   *
+   * @see EbeanServer#findStream(Query, Transaction)
+   */
+  Stream<T> findStream();
 
   /**
    * Execute the query processing the beans one at a time.
@@ -897,6 +931,58 @@ public interface Query<T> extends Serializable {
    */
   PagedList<T> findPagedList();
 
+  /**
+   * Return a page of beans using keyset (seek) pagination.
+   * <p>
+   * The next page is found using a predicate on the order by properties (with the values
+   * of the last bean of the prior page) rather than limit offset such that finding deep
+   * pages does not get slower. The query must have an order by clause on properties that
+   * are not nullable and the id property is appended if it is not included.
+   * </p>
+   *
+   * <pre>{@code
+   *
+   *  // the first page
+   *  KeysetPage<Order> page = Ebean.find(Order.class)
+   *       .orderBy("orderDate, id")
+   *       .findKeysetPage(null, 100);
+   *
+   *  // the next page using the cursor of the prior page
+   *  KeysetPage<Order> nextPage = Ebean.find(Order.class)
+   *       .orderBy("orderDate, id")
+   *       .findKeysetPage(page.getNextCursor(), 100);
+   *
+   * }</pre>
+   *
+   * @param cursor
+   *          The cursor of the prior page or null for the first page.
+   * @param pageSize
+   *          The number of beans to return per page (must be greater than 0).
+   * @return The KeysetPage
+   */
+  KeysetPage<T> findKeysetPage(String cursor, int pageSize);
+
+  /**
+   * Return a page of beans using keyset (seek) pagination given the order by property values
+   * of the last bean of the prior page.
+   *
+   * <pre>{@code
+   *
+   *  // the page of orders after the order dated 2016-01-05 with id 42
+   *  KeysetPage<Order> page = Ebean.find(Order.class)
+   *       .orderBy("orderDate, id")
+   *       .findKeysetPage(100, orderDate, 42);
+   *
+   * }</pre>
+   *
+   * @param pageSize
+   *          The number of beans to return per page (must be greater than 0).
+   * @param lastKeyValues
+   *          The values of the order by properties of the last bean of the prior page (none for the first page).
+   * @return The KeysetPage
+   */
+  KeysetPage<T> findKeysetPage(int pageSize, Object... lastKeyValues);
+
   /**
    * Set a named bind parameter. Named parameters have a colon to prefix the name.
    * 
@@ -1291,6 +1377,15 @@ public interface Query<T> extends Serializable {
    */
   Query<T> setReadOnly(boolean readOnly);
 
+  /**
+   * Set to true to execute this query using the read only DataSource (read replica).
+   * <p>
+   * This only applies when the query is executed without a current transaction and a
+   * read only DataSource is configured. Otherwise the query uses the primary DataSource.
+   * </p>
+   */
+  Query<T> setUseReadReplica(boolean useReadReplica);
+
   /**
    * When set to true all the beans from this query are loaded into the bean
    * cache.
@@ -23,6 +23,14 @@ public @interface CacheTuning {
    */
   int maxSize() default 0;
 
+  /**
+   * The maximum estimated size of the cache in bytes.
+   * <p>
+   * This defaults to 0 which means the cache is bounded by maxSize only.
+   * </p>
+   */
+  long maxWeightBytes() default 0;
+
   /**
    * The maximum time (in seconds) that a cache entry is allowed to stay in the
    * cache when it has not been accessed.
@@ -52,4 +60,13 @@ public @interface CacheTuning {
    * </p>
    */
   int trimFrequency() default 0;
+
+  /**
+   * The percentage of the max time to live after which a frequently read cache entry
+   * is reloaded in the background (while the existing entry continues to be used).
+   * <p>
+   * This defaults to 0 which means entries are not refreshed ahead of expiry.
+   * </p>
+   */
+  int refreshAheadPercent() default 0;
 }
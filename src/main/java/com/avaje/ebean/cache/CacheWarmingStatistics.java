@@ -0,0 +1,125 @@
+package com.avaje.ebean.cache;
+
+/**
+ * Progress of cache warming (the most recent run of the cache warming queries).
+ * <p>
+ * This can be used by a readiness check to wait until the caches have been warmed.
+ * </p>
+ * <pre>{@code
+ *
+ *   boolean ready = server.getCacheWarmingStatistics().isComplete();
+ *
+ * }</pre>
+ */
+public class CacheWarmingStatistics {
+
+  protected final boolean started;
+
+  protected final boolean complete;
+
+  protected final int beanTypeCount;
+
+  protected final int beanTypesLoaded;
+
+  protected final int rangeCount;
+
+  protected final int rangesLoaded;
+
+  protected final long beanCount;
+
+  protected final int errorCount;
+
+  protected final long elapsedMillis;
+
+  /**
+   * Construct with the progress of cache warming.
+   */
+  public CacheWarmingStatistics(boolean started, boolean complete, int beanTypeCount, int beanTypesLoaded,
+                                int rangeCount, int rangesLoaded, long beanCount, int errorCount, long elapsedMillis) {
+    this.started = started;
+    this.complete = complete;
+    this.beanTypeCount = beanTypeCount;
+    this.beanTypesLoaded = beanTypesLoaded;
+    this.rangeCount = rangeCount;
+    this.rangesLoaded = rangesLoaded;
+    this.beanCount = beanCount;
+    this.errorCount = errorCount;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public String toString() {
+    //noinspection StringBufferReplaceableByString
+    StringBuilder sb = new StringBuilder(80);
+    sb.append("started:").append(started);
+    sb.append(" complete:").append(complete);
+    sb.append(" beanTypes:").append(beanTypesLoaded).append("/").append(beanTypeCount);
+    sb.append(" ranges:").append(rangesLoaded).append("/").append(rangeCount);
+    sb.append(" beans:").append(beanCount);
+    sb.append(" errors:").append(errorCount);
+    sb.append(" millis:").append(elapsedMillis);
+    return sb.toString();
+  }
+
+  /**
+   * Return true if cache warming has started.
+   */
+  public boolean isStarted() {
+    return started;
+  }
+
+  /**
+   * Return true if cache warming has completed (including when some queries failed).
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Return the number of bean types with a cache warming query.
+   */
+  public int getBeanTypeCount() {
+    return beanTypeCount;
+  }
+
+  /**
+   * Return the number of bean types whose cache has been loaded.
+   */
+  public int getBeanTypesLoaded() {
+    return beanTypesLoaded;
+  }
+
+  /**
+   * Return the number of id ranges to load (a bean type with a small table is one range).
+   */
+  public int getRangeCount() {
+    return rangeCount;
+  }
+
+  /**
+   * Return the number of id ranges that have been loaded.
+   */
+  public int getRangesLoaded() {
+    return rangesLoaded;
+  }
+
+  /**
+   * Return the number of beans loaded into the caches so far.
+   */
+  public long getBeanCount() {
+    return beanCount;
+  }
+
+  /**
+   * Return the number of ranges that failed to load.
+   */
+  public int getErrorCount() {
+    return errorCount;
+  }
+
+  /**
+   * Return the time taken so far (or in total when complete).
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+}
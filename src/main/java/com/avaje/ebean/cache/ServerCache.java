@@ -2,6 +2,9 @@ package com.avaje.ebean.cache;
 
 import com.avaje.ebean.EbeanServer;
 
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Represents part of the "L2" server side cache.
  * <p>
@@ -48,6 +51,19 @@ public interface ServerCache {
    */
   Object put(Object id, Object value);
 
+  /**
+   * Return the values for the given keys.
+   * <p>
+   * The returned map only contains entries for the keys that are in the cache.
+   * </p>
+   */
+  Map<Object, Object> getAll(Set<Object> keys);
+
+  /**
+   * Put all the given key value pairs into the cache.
+   */
+  void putAll(Map<Object, Object> keyValues);
+
   /**
    * Remove a entry from the cache given its id.
    */
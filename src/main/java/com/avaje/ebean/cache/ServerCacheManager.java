@@ -42,6 +42,14 @@ public interface ServerCacheManager {
    */
   ServerCache getQueryCache(Class<?> beanType);
 
+  /**
+   * Return the cache of ids and natural keys of a bean type that were not found.
+   * <p>
+   * Returns null when negative caching is not enabled.
+   * </p>
+   */
+  ServerCache getMissingCache(Class<?> beanType);
+
   /**
    * This clears both the bean and query cache for a given type.
    */
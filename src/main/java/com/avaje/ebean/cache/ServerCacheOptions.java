@@ -11,6 +11,9 @@ public class ServerCacheOptions {
   private int maxIdleSecs;
   private int maxSecsToLive;
   private int trimFrequency;
+  private boolean singleFlight;
+  private int refreshAheadPercent;
+  private long maxWeightBytes;
 
   /**
    * Construct with no set options.
@@ -27,6 +30,8 @@ public class ServerCacheOptions {
     this.maxIdleSecs = cacheTuning.maxIdleSecs();
     this.maxSecsToLive = cacheTuning.maxSecsToLive();
     this.trimFrequency = cacheTuning.trimFrequency();
+    this.refreshAheadPercent = cacheTuning.refreshAheadPercent();
+    this.maxWeightBytes = cacheTuning.maxWeightBytes();
   }
 
   /**
@@ -37,6 +42,9 @@ public class ServerCacheOptions {
     this.maxIdleSecs = defaults.getMaxIdleSecs();
     this.maxSecsToLive = defaults.getMaxIdleSecs();
     this.trimFrequency = defaults.getTrimFrequency();
+    this.singleFlight = defaults.isSingleFlight();
+    this.refreshAheadPercent = defaults.getRefreshAheadPercent();
+    this.maxWeightBytes = defaults.getMaxWeightBytes();
   }
 
   /**
@@ -56,6 +64,15 @@ public class ServerCacheOptions {
     if (trimFrequency == 0) {
       trimFrequency = defaults.getTrimFrequency();
     }
+    if (!singleFlight) {
+      singleFlight = defaults.isSingleFlight();
+    }
+    if (refreshAheadPercent == 0) {
+      refreshAheadPercent = defaults.getRefreshAheadPercent();
+    }
+    if (maxWeightBytes == 0) {
+      maxWeightBytes = defaults.getMaxWeightBytes();
+    }
   }
 
   /**
@@ -68,6 +85,9 @@ public class ServerCacheOptions {
     copy.maxIdleSecs = maxIdleSecs;
     copy.maxSecsToLive = maxSecsToLive;
     copy.trimFrequency = trimFrequency;
+    copy.singleFlight = singleFlight;
+    copy.refreshAheadPercent = refreshAheadPercent;
+    copy.maxWeightBytes = maxWeightBytes;
     return copy;
   }
 
@@ -85,6 +105,25 @@ public class ServerCacheOptions {
     this.maxSize = maxSize;
   }
 
+  /**
+   * Return the maximum estimated size of the cache in bytes (0 for no weight bound).
+   */
+  public long getMaxWeightBytes() {
+    return maxWeightBytes;
+  }
+
+  /**
+   * Set the maximum estimated size of the cache in bytes.
+   * <p>
+   * The size of each entry is estimated from its data such that beans holding large
+   * values count for more than beans holding a few numbers. The cache is bounded by
+   * both this and the max size when both are set.
+   * </p>
+   */
+  public void setMaxWeightBytes(long maxWeightBytes) {
+    this.maxWeightBytes = maxWeightBytes;
+  }
+
   /**
    * Return the maximum idle time.
    */
@@ -126,4 +165,39 @@ public class ServerCacheOptions {
   public void setTrimFrequency(int trimFrequency) {
     this.trimFrequency = trimFrequency;
   }
+
+  /**
+   * Return true if concurrent misses for the same key wait for a single load.
+   */
+  public boolean isSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * Set to true such that concurrent misses for the same key wait for a single load.
+   */
+  public void setSingleFlight(boolean singleFlight) {
+    this.singleFlight = singleFlight;
+  }
+
+  /**
+   * Return the percentage of the max time to live after which frequently read entries
+   * are refreshed in the background (0 for no refresh ahead).
+   */
+  public int getRefreshAheadPercent() {
+    return refreshAheadPercent;
+  }
+
+  /**
+   * Set the percentage of the max time to live after which frequently read entries
+   * are refreshed in the background.
+   * <p>
+   * For example, with 80 an entry read after 80% of its time to live is reloaded
+   * asynchronously and the existing entry is used until the reload completes. This
+   * has no effect unless the max time to live is set.
+   * </p>
+   */
+  public void setRefreshAheadPercent(int refreshAheadPercent) {
+    this.refreshAheadPercent = refreshAheadPercent;
+  }
 }
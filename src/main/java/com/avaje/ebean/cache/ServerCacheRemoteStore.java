@@ -0,0 +1,50 @@
+package com.avaje.ebean.cache;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A store shared by the servers of a cluster (for example Redis or Memcached) used as the
+ * second tier of bean caches.
+ * <p>
+ * Values are the serialized bean data and the keys are the bean ids. The cacheName
+ * identifies the bean cache (the bean type) and is expected to form part of the key
+ * used in the store.
+ * </p>
+ * <p>
+ * Implementations need to be thread safe. Failures should be logged and treated as a
+ * miss rather than thrown as the database remains the source of truth.
+ * </p>
+ */
+public interface ServerCacheRemoteStore {
+
+  /**
+   * Return the value for the key or null if it is not in the store.
+   */
+  byte[] get(String cacheName, Object key);
+
+  /**
+   * Return the values for the given keys (only the keys found in the store).
+   */
+  Map<Object, byte[]> getAll(String cacheName, Set<Object> keys);
+
+  /**
+   * Put the value into the store.
+   */
+  void put(String cacheName, Object key, byte[] value);
+
+  /**
+   * Put all the key value pairs into the store.
+   */
+  void putAll(String cacheName, Map<Object, byte[]> keyValues);
+
+  /**
+   * Remove the entry for the key from the store.
+   */
+  void remove(String cacheName, Object key);
+
+  /**
+   * Remove all the entries of the cache from the store.
+   */
+  void clear(String cacheName);
+}
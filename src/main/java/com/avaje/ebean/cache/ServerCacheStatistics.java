@@ -39,12 +39,24 @@ public class ServerCacheStatistics {
 
   protected long evictByLRU;
 
+  protected long singleFlightWaitCount;
+
+  protected long refreshAheadCount;
+
+  protected long maxWeightBytes;
+
+  protected long weightBytes;
+
+  protected long offHeapFallbackCount;
+
   public String toString() {
     //noinspection StringBufferReplaceableByString
     StringBuilder sb = new StringBuilder(80);
     sb.append(cacheName);
     sb.append(" maxSize:").append(maxSize);
     sb.append(" size:").append(size);
+    sb.append(" maxWeightBytes:").append(maxWeightBytes);
+    sb.append(" weightBytes:").append(weightBytes);
     sb.append(" hitRatio:").append(getHitRatio());
     sb.append(" hit:").append(hitCount);
     sb.append(" miss:").append(missCount);
@@ -55,6 +67,9 @@ public class ServerCacheStatistics {
     sb.append(" evictByIdle:").append(evictByIdle);
     sb.append(" evictByTTL:").append(evictByTTL);
     sb.append(" evictByLRU:").append(evictByLRU);
+    sb.append(" singleFlightWait:").append(singleFlightWaitCount);
+    sb.append(" refreshAhead:").append(refreshAheadCount);
+    sb.append(" offHeapFallback:").append(offHeapFallbackCount);
     sb.append(" evictionRunCount:").append(evictionRunCount);
     sb.append(" evictionRunMicros:").append(evictionRunMicros);
     return sb.toString();
@@ -274,4 +289,76 @@ public class ServerCacheStatistics {
   public long getEvictByLRU() {
     return evictByLRU;
   }
+
+  /**
+   * Set the count of misses that waited for a load of the same key by another thread.
+   */
+  public void setSingleFlightWaitCount(long singleFlightWaitCount) {
+    this.singleFlightWaitCount = singleFlightWaitCount;
+  }
+
+  /**
+   * Return the count of misses that waited for a load of the same key by another thread
+   * rather than executing the same query.
+   */
+  public long getSingleFlightWaitCount() {
+    return singleFlightWaitCount;
+  }
+
+  /**
+   * Set the count of entries refreshed ahead of expiry.
+   */
+  public void setRefreshAheadCount(long refreshAheadCount) {
+    this.refreshAheadCount = refreshAheadCount;
+  }
+
+  /**
+   * Return the count of entries refreshed ahead of expiry.
+   */
+  public long getRefreshAheadCount() {
+    return refreshAheadCount;
+  }
+
+  /**
+   * Set the maximum estimated size of the cache in bytes (0 for no weight bound).
+   */
+  public void setMaxWeightBytes(long maxWeightBytes) {
+    this.maxWeightBytes = maxWeightBytes;
+  }
+
+  /**
+   * Return the maximum estimated size of the cache in bytes (0 for no weight bound).
+   */
+  public long getMaxWeightBytes() {
+    return maxWeightBytes;
+  }
+
+  /**
+   * Set the estimated size of the cache entries in bytes.
+   */
+  public void setWeightBytes(long weightBytes) {
+    this.weightBytes = weightBytes;
+  }
+
+  /**
+   * Return the estimated size of the cache entries in bytes.
+   */
+  public long getWeightBytes() {
+    return weightBytes;
+  }
+
+  /**
+   * Set the count of values held on the heap as they could not be stored off heap.
+   */
+  public void setOffHeapFallbackCount(long offHeapFallbackCount) {
+    this.offHeapFallbackCount = offHeapFallbackCount;
+  }
+
+  /**
+   * Return the count of values held on the heap as they could not be stored off heap
+   * (the off heap memory was full or the value could not be serialized).
+   */
+  public long getOffHeapFallbackCount() {
+    return offHeapFallbackCount;
+  }
 }
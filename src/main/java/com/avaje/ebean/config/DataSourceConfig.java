@@ -1,6 +1,9 @@
 package com.avaje.ebean.config;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -40,11 +43,17 @@ public class DataSourceConfig {
   private int heartbeatFreqSecs = 30;
   
   private int heartbeatTimeoutSeconds = 3;
+
+  private int validateIdleSecs = 30;
   
   private boolean captureStackTrace;
 
   private int maxStackTraceSize = 5;
 
+  private int leakSampleRate = 100;
+
+  private int leakReportSecs = 300;
+
   private int leakTimeMinutes = 30;
 
   private int maxInactiveTimeSecs = 720;
@@ -54,14 +63,28 @@ public class DataSourceConfig {
   private int trimPoolFreqSecs = 59;
 
   private int pstmtCacheSize = 20;
+
+  private int pstmtCacheWarmSize;
   
   private int cstmtCacheSize = 20;
 
   private int waitTimeoutMillis = 1000;
+
+  private int maxWaiting;
+
+  private int createConnectionThreads = 4;
+
+  private boolean adaptiveSizing;
+
+  private int adaptiveWindows = 10;
   
   private String poolListener;
 
   private boolean offline;
+
+  private List<String> readOnlyUrls = new ArrayList<String>();
+
+  private boolean readOnlyLeastBusy;
   
   protected Map<String, String> customProperties;
 
@@ -218,6 +241,29 @@ public class DataSourceConfig {
     this.heartbeatFreqSecs = heartbeatFreqSecs;
   }
   
+  /**
+   * Return the idle time in seconds after which free connections are validated
+   * in the background (by the heartbeat).
+   * <p>
+   * Connections used within this time are assumed to be good and are not validated.
+   * A value of 0 means free connections are not validated in the background.
+   * </p>
+   */
+  public int getValidateIdleSecs() {
+    return validateIdleSecs;
+  }
+
+  /**
+   * Set the idle time in seconds after which free connections are validated in the background.
+   * <p>
+   * This is used to detect dead connections (for example after a database failover)
+   * without adding a validation round trip when connections are borrowed.
+   * </p>
+   */
+  public void setValidateIdleSecs(int validateIdleSecs) {
+    this.validateIdleSecs = validateIdleSecs;
+  }
+
   /**
    * Return the heart beat timeout in seconds.
    */
@@ -274,6 +320,41 @@ public class DataSourceConfig {
     this.maxStackTraceSize = maxStackTraceSize;
   }
 
+  /**
+   * Return the leak detection sample rate (0 means off).
+   * <p>
+   * The call site of 1 in leakSampleRate borrows is captured (bounded to maxStackTraceSize
+   * and shared by all borrows from the same call site) such that sampled connections held
+   * longer than leakReportSecs can be reported. This is cheap enough to leave on.
+   * </p>
+   */
+  public int getLeakSampleRate() {
+    return leakSampleRate;
+  }
+
+  /**
+   * Set the leak detection sample rate (0 means off, 1 samples every borrow).
+   */
+  public void setLeakSampleRate(int leakSampleRate) {
+    this.leakSampleRate = leakSampleRate;
+  }
+
+  /**
+   * Return the time in seconds after which the call sites of sampled busy connections
+   * are reported as potential leaks (0 means no reporting).
+   */
+  public int getLeakReportSecs() {
+    return leakReportSecs;
+  }
+
+  /**
+   * Set the time in seconds after which the call sites of sampled busy connections
+   * are reported as potential leaks (0 means no reporting).
+   */
+  public void setLeakReportSecs(int leakReportSecs) {
+    this.leakReportSecs = leakReportSecs;
+  }
+
   /**
    * Return the time in minutes after which a connection could be considered to
    * have leaked.
@@ -304,6 +385,26 @@ public class DataSourceConfig {
     this.pstmtCacheSize = pstmtCacheSize;
   }
 
+  /**
+   * Return the number of the most frequently used statements to prepare when
+   * a new connection is created.
+   */
+  public int getPstmtCacheWarmSize() {
+    return pstmtCacheWarmSize;
+  }
+
+  /**
+   * Set the number of the most frequently used statements (across all the
+   * connections in the pool) to prepare when a new connection is created.
+   * <p>
+   * This reduces the prepare latency on newly grown connections. Defaults to 0
+   * meaning statements are only prepared when they are used.
+   * </p>
+   */
+  public void setPstmtCacheWarmSize(int pstmtCacheWarmSize) {
+    this.pstmtCacheWarmSize = pstmtCacheWarmSize;
+  }
+
   /**
    * Return the size of the CallableStatement cache (per connection).
    */
@@ -334,6 +435,80 @@ public class DataSourceConfig {
     this.waitTimeoutMillis = waitTimeoutMillis;
   }
 
+  /**
+   * Return the maximum number of threads that can wait for a connection once the
+   * pool has reached its maximum size. A value of 0 means no limit.
+   */
+  public int getMaxWaiting() {
+    return maxWaiting;
+  }
+
+  /**
+   * Set the maximum number of threads that can wait for a connection once the
+   * pool has reached its maximum size.
+   * <p>
+   * When the wait queue is full further requests fail fast rather than wait
+   * (load shedding). A value of 0 means no limit.
+   * </p>
+   */
+  public void setMaxWaiting(int maxWaiting) {
+    this.maxWaiting = maxWaiting;
+  }
+
+  /**
+   * Return the maximum number of threads used to create connections in parallel.
+   */
+  public int getCreateConnectionThreads() {
+    return createConnectionThreads;
+  }
+
+  /**
+   * Set the maximum number of threads used to create connections in parallel.
+   * <p>
+   * New connections are created by these background threads (rather than by the
+   * borrowing thread holding the pool lock) and the pool is warmed up to its minimum
+   * size in parallel on startup.
+   * </p>
+   */
+  public void setCreateConnectionThreads(int createConnectionThreads) {
+    this.createConnectionThreads = createConnectionThreads;
+  }
+
+  /**
+   * Return true if the pool size adapts to the observed demand.
+   */
+  public boolean isAdaptiveSizing() {
+    return adaptiveSizing;
+  }
+
+  /**
+   * Set to true for the pool size to adapt to the observed demand.
+   * <p>
+   * The peak busy and waiting connections are tracked over a sliding window (of
+   * adaptiveWindows trim periods). The pool grows ahead of that demand such that
+   * borrowers do not wait and shrinks gradually when the demand drops, always
+   * between minConnections and maxConnections.
+   * </p>
+   */
+  public void setAdaptiveSizing(boolean adaptiveSizing) {
+    this.adaptiveSizing = adaptiveSizing;
+  }
+
+  /**
+   * Return the number of trim periods (trimPoolFreqSecs) that adaptive sizing remembers.
+   */
+  public int getAdaptiveWindows() {
+    return adaptiveWindows;
+  }
+
+  /**
+   * Set the number of trim periods (trimPoolFreqSecs) that adaptive sizing remembers.
+   * The pool only shrinks below the peak demand seen over these periods.
+   */
+  public void setAdaptiveWindows(int adaptiveWindows) {
+    this.adaptiveWindows = adaptiveWindows;
+  }
+
   /**
    * Return the time in seconds a connection can be idle after which it can be
    * trimmed from the pool.
@@ -433,6 +608,84 @@ public class DataSourceConfig {
     this.offline = offline;
   }
   
+  /**
+   * Return the urls of read only replica databases.
+   * <p>
+   * A read only pool is created for each of these urls using the other settings
+   * of this configuration. Read only transactions and queries marked to use a read
+   * replica then use these pools rather than the primary.
+   * </p>
+   */
+  public List<String> getReadOnlyUrls() {
+    return readOnlyUrls;
+  }
+
+  /**
+   * Set the urls of read only replica databases.
+   */
+  public void setReadOnlyUrls(List<String> readOnlyUrls) {
+    this.readOnlyUrls = readOnlyUrls;
+  }
+
+  /**
+   * Return true if the least busy read replica is used (rather than round robin).
+   */
+  public boolean isReadOnlyLeastBusy() {
+    return readOnlyLeastBusy;
+  }
+
+  /**
+   * Set to true to use the least busy read replica rather than round robin selection.
+   */
+  public void setReadOnlyLeastBusy(boolean readOnlyLeastBusy) {
+    this.readOnlyLeastBusy = readOnlyLeastBusy;
+  }
+
+  /**
+   * Return a copy of this configuration for the given url (without read only urls).
+   * <p>
+   * Used to create the pools for the read replicas.
+   * </p>
+   */
+  public DataSourceConfig copy(String url) {
+
+    DataSourceConfig copy = new DataSourceConfig();
+    copy.url = url;
+    copy.username = username;
+    copy.password = password;
+    copy.driver = driver;
+    copy.minConnections = minConnections;
+    copy.maxConnections = maxConnections;
+    copy.isolationLevel = isolationLevel;
+    copy.autoCommit = autoCommit;
+    copy.heartbeatSql = heartbeatSql;
+    copy.heartbeatFreqSecs = heartbeatFreqSecs;
+    copy.heartbeatTimeoutSeconds = heartbeatTimeoutSeconds;
+    copy.validateIdleSecs = validateIdleSecs;
+    copy.captureStackTrace = captureStackTrace;
+    copy.maxStackTraceSize = maxStackTraceSize;
+    copy.leakSampleRate = leakSampleRate;
+    copy.leakReportSecs = leakReportSecs;
+    copy.leakTimeMinutes = leakTimeMinutes;
+    copy.maxInactiveTimeSecs = maxInactiveTimeSecs;
+    copy.maxAgeMinutes = maxAgeMinutes;
+    copy.trimPoolFreqSecs = trimPoolFreqSecs;
+    copy.pstmtCacheSize = pstmtCacheSize;
+    copy.pstmtCacheWarmSize = pstmtCacheWarmSize;
+    copy.cstmtCacheSize = cstmtCacheSize;
+    copy.waitTimeoutMillis = waitTimeoutMillis;
+    copy.maxWaiting = maxWaiting;
+    copy.createConnectionThreads = createConnectionThreads;
+    copy.adaptiveSizing = adaptiveSizing;
+    copy.adaptiveWindows = adaptiveWindows;
+    copy.poolListener = poolListener;
+    copy.offline = offline;
+    if (customProperties != null) {
+      copy.customProperties = new HashMap<String, String>(customProperties);
+    }
+    return copy;
+  }
+
   /**
    * Return a map of custom properties for the jdbc driver connection.
    */
@@ -485,6 +738,8 @@ public class DataSourceConfig {
     autoCommit = properties.getBoolean("autoCommit", autoCommit);
     captureStackTrace = properties.getBoolean("captureStackTrace", captureStackTrace);
     maxStackTraceSize = properties.getInt("maxStackTraceSize", maxStackTraceSize);
+    leakSampleRate = properties.getInt("leakSampleRate", leakSampleRate);
+    leakReportSecs = properties.getInt("leakReportSecs", leakReportSecs);
     leakTimeMinutes = properties.getInt("leakTimeMinutes", leakTimeMinutes);
     maxInactiveTimeSecs = properties.getInt("maxInactiveTimeSecs", maxInactiveTimeSecs);
     trimPoolFreqSecs = properties.getInt("trimPoolFreqSecs", trimPoolFreqSecs);
@@ -493,14 +748,31 @@ public class DataSourceConfig {
     minConnections = properties.getInt("minConnections", minConnections);
     maxConnections = properties.getInt("maxConnections", maxConnections);
     pstmtCacheSize = properties.getInt("pstmtCacheSize", pstmtCacheSize);
+    pstmtCacheWarmSize = properties.getInt("pstmtCacheWarmSize", pstmtCacheWarmSize);
     cstmtCacheSize = properties.getInt("cstmtCacheSize", cstmtCacheSize);
 
     waitTimeoutMillis = properties.getInt("waitTimeout", waitTimeoutMillis);
+    maxWaiting = properties.getInt("maxWaiting", maxWaiting);
+    createConnectionThreads = properties.getInt("createConnectionThreads", createConnectionThreads);
+    adaptiveSizing = properties.getBoolean("adaptiveSizing", adaptiveSizing);
+    adaptiveWindows = properties.getInt("adaptiveWindows", adaptiveWindows);
 
     heartbeatSql = properties.get("heartbeatSql", heartbeatSql);
     heartbeatTimeoutSeconds =  properties.getInt("heartbeatTimeoutSeconds", heartbeatTimeoutSeconds);
+    validateIdleSecs = properties.getInt("validateIdleSecs", validateIdleSecs);
     poolListener = properties.get("poolListener", poolListener);
     offline = properties.getBoolean("offline", offline);
+    readOnlyLeastBusy = properties.getBoolean("readOnlyLeastBusy", readOnlyLeastBusy);
+
+    String roUrls = properties.get("readOnlyUrls", null);
+    if (roUrls != null && roUrls.trim().length() > 0) {
+      readOnlyUrls = new ArrayList<String>();
+      for (String roUrl : roUrls.split(",")) {
+        if (roUrl.trim().length() > 0) {
+          readOnlyUrls.add(roUrl.trim());
+        }
+      }
+    }
 
     String isoLevel = properties.get("isolationlevel", getTransactionIsolationLevel(isolationLevel));
     this.isolationLevel = getTransactionIsolationLevel(isoLevel);
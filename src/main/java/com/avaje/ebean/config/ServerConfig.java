@@ -230,6 +230,16 @@ public class ServerConfig {
    */
   private DataSource dataSource;
 
+  /**
+   * The read only data source used for read only transactions and queries (optional).
+   */
+  private DataSource readOnlyDataSource;
+
+  /**
+   * Time after a thread commits changes during which it reads from the primary.
+   */
+  private int readYourWritesMillis;
+
   /** 
    * The data source config. 
    */
@@ -371,15 +381,35 @@ public class ServerConfig {
   // defaults for the L2 bean caching
 
   private int cacheWarmingDelay = 30;
+  private int cacheWarmingThreads = 4;
+  private int cacheWarmingRangeSize = 100000;
   private int cacheMaxSize = 10000;
   private int cacheMaxIdleTime = 600;
   private int cacheMaxTimeToLive = 60*60*6;
+  private boolean cacheSingleFlight;
+  private int cacheRefreshAheadPercent;
+  private int cacheMissingTimeToLive;
 
   // defaults for the L2 query caching
 
   private int queryCacheMaxSize = 1000;
   private int queryCacheMaxIdleTime = 600;
   private int queryCacheMaxTimeToLive = 60*60*6;
+
+  /**
+   * The max number of query plans held per bean type.
+   */
+  private int queryPlanCacheMaxSize = 1000;
+
+  /**
+   * The manifest file of hot query plans warmed up on startup (null for no warm up).
+   */
+  private String queryPlanWarmupFile;
+
+  /**
+   * The max number of query plans written to the warm up manifest.
+   */
+  private int queryPlanWarmupMaxPlans = 500;
   private Object objectMapper;
 
   /**
@@ -1047,6 +1077,39 @@ public class ServerConfig {
     this.cacheWarmingDelay = cacheWarmingDelay;
   }
 
+  /**
+   * Return the number of threads used to load the caches when warming them.
+   */
+  public int getCacheWarmingThreads() {
+    return cacheWarmingThreads;
+  }
+
+  /**
+   * Set the number of threads (and hence database connections) used to load the caches
+   * in parallel when warming them.
+   */
+  public void setCacheWarmingThreads(int cacheWarmingThreads) {
+    this.cacheWarmingThreads = cacheWarmingThreads;
+  }
+
+  /**
+   * Return the number of rows above which a table is loaded in ranges of ids when warming the cache.
+   */
+  public int getCacheWarmingRangeSize() {
+    return cacheWarmingRangeSize;
+  }
+
+  /**
+   * Set the number of rows above which a table is split into ranges of ids that are
+   * loaded in parallel when warming the cache (0 for no splitting).
+   * <p>
+   * This applies to bean types with an integer id.
+   * </p>
+   */
+  public void setCacheWarmingRangeSize(int cacheWarmingRangeSize) {
+    this.cacheWarmingRangeSize = cacheWarmingRangeSize;
+  }
+
   /**
    * Return the L2 cache default max size.
    */
@@ -1089,6 +1152,66 @@ public class ServerConfig {
     this.cacheMaxTimeToLive = cacheMaxTimeToLive;
   }
 
+  /**
+   * Return true if concurrent L2 cache misses for the same id or query wait for a single load.
+   */
+  public boolean isCacheSingleFlight() {
+    return cacheSingleFlight;
+  }
+
+  /**
+   * Set to true such that concurrent L2 bean and query cache misses for the same id or
+   * query wait for a single load rather than all executing the same query.
+   * <p>
+   * This prevents a burst of identical queries when a heavily used cache entry expires
+   * or is invalidated. The number of such waits is included in ServerCacheStatistics.
+   * </p>
+   */
+  public void setCacheSingleFlight(boolean cacheSingleFlight) {
+    this.cacheSingleFlight = cacheSingleFlight;
+  }
+
+  /**
+   * Return the default percentage of the max time to live after which frequently read
+   * L2 cache entries are refreshed in the background (0 for no refresh ahead).
+   */
+  public int getCacheRefreshAheadPercent() {
+    return cacheRefreshAheadPercent;
+  }
+
+  /**
+   * Set the default percentage of the max time to live after which frequently read L2
+   * bean and query cache entries are refreshed in the background.
+   * <p>
+   * The existing entry continues to be used while it is reloaded such that readers
+   * do not see the latency of the query when the entry would otherwise expire.
+   * </p>
+   */
+  public void setCacheRefreshAheadPercent(int cacheRefreshAheadPercent) {
+    this.cacheRefreshAheadPercent = cacheRefreshAheadPercent;
+  }
+
+  /**
+   * Return the time to live in seconds of L2 cache entries for ids and natural keys that
+   * were not found (0 for no negative caching).
+   */
+  public int getCacheMissingTimeToLive() {
+    return cacheMissingTimeToLive;
+  }
+
+  /**
+   * Set the time to live in seconds for caching ids and natural keys that were not found.
+   * <p>
+   * When set finding a bean by an id or natural key that does not exist is remembered for
+   * this (typically short) time such that repeated lookups of it do not hit the database.
+   * This applies to bean types using the bean cache. Inserts of the bean type and remote
+   * transaction events invalidate the entries.
+   * </p>
+   */
+  public void setCacheMissingTimeToLive(int cacheMissingTimeToLive) {
+    this.cacheMissingTimeToLive = cacheMissingTimeToLive;
+  }
+
   /**
    * Return the L2 query cache default max size.
    */
@@ -1131,6 +1254,58 @@ public class ServerConfig {
     this.queryCacheMaxTimeToLive = queryCacheMaxTimeToLive;
   }
 
+  /**
+   * Return the max number of query plans held per bean type.
+   */
+  public int getQueryPlanCacheMaxSize() {
+    return queryPlanCacheMaxSize;
+  }
+
+  /**
+   * Set the max number of query plans held per bean type (0 for unbounded).
+   * <p>
+   * Queries built with dynamic where clauses or fetch paths can produce many query plans.
+   * When the max size is reached the least frequently used query plans are evicted.
+   * </p>
+   */
+  public void setQueryPlanCacheMaxSize(int queryPlanCacheMaxSize) {
+    this.queryPlanCacheMaxSize = queryPlanCacheMaxSize;
+  }
+
+  /**
+   * Return the manifest file of hot query plans warmed up on startup.
+   */
+  public String getQueryPlanWarmupFile() {
+    return queryPlanWarmupFile;
+  }
+
+  /**
+   * Set the manifest file of hot query plans warmed up on startup.
+   * <p>
+   * On shutdown the most frequently executed query plans are written to this file (as
+   * serialised copies of the queries that built them). On startup these queries are
+   * compiled in the background such that their query plans are cached before the first
+   * queries execute. The queries are not executed as part of the warm up.
+   * </p>
+   */
+  public void setQueryPlanWarmupFile(String queryPlanWarmupFile) {
+    this.queryPlanWarmupFile = queryPlanWarmupFile;
+  }
+
+  /**
+   * Return the max number of query plans written to the warm up manifest.
+   */
+  public int getQueryPlanWarmupMaxPlans() {
+    return queryPlanWarmupMaxPlans;
+  }
+
+  /**
+   * Set the max number of query plans written to the warm up manifest.
+   */
+  public void setQueryPlanWarmupMaxPlans(int queryPlanWarmupMaxPlans) {
+    this.queryPlanWarmupMaxPlans = queryPlanWarmupMaxPlans;
+  }
+
   /**
    * Return the NamingConvention.
    * <p>
@@ -1193,6 +1368,45 @@ public class ServerConfig {
     this.dataSource = dataSource;
   }
 
+  /**
+   * Return the read only DataSource (typically for read replicas).
+   */
+  public DataSource getReadOnlyDataSource() {
+    return readOnlyDataSource;
+  }
+
+  /**
+   * Set a read only DataSource.
+   * <p>
+   * When set, read only transactions and queries marked to use a read replica obtain
+   * their connections from this DataSource rather than the main DataSource. If not set
+   * and the DataSourceConfig has readOnlyUrls then a pool is created for each url.
+   * </p>
+   */
+  public void setReadOnlyDataSource(DataSource readOnlyDataSource) {
+    this.readOnlyDataSource = readOnlyDataSource;
+  }
+
+  /**
+   * Return the time in millis after a thread commits changes during which it reads
+   * from the primary rather than the read only DataSource.
+   */
+  public int getReadYourWritesMillis() {
+    return readYourWritesMillis;
+  }
+
+  /**
+   * Set the time in millis after a thread commits changes during which it reads from
+   * the primary rather than the read only DataSource.
+   * <p>
+   * This provides 'read your writes' consistency for the thread given replication lag
+   * to the read replicas. A value of 0 means reads always go to the read only DataSource.
+   * </p>
+   */
+  public void setReadYourWritesMillis(int readYourWritesMillis) {
+    this.readYourWritesMillis = readYourWritesMillis;
+  }
+
   /**
    * Return the configuration to build a DataSource using Ebean's own DataSource
    * implementation.
@@ -2237,6 +2451,15 @@ public class ServerConfig {
     serverCacheFactory = createInstance(p, ServerCacheFactory.class, "serverCacheFactory", serverCacheFactory);
     serverCacheManager = createInstance(p, ServerCacheManager.class, "serverCacheManager", serverCacheManager);
     cacheWarmingDelay = p.getInt("cacheWarmingDelay", cacheWarmingDelay);
+    cacheWarmingThreads = p.getInt("cacheWarmingThreads", cacheWarmingThreads);
+    cacheWarmingRangeSize = p.getInt("cacheWarmingRangeSize", cacheWarmingRangeSize);
+    cacheSingleFlight = p.getBoolean("cacheSingleFlight", cacheSingleFlight);
+    cacheRefreshAheadPercent = p.getInt("cacheRefreshAheadPercent", cacheRefreshAheadPercent);
+    cacheMissingTimeToLive = p.getInt("cacheMissingTimeToLive", cacheMissingTimeToLive);
+    queryPlanCacheMaxSize = p.getInt("queryPlanCacheMaxSize", queryPlanCacheMaxSize);
+    queryPlanWarmupFile = p.get("queryPlanWarmupFile", queryPlanWarmupFile);
+    queryPlanWarmupMaxPlans = p.getInt("queryPlanWarmupMaxPlans", queryPlanWarmupMaxPlans);
+    readYourWritesMillis = p.getInt("readYourWritesMillis", readYourWritesMillis);
     classPathReaderClassName = p.get("classpathreader");
     
     String jarsProp = p.get("search.jars", p.get("jars", null));
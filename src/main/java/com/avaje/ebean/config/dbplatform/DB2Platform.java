@@ -15,6 +15,7 @@ public class DB2Platform extends DatabasePlatform {
   public DB2Platform() {
     super();
     this.name = "db2";
+    this.keysetInExpandedForm = true;
     this.maxTableNameLength = 18;
     this.maxConstraintNameLength = 18;
     this.sqlLimiter = new Db2SqlLimiter();
@@ -132,6 +132,12 @@ public class DatabasePlatform {
 
   protected boolean idInExpandedForm;
 
+  /**
+   * Set when keyset pagination predicates need to be in expanded form of
+   * (a > ? or (a = ? and b > ?)) rather than the row value comparison (a,b) > (?,?).
+   */
+  protected boolean keysetInExpandedForm;
+
   protected boolean selectCountWithAlias;
 
   /**
@@ -140,6 +146,12 @@ public class DatabasePlatform {
    */
   protected boolean forwardOnlyHintOnFindIterate;
 
+  /**
+   * The JDBC fetch size used by findIterate(), findEach() and findStream() when the query
+   * does not specify a buffer fetch size hint (0 for the JDBC driver default).
+   */
+  protected int streamFetchSize;
+
   /**
    * Flag set for SQL Server due to lack of support of getGeneratedKeys in
    * batch mode (meaning for batch inserts you should explicitly turn off
@@ -385,6 +397,15 @@ public class DatabasePlatform {
     return idInExpandedForm;
   }
 
+  /**
+   * Return true if keyset pagination predicates need to be in expanded form of
+   * (a > ? or (a = ? and b > ?)) rather than the row value comparison (a,b) > (?,?)
+   * for databases that do not support row value comparisons.
+   */
+  public boolean isKeysetInExpandedForm() {
+    return keysetInExpandedForm;
+  }
+
   /**
    * Return true if the ResultSet TYPE_FORWARD_ONLY Hint should be used on
    * findIterate() and findVisit() PreparedStatements.
@@ -396,6 +417,27 @@ public class DatabasePlatform {
     return forwardOnlyHintOnFindIterate;
   }
 
+  /**
+   * Return the JDBC fetch size used by findIterate(), findEach() and findStream() when the
+   * query does not specify a buffer fetch size hint (0 for the JDBC driver default).
+   * <p>
+   * This is set for drivers that otherwise read the entire ResultSet into memory such as
+   * Postgres (which requires a positive fetch size with autocommit off). MySql instead uses
+   * the forward only hint with a fetch size of Integer.MIN_VALUE.
+   * </p>
+   */
+  public int getStreamFetchSize() {
+    return streamFetchSize;
+  }
+
+  /**
+   * Set the JDBC fetch size used by findIterate(), findEach() and findStream() when the
+   * query does not specify a buffer fetch size hint.
+   */
+  public void setStreamFetchSize(int streamFetchSize) {
+    this.streamFetchSize = streamFetchSize;
+  }
+
   /**
    * Set to true if the ResultSet TYPE_FORWARD_ONLY Hint should be used by default on findIterate PreparedStatements.
    */
@@ -23,6 +23,7 @@ public class MsSqlServer2005Platform extends DatabasePlatform {
     // due to lack of support for getGeneratedKeys in batch mode
     this.disallowBatchOnCascade = true;
     this.idInExpandedForm = true;
+    this.keysetInExpandedForm = true;
     this.selectCountWithAlias = true;
     this.sqlLimiter = new MsSqlServer2005SqlLimiter();
     this.platformDdl = new MsSqlServerDdl(dbTypeMap, dbIdentity);
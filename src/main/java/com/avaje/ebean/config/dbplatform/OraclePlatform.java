@@ -30,6 +30,7 @@ public class OraclePlatform extends DatabasePlatform {
     dbIdentity.setSupportsSequence(true);
 
     this.treatEmptyStringsAsNull = true;
+    this.keysetInExpandedForm = true;
 
     this.openQuote = "\"";
     this.closeQuote = "\"";
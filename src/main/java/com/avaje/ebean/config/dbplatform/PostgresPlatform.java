@@ -27,6 +27,8 @@ public class PostgresPlatform extends DatabasePlatform {
     this.blobDbType = Types.LONGVARBINARY;
     this.clobDbType = Types.VARCHAR;
     this.nativeUuidType = true;
+    // the driver reads the entire ResultSet into memory unless a fetch size is set
+    this.streamFetchSize = 1000;
 
     this.dbEncrypt = new PostgresDbEncrypt();
     this.historySupport = new PostgresHistorySupport();
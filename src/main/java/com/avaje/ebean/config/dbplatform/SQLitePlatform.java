@@ -9,6 +9,7 @@ public class SQLitePlatform extends DatabasePlatform {
   public SQLitePlatform() {
     super();
     this.name = "sqlite";
+    this.keysetInExpandedForm = true;
     this.platformDdl = new SQLiteDdl(dbTypeMap, dbIdentity);
 
     this.dbIdentity.setIdType(IdType.IDENTITY);
@@ -16,6 +16,7 @@ public class SqlAnywherePlatform extends DatabasePlatform {
   public SqlAnywherePlatform() {
     super();
     this.name = "sqlanywhere";
+    this.keysetInExpandedForm = true;
     this.dbIdentity.setIdType(IdType.IDENTITY);
 
     this.sqlLimiter = new SqlAnywhereLimiter();
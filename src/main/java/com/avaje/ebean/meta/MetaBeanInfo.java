@@ -14,4 +14,9 @@ public interface MetaBeanInfo {
    */  
   List<MetaQueryPlanStatistic> collectAllQueryPlanStatistics(boolean reset);
 
+
+  /**
+   * Return the statistics of the query plan cache (plan count, hits, misses, evictions and build time).
+   */
+  MetaQueryPlanCacheStatistic getQueryPlanCacheStatistic(boolean reset);
 }
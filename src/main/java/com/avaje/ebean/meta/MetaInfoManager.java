@@ -26,6 +26,14 @@ public interface MetaInfoManager {
    */
   List<MetaQueryPlanStatistic> collectQueryPlanStatistics(boolean reset);
 
+  /**
+   * Collect and return the query plan cache statistics of the bean types that have query plans.
+   *
+   * @param reset
+   *          Set to true to reset the underlying statistics after collection.
+   */
+  List<MetaQueryPlanCacheStatistic> collectQueryPlanCacheStatistics(boolean reset);
+
   /**
    * Collect and return the ObjectGraphNode statistics.
    * <p>
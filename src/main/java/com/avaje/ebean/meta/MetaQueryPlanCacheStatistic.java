@@ -0,0 +1,59 @@
+package com.avaje.ebean.meta;
+
+/**
+ * Statistics of the query plan cache of a bean type.
+ * <p>
+ * The number of query plans is bounded and the least frequently used plans are evicted.
+ * A high eviction count with a low hit ratio indicates queries that are built dynamically
+ * (varying where clauses or fetch paths) such that their plans are rarely reused.
+ * </p>
+ *
+ * @see MetaInfoManager#collectQueryPlanCacheStatistics(boolean)
+ */
+public interface MetaQueryPlanCacheStatistic {
+
+  /**
+   * Return the bean type.
+   */
+  Class<?> getBeanType();
+
+  /**
+   * Return the number of query plans currently cached.
+   */
+  int getPlanCount();
+
+  /**
+   * Return the maximum number of query plans cached.
+   */
+  int getMaxSize();
+
+  /**
+   * Return the number of queries that used a cached query plan.
+   */
+  long getHitCount();
+
+  /**
+   * Return the number of queries that had to build a query plan.
+   */
+  long getMissCount();
+
+  /**
+   * Return the number of query plans evicted to stay within the max size.
+   */
+  long getEvictionCount();
+
+  /**
+   * Return the number of query plans built.
+   */
+  long getCompileCount();
+
+  /**
+   * Return the total time in microseconds spent building query plans.
+   */
+  long getTotalCompileMicros();
+
+  /**
+   * Return the mean time in microseconds to build a query plan.
+   */
+  long getMeanCompileMicros();
+}
@@ -3,6 +3,7 @@ package com.avaje.ebeaninternal.api;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -98,6 +99,24 @@ public class BindParams implements Serializable {
 		return copy;
 	}
 	
+  /**
+   * Return a copy of the BindParams without the bind values.
+   * <p>
+   * The values are replaced by placeholders such that the number of values bound (and
+   * hence the query plan hash) is the same.
+   * </p>
+   */
+  public BindParams copyForPlanKey() {
+    BindParams copy = new BindParams();
+    for (Param p : positionedParameters) {
+      copy.positionedParameters.add(p.copyForPlanKey());
+    }
+    for (Entry<String, Param> entry : namedParameters.entrySet()) {
+      copy.namedParameters.put(entry.getKey(), entry.getValue().copyForPlanKey());
+    }
+    return copy;
+  }
+
 	/**
 	 * Return true if there are no bind parameters.
 	 */
@@ -397,6 +416,20 @@ public class BindParams implements Serializable {
 			return copy;
 		}
 		
+    /**
+     * Create a copy of the Param with the in value replaced by a placeholder.
+     */
+    public Param copyForPlanKey() {
+      Param copy = copy();
+      copy.outValue = null;
+      if (inValue instanceof Collection<?>) {
+        copy.inValue = new ArrayList<Object>(Collections.nCopies(((Collection<?>) inValue).size(), null));
+      } else if (inValue != null) {
+        copy.inValue = Boolean.TRUE;
+      }
+      return copy;
+    }
+
 		public int hashCode() {
 			int hc = getClass().hashCode();
 			hc = hc * 31 + (isInParam ? 0 : 1);
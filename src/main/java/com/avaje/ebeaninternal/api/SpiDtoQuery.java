@@ -0,0 +1,40 @@
+package com.avaje.ebeaninternal.api;
+
+import com.avaje.ebean.DtoQuery;
+import com.avaje.ebeaninternal.server.dto.DtoBeanDescriptor;
+
+/**
+ * DTO query - Internal extension to DtoQuery.
+ */
+public interface SpiDtoQuery<T> extends DtoQuery<T> {
+
+  /**
+   * Return the descriptor of the DTO bean type.
+   */
+  DtoBeanDescriptor<T> getDescriptor();
+
+  /**
+   * Return the sql query.
+   */
+  String getQuery();
+
+  /**
+   * Return the named or positioned parameters.
+   */
+  BindParams getBindParams();
+
+  /**
+   * Return the maximum number of rows to fetch.
+   */
+  int getMaxRows();
+
+  /**
+   * Return the query timeout.
+   */
+  int getTimeout();
+
+  /**
+   * Return the hint for Statement.setFetchSize().
+   */
+  int getBufferFetchSizeHint();
+}
@@ -124,6 +124,11 @@ public interface SpiEbeanServer extends EbeanServer, BeanLoader, BeanCollectionL
    */
   SpiTransaction createQueryTransaction();
 
+  /**
+   * Create a ServerTransaction for query purposes optionally using the read only DataSource.
+   */
+  SpiTransaction createQueryTransaction(boolean useReadReplica);
+
   /**
    * An event from another server in the cluster used to notify local
    * BeanListeners of remote inserts updates and deletes.
@@ -71,4 +71,14 @@ public interface SpiExpression extends Expression {
    * Validate all the properties/paths associated with this expression.
    */
   void validate(SpiExpressionValidation validation);
+
+  /**
+   * Return a copy of the expression without the bind values.
+   * <p>
+   * The copy generates the same sql (and query plan hash) as this expression but does
+   * not hold the values to bind. Values the sql depends on such as the number of values
+   * in an IN clause are kept as placeholders.
+   * </p>
+   */
+  SpiExpression copyForPlanKey();
 }
@@ -5,6 +5,7 @@ import java.util.List;
 
 import com.avaje.ebean.ExpressionFactory;
 import com.avaje.ebean.ExpressionList;
+import com.avaje.ebean.Query;
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
 
@@ -71,4 +72,9 @@ public interface SpiExpressionList<T> extends ExpressionList<T> {
    * Validate all the properties/paths used in this expression list.
    */
   void validate(SpiExpressionValidation validation);
+
+  /**
+   * Return a copy of the expression list without the bind values.
+   */
+  SpiExpressionList<T> copyForPlanKey(Query<T> query);
 }
@@ -249,6 +249,15 @@ public interface SpiQuery<T> extends Query<T> {
    */
   SpiQuery<T> copy(EbeanServer server);
 
+  /**
+   * Return a copy of the query without the bind values.
+   * <p>
+   * The copy builds the same query plan as this query such that it can be held (for
+   * example in the query plan warm up manifest) without the values of the query.
+   * </p>
+   */
+  SpiQuery<T> copyForPlanKey();
+
   /**
    * Return the type of query (List, Set, Map, Bean, rowCount etc).
    */
@@ -556,12 +565,31 @@ public interface SpiQuery<T> extends Query<T> {
    */
   boolean isUseQueryCache();
 
+  /**
+   * Return true if this query should use the read only DataSource (read replica).
+   */
+  boolean isUseReadReplica();
+
   /**
    * Return true if the beans from this query should be loaded into the bean
    * cache.
    */
   boolean isLoadBeanCache();
 
+  /**
+   * Return true if this query is refreshing its query cache entry.
+   * <p>
+   * The query is executed (rather than read from the query cache) and the result
+   * put into the query cache.
+   * </p>
+   */
+  boolean isRefreshQueryCache();
+
+  /**
+   * Set to true to execute the query and put the result into the query cache.
+   */
+  void setRefreshQueryCache(boolean refreshQueryCache);
+
   /**
    * Return true if the beans returned by this query should be read only.
    */
@@ -0,0 +1,185 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.BackgroundExecutor;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
+import com.avaje.ebeaninternal.server.util.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A run of the cache warming queries.
+ * <p>
+ * Each bean type adds the ranges of its table to load (large tables are split into
+ * ranges of ids). The ranges of all the bean types are then loaded in parallel by a
+ * number of workers on the BackgroundExecutor with the calling thread also loading
+ * ranges such that run() returns when all the caches have been loaded.
+ * </p>
+ */
+public class CacheWarming {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheWarming.class);
+
+  private final ConcurrentLinkedQueue<RangeTask> tasks = new ConcurrentLinkedQueue<RangeTask>();
+
+  private final int threads;
+
+  private final int rangeSize;
+
+  private final AtomicInteger beanTypeCount = new AtomicInteger();
+
+  private final AtomicInteger beanTypesLoaded = new AtomicInteger();
+
+  private final AtomicInteger rangeCount = new AtomicInteger();
+
+  private final AtomicInteger rangesLoaded = new AtomicInteger();
+
+  private final AtomicInteger errorCount = new AtomicInteger();
+
+  private final LongAdder beanCount = new LongAdder();
+
+  private volatile long startTime;
+
+  private volatile long endTime;
+
+  /**
+   * Create with the number of threads loading ranges and the number of rows per range.
+   */
+  public CacheWarming(int threads, int rangeSize) {
+    this.threads = Math.max(1, threads);
+    this.rangeSize = rangeSize;
+  }
+
+  /**
+   * Return the number of rows above which a table is split into ranges of ids
+   * (0 or less for no splitting).
+   */
+  public int getRangeSize() {
+    return rangeSize;
+  }
+
+  /**
+   * Add the ranges to load for a cache. Each returns the number of beans it loaded.
+   */
+  public void add(String cacheName, List<Callable<Long>> ranges) {
+    if (ranges.isEmpty()) {
+      return;
+    }
+    BeanTypeProgress beanType = new BeanTypeProgress(cacheName, ranges.size());
+    beanTypeCount.incrementAndGet();
+    rangeCount.addAndGet(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      tasks.add(new RangeTask(beanType, ranges.get(i)));
+    }
+  }
+
+  /**
+   * Load all the ranges returning when they have been loaded.
+   */
+  public void run(BackgroundExecutor executor) {
+
+    startTime = System.currentTimeMillis();
+    int workers = Math.min(threads, tasks.size());
+    CountDownLatch latch = new CountDownLatch(Math.max(0, workers - 1));
+    for (int i = 1; i < workers; i++) {
+      executor.execute(new Worker(latch));
+    }
+    // the calling thread loads ranges as well
+    loadRanges();
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    endTime = System.currentTimeMillis();
+    if (rangeCount.get() > 0) {
+      logger.info("Cache warming complete {}", getStatistics());
+    }
+  }
+
+  /**
+   * Return the current progress.
+   */
+  public CacheWarmingStatistics getStatistics() {
+    long start = startTime;
+    long end = endTime;
+    boolean complete = end > 0;
+    long elapsed = (start == 0) ? 0 : (complete ? end : System.currentTimeMillis()) - start;
+    return new CacheWarmingStatistics(start > 0, complete, beanTypeCount.get(), beanTypesLoaded.get(),
+        rangeCount.get(), rangesLoaded.get(), beanCount.sum(), errorCount.get(), elapsed);
+  }
+
+  private void loadRanges() {
+    RangeTask task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private class Worker implements Runnable {
+
+    private final CountDownLatch latch;
+
+    Worker(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void run() {
+      try {
+        loadRanges();
+      } finally {
+        latch.countDown();
+      }
+    }
+  }
+
+  private static class BeanTypeProgress {
+
+    final String cacheName;
+
+    final AtomicInteger remaining;
+
+    final LongAdder beanCount = new LongAdder();
+
+    BeanTypeProgress(String cacheName, int ranges) {
+      this.cacheName = cacheName;
+      this.remaining = new AtomicInteger(ranges);
+    }
+  }
+
+  private class RangeTask {
+
+    private final BeanTypeProgress beanType;
+
+    private final Callable<Long> range;
+
+    RangeTask(BeanTypeProgress beanType, Callable<Long> range) {
+      this.beanType = beanType;
+      this.range = range;
+    }
+
+    void run() {
+      try {
+        long count = range.call();
+        beanType.beanCount.add(count);
+        beanCount.add(count);
+      } catch (Exception e) {
+        errorCount.incrementAndGet();
+        logger.error("Error loading cache " + beanType.cacheName, e);
+      } finally {
+        rangesLoaded.incrementAndGet();
+        if (beanType.remaining.decrementAndGet() == 0) {
+          beanTypesLoaded.incrementAndGet();
+          logger.info("Loaded {} cache with [{}] beans", beanType.cacheName, beanType.beanCount.sum());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.bean.EntityBean;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Estimates the heap memory used by a cache entry (for maxWeightBytes).
+ * <p>
+ * The estimates assume a 64 bit JVM with compressed references and are approximate.
+ * Variable sized values (strings, byte arrays etc) are sized by their length such
+ * that an entry holding a large text column weighs accordingly.
+ * </p>
+ * <p>
+ * A weigher is created per bean type with the number of properties of the type which
+ * is used for the fixed overhead of beans held by the cache (sharable beans and query
+ * results).
+ * </p>
+ */
+public class CacheWeigher {
+
+  /**
+   * Weigher used when one has not been set for the bean type.
+   */
+  public static final CacheWeigher DEFAULT = new CacheWeigher(0);
+
+  /**
+   * The CacheEntry and the map entry holding it.
+   */
+  static final int ENTRY_OVERHEAD = 80;
+
+  private static final int OBJECT_REF = 4;
+
+  private static final int ARRAY_HEADER = 16;
+
+  /**
+   * A bean instance and its EntityBeanIntercept excluding the property values.
+   */
+  private static final int BEAN_OVERHEAD = 96;
+
+  private final int propertyCount;
+
+  /**
+   * Create for a bean type with the given number of properties.
+   */
+  public CacheWeigher(int propertyCount) {
+    this.propertyCount = propertyCount;
+  }
+
+  /**
+   * Return the estimated size in bytes of the entry.
+   */
+  public int weigh(Object key, Object value) {
+    long weight = ENTRY_OVERHEAD + sizeOf(key) + sizeOfValue(value);
+    return (weight > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) weight;
+  }
+
+  private long sizeOfValue(Object value) {
+    if (value instanceof CachedBeanData) {
+      return sizeOf((CachedBeanData) value);
+    }
+    if (value instanceof CachedManyIds) {
+      // the packed ids (primitive array or encoded deltas) or the list of ids
+      return 24 + sizeOf(((CachedManyIds) value).getIds());
+    }
+    if (value instanceof CachedQueryResult) {
+      // the result collection (versions and query copy are small in comparison)
+      return 64 + sizeOfValue(((CachedQueryResult) value).getResult());
+    }
+    if (value instanceof Collection<?>) {
+      return sizeOf((Collection<?>) value);
+    }
+    if (value instanceof Map<?, ?>) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      long size = 64 + map.size() * 48L;
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        size += sizeOf(entry.getKey()) + sizeOfValue(entry.getValue());
+      }
+      return size;
+    }
+    if (value instanceof EntityBean) {
+      return sizeOf((EntityBean) value);
+    }
+    return sizeOf(value);
+  }
+
+  private long sizeOf(CachedBeanData data) {
+
+    int count = data.getPropertyCount();
+    long size = 48 + (ARRAY_HEADER + count) + (ARRAY_HEADER + count * OBJECT_REF);
+    for (int i = 0; i < count; i++) {
+      Object value = data.getData(i);
+      if (value != null) {
+        size += (value instanceof CachedBeanData) ? sizeOf((CachedBeanData) value) : sizeOf(value);
+      }
+    }
+    if (data.getSharableBean() != null) {
+      // values are shared with the data
+      size += BEAN_OVERHEAD + count * OBJECT_REF;
+    }
+    return size;
+  }
+
+  private long sizeOf(Collection<?> collection) {
+    long size = 40 + ARRAY_HEADER + collection.size() * OBJECT_REF;
+    for (Object value : collection) {
+      size += sizeOfValue(value);
+    }
+    return size;
+  }
+
+  private long sizeOf(EntityBean bean) {
+    int count = (propertyCount > 0) ? propertyCount : bean._ebean_getPropertyNames().length;
+    long size = BEAN_OVERHEAD + count * (OBJECT_REF + 2);
+    for (int i = 0; i < count; i++) {
+      Object value = bean._ebean_getField(i);
+      if (value != null && !(value instanceof EntityBean) && !(value instanceof Collection<?>)) {
+        // associated beans and collections are weighed in their own right
+        size += sizeOf(value);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Return the estimated size of a scalar value (or id).
+   */
+  static long sizeOf(Object value) {
+    if (value == null || value instanceof Enum<?>) {
+      return 0;
+    }
+    if (value instanceof String) {
+      return 40 + 2L * ((String) value).length();
+    }
+    if (value instanceof Integer || value instanceof Short || value instanceof Byte
+        || value instanceof Boolean || value instanceof Character || value instanceof Float) {
+      return 16;
+    }
+    if (value instanceof Long || value instanceof Double) {
+      return 24;
+    }
+    if (value instanceof byte[]) {
+      return align(ARRAY_HEADER + ((byte[]) value).length);
+    }
+    if (value instanceof long[]) {
+      return ARRAY_HEADER + 8L * ((long[]) value).length;
+    }
+    if (value instanceof int[]) {
+      return align(ARRAY_HEADER + 4L * ((int[]) value).length);
+    }
+    if (value instanceof char[]) {
+      return align(ARRAY_HEADER + 2L * ((char[]) value).length);
+    }
+    if (value instanceof Date) {
+      // includes java.sql.Date and Timestamp
+      return 32;
+    }
+    if (value instanceof BigDecimal) {
+      return 40 + sizeOf(((BigDecimal) value).unscaledValue());
+    }
+    if (value instanceof BigInteger) {
+      return 40 + align(ARRAY_HEADER + (((BigInteger) value).bitLength() / 32 + 1) * 4L);
+    }
+    if (value instanceof UUID) {
+      return 32;
+    }
+    if (value instanceof Object[]) {
+      Object[] array = (Object[]) value;
+      long size = ARRAY_HEADER + array.length * OBJECT_REF;
+      for (Object element : array) {
+        size += sizeOf(element);
+      }
+      return size;
+    }
+    if (value instanceof List<?>) {
+      List<?> list = (List<?>) value;
+      long size = 40 + ARRAY_HEADER + list.size() * OBJECT_REF;
+      for (int i = 0; i < list.size(); i++) {
+        size += sizeOf(list.get(i));
+      }
+      return size;
+    }
+    // unknown type (embedded id etc)
+    return 32;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+}
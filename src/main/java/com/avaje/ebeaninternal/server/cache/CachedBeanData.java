@@ -17,7 +17,14 @@ public class CachedBeanData {
   private final Object oldNaturalKey;
 
   public CachedBeanData(Object sharableBean, boolean[] loaded, Object[] data, Object naturalKey, Object oldNaturalKey) {
-    this.whenCreated = System.currentTimeMillis();
+    this(System.currentTimeMillis(), sharableBean, loaded, data, naturalKey, oldNaturalKey);
+  }
+
+  /**
+   * Construct with the time the data was created (restoring previously cached data).
+   */
+  public CachedBeanData(long whenCreated, Object sharableBean, boolean[] loaded, Object[] data, Object naturalKey, Object oldNaturalKey) {
+    this.whenCreated = whenCreated;
     this.sharableBean = sharableBean;
     this.loaded = loaded;
     this.data = data;
@@ -83,6 +90,13 @@ public class CachedBeanData {
     return oldNaturalKey;
   }
 
+  /**
+   * Return the number of properties (loaded or not).
+   */
+  public int getPropertyCount() {
+    return data.length;
+  }
+
   /**
    * Return the data for the specific property.
    */
@@ -0,0 +1,203 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.ebeaninternal.server.deploy.BeanProperty;
+import com.avaje.ebeaninternal.server.deploy.BeanPropertyAssocOne;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary layout of CachedBeanData for a given bean type.
+ * <p>
+ * The layout is the create time, a bitmap of the loaded properties and then the value
+ * of each loaded property in property index order. Scalar values are written by their
+ * ScalarType, associated beans by the id binder of the target type and embedded beans
+ * (including embedded ids) using the layout of the embedded type.
+ * </p>
+ * <p>
+ * The sharable bean is not part of the layout and the natural key is restored from the
+ * natural key property value.
+ * </p>
+ * <p>
+ * The bytes start with a hash of the layout (property names and types). Bytes written
+ * with a different layout (for example by a server with a different version of the bean)
+ * are not read.
+ * </p>
+ */
+class CachedBeanDataCodec {
+
+  private final BeanProperty[] properties;
+
+  private final CachedBeanDataCodec[] embedded;
+
+  private final int naturalKeyIndex;
+
+  private final int layoutHash;
+
+  /**
+   * Create the layout for the given bean type.
+   */
+  CachedBeanDataCodec(BeanDescriptor<?> desc) {
+
+    this.properties = new BeanProperty[desc.getPropertyCount()];
+    this.embedded = new CachedBeanDataCodec[properties.length];
+
+    BeanProperty idProperty = desc.getIdProperty();
+    if (idProperty != null) {
+      register(idProperty);
+    }
+    int naturalKey = -1;
+    BeanProperty[] props = desc.propertiesNonMany();
+    for (int i = 0; i < props.length; i++) {
+      register(props[i]);
+      if (props[i].isNaturalKey()) {
+        naturalKey = props[i].getPropertyIndex();
+      }
+    }
+    this.naturalKeyIndex = naturalKey;
+    this.layoutHash = layoutHash();
+  }
+
+  /**
+   * Return the hash of the property names and types in property index order.
+   */
+  private int layoutHash() {
+    int hash = properties.length;
+    for (int i = 0; i < properties.length; i++) {
+      BeanProperty prop = properties[i];
+      if (prop == null) {
+        hash = 31 * hash;
+        continue;
+      }
+      hash = 31 * hash + prop.getName().hashCode();
+      if (embedded[i] != null) {
+        hash = 31 * hash + embedded[i].layoutHash;
+      } else if (prop instanceof BeanPropertyAssocOne<?>) {
+        BeanProperty targetId = ((BeanPropertyAssocOne<?>) prop).getTargetDescriptor().getIdProperty();
+        hash = 31 * hash + (targetId == null ? 0 : targetId.getPropertyType().getName().hashCode());
+      } else {
+        hash = 31 * hash + prop.getPropertyType().getName().hashCode();
+      }
+    }
+    return hash;
+  }
+
+  private void register(BeanProperty prop) {
+    int index = prop.getPropertyIndex();
+    properties[index] = prop;
+    if (prop.isEmbedded() && prop instanceof BeanPropertyAssocOne<?>) {
+      embedded[index] = new CachedBeanDataCodec(((BeanPropertyAssocOne<?>) prop).getTargetDescriptor());
+    }
+  }
+
+  /**
+   * Return the cached data as bytes starting with the layout hash.
+   */
+  byte[] toBytes(CachedBeanData data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(layoutHash);
+    write(out, data);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Return the cached data from bytes or null if the bytes were written with a different layout.
+   */
+  CachedBeanData fromBytes(byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    if (in.readInt() != layoutHash) {
+      return null;
+    }
+    return read(in);
+  }
+
+  /**
+   * Write the cached data.
+   */
+  void write(DataOutput out, CachedBeanData data) throws IOException {
+
+    out.writeLong(data.getWhenCreated());
+    int bits = 0;
+    for (int i = 0; i < properties.length; i++) {
+      if (data.isLoaded(i)) {
+        bits |= (1 << (i & 7));
+      }
+      if ((i & 7) == 7 || i == properties.length - 1) {
+        out.writeByte(bits);
+        bits = 0;
+      }
+    }
+    for (int i = 0; i < properties.length; i++) {
+      if (data.isLoaded(i)) {
+        writeValue(out, i, data.getData(i));
+      }
+    }
+  }
+
+  /**
+   * Read the cached data.
+   */
+  CachedBeanData read(DataInput in) throws IOException {
+
+    long whenCreated = in.readLong();
+    boolean[] loaded = new boolean[properties.length];
+    int bits = 0;
+    for (int i = 0; i < properties.length; i++) {
+      if ((i & 7) == 0) {
+        bits = in.readUnsignedByte();
+      }
+      loaded[i] = (bits & (1 << (i & 7))) != 0;
+    }
+    Object[] data = new Object[properties.length];
+    for (int i = 0; i < properties.length; i++) {
+      if (loaded[i]) {
+        data[i] = readValue(in, i);
+      }
+    }
+    Object naturalKey = (naturalKeyIndex > -1) ? data[naturalKeyIndex] : null;
+    return new CachedBeanData(whenCreated, null, loaded, data, null, naturalKey);
+  }
+
+  private void writeValue(DataOutput out, int index, Object value) throws IOException {
+
+    BeanProperty prop = properties[index];
+    if (prop == null) {
+      throw new IOException("No property for index " + index);
+    }
+    if (value == null) {
+      out.writeBoolean(false);
+      return;
+    }
+    out.writeBoolean(true);
+    if (embedded[index] != null) {
+      embedded[index].write(out, (CachedBeanData) value);
+    } else if (prop instanceof BeanPropertyAssocOne<?>) {
+      ((BeanPropertyAssocOne<?>) prop).getTargetDescriptor().getIdBinder().writeData(out, value);
+    } else {
+      prop.writeData(out, value);
+    }
+  }
+
+  private Object readValue(DataInput in, int index) throws IOException {
+
+    if (!in.readBoolean()) {
+      return null;
+    }
+    BeanProperty prop = properties[index];
+    if (embedded[index] != null) {
+      return embedded[index].read(in);
+    } else if (prop instanceof BeanPropertyAssocOne<?>) {
+      return ((BeanPropertyAssocOne<?>) prop).getTargetDescriptor().getIdBinder().readData(in);
+    } else {
+      return prop.readData(in);
+    }
+  }
+}
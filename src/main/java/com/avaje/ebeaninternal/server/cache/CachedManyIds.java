@@ -1,27 +1,246 @@
 package com.avaje.ebeaninternal.server.cache;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * The cached data for O2M and M2M relationships.
  * <p>
  * This is effectively just the Id values for each of the beans in the collection.
  * </p>
+ * <p>
+ * Long, Integer and UUID ids are held in primitive arrays rather than as a list of boxed
+ * values. Long and Integer ids in ascending order (typical with an order by id) are further
+ * compacted as variable length encoded differences between successive ids. The list of ids
+ * is decoded when it is read via {@link #getIdList()}.
+ * </p>
  */
 public class CachedManyIds {
 
-  private final List<Object> idList;
+  /**
+   * Ids of other types held as the list.
+   */
+  private static final byte OBJECT = 0;
+
+  private static final byte LONG_ARRAY = 1;
+
+  private static final byte INT_ARRAY = 2;
+
+  private static final byte LONG_DELTA = 3;
+
+  private static final byte INT_DELTA = 4;
+
+  /**
+   * Most and least significant bits of each UUID.
+   */
+  private static final byte UUID_ARRAY = 5;
+
+  private final byte format;
+
+  private final int size;
+
+  /**
+   * The List, long[], int[] or byte[] (deltas) depending on the format.
+   */
+  private final Object ids;
 
   public CachedManyIds(List<Object> idList) {
-    this.idList = idList;
+    this.size = idList.size();
+    Class<?> idType = idType(idList);
+    if (Long.class.equals(idType)) {
+      long[] values = new long[size];
+      for (int i = 0; i < size; i++) {
+        values[i] = (Long) idList.get(i);
+      }
+      byte[] deltas = encodeDeltas(values, 8);
+      this.format = (deltas != null) ? LONG_DELTA : LONG_ARRAY;
+      this.ids = (deltas != null) ? deltas : values;
+
+    } else if (Integer.class.equals(idType)) {
+      long[] values = new long[size];
+      int[] intValues = new int[size];
+      for (int i = 0; i < size; i++) {
+        intValues[i] = (Integer) idList.get(i);
+        values[i] = intValues[i];
+      }
+      byte[] deltas = encodeDeltas(values, 4);
+      this.format = (deltas != null) ? INT_DELTA : INT_ARRAY;
+      this.ids = (deltas != null) ? deltas : intValues;
+
+    } else if (UUID.class.equals(idType)) {
+      long[] values = new long[size * 2];
+      for (int i = 0; i < size; i++) {
+        UUID uuid = (UUID) idList.get(i);
+        values[i * 2] = uuid.getMostSignificantBits();
+        values[i * 2 + 1] = uuid.getLeastSignificantBits();
+      }
+      this.format = UUID_ARRAY;
+      this.ids = values;
+
+    } else {
+      this.format = OBJECT;
+      this.ids = idList;
+    }
   }
 
   public String toString() {
-    return idList.toString();
+    return getIdList().toString();
   }
-  
+
+  /**
+   * Return the number of ids.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Return the ids (decoded into a new list unless held as a list).
+   */
+  @SuppressWarnings("unchecked")
   public List<Object> getIdList() {
-    return idList;
+    switch (format) {
+      case LONG_ARRAY: {
+        long[] values = (long[]) ids;
+        List<Object> list = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(values[i]);
+        }
+        return list;
+      }
+      case INT_ARRAY: {
+        int[] values = (int[]) ids;
+        List<Object> list = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(values[i]);
+        }
+        return list;
+      }
+      case LONG_DELTA:
+      case INT_DELTA:
+        return decodeDeltas();
+      case UUID_ARRAY: {
+        long[] values = (long[]) ids;
+        List<Object> list = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(new UUID(values[i * 2], values[i * 2 + 1]));
+        }
+        return list;
+      }
+      default:
+        return (List<Object>) ids;
+    }
+  }
+
+  /**
+   * Return the internal representation of the ids (for estimating the size).
+   */
+  Object getIds() {
+    return ids;
+  }
+
+  /**
+   * Return the type of all the ids if they are Long, Integer or UUID values.
+   */
+  private static Class<?> idType(List<Object> idList) {
+    if (idList.isEmpty()) {
+      return null;
+    }
+    Object first = idList.get(0);
+    if (first == null) {
+      return null;
+    }
+    Class<?> type = first.getClass();
+    if (!Long.class.equals(type) && !Integer.class.equals(type) && !UUID.class.equals(type)) {
+      return null;
+    }
+    for (int i = 1; i < idList.size(); i++) {
+      Object id = idList.get(i);
+      if (id == null || !type.equals(id.getClass())) {
+        return null;
+      }
+    }
+    return type;
   }
 
+  /**
+   * Return the ids encoded as the first id followed by the differences between successive
+   * ids or null if the ids are not ascending or would not be smaller than the array.
+   */
+  private static byte[] encodeDeltas(long[] values, int bytesPerId) {
+
+    int length = varLength(zigZag(values[0]));
+    for (int i = 1; i < values.length; i++) {
+      long delta = values[i] - values[i - 1];
+      if (values[i] < values[i - 1] || delta < 0) {
+        // not ascending (or the difference overflows)
+        return null;
+      }
+      length += varLength(delta);
+    }
+    if (length >= values.length * bytesPerId) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    int pos = writeVar(bytes, 0, zigZag(values[0]));
+    for (int i = 1; i < values.length; i++) {
+      pos = writeVar(bytes, pos, values[i] - values[i - 1]);
+    }
+    return bytes;
+  }
+
+  private List<Object> decodeDeltas() {
+
+    byte[] bytes = (byte[]) ids;
+    List<Object> list = new ArrayList<Object>(size);
+    boolean intIds = (format == INT_DELTA);
+    int pos = 0;
+    long value = 0;
+    for (int i = 0; i < size; i++) {
+      // read the next variable length value
+      long var = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[pos++];
+        var |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+
+      value = (i == 0) ? unZigZag(var) : value + var;
+      if (intIds) {
+        list.add((int) value);
+      } else {
+        list.add(value);
+      }
+    }
+    return list;
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static int varLength(long value) {
+    int length = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+
+  private static int writeVar(byte[] bytes, int pos, long value) {
+    while ((value & ~0x7FL) != 0) {
+      bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[pos++] = (byte) value;
+    return pos;
+  }
 }
@@ -0,0 +1,70 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebeaninternal.api.SpiQuery;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A query result held in the query cache with the versions of the tables it depends on.
+ */
+public class CachedQueryResult {
+
+  private final Object result;
+
+  private final AtomicLong[] tableVersions;
+
+  private final long stamp;
+
+  private final SpiQuery<?> query;
+
+  /**
+   * Create with the result, the versions of the tables the query used and the stamp
+   * read before the query was executed.
+   */
+  public CachedQueryResult(Object result, AtomicLong[] tableVersions, long stamp) {
+    this(result, tableVersions, stamp, null);
+  }
+
+  /**
+   * Create also holding a copy of the query that can be executed to refresh the result.
+   */
+  public CachedQueryResult(Object result, AtomicLong[] tableVersions, long stamp, SpiQuery<?> query) {
+    this.result = result;
+    this.tableVersions = tableVersions;
+    this.stamp = stamp;
+    this.query = query;
+  }
+
+  /**
+   * Return the query result.
+   */
+  public Object getResult() {
+    return result;
+  }
+
+  /**
+   * Return the stamp read before the query was executed.
+   */
+  public long getStamp() {
+    return stamp;
+  }
+
+  /**
+   * Return the query to execute to refresh the result (null when not refreshed ahead).
+   */
+  public SpiQuery<?> getQuery() {
+    return query;
+  }
+
+  /**
+   * Return true if none of the tables have been modified since the query was executed.
+   */
+  public boolean isValid() {
+    for (int i = 0; i < tableVersions.length; i++) {
+      if (tableVersions[i].get() > stamp) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -25,6 +25,8 @@ public class DefaultCacheHolder {
 
 	private final boolean useBeanTuning;
 
+	private final String nameSuffix;
+
 	/**
 	 * Create with a cache factory and default cache options.
 	 * 
@@ -38,10 +40,21 @@ public class DefaultCacheHolder {
 	 */
 	public DefaultCacheHolder(ServerCacheFactory cacheFactory,
 			ServerCacheOptions defaultOptions, boolean useBeanTuning) {
+		this(cacheFactory, defaultOptions, useBeanTuning, "");
+	}
+
+	/**
+	 * Create additionally with a suffix appended to the cache key to give the name of
+	 * the caches. This distinguishes the query and natural key caches of a bean type
+	 * from its bean cache for the cache factory.
+	 */
+	public DefaultCacheHolder(ServerCacheFactory cacheFactory,
+			ServerCacheOptions defaultOptions, boolean useBeanTuning, String nameSuffix) {
 
 		this.cacheFactory = cacheFactory;
 		this.defaultOptions = defaultOptions;
 		this.useBeanTuning = useBeanTuning;
+		this.nameSuffix = nameSuffix;
 	}
 
 	/**
@@ -64,7 +77,7 @@ public class DefaultCacheHolder {
 			cache = synchMap.get(cacheKey);
 			if (cache == null) {
 				ServerCacheOptions options = getCacheOptions(cacheKey);
-				cache = cacheFactory.createCache(cacheKey, options);
+				cache = cacheFactory.createCache(cacheKey + nameSuffix, options);
 				synchMap.put(cacheKey, cache);
 				concMap.put(cacheKey, cache);
 			}
@@ -9,16 +9,30 @@ import com.avaje.ebeaninternal.server.util.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Serializable;
-import java.util.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * The default cache implementation.
  * <p>
- * It is base on ConcurrentHashMap with periodic trimming using a TimerTask.
- * The periodic trimming means that an LRU list does not have to be maintained.
+ * It is based on ConcurrentHashMap with the max size enforced on every put by a
+ * W-TinyLFU eviction policy (see TinyLfuPolicy). Entries exceeding the max idle time
+ * or time to live are trimmed periodically using the BackgroundExecutor.
+ * </p>
+ * <p>
+ * The cache can additionally be bounded by maxWeightBytes in which case the estimated
+ * size of each entry (see CacheWeigher) counts towards the bound.
+ * </p>
+ * <p>
+ * With refresh ahead a frequently read entry that has passed the refresh ahead
+ * percentage of its time to live is reloaded in the background (by the
+ * RefreshAheadLoader) while the existing entry continues to be returned.
  * </p>
  */
 public class DefaultServerCache implements ServerCache {
@@ -26,16 +40,25 @@ public class DefaultServerCache implements ServerCache {
   protected static final Logger logger = LoggerFactory.getLogger(DefaultServerCache.class);
 
   /**
-   * Compare by last access time (for LRU eviction).
+   * The maximum time a miss waits for a load of the same key by another thread.
    */
-  public static final CompareByLastAccess BY_LAST_ACCESS = new CompareByLastAccess();
+  private static final long SINGLE_FLIGHT_MAX_WAIT_MILLIS = 10000;
 
+  /**
+   * The number of reads that make an entry worth refreshing ahead of expiry.
+   */
+  private static final int REFRESH_AHEAD_MIN_READS = 2;
 
   /**
    * The underlying map (ConcurrentHashMap or similar)
    */
   protected final Map<Object, CacheEntry> map;
 
+  /**
+   * Bounds the size of the cache evicting by frequency and recency.
+   */
+  protected final TinyLfuPolicy policy;
+
   // LongAdder is a highly concurrent low latency counter (back ported from Java8)
   protected final LongAdder missCount = new LongAdder();
   protected final LongAdder hitCount = new LongAdder();
@@ -49,6 +72,30 @@ public class DefaultServerCache implements ServerCache {
   protected final LongAdder evictByLRU = new LongAdder();
   protected final LongAdder evictCount = new LongAdder();
   protected final LongAdder evictMicros = new LongAdder();
+  protected final LongAdder refreshAheadCount = new LongAdder();
+
+  /**
+   * Deduplicates concurrent loads on a miss (when enabled).
+   */
+  protected final SingleFlight singleFlight = new SingleFlight(SINGLE_FLIGHT_MAX_WAIT_MILLIS);
+
+  protected volatile boolean singleFlightEnabled;
+
+  protected int refreshAheadPercent;
+
+  protected long maxWeightBytes;
+
+  /**
+   * Estimates the size of entries.
+   */
+  protected volatile CacheWeigher weigher = CacheWeigher.DEFAULT;
+
+  /**
+   * Reloads entries when refresh ahead is used.
+   */
+  protected volatile RefreshAheadLoader refreshAheadLoader;
+
+  protected BackgroundExecutor backgroundExecutor;
 
   protected final Object monitor = new Object();
 
@@ -74,6 +121,10 @@ public class DefaultServerCache implements ServerCache {
    */
   public DefaultServerCache(String name, Map<Object, CacheEntry> map, ServerCacheOptions options) {
     this(name, map, options.getMaxSize(), options.getMaxIdleSecs(), options.getMaxSecsToLive(), options.getTrimFrequency());
+    this.singleFlightEnabled = options.isSingleFlight();
+    this.refreshAheadPercent = options.getRefreshAheadPercent();
+    this.maxWeightBytes = options.getMaxWeightBytes();
+    this.policy.setMaxWeight(maxWeightBytes);
   }
 
   /**
@@ -86,6 +137,7 @@ public class DefaultServerCache implements ServerCache {
     this.maxIdleSecs = maxIdleSecs;
     this.maxSecsToLive = maxSecsToLive;
     this.trimFrequency = trimFrequency;
+    this.policy = new TinyLfuPolicy(maxSize, new PolicyOwner());
   }
 
   @Override
@@ -98,6 +150,7 @@ public class DefaultServerCache implements ServerCache {
 
     BackgroundExecutor executor = server.getBackgroundExecutor();
     executor.executePeriodically(trim, trimFreqSecs, TimeUnit.SECONDS);
+    this.backgroundExecutor = executor;
   }
 
   @Override
@@ -123,6 +176,8 @@ public class DefaultServerCache implements ServerCache {
     long evictIdle = reset ? evictByIdle.sumThenReset() : evictByIdle.sum();
     long evictTTL = reset ? evictByTTL.sumThenReset() : evictByTTL.sum();
     long evictLRU = reset ? evictByLRU.sumThenReset() : evictByLRU.sum();
+    long singleFlightWait = singleFlight.getWaitCount(reset);
+    long refreshAhead = reset ? refreshAheadCount.sumThenReset() : refreshAheadCount.sum();
 
     int size = size();
 
@@ -139,6 +194,10 @@ public class DefaultServerCache implements ServerCache {
     cacheStats.setEvictByIdle(evictIdle);
     cacheStats.setEvictByTTL(evictTTL);
     cacheStats.setEvictByLRU(evictLRU);
+    cacheStats.setSingleFlightWaitCount(singleFlightWait);
+    cacheStats.setRefreshAheadCount(refreshAhead);
+    cacheStats.setMaxWeightBytes(maxWeightBytes);
+    cacheStats.setWeightBytes(policy.getWeight());
 
     return cacheStats;
   }
@@ -168,6 +227,9 @@ public class DefaultServerCache implements ServerCache {
       options.setMaxSize(maxSize);
       options.setMaxSecsToLive(maxSecsToLive);
       options.setTrimFrequency(trimFrequency);
+      options.setSingleFlight(singleFlightEnabled);
+      options.setRefreshAheadPercent(refreshAheadPercent);
+      options.setMaxWeightBytes(maxWeightBytes);
       return options;
     }
   }
@@ -181,9 +243,53 @@ public class DefaultServerCache implements ServerCache {
       maxIdleSecs = options.getMaxIdleSecs();
       maxSize = options.getMaxSize();
       maxSecsToLive = options.getMaxSecsToLive();
+      policy.setMaxSize(maxSize);
+      singleFlightEnabled = options.isSingleFlight();
+      refreshAheadPercent = options.getRefreshAheadPercent();
+      maxWeightBytes = options.getMaxWeightBytes();
+      policy.setMaxWeight(maxWeightBytes);
     }
   }
 
+  /**
+   * Set the weigher used to estimate the size of entries.
+   */
+  public void setWeigher(CacheWeigher weigher) {
+    this.weigher = weigher;
+  }
+
+  /**
+   * Return the estimated total size of the entries in bytes.
+   */
+  public long getWeightBytes() {
+    return policy.getWeight();
+  }
+
+  /**
+   * Return true if entries are refreshed ahead of expiry.
+   */
+  public boolean isRefreshAhead() {
+    return refreshAheadPercent > 0 && maxSecsToLive > 0;
+  }
+
+  /**
+   * Set the loader used to refresh entries ahead of expiry.
+   * <p>
+   * Refresh ahead only occurs when the loader is set and the options define both the
+   * max time to live and the refresh ahead percentage.
+   * </p>
+   */
+  public void setRefreshAheadLoader(RefreshAheadLoader refreshAheadLoader) {
+    this.refreshAheadLoader = refreshAheadLoader;
+  }
+
+  /**
+   * Return the SingleFlight used to deduplicate loads on a miss or null if not enabled.
+   */
+  public SingleFlight getSingleFlight() {
+    return singleFlightEnabled ? singleFlight : null;
+  }
+
   /**
    * Return the name of the cache.
    */
@@ -198,6 +304,7 @@ public class DefaultServerCache implements ServerCache {
   public void clear() {
     clearCount.increment();
     map.clear();
+    policy.clear();
   }
 
   /**
@@ -215,7 +322,33 @@ public class DefaultServerCache implements ServerCache {
       // Important that hitCount.increment() MUST be low latency under concurrent
       // use hence must use LongAdder or better here
       hitCount.increment();
-      return entry.getValue();
+      policy.recordRead(entry);
+      Object value = entry.getValue();
+      if (refreshAheadPercent > 0) {
+        checkRefreshAhead(entry, value);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Reload the entry in the background if it is frequently read and near expiry.
+   */
+  private void checkRefreshAhead(CacheEntry entry, Object value) {
+
+    RefreshAheadLoader loader = refreshAheadLoader;
+    BackgroundExecutor executor = backgroundExecutor;
+    if (loader == null || executor == null || maxSecsToLive == 0) {
+      return;
+    }
+    // percentage of the time to live in millis
+    long refreshAfter = maxSecsToLive * 10L * refreshAheadPercent;
+    if (entry.getLastAccessTime() - entry.getCreateTime() >= refreshAfter
+        && entry.getReadCount() >= REFRESH_AHEAD_MIN_READS
+        && entry.markRefresh()) {
+
+      refreshAheadCount.increment();
+      executor.execute(new RefreshAheadRunnable(loader, entry.getKey(), value));
     }
   }
 
@@ -224,16 +357,45 @@ public class DefaultServerCache implements ServerCache {
    */
   @Override
   public Object put(Object key, Object value) {
-    CacheEntry entry = map.put(key, new CacheEntry(key, value));
+    CacheEntry newEntry = new CacheEntry(key, value, weigher.weigh(key, value));
+    CacheEntry entry = map.put(key, newEntry);
+    policy.added(newEntry, entry);
     if (entry == null) {
       insertCount.increment();
       return null;
     } else {
       updateCount.increment();
+      entryRemoved(entry);
       return entry.getValue();
     }
   }
 
+  /**
+   * Return the values for the given keys (only the keys found in the cache).
+   */
+  @Override
+  public Map<Object, Object> getAll(Set<Object> keys) {
+
+    Map<Object, Object> values = new HashMap<Object, Object>(keys.size() * 2);
+    for (Object key : keys) {
+      Object value = get(key);
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Put all the key value pairs into the cache.
+   */
+  @Override
+  public void putAll(Map<Object, Object> keyValues) {
+    for (Map.Entry<Object, Object> entry : keyValues.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
   /**
    * Remove an entry from the cache.
    */
@@ -243,11 +405,23 @@ public class DefaultServerCache implements ServerCache {
     if (entry == null) {
       return null;
     } else {
+      policy.removed(entry);
       removeCount.increment();
+      entryRemoved(entry);
       return entry.getValue();
     }
   }
 
+  /**
+   * Called when an entry has left the cache (replaced, removed, evicted or trimmed).
+   * <p>
+   * Does nothing by default. Used by caches that hold resources per entry.
+   * </p>
+   */
+  protected void entryRemoved(CacheEntry entry) {
+    // do nothing by default
+  }
+
   /**
    * Return the number of elements in the cache.
    */
@@ -267,7 +441,11 @@ public class DefaultServerCache implements ServerCache {
   }
 
   /**
-   * Run the eviction based on Idle time, Time to live and LRU last access.
+   * Run the eviction based on Idle time and Time to live.
+   * <p>
+   * The max size is enforced on each put by the eviction policy. If the cache is over
+   * the max size anyway (entries put into the map directly) it is trimmed to the trim size.
+   * </p>
    */
   public void runEviction() {
 
@@ -278,7 +456,7 @@ public class DefaultServerCache implements ServerCache {
       trimForMaxSize = size() - maxSize;
     }
 
-    if (maxIdleSecs == 0 && maxSecsToLive == 0 && trimForMaxSize < 0) {
+    if (maxIdleSecs == 0 && maxSecsToLive == 0 && trimForMaxSize <= 0) {
       // nothing to trim on this cache
       return;
     }
@@ -287,9 +465,6 @@ public class DefaultServerCache implements ServerCache {
 
     long trimmedByIdle = 0;
     long trimmedByTTL = 0;
-    long trimmedByLRU = 0;
-
-    ArrayList<CacheEntry> activeList = new ArrayList<CacheEntry>();
 
     long idleExpire = System.currentTimeMillis() - (maxIdleSecs * 1000);
     long ttlExpire = System.currentTimeMillis() - (maxSecsToLive * 1000);
@@ -299,28 +474,23 @@ public class DefaultServerCache implements ServerCache {
       CacheEntry cacheEntry = it.next();
       if (maxIdleSecs > 0 && idleExpire > cacheEntry.getLastAccessTime()) {
         it.remove();
+        policy.removed(cacheEntry);
+        entryRemoved(cacheEntry);
         trimmedByIdle++;
 
       } else if (maxSecsToLive > 0 && ttlExpire > cacheEntry.getCreateTime()) {
         it.remove();
+        policy.removed(cacheEntry);
+        entryRemoved(cacheEntry);
         trimmedByTTL++;
-
-      } else if (trimForMaxSize > 0) {
-        activeList.add(cacheEntry);
       }
     }
 
-    if (trimForMaxSize > 0) {
-      trimmedByLRU = activeList.size() - maxSize;
-      if (trimmedByLRU > 0) {
-        // sort into last access time ascending
-        Collections.sort(activeList, BY_LAST_ACCESS);
-        int trimSize = getTrimSize();
-        for (int i = trimSize; i < activeList.size(); i++) {
-          // remove if still in the cache
-          map.remove(activeList.get(i).getKey());
-        }
-      }
+    long trimmedByLRU = 0;
+    if (maxSize > 0 && size() > maxSize) {
+      long before = evictByLRU.sum();
+      policy.trimTo(getTrimSize());
+      trimmedByLRU = evictByLRU.sum() - before;
     }
 
     long exeNanos = System.nanoTime() - startNanos;
@@ -331,7 +501,6 @@ public class DefaultServerCache implements ServerCache {
     evictCount.increment();
     evictByIdle.add(trimmedByIdle);
     evictByTTL.add(trimmedByTTL);
-    evictByLRU.add(trimmedByLRU);
 
     if (logger.isDebugEnabled()) {
       logger.debug("Executed trim of cache {} in [{}]millis idle[{}] timeToLive[{}] accessTime[{}]"
@@ -351,14 +520,52 @@ public class DefaultServerCache implements ServerCache {
   }
 
   /**
-   * Comparator for sorting by last access time.
+   * Removes the entries evicted by the policy from the map.
+   */
+  private class PolicyOwner implements TinyLfuPolicy.Owner {
+
+    @Override
+    public boolean isCurrent(CacheEntry entry) {
+      return map.get(entry.getKey()) == entry;
+    }
+
+    @Override
+    public void evict(CacheEntry entry) {
+      boolean removed;
+      if (map instanceof ConcurrentMap) {
+        removed = ((ConcurrentMap<Object, CacheEntry>) map).remove(entry.getKey(), entry);
+      } else {
+        removed = map.get(entry.getKey()) == entry && map.remove(entry.getKey()) != null;
+      }
+      if (removed) {
+        evictByLRU.increment();
+        entryRemoved(entry);
+      }
+    }
+  }
+
+  /**
+   * Reloads an entry using the RefreshAheadLoader.
    */
-  public static class CompareByLastAccess implements Comparator<CacheEntry>, Serializable {
+  private class RefreshAheadRunnable implements Runnable {
 
-    private static final long serialVersionUID = 1L;
+    private final RefreshAheadLoader loader;
+    private final Object key;
+    private final Object value;
 
-    public int compare(CacheEntry entry1, CacheEntry entry2) {
-      return Long.compare(entry1.getLastAccessTime(), entry2.getLastAccessTime());
+    RefreshAheadRunnable(RefreshAheadLoader loader, Object key, Object value) {
+      this.loader = loader;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public void run() {
+      try {
+        loader.refresh(key, value);
+      } catch (Exception e) {
+        logger.warn("Error refreshing entry " + key + " of cache " + name, e);
+      }
     }
   }
 
@@ -367,18 +574,44 @@ public class DefaultServerCache implements ServerCache {
    */
   public static class CacheEntry {
 
+    private static final AtomicIntegerFieldUpdater<CacheEntry> REFRESH_UPDATER
+        = AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "refresh");
+
     private final Object key;
     private final Object value;
     private final long createTime;
+    private final int weight;
     private long lastAccessTime;
+    private int readCount;
+    private volatile int refresh;
+
+    // position in the eviction policy (guarded by the policy lock)
+    int queue;
+    CacheEntry prev;
+    CacheEntry next;
 
     public CacheEntry(Object key, Object value) {
+      this(key, value, 1);
+    }
+
+    /**
+     * Create with the estimated size of the entry in bytes.
+     */
+    public CacheEntry(Object key, Object value, int weight) {
       this.key = key;
       this.value = value;
+      this.weight = weight;
       this.createTime = System.currentTimeMillis();
       this.lastAccessTime = createTime;
     }
 
+    /**
+     * Return the estimated size of the entry in bytes.
+     */
+    public int getWeight() {
+      return weight;
+    }
+
     /**
      * Return the entry key.
      */
@@ -392,9 +625,25 @@ public class DefaultServerCache implements ServerCache {
     public Object getValue() {
       // long assignment should be atomic these days (Ref Cliff Click)
       lastAccessTime = System.currentTimeMillis();
+      // approximate count (lost increments under concurrent use are fine)
+      readCount++;
       return value;
     }
 
+    /**
+     * Return the approximate number of times the entry has been read.
+     */
+    public int getReadCount() {
+      return readCount;
+    }
+
+    /**
+     * Return true if this call marked the entry for refresh (only once per entry).
+     */
+    boolean markRefresh() {
+      return REFRESH_UPDATER.compareAndSet(this, 0, 1);
+    }
+
     /**
      * Return the time the entry was created.
      */
@@ -21,6 +21,11 @@ public class DefaultServerCacheManager implements ServerCacheManager {
 
 	private final DefaultCacheHolder collectionIdsCache;
 
+	/**
+	 * Ids and natural keys not found (null when negative caching is not used).
+	 */
+	private final DefaultCacheHolder missingCache;
+
 	private final ServerCacheFactory cacheFactory;
 	
 	private SpiEbeanServer ebeanServer;
@@ -29,11 +34,21 @@ public class DefaultServerCacheManager implements ServerCacheManager {
 	 * Create with a cache factory and default cache options.
 	 */
 	public DefaultServerCacheManager(ServerCacheFactory cacheFactory, ServerCacheOptions defaultBeanOptions, ServerCacheOptions defaultQueryOptions) {
+		this(cacheFactory, defaultBeanOptions, defaultQueryOptions, null);
+	}
+
+	/**
+	 * Create additionally with the options for caching ids and natural keys that were
+	 * not found (null for no negative caching).
+	 */
+	public DefaultServerCacheManager(ServerCacheFactory cacheFactory, ServerCacheOptions defaultBeanOptions,
+			ServerCacheOptions defaultQueryOptions, ServerCacheOptions missingOptions) {
 		this.cacheFactory = cacheFactory;
 		this.beanCache = new DefaultCacheHolder(cacheFactory, defaultBeanOptions, true);
-		this.queryCache = new DefaultCacheHolder(cacheFactory, defaultQueryOptions, false);
-		this.naturalKeyCache = new DefaultCacheHolder(cacheFactory, defaultQueryOptions, false);
+		this.queryCache = new DefaultCacheHolder(cacheFactory, defaultQueryOptions, false, "_query");
+		this.naturalKeyCache = new DefaultCacheHolder(cacheFactory, defaultQueryOptions, false, "_naturalKey");
 		this.collectionIdsCache = new DefaultCacheHolder(cacheFactory, defaultQueryOptions, false);
+		this.missingCache = (missingOptions == null) ? null : new DefaultCacheHolder(cacheFactory, missingOptions, false, "_missing");
 	}	
 			
 	public void init(EbeanServer server) {
@@ -58,6 +73,9 @@ public class DefaultServerCacheManager implements ServerCacheManager {
 		naturalKeyCache.clearCache(beanName);
 		collectionIdsCache.clearCache(beanName);
 		queryCache.clearCache(beanName);
+		if (missingCache != null) {
+			missingCache.clearCache(beanName);
+		}
 	}
 
 
@@ -66,6 +84,9 @@ public class DefaultServerCacheManager implements ServerCacheManager {
 		queryCache.clearAll();
 		naturalKeyCache.clearAll();
 		collectionIdsCache.clearAll();
+		if (missingCache != null) {
+			missingCache.clearAll();
+		}
 	}
 
 	
@@ -81,6 +102,13 @@ public class DefaultServerCacheManager implements ServerCacheManager {
 	    return naturalKeyCache.getCache(beanType.getName());
     }
 	
+	/**
+	 * Return the cache of ids and natural keys not found or null if not used.
+	 */
+	public ServerCache getMissingCache(Class<?> beanType) {
+		return (missingCache == null) ? null : missingCache.getCache(beanType.getName());
+	}
+
 	public boolean isNaturalKeyCaching(Class<?> beanType) {
 		return naturalKeyCache.isCaching(beanType.getName());
 	}
@@ -110,6 +138,13 @@ public class DefaultServerCacheManager implements ServerCacheManager {
 	public boolean isQueryCaching(Class<?> beanType) {
 		return queryCache.isCaching(beanType.getName());
 	}
+
+	/**
+	 * Return true if the bean caches have a remote tier shared by the servers of a cluster.
+	 */
+	public boolean isSharedBeanCache() {
+		return cacheFactory instanceof TwoTierServerCacheFactory;
+	}
 	
 
 }
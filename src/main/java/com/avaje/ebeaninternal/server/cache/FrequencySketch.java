@@ -0,0 +1,106 @@
+package com.avaje.ebeaninternal.server.cache;
+
+/**
+ * Count-min sketch estimating the frequency of access of cache keys (TinyLFU).
+ * <p>
+ * Each key increments one counter in each of 4 rows and the estimate is the minimum
+ * of those counters. Counters saturate at 15 and are all halved after a sample of
+ * increments such that the frequencies reflect recent use.
+ * </p>
+ * <p>
+ * Not thread safe. Expected to be used holding the eviction lock.
+ * </p>
+ */
+class FrequencySketch {
+
+  private static final int[] SEEDS = {0x97cb3127, 0x9e3779b9, 0xc2b2ae35, 0x85ebca6b};
+
+  private static final int DEPTH = SEEDS.length;
+
+  private static final int MAX_COUNT = 15;
+
+  private int[] table;
+
+  private int mask;
+
+  private int sampleSize;
+
+  private int additions;
+
+  /**
+   * Create sized for the given maximum number of entries.
+   */
+  FrequencySketch(int maximumSize) {
+    ensureCapacity(maximumSize);
+  }
+
+  /**
+   * Resize the sketch (clearing the counts) if it is too small for the maximum size.
+   */
+  void ensureCapacity(int maximumSize) {
+    int width = 64;
+    while (width < maximumSize && width < (1 << 24)) {
+      width <<= 1;
+    }
+    if (table == null || width > mask + 1) {
+      this.table = new int[width * DEPTH];
+      this.mask = width - 1;
+      this.sampleSize = width * 10;
+      this.additions = 0;
+    }
+  }
+
+  /**
+   * Return the estimated frequency of the key.
+   */
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int min = MAX_COUNT;
+    for (int i = 0; i < DEPTH; i++) {
+      int count = table[indexOf(hash, i)];
+      if (count < min) {
+        min = count;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Increment the frequency of the key.
+   */
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < DEPTH; i++) {
+      int index = indexOf(hash, i);
+      if (table[index] < MAX_COUNT) {
+        table[index]++;
+        added = true;
+      }
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Halve all the counters (aging).
+   */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] >>>= 1;
+    }
+    additions = 0;
+  }
+
+  private int indexOf(int hash, int row) {
+    long h = (hash + SEEDS[row]) * (long) SEEDS[row];
+    h += h >>> 32;
+    return (row * (mask + 1)) + ((int) h & mask);
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -0,0 +1,78 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.cache.ServerCacheRemoteStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ServerCacheRemoteStore held in memory.
+ * <p>
+ * Stands in for a shared remote store when testing by sharing one instance between the
+ * cache factories of several EbeanServers in the same JVM.
+ * </p>
+ */
+public class InMemoryServerCacheRemoteStore implements ServerCacheRemoteStore {
+
+  private final ConcurrentMap<String, ConcurrentMap<Object, byte[]>> caches = new ConcurrentHashMap<String, ConcurrentMap<Object, byte[]>>();
+
+  private ConcurrentMap<Object, byte[]> cache(String cacheName) {
+    ConcurrentMap<Object, byte[]> cache = caches.get(cacheName);
+    if (cache == null) {
+      cache = new ConcurrentHashMap<Object, byte[]>();
+      ConcurrentMap<Object, byte[]> existing = caches.putIfAbsent(cacheName, cache);
+      if (existing != null) {
+        cache = existing;
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Return the number of entries held for the cache.
+   */
+  public int size(String cacheName) {
+    return cache(cacheName).size();
+  }
+
+  @Override
+  public byte[] get(String cacheName, Object key) {
+    return cache(cacheName).get(key);
+  }
+
+  @Override
+  public Map<Object, byte[]> getAll(String cacheName, Set<Object> keys) {
+    ConcurrentMap<Object, byte[]> cache = cache(cacheName);
+    Map<Object, byte[]> values = new HashMap<Object, byte[]>(keys.size() * 2);
+    for (Object key : keys) {
+      byte[] value = cache.get(key);
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public void put(String cacheName, Object key, byte[] value) {
+    cache(cacheName).put(key, value);
+  }
+
+  @Override
+  public void putAll(String cacheName, Map<Object, byte[]> keyValues) {
+    cache(cacheName).putAll(keyValues);
+  }
+
+  @Override
+  public void remove(String cacheName, Object key) {
+    cache(cacheName).remove(key);
+  }
+
+  @Override
+  public void clear(String cacheName) {
+    cache(cacheName).clear();
+  }
+}
@@ -0,0 +1,336 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Memory outside the java heap (direct ByteBuffers) holding serialized cache values.
+ * <p>
+ * Memory is allocated in pages of 1MB up to the max bytes. Each page is divided into
+ * blocks of one size class (32, 48, 64, 96, 128 ... bytes) and free blocks are kept in
+ * a free list per size class. A block address is the page index, size class and offset
+ * packed into a long.
+ * </p>
+ * <p>
+ * A page with no blocks in use is returned to the arena (when its size class has free
+ * blocks on other pages) such that it can be reused by any size class. Each page holds
+ * the size class that currently owns it and a version that is incremented when it is
+ * reused such that a stale handle into a reused page is never read or freed.
+ * </p>
+ * <p>
+ * Each stored value is given a stamp that is written into its block. Reading with a
+ * stamp that no longer matches (the block was freed and possibly reused by another
+ * value) returns null. Reads and writes of a block hold one of a number of striped
+ * locks such that a value is never read while its block is being rewritten.
+ * </p>
+ */
+class OffHeapArena {
+
+  static final int PAGE_SIZE = 1 << 20;
+
+  private static final int MIN_BLOCK = 32;
+
+  /**
+   * Block header holding the stamp.
+   */
+  private static final int HEADER = 4;
+
+  private static final int STRIPES = 64;
+
+  private final AtomicReferenceArray<ByteBuffer> pages;
+
+  /**
+   * The size class that owns each page.
+   */
+  private final AtomicIntegerArray pageOwner;
+
+  /**
+   * The version of each page incremented when the page is reused.
+   */
+  private final AtomicIntegerArray pageVersion;
+
+  /**
+   * The number of blocks in use of each page.
+   */
+  private final AtomicIntegerArray pageUsed;
+
+  /**
+   * Allocated pages with no blocks in use available to any size class.
+   */
+  private final ConcurrentLinkedQueue<Integer> freePages = new ConcurrentLinkedQueue<Integer>();
+
+  private final SizeClass[] sizeClasses;
+
+  private final Object[] stripes = new Object[STRIPES];
+
+  private final AtomicInteger pageCount = new AtomicInteger();
+
+  private final AtomicInteger stampSequence = new AtomicInteger();
+
+  private final AtomicLong usedBytes = new AtomicLong();
+
+  /**
+   * Create with the maximum number of bytes to allocate.
+   */
+  OffHeapArena(long maxBytes) {
+    int maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / PAGE_SIZE));
+    this.pages = new AtomicReferenceArray<ByteBuffer>(maxPages);
+    this.pageOwner = new AtomicIntegerArray(maxPages);
+    this.pageVersion = new AtomicIntegerArray(maxPages);
+    this.pageUsed = new AtomicIntegerArray(maxPages);
+    List<SizeClass> classes = new ArrayList<SizeClass>();
+    for (int size = MIN_BLOCK; size <= PAGE_SIZE; size <<= 1) {
+      classes.add(new SizeClass(classes.size(), size));
+      int half = size + (size >> 1);
+      if (half < PAGE_SIZE) {
+        classes.add(new SizeClass(classes.size(), half));
+      }
+    }
+    this.sizeClasses = classes.toArray(new SizeClass[classes.size()]);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  /**
+   * Return the largest value (in bytes) that can be stored.
+   */
+  int getMaxValueSize() {
+    return PAGE_SIZE - HEADER;
+  }
+
+  /**
+   * Return the bytes of the blocks in use.
+   */
+  long getUsedBytes() {
+    return usedBytes.get();
+  }
+
+  /**
+   * Return the bytes allocated outside the heap.
+   */
+  long getAllocatedBytes() {
+    return (long) pageCount.get() * PAGE_SIZE;
+  }
+
+  /**
+   * Return the number of allocated pages with no blocks in use.
+   */
+  int getFreePageCount() {
+    return freePages.size();
+  }
+
+  /**
+   * Store the value returning the handle to read it or null if there is no free memory.
+   */
+  OffHeapValue store(byte[] value) {
+
+    if (value.length > getMaxValueSize()) {
+      return null;
+    }
+    SizeClass sizeClass = sizeClassFor(value.length + HEADER);
+    long address = sizeClass.allocate();
+    if (address == -1) {
+      return null;
+    }
+    usedBytes.addAndGet(sizeClass.blockSize);
+    int stamp = nextStamp();
+    ByteBuffer buffer = blockBuffer(address);
+    synchronized (stripe(address)) {
+      buffer.putInt(stamp);
+      buffer.put(value);
+    }
+    return new OffHeapValue(address, stamp, value.length);
+  }
+
+  /**
+   * Return the stored bytes or null if the value has since been freed.
+   */
+  byte[] read(OffHeapValue value) {
+
+    long address = value.address;
+    int page = pageIndex(address);
+    ByteBuffer buffer = blockBuffer(address);
+    synchronized (stripe(address)) {
+      int version = pageVersion.get(page);
+      if (pageOwner.get(page) != pageClass(address) || buffer.getInt() != value.stamp) {
+        return null;
+      }
+      byte[] bytes = new byte[value.length];
+      buffer.get(bytes);
+      if (pageVersion.get(page) != version) {
+        // the page was reused by another size class while reading
+        return null;
+      }
+      return bytes;
+    }
+  }
+
+  /**
+   * Free the memory used by the value.
+   */
+  void free(OffHeapValue value) {
+
+    long address = value.address;
+    ByteBuffer buffer = blockBuffer(address);
+    synchronized (stripe(address)) {
+      if (pageOwner.get(pageIndex(address)) != pageClass(address) || buffer.getInt(buffer.position()) != value.stamp) {
+        // already freed
+        return;
+      }
+      buffer.putInt(buffer.position(), 0);
+    }
+    SizeClass sizeClass = sizeClasses[pageClass(address)];
+    usedBytes.addAndGet(-sizeClass.blockSize);
+    sizeClass.release(address);
+  }
+
+  private int nextStamp() {
+    for (; ; ) {
+      int stamp = stampSequence.incrementAndGet();
+      if (stamp != 0) {
+        return stamp;
+      }
+    }
+  }
+
+  private SizeClass sizeClassFor(int size) {
+    for (int i = 0; i < sizeClasses.length; i++) {
+      if (sizeClasses[i].blockSize >= size) {
+        return sizeClasses[i];
+      }
+    }
+    return sizeClasses[sizeClasses.length - 1];
+  }
+
+  private Object stripe(long address) {
+    int h = (int) (address ^ (address >>> 32));
+    h ^= (h >>> 16);
+    return stripes[h & (STRIPES - 1)];
+  }
+
+  /**
+   * Return a buffer positioned at the start of the block.
+   */
+  private ByteBuffer blockBuffer(long address) {
+    ByteBuffer buffer = pages.get(pageIndex(address)).duplicate();
+    buffer.position(offset(address));
+    return buffer;
+  }
+
+  private static int pageIndex(long address) {
+    return (int) (address >>> 32);
+  }
+
+  private static int offset(long address) {
+    return (int) (address & 0xFFFFFF);
+  }
+
+  /**
+   * Return the size class of the block which is held in the address above the offset.
+   */
+  private static int pageClass(long address) {
+    return (int) ((address >>> 24) & 0xFF);
+  }
+
+  /**
+   * Allocate a page for the size class returning its index or -1 if the max bytes
+   * has been reached and there are no free pages.
+   */
+  private int allocatePage(int sizeClass) {
+    Integer free = freePages.poll();
+    if (free != null) {
+      int page = free;
+      pageVersion.incrementAndGet(page);
+      pageOwner.set(page, sizeClass);
+      return page;
+    }
+    for (; ; ) {
+      int index = pageCount.get();
+      if (index >= pages.length()) {
+        return -1;
+      }
+      if (pageCount.compareAndSet(index, index + 1)) {
+        pages.set(index, ByteBuffer.allocateDirect(PAGE_SIZE));
+        pageOwner.set(index, sizeClass);
+        return index;
+      }
+    }
+  }
+
+  /**
+   * Blocks of one size with a free list.
+   */
+  private class SizeClass {
+
+    final int index;
+
+    final int blockSize;
+
+    private long[] free = new long[16];
+
+    private int freeCount;
+
+    SizeClass(int index, int blockSize) {
+      this.index = index;
+      this.blockSize = blockSize;
+    }
+
+    synchronized long allocate() {
+      if (freeCount == 0) {
+        int page = allocatePage(index);
+        if (page == -1) {
+          return -1;
+        }
+        for (int offset = PAGE_SIZE - blockSize; offset >= 0; offset -= blockSize) {
+          push(address(page, offset));
+        }
+      }
+      long address = free[--freeCount];
+      pageUsed.incrementAndGet(pageIndex(address));
+      return address;
+    }
+
+    synchronized void release(long address) {
+      push(address);
+      int page = pageIndex(address);
+      if (pageUsed.decrementAndGet(page) == 0 && freeCount > PAGE_SIZE / blockSize) {
+        // keep the blocks of other pages and return this empty page to the arena
+        removePage(page);
+        freePages.add(page);
+      }
+    }
+
+    /**
+     * Remove the free blocks of the page from the free list.
+     */
+    private void removePage(int page) {
+      int count = 0;
+      for (int i = 0; i < freeCount; i++) {
+        if (pageIndex(free[i]) != page) {
+          free[count++] = free[i];
+        }
+      }
+      freeCount = count;
+    }
+
+    private void push(long address) {
+      if (freeCount == free.length) {
+        long[] grown = new long[free.length * 2];
+        System.arraycopy(free, 0, grown, 0, freeCount);
+        free = grown;
+      }
+      free[freeCount++] = address;
+    }
+
+    private long address(int page, int offset) {
+      return ((long) page << 32) | ((long) index << 24) | offset;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebean.cache.ServerCacheStatistics;
+import com.avaje.ebeaninternal.server.util.LongAdder;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Cache that holds CachedBeanData serialized outside the java heap.
+ * <p>
+ * The entries, eviction and statistics are those of DefaultServerCache but the value of
+ * an entry is a small handle to the serialized data in an OffHeapArena. Hits deserialize
+ * the data into a new CachedBeanData which is then loaded into a bean in the usual way.
+ * Other values (query results, natural keys and ids) and data that can not be serialized
+ * or does not fit in the arena are held on the heap as normal and counted in the
+ * offHeapFallbackCount statistic.
+ * </p>
+ * <p>
+ * As the data is freed when an entry is replaced or removed the value returned by put()
+ * and remove() is null for data held outside the heap.
+ * </p>
+ */
+public class OffHeapServerCache extends DefaultServerCache {
+
+  private final OffHeapArena arena;
+
+  private final CachedBeanDataCodec codec;
+
+  private final LongAdder offHeapFallbackCount = new LongAdder();
+
+  /**
+   * Create with the arena holding the data and the layout of the bean type.
+   */
+  OffHeapServerCache(String name, ServerCacheOptions options, OffHeapArena arena, CachedBeanDataCodec codec) {
+    super(name, options);
+    this.arena = arena;
+    this.codec = codec;
+  }
+
+  /**
+   * Return the value deserializing data held outside the heap.
+   */
+  @Override
+  public Object get(Object key) {
+    Object value = super.get(key);
+    if (value instanceof OffHeapValue) {
+      return decode((OffHeapValue) value);
+    }
+    return value;
+  }
+
+  /**
+   * Put the value serializing CachedBeanData outside the heap.
+   */
+  @Override
+  public Object put(Object key, Object value) {
+    if (value instanceof CachedBeanData) {
+      OffHeapValue offHeap = encode((CachedBeanData) value);
+      if (offHeap != null) {
+        value = offHeap;
+      } else {
+        offHeapFallbackCount.increment();
+      }
+    }
+    Object existing = super.put(key, value);
+    return (existing instanceof OffHeapValue) ? null : existing;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    Object existing = super.remove(key);
+    return (existing instanceof OffHeapValue) ? null : existing;
+  }
+
+  @Override
+  public void clear() {
+    clearCount.increment();
+    Iterator<CacheEntry> it = map.values().iterator();
+    while (it.hasNext()) {
+      CacheEntry entry = it.next();
+      it.remove();
+      entryRemoved(entry);
+    }
+    policy.clear();
+  }
+
+  @Override
+  public ServerCacheStatistics getStatistics(boolean reset) {
+    ServerCacheStatistics cacheStats = super.getStatistics(reset);
+    cacheStats.setOffHeapFallbackCount(reset ? offHeapFallbackCount.sumThenReset() : offHeapFallbackCount.sum());
+    return cacheStats;
+  }
+
+  /**
+   * Free the memory held by the entry.
+   */
+  @Override
+  protected void entryRemoved(CacheEntry entry) {
+    Object value = entry.getValue();
+    if (value instanceof OffHeapValue) {
+      arena.free((OffHeapValue) value);
+    }
+  }
+
+  private OffHeapValue encode(CachedBeanData data) {
+    try {
+      OffHeapValue value = arena.store(codec.toBytes(data));
+      if (value == null && logger.isDebugEnabled()) {
+        logger.debug("Cache {} holding data on heap as no off heap memory available", name);
+      }
+      return value;
+
+    } catch (IOException e) {
+      logger.debug("Cache {} holding data on heap as it can not be serialized", name, e);
+      return null;
+    } catch (RuntimeException e) {
+      logger.debug("Cache {} holding data on heap as it can not be serialized", name, e);
+      return null;
+    }
+  }
+
+  private CachedBeanData decode(OffHeapValue value) {
+    byte[] bytes = arena.read(value);
+    if (bytes == null) {
+      // freed by a concurrent put or remove
+      return null;
+    }
+    try {
+      return codec.fromBytes(bytes);
+    } catch (IOException e) {
+      logger.error("Error reading off heap data for cache " + name, e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheFactory;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+
+/**
+ * ServerCacheFactory holding bean cache data outside the java heap.
+ * <p>
+ * Bean caches hold their CachedBeanData serialized into direct ByteBuffers (shared by
+ * all the caches of the server up to the max bytes) such that large caches do not add
+ * to garbage collection. The keys and a small handle per entry remain on the heap.
+ * </p>
+ * <p>
+ * Set this on ServerConfig.setServerCacheFactory() or using the serverCacheFactory
+ * property. The max bytes defaults to 512MB.
+ * </p>
+ */
+public class OffHeapServerCacheFactory implements ServerCacheFactory {
+
+  /**
+   * The default maximum bytes to allocate outside the heap (512MB).
+   */
+  public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+  private final OffHeapArena arena;
+
+  private SpiEbeanServer ebeanServer;
+
+  /**
+   * Create with the default max bytes.
+   */
+  public OffHeapServerCacheFactory() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Create with the maximum number of bytes to allocate outside the heap.
+   */
+  public OffHeapServerCacheFactory(long maxBytes) {
+    this.arena = new OffHeapArena(maxBytes);
+  }
+
+  public void init(EbeanServer ebeanServer) {
+    this.ebeanServer = (SpiEbeanServer) ebeanServer;
+  }
+
+  public ServerCache createCache(String cacheKey, ServerCacheOptions cacheOptions) {
+
+    BeanDescriptor<?> desc = ebeanServer.getBeanDescriptorById(cacheKey);
+    ServerCache cache;
+    if (desc == null) {
+      // query, natural key or collection ids cache
+      cache = new DefaultServerCache(cacheKey, cacheOptions);
+    } else {
+      cache = new OffHeapServerCache(cacheKey, cacheOptions, arena, new CachedBeanDataCodec(desc));
+    }
+    cache.init(ebeanServer);
+    return cache;
+  }
+
+  /**
+   * Return the bytes in use holding cache data.
+   */
+  public long getUsedBytes() {
+    return arena.getUsedBytes();
+  }
+
+  /**
+   * Return the bytes allocated outside the heap.
+   */
+  public long getAllocatedBytes() {
+    return arena.getAllocatedBytes();
+  }
+}
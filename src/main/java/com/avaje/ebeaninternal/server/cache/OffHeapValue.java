@@ -0,0 +1,19 @@
+package com.avaje.ebeaninternal.server.cache;
+
+/**
+ * Handle to a value stored in an OffHeapArena.
+ */
+final class OffHeapValue {
+
+  final long address;
+
+  final int stamp;
+
+  final int length;
+
+  OffHeapValue(long address, int stamp, int length) {
+    this.address = address;
+    this.stamp = stamp;
+    this.length = length;
+  }
+}
@@ -0,0 +1,18 @@
+package com.avaje.ebeaninternal.server.cache;
+
+/**
+ * Reloads a cache entry that is about to expire (see ServerCacheOptions refreshAheadPercent).
+ */
+public interface RefreshAheadLoader {
+
+  /**
+   * Reload the entry putting the new value into the cache.
+   * <p>
+   * This is executed in the background while the existing value continues to be used.
+   * </p>
+   *
+   * @param key   the key of the entry
+   * @param value the existing value of the entry
+   */
+  void refresh(Object key, Object value);
+}
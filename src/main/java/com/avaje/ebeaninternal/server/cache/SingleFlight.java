@@ -0,0 +1,109 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebeaninternal.server.util.LongAdder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deduplicates concurrent loads of the same cache key.
+ * <p>
+ * On a cache miss the first thread to call begin() loads the entry and other threads
+ * missing on the same key wait until it calls end(). The waiting threads then read the
+ * cache again rather than executing the same query. Nothing is shared between threads
+ * other than the cache itself so a waiting thread that still misses (the load failed,
+ * found nothing or was not cached) just loads the entry itself.
+ * </p>
+ * <pre>{@code
+ *
+ *   if (!singleFlight.begin(key)) {
+ *     // waited for another thread, check the cache again
+ *     ...
+ *   }
+ *   try {
+ *     ... load and put into the cache
+ *   } finally {
+ *     singleFlight.end(key);
+ *   }
+ *
+ * }</pre>
+ */
+public class SingleFlight {
+
+  private final ConcurrentHashMap<Object, Flight> inFlight = new ConcurrentHashMap<Object, Flight>();
+
+  private final LongAdder waitCount = new LongAdder();
+
+  private final long maxWaitMillis;
+
+  /**
+   * Create with the maximum time a thread waits for a load by another thread.
+   */
+  public SingleFlight(long maxWaitMillis) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  /**
+   * Return true if the caller is to load the entry in which case it must call end().
+   * <p>
+   * Otherwise wait for the load in flight (up to the max wait time) and return false.
+   * </p>
+   */
+  public boolean begin(Object key) {
+
+    Thread current = Thread.currentThread();
+    Flight flight = new Flight(current);
+    Flight existing = inFlight.putIfAbsent(key, flight);
+    if (existing == null) {
+      return true;
+    }
+    if (existing.owner == current) {
+      // nested load of the same key by the loading thread
+      return false;
+    }
+    waitCount.increment();
+    try {
+      existing.latch.await(maxWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * End the load releasing any waiting threads.
+   */
+  public void end(Object key) {
+    Flight flight = inFlight.get(key);
+    if (flight != null && flight.owner == Thread.currentThread()) {
+      inFlight.remove(key, flight);
+      flight.latch.countDown();
+    }
+  }
+
+  /**
+   * Return the number of loads in flight.
+   */
+  public int size() {
+    return inFlight.size();
+  }
+
+  /**
+   * Return the number of times a thread waited for a load by another thread.
+   */
+  public long getWaitCount(boolean reset) {
+    return reset ? waitCount.sumThenReset() : waitCount.sum();
+  }
+
+  private static class Flight {
+
+    final Thread owner;
+
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    Flight(Thread owner) {
+      this.owner = owner;
+    }
+  }
+}
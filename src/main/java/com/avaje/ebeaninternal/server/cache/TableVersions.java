@@ -0,0 +1,105 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version stamps of the tables that cached query results depend on.
+ * <p>
+ * Stamps come from a single clock such that a query result can be stamped with the
+ * clock value read before the query was executed. The result is valid while none of
+ * the tables it depends on has a version greater than that stamp.
+ * </p>
+ * <p>
+ * Tables are tracked from when a cached query result first depends on them such that
+ * persisting beans of other types only notifies the cache when it needs to. Changes
+ * notified for tables that are not yet tracked are still recorded.
+ * </p>
+ */
+public class TableVersions {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+
+  private final ConcurrentHashMap<String, Boolean> tracked = new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * Return the current stamp to use for a query about to be executed.
+   */
+  public long current() {
+    return clock.get();
+  }
+
+  /**
+   * Advance the clock returning a stamp greater than any stamp previously returned by current().
+   */
+  public long advance() {
+    return clock.incrementAndGet();
+  }
+
+  /**
+   * Return true if cached query results depend on the table.
+   */
+  public boolean isTracked(String tableName) {
+    return tableName != null && tracked.containsKey(tableName.toLowerCase());
+  }
+
+  /**
+   * Bump the version of the table as it has been modified.
+   */
+  public void changed(String tableName) {
+    if (tableName == null) {
+      return;
+    }
+    setMax(version(tableName.toLowerCase()), clock.incrementAndGet());
+  }
+
+  /**
+   * Return true if the table has been modified after the given stamp was read.
+   */
+  public boolean isModifiedSince(String tableName, long stamp) {
+    if (tableName == null) {
+      return false;
+    }
+    AtomicLong version = versions.get(tableName.toLowerCase());
+    return version != null && version.get() > stamp;
+  }
+
+  /**
+   * Return the versions for the tables tracking any that are not yet tracked.
+   */
+  public AtomicLong[] track(String[] tableNames) {
+
+    AtomicLong[] tableVersions = new AtomicLong[tableNames.length];
+    for (int i = 0; i < tableNames.length; i++) {
+      String key = tableNames[i].toLowerCase();
+      tableVersions[i] = version(key);
+      if (!tracked.containsKey(key)) {
+        tracked.putIfAbsent(key, Boolean.TRUE);
+      }
+    }
+    return tableVersions;
+  }
+
+  private AtomicLong version(String key) {
+    AtomicLong version = versions.get(key);
+    if (version == null) {
+      version = new AtomicLong();
+      AtomicLong existing = versions.putIfAbsent(key, version);
+      if (existing != null) {
+        version = existing;
+      }
+    }
+    return version;
+  }
+
+  private static void setMax(AtomicLong version, long stamp) {
+    for (; ; ) {
+      long current = version.get();
+      if (stamp <= current || version.compareAndSet(current, stamp)) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,409 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebeaninternal.server.cache.DefaultServerCache.CacheEntry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU eviction policy bounding the size of a DefaultServerCache on every put.
+ * <p>
+ * New entries go into a small LRU admission window (1% of the max size). Entries leaving
+ * the window are candidates for the main space which is a segmented LRU made of a
+ * probation and a protected (80%) segment. When the cache is over its max size the
+ * candidate competes with the least recently used probation entry and the one with the
+ * lower estimated frequency (FrequencySketch) is evicted. A probation entry that is
+ * accessed again is promoted to the protected segment.
+ * </p>
+ * <p>
+ * The cache can also be bounded by the total weight of its entries (estimated bytes,
+ * see CacheWeigher) in which case entries are evicted in the same order until both the
+ * size and the weight are within their bounds.
+ * </p>
+ * <p>
+ * All operations are O(1). Reads do not take the lock but are recorded in a lossy ring
+ * buffer that is drained when it fills (if the lock is free) and on each write. Writes
+ * take the lock to link the new entry and evict.
+ * </p>
+ */
+class TinyLfuPolicy {
+
+  static final int NONE = 0;
+  static final int WINDOW = 1;
+  static final int PROBATION = 2;
+  static final int PROTECTED = 3;
+
+  private static final int READ_BUFFER_SIZE = 128;
+
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+  /**
+   * Attempt to drain the read buffer every 32 reads.
+   */
+  private static final int DRAIN_MASK = 31;
+
+  /**
+   * The cache using this policy.
+   */
+  interface Owner {
+
+    /**
+     * Return true if the entry is still the one mapped to its key.
+     */
+    boolean isCurrent(CacheEntry entry);
+
+    /**
+     * Remove the entry from the cache as it has been evicted.
+     */
+    void evict(CacheEntry entry);
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final AtomicReferenceArray<CacheEntry> readBuffer = new AtomicReferenceArray<CacheEntry>(READ_BUFFER_SIZE);
+
+  private final AtomicInteger readCount = new AtomicInteger();
+
+  private final EntryList window = new EntryList(WINDOW);
+
+  private final EntryList probation = new EntryList(PROBATION);
+
+  private final EntryList protectedList = new EntryList(PROTECTED);
+
+  private final FrequencySketch sketch;
+
+  private final Owner owner;
+
+  private int maxSize;
+
+  private long maxWeight;
+
+  /**
+   * The total weight of the linked entries (written holding the lock).
+   */
+  private volatile long weight;
+
+  TinyLfuPolicy(int maxSize, Owner owner) {
+    this(maxSize, 0, owner);
+  }
+
+  TinyLfuPolicy(int maxSize, long maxWeight, Owner owner) {
+    this.maxSize = maxSize;
+    this.maxWeight = maxWeight;
+    this.owner = owner;
+    this.sketch = new FrequencySketch(maxSize);
+  }
+
+  /**
+   * Set the max weight evicting entries if the cache is now over it.
+   */
+  void setMaxWeight(long maxWeight) {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      this.maxWeight = maxWeight;
+      evict(maxSize);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Return the total weight of the entries.
+   */
+  long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Set the max size evicting entries if the cache is now over it.
+   */
+  void setMaxSize(int maxSize) {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      this.maxSize = maxSize;
+      sketch.ensureCapacity(maxSize);
+      evict(maxSize);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Return the number of entries tracked by the policy.
+   */
+  int size() {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      return window.size + probation.size + protectedList.size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record a cache hit on the entry.
+   */
+  void recordRead(CacheEntry entry) {
+    int count = readCount.getAndIncrement();
+    readBuffer.lazySet(count & READ_BUFFER_MASK, entry);
+    if ((count & DRAIN_MASK) == DRAIN_MASK && lock.tryLock()) {
+      try {
+        drainReads();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * An entry was put into the cache (replacing an existing entry or null).
+   */
+  void added(CacheEntry entry, CacheEntry replaced) {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      drainReads();
+      if (replaced != null) {
+        unlink(replaced);
+      }
+      if (owner.isCurrent(entry)) {
+        if (maxSize <= 0 && maxWeight > 0) {
+          // bounded by weight only so size the sketch by the number of entries
+          sketch.ensureCapacity(count());
+        }
+        sketch.increment(entry.getKey());
+        window.addFirst(entry);
+        weight += entry.getWeight();
+        evict(maxSize);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * An entry was removed from the cache.
+   */
+  void removed(CacheEntry entry) {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      unlink(entry);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Evict entries (by frequency and recency) until there are at most size entries.
+   */
+  void trimTo(int size) {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      drainReads();
+      evict(size);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The cache was cleared.
+   */
+  void clear() {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+        readBuffer.set(i, null);
+      }
+      window.clear();
+      probation.clear();
+      protectedList.clear();
+      weight = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void drainReads() {
+    for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+      CacheEntry entry = readBuffer.getAndSet(i, null);
+      if (entry != null) {
+        onAccess(entry);
+      }
+    }
+  }
+
+  private void onAccess(CacheEntry entry) {
+    switch (entry.queue) {
+      case WINDOW:
+        sketch.increment(entry.getKey());
+        window.moveToFirst(entry);
+        break;
+      case PROBATION:
+        sketch.increment(entry.getKey());
+        probation.unlink(entry);
+        protectedList.addFirst(entry);
+        int capacity = capacity();
+        int protectedMax = (capacity - windowMax(capacity)) * 80 / 100;
+        while (protectedList.size > protectedMax && protectedList.last != null) {
+          CacheEntry demote = protectedList.last;
+          protectedList.unlink(demote);
+          probation.addFirst(demote);
+        }
+        break;
+      case PROTECTED:
+        sketch.increment(entry.getKey());
+        protectedList.moveToFirst(entry);
+        break;
+      default:
+        // removed or evicted since the read
+    }
+  }
+
+  private static int windowMax(int maxSize) {
+    return Math.max(1, maxSize / 100);
+  }
+
+  private int count() {
+    return window.size + probation.size + protectedList.size;
+  }
+
+  /**
+   * Return the number of entries used to size the segments.
+   */
+  private int capacity() {
+    return (maxSize > 0) ? maxSize : count();
+  }
+
+  private boolean isOverBounds(int size) {
+    return (maxSize > 0 && count() > size) || (maxWeight > 0 && weight > maxWeight);
+  }
+
+  private void unlink(CacheEntry entry) {
+    if (entry.queue != NONE) {
+      weight -= entry.getWeight();
+    }
+    switch (entry.queue) {
+      case WINDOW:
+        window.unlink(entry);
+        break;
+      case PROBATION:
+        probation.unlink(entry);
+        break;
+      case PROTECTED:
+        protectedList.unlink(entry);
+        break;
+      default:
+        // not linked
+    }
+  }
+
+  private void evict(int size) {
+    if (maxSize <= 0 && maxWeight <= 0) {
+      // unbounded
+      return;
+    }
+    int windowMax = windowMax(capacity());
+    while (window.size > windowMax) {
+      // the window overflows into the probation segment as a candidate
+      CacheEntry candidate = window.last;
+      window.unlink(candidate);
+      probation.addFirst(candidate);
+    }
+    while (isOverBounds(size)) {
+      CacheEntry victim = probation.last;
+      if (victim == null) {
+        victim = (protectedList.last != null) ? protectedList.last : window.last;
+        if (victim == null) {
+          return;
+        }
+      } else {
+        CacheEntry candidate = probation.first;
+        if (candidate != victim && sketch.frequency(candidate.getKey()) <= sketch.frequency(victim.getKey())) {
+          // the candidate is not used more frequently than the victim so is not admitted
+          victim = candidate;
+        }
+      }
+      unlink(victim);
+      owner.evict(victim);
+    }
+  }
+
+  /**
+   * Doubly linked list of entries in access order (most recent first).
+   */
+  static class EntryList {
+
+    final int queue;
+
+    CacheEntry first;
+
+    CacheEntry last;
+
+    int size;
+
+    EntryList(int queue) {
+      this.queue = queue;
+    }
+
+    void addFirst(CacheEntry entry) {
+      entry.queue = queue;
+      entry.prev = null;
+      entry.next = first;
+      if (first == null) {
+        last = entry;
+      } else {
+        first.prev = entry;
+      }
+      first = entry;
+      size++;
+    }
+
+    void unlink(CacheEntry entry) {
+      CacheEntry prev = entry.prev;
+      CacheEntry next = entry.next;
+      if (prev == null) {
+        first = next;
+      } else {
+        prev.next = next;
+      }
+      if (next == null) {
+        last = prev;
+      } else {
+        next.prev = prev;
+      }
+      entry.prev = null;
+      entry.next = null;
+      entry.queue = NONE;
+      size--;
+    }
+
+    void moveToFirst(CacheEntry entry) {
+      if (entry != first) {
+        unlink(entry);
+        addFirst(entry);
+      }
+    }
+
+    void clear() {
+      CacheEntry entry = first;
+      while (entry != null) {
+        CacheEntry next = entry.next;
+        entry.prev = null;
+        entry.next = null;
+        entry.queue = NONE;
+        entry = next;
+      }
+      first = null;
+      last = null;
+      size = 0;
+    }
+  }
+}
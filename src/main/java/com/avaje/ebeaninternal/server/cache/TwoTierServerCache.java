@@ -0,0 +1,296 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebean.cache.ServerCacheRemoteStore;
+import com.avaje.ebean.cache.ServerCacheStatistics;
+import com.avaje.ebeaninternal.server.util.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bean cache with a local near cache in front of a remote store shared by the cluster.
+ * <p>
+ * Gets are served by the near cache and on a miss by the remote store (the data is then
+ * held in the near cache). Puts and removes go to both tiers such that the other servers
+ * read the new data from the remote store once their near cache entry is invalidated by
+ * the RemoteTransactionEvent (see removeNear()).
+ * </p>
+ * <p>
+ * CachedBeanData is serialized for the remote store using the binary layout of the bean
+ * type. Data that can not be read (for example written by a server with a different
+ * version of the bean) is treated as a miss and removed from the remote store.
+ * </p>
+ */
+public class TwoTierServerCache implements ServerCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(TwoTierServerCache.class);
+
+  private final DefaultServerCache near;
+
+  private final ServerCacheRemoteStore remote;
+
+  private final CachedBeanDataCodec codec;
+
+  private final String name;
+
+  private final LongAdder remoteHitCount = new LongAdder();
+
+  private final LongAdder remoteMissCount = new LongAdder();
+
+  /**
+   * Create with the options for the near cache, the remote store and the layout of the bean type.
+   */
+  TwoTierServerCache(String name, ServerCacheOptions options, ServerCacheRemoteStore remote, CachedBeanDataCodec codec) {
+    this.name = name;
+    this.near = new DefaultServerCache(name, options);
+    this.remote = remote;
+    this.codec = codec;
+  }
+
+  @Override
+  public void init(EbeanServer ebeanServer) {
+    near.init(ebeanServer);
+  }
+
+  /**
+   * Return the statistics of the near cache.
+   */
+  @Override
+  public ServerCacheStatistics getStatistics(boolean reset) {
+    return near.getStatistics(reset);
+  }
+
+  @Override
+  public int getHitRatio() {
+    return near.getHitRatio();
+  }
+
+  /**
+   * Return the number of near cache misses that were hits on the remote store.
+   */
+  public long getRemoteHitCount() {
+    return remoteHitCount.sum();
+  }
+
+  /**
+   * Return the number of near cache misses that were also misses on the remote store.
+   */
+  public long getRemoteMissCount() {
+    return remoteMissCount.sum();
+  }
+
+  @Override
+  public ServerCacheOptions getOptions() {
+    return near.getOptions();
+  }
+
+  @Override
+  public void setOptions(ServerCacheOptions options) {
+    near.setOptions(options);
+  }
+
+  @Override
+  public Object get(Object key) {
+
+    Object value = near.get(key);
+    if (value != null) {
+      return value;
+    }
+    CachedBeanData data = decode(key, remoteGet(key));
+    if (data == null) {
+      remoteMissCount.increment();
+      return null;
+    }
+    remoteHitCount.increment();
+    near.put(key, data);
+    return data;
+  }
+
+  @Override
+  public Map<Object, Object> getAll(Set<Object> keys) {
+
+    Map<Object, Object> values = near.getAll(keys);
+    if (values.size() == keys.size()) {
+      return values;
+    }
+    Set<Object> missing = new LinkedHashSet<Object>(keys);
+    missing.removeAll(values.keySet());
+
+    Map<Object, byte[]> remoteValues = remoteGetAll(missing);
+    Map<Object, Object> nearPut = new HashMap<Object, Object>(remoteValues.size() * 2);
+    for (Map.Entry<Object, byte[]> entry : remoteValues.entrySet()) {
+      CachedBeanData data = decode(entry.getKey(), entry.getValue());
+      if (data != null) {
+        nearPut.put(entry.getKey(), data);
+      }
+    }
+    remoteHitCount.add(nearPut.size());
+    remoteMissCount.add(missing.size() - nearPut.size());
+    if (!nearPut.isEmpty()) {
+      near.putAll(nearPut);
+      values.putAll(nearPut);
+    }
+    return values;
+  }
+
+  @Override
+  public Object put(Object key, Object value) {
+    Object existing = near.put(key, value);
+    byte[] bytes = encode(value);
+    if (bytes != null) {
+      try {
+        remote.put(name, key, bytes);
+      } catch (RuntimeException e) {
+        logger.warn("Error putting into remote cache " + name, e);
+      }
+    }
+    return existing;
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> keyValues) {
+    near.putAll(keyValues);
+    Map<Object, byte[]> remoteValues = new LinkedHashMap<Object, byte[]>(keyValues.size() * 2);
+    for (Map.Entry<Object, Object> entry : keyValues.entrySet()) {
+      byte[] bytes = encode(entry.getValue());
+      if (bytes != null) {
+        remoteValues.put(entry.getKey(), bytes);
+      }
+    }
+    if (!remoteValues.isEmpty()) {
+      try {
+        remote.putAll(name, remoteValues);
+      } catch (RuntimeException e) {
+        logger.warn("Error putting into remote cache " + name, e);
+      }
+    }
+  }
+
+  @Override
+  public Object remove(Object key) {
+    Object existing = near.remove(key);
+    remoteRemove(key);
+    return existing;
+  }
+
+  @Override
+  public void clear() {
+    near.clear();
+    try {
+      remote.clear(name);
+    } catch (RuntimeException e) {
+      logger.warn("Error clearing remote cache " + name, e);
+    }
+  }
+
+  /**
+   * Return the SingleFlight of the near cache or null if not enabled.
+   */
+  public SingleFlight getSingleFlight() {
+    return near.getSingleFlight();
+  }
+
+  /**
+   * Set the weigher used to estimate the size of near cache entries.
+   */
+  public void setWeigher(CacheWeigher weigher) {
+    near.setWeigher(weigher);
+  }
+
+  /**
+   * Set the loader used to refresh near cache entries ahead of expiry.
+   */
+  public void setRefreshAheadLoader(RefreshAheadLoader refreshAheadLoader) {
+    near.setRefreshAheadLoader(refreshAheadLoader);
+  }
+
+  /**
+   * Remove the entry from the near cache only.
+   * <p>
+   * Used when another server changed the bean in which case it has already updated or
+   * removed the entry in the remote store.
+   * </p>
+   */
+  public void removeNear(Object key) {
+    near.remove(key);
+  }
+
+  @Override
+  public int size() {
+    return near.size();
+  }
+
+  private byte[] remoteGet(Object key) {
+    try {
+      return remote.get(name, key);
+    } catch (RuntimeException e) {
+      logger.warn("Error reading remote cache " + name, e);
+      return null;
+    }
+  }
+
+  private Map<Object, byte[]> remoteGetAll(Set<Object> keys) {
+    try {
+      return remote.getAll(name, keys);
+    } catch (RuntimeException e) {
+      logger.warn("Error reading remote cache " + name, e);
+      return new HashMap<Object, byte[]>();
+    }
+  }
+
+  private byte[] encode(Object value) {
+    if (!(value instanceof CachedBeanData)) {
+      return null;
+    }
+    try {
+      return codec.toBytes((CachedBeanData) value);
+    } catch (IOException e) {
+      logger.debug("Cache {} data not put into remote store as it can not be serialized", name, e);
+      return null;
+    } catch (RuntimeException e) {
+      logger.debug("Cache {} data not put into remote store as it can not be serialized", name, e);
+      return null;
+    }
+  }
+
+  /**
+   * Return the data read from the remote store removing it if it can not be read.
+   */
+  private CachedBeanData decode(Object key, byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    CachedBeanData data = null;
+    try {
+      data = codec.fromBytes(bytes);
+      if (data == null) {
+        logger.debug("Cache {} ignoring remote data for {} written with a different layout", name, key);
+      }
+    } catch (IOException e) {
+      logger.debug("Cache {} ignoring remote data for {} that can not be read", name, key, e);
+    } catch (RuntimeException e) {
+      logger.debug("Cache {} ignoring remote data for {} that can not be read", name, key, e);
+    }
+    if (data == null) {
+      remoteRemove(key);
+    }
+    return data;
+  }
+
+  private void remoteRemove(Object key) {
+    try {
+      remote.remove(name, key);
+    } catch (RuntimeException e) {
+      logger.warn("Error removing from remote cache " + name, e);
+    }
+  }
+}
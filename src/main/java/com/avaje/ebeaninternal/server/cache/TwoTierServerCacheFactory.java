@@ -0,0 +1,55 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheFactory;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebean.cache.ServerCacheRemoteStore;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+
+/**
+ * ServerCacheFactory creating bean caches with a near cache in front of a remote store
+ * shared by the servers of a cluster.
+ * <p>
+ * The bean caches are TwoTierServerCache where the cache options size the near cache.
+ * Query, natural key and collection ids caches are local only (DefaultServerCache).
+ * Near cache entries are invalidated by the RemoteTransactionEvent sent by the server
+ * that made the change so clustering should be enabled.
+ * </p>
+ * <p>
+ * Set this on ServerConfig.setServerCacheFactory() with the ServerCacheRemoteStore
+ * implementation. InMemoryServerCacheRemoteStore can be used for testing.
+ * </p>
+ */
+public class TwoTierServerCacheFactory implements ServerCacheFactory {
+
+  private final ServerCacheRemoteStore remoteStore;
+
+  private SpiEbeanServer ebeanServer;
+
+  /**
+   * Create with the remote store shared by the cluster.
+   */
+  public TwoTierServerCacheFactory(ServerCacheRemoteStore remoteStore) {
+    this.remoteStore = remoteStore;
+  }
+
+  public void init(EbeanServer ebeanServer) {
+    this.ebeanServer = (SpiEbeanServer) ebeanServer;
+  }
+
+  public ServerCache createCache(String cacheKey, ServerCacheOptions cacheOptions) {
+
+    BeanDescriptor<?> desc = ebeanServer.getBeanDescriptorById(cacheKey);
+    ServerCache cache;
+    if (desc == null) {
+      // query, natural key or collection ids cache
+      cache = new DefaultServerCache(cacheKey, cacheOptions);
+    } else {
+      cache = new TwoTierServerCache(cacheKey, cacheOptions, remoteStore, new CachedBeanDataCodec(desc));
+    }
+    cache.init(ebeanServer);
+    return cache;
+  }
+}
@@ -0,0 +1,167 @@
+package com.avaje.ebeaninternal.server.core;
+
+import com.avaje.ebean.bean.EntityBean;
+import com.avaje.ebean.bean.PersistenceContext;
+import com.avaje.ebean.common.BeanList;
+import com.avaje.ebeaninternal.api.SpiExpression;
+import com.avaje.ebeaninternal.api.SpiExpressionList;
+import com.avaje.ebeaninternal.api.SpiQuery;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.ebeaninternal.server.expression.IdInExpression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves an id in query from the bean cache such that only the ids missing from the
+ * bean cache are fetched from the database (with a single id in query).
+ * <p>
+ * This only applies to queries where the only predicate is the id in expression and
+ * there is no ordering, paging, having clause, raw sql or query caching.
+ * </p>
+ */
+class CacheIdLookup<T> {
+
+  private final BeanDescriptor<T> desc;
+
+  private final List<SpiExpression> whereList;
+
+  private final IdInExpression idIn;
+
+  private final List<Object> ids;
+
+  private final Map<Object, T> found;
+
+  private final List<Object> missing;
+
+  /**
+   * Return the lookup for the query or null if the query is not a simple id in query
+   * using the bean cache.
+   */
+  static <T> CacheIdLookup<T> of(BeanDescriptor<T> desc, SpiQuery<T> query, PersistenceContext context) {
+
+    if (desc == null || !desc.calculateUseCache(query.isUseBeanCache())) {
+      return null;
+    }
+    if (!SpiQuery.Mode.NORMAL.equals(query.getMode()) || query.isLoadBeanCache() || query.isUseQueryCache()
+        || query.isRawSql() || query.isForUpdate() || query.isDistinct() || query.getId() != null
+        || !SpiQuery.TemporalMode.CURRENT.equals(query.getTemporalMode())
+        || query.getMaxRows() > 0 || query.getFirstRow() > 0) {
+      return null;
+    }
+    if (query.getOrderBy() != null && !query.getOrderBy().isEmpty()) {
+      return null;
+    }
+    SpiExpressionList<T> having = query.getHavingExpressions();
+    if (having != null && !having.isEmpty()) {
+      return null;
+    }
+    SpiExpressionList<T> where = query.getWhereExpressions();
+    if (where == null) {
+      return null;
+    }
+    List<SpiExpression> whereList = where.getUnderlyingList();
+    if (whereList.size() != 1 || !(whereList.get(0) instanceof IdInExpression)) {
+      return null;
+    }
+    IdInExpression idIn = (IdInExpression) whereList.get(0);
+    if (idIn.getIdList().isEmpty()) {
+      return null;
+    }
+    return new CacheIdLookup<T>(desc, query, context, whereList, idIn);
+  }
+
+  private CacheIdLookup(BeanDescriptor<T> desc, SpiQuery<T> query, PersistenceContext context, List<SpiExpression> whereList, IdInExpression idIn) {
+
+    this.desc = desc;
+    this.whereList = whereList;
+    this.idIn = idIn;
+    this.ids = new ArrayList<Object>(idIn.getIdList().size());
+    for (Object id : idIn.getIdList()) {
+      ids.add(desc.convertId(id));
+    }
+
+    // beans already in the persistence context take precedence over the bean cache
+    Map<Object, T> inContext = new HashMap<Object, T>();
+    List<Object> lookupIds = ids;
+    if (context != null) {
+      lookupIds = new ArrayList<Object>(ids.size());
+      for (Object id : ids) {
+        @SuppressWarnings("unchecked")
+        T bean = (T) context.get(desc.getBeanType(), id);
+        if (bean != null) {
+          inContext.put(id, bean);
+        } else {
+          lookupIds.add(id);
+        }
+      }
+    }
+    this.found = desc.cacheBeanGetAll(lookupIds, query.isReadOnly(), context);
+    found.putAll(inContext);
+    this.missing = new ArrayList<Object>(ids.size() - found.size());
+    for (Object id : ids) {
+      if (!found.containsKey(id)) {
+        missing.add(id);
+      }
+    }
+  }
+
+  /**
+   * Return true if all the ids were found in the bean cache.
+   */
+  boolean isAllHit() {
+    return missing.isEmpty();
+  }
+
+  /**
+   * Return the result when all the ids were found in the bean cache.
+   */
+  BeanList<T> getResult() {
+    return merge(new HashMap<Object, T>());
+  }
+
+  /**
+   * Change the query to fetch only the missing ids.
+   */
+  void queryMissing() {
+    whereList.set(0, new IdInExpression(missing));
+  }
+
+  /**
+   * Restore the original id in expression on the query.
+   */
+  void restore() {
+    whereList.set(0, idIn);
+  }
+
+  /**
+   * Return the result combining the cached beans with the fetched beans (in id order),
+   * putting the fetched beans into the bean cache.
+   */
+  BeanList<T> getResult(List<T> fetched) {
+
+    desc.cacheBeanPutAll(fetched);
+    Map<Object, T> fetchedMap = new HashMap<Object, T>(fetched.size() * 2);
+    for (T bean : fetched) {
+      fetchedMap.put(desc.getId((EntityBean) bean), bean);
+    }
+    return merge(fetchedMap);
+  }
+
+  private BeanList<T> merge(Map<Object, T> fetched) {
+
+    List<T> list = new ArrayList<T>(ids.size());
+    for (Object id : ids) {
+      T bean = found.get(id);
+      if (bean == null) {
+        bean = fetched.remove(id);
+      }
+      if (bean != null) {
+        list.add(bean);
+      }
+    }
+    return new BeanList<T>(list);
+  }
+}
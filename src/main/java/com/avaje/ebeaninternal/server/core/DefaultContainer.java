@@ -21,6 +21,7 @@ import com.avaje.ebeaninternal.server.lib.ShutdownManager;
 import com.avaje.ebeaninternal.server.lib.sql.DataSourceAlert;
 import com.avaje.ebeaninternal.server.lib.sql.DataSourcePool;
 import com.avaje.ebeaninternal.server.lib.sql.DataSourcePoolListener;
+import com.avaje.ebeaninternal.server.lib.sql.ReadReplicaDataSource;
 import com.avaje.ebeaninternal.server.lib.sql.SimpleDataSourceAlert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,7 @@ import javax.persistence.PersistenceException;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
@@ -99,6 +101,7 @@ public class DefaultContainer implements SpiContainer {
       BootupClasses bootupClasses = getBootupClasses(serverConfig);
 
       setDataSource(serverConfig);
+      setReadOnlyDataSource(serverConfig);
       // check the autoCommit and Transaction Isolation
       boolean online = checkDataSource(serverConfig);
 
@@ -170,12 +173,16 @@ public class DefaultContainer implements SpiContainer {
     beanOptions.setMaxSize(serverConfig.getCacheMaxSize());
     beanOptions.setMaxIdleSecs(serverConfig.getCacheMaxIdleTime());
     beanOptions.setMaxSecsToLive(serverConfig.getCacheMaxTimeToLive());
+    beanOptions.setSingleFlight(serverConfig.isCacheSingleFlight());
+    beanOptions.setRefreshAheadPercent(serverConfig.getCacheRefreshAheadPercent());
 
     // reasonable default settings for the query cache per bean type
     ServerCacheOptions queryOptions = new ServerCacheOptions();
     queryOptions.setMaxSize(serverConfig.getQueryCacheMaxSize());
     queryOptions.setMaxIdleSecs(serverConfig.getQueryCacheMaxIdleTime());
     queryOptions.setMaxSecsToLive(serverConfig.getQueryCacheMaxTimeToLive());
+    queryOptions.setSingleFlight(serverConfig.isCacheSingleFlight());
+    queryOptions.setRefreshAheadPercent(serverConfig.getCacheRefreshAheadPercent());
 
     ServerCacheFactory cacheFactory = serverConfig.getServerCacheFactory();
     if (cacheFactory == null) {
@@ -191,7 +198,15 @@ public class DefaultContainer implements SpiContainer {
       }
     }
 
-    return new DefaultServerCacheManager(cacheFactory, beanOptions, queryOptions);
+    ServerCacheOptions missingOptions = null;
+    if (serverConfig.getCacheMissingTimeToLive() > 0) {
+      // ids and natural keys not found, held for a short time
+      missingOptions = new ServerCacheOptions();
+      missingOptions.setMaxSize(serverConfig.getCacheMaxSize());
+      missingOptions.setMaxSecsToLive(serverConfig.getCacheMissingTimeToLive());
+    }
+
+    return new DefaultServerCacheManager(cacheFactory, beanOptions, queryOptions, missingOptions);
   }
 
   /**
@@ -265,6 +280,29 @@ public class DefaultContainer implements SpiContainer {
     }
   }
 
+  /**
+   * Set the read only DataSource if it has not been set and read only urls are configured.
+   */
+  private void setReadOnlyDataSource(ServerConfig config) {
+
+    DataSourceConfig dsConfig = config.getDataSourceConfig();
+    if (config.getReadOnlyDataSource() != null || config.getDataSource() == null || dsConfig == null) {
+      return;
+    }
+    List<String> readOnlyUrls = dsConfig.getReadOnlyUrls();
+    if (readOnlyUrls == null || readOnlyUrls.isEmpty()) {
+      return;
+    }
+
+    DataSourceAlert notify = new SimpleDataSourceAlert();
+    List<DataSourcePool> replicas = new ArrayList<DataSourcePool>(readOnlyUrls.size());
+    for (int i = 0; i < readOnlyUrls.size(); i++) {
+      DataSourceConfig roConfig = dsConfig.copy(readOnlyUrls.get(i));
+      replicas.add(new DataSourcePool(notify, config.getName() + "-ro" + i, roConfig, createListener(config, roConfig)));
+    }
+    config.setReadOnlyDataSource(new ReadReplicaDataSource(replicas, dsConfig.isReadOnlyLeastBusy()));
+  }
+
   private DataSource getDataSourceFromConfig(ServerConfig config) {
 
     if (DbOffline.isSet()) {
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.avaje.ebean.meta.MetaBeanInfo;
+import com.avaje.ebean.meta.MetaQueryPlanCacheStatistic;
 import com.avaje.ebean.meta.MetaQueryPlanStatistic;
 import com.avaje.ebean.meta.MetaInfoManager;
 import com.avaje.ebean.meta.MetaObjectGraphNodeStats;
@@ -42,6 +43,21 @@ public class DefaultMetaInfoManager implements MetaInfoManager {
     return list;    
   }
   
+  @Override
+  public List<MetaQueryPlanCacheStatistic> collectQueryPlanCacheStatistics(boolean reset) {
+
+    List<MetaQueryPlanCacheStatistic> list = new ArrayList<MetaQueryPlanCacheStatistic>();
+
+    for (MetaBeanInfo metaBeanInfo : getMetaBeanInfoList()) {
+      MetaQueryPlanCacheStatistic statistic = metaBeanInfo.getQueryPlanCacheStatistic(reset);
+      if (statistic.getPlanCount() > 0 || statistic.getMissCount() > 0) {
+        list.add(statistic);
+      }
+    }
+
+    return list;
+  }
+
   public List<MetaObjectGraphNodeStats> collectNodeStatistics(boolean reset) {
 
     List<MetaObjectGraphNodeStats> list = new ArrayList<MetaObjectGraphNodeStats>();
@@ -8,6 +8,7 @@ import com.avaje.ebean.bean.EntityBeanIntercept;
 import com.avaje.ebean.bean.ObjectGraphNode;
 import com.avaje.ebean.bean.PersistenceContext;
 import com.avaje.ebean.bean.PersistenceContext.WithOption;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
 import com.avaje.ebean.cache.ServerCacheManager;
 import com.avaje.ebean.config.DbMigrationConfig;
 import com.avaje.ebean.config.EncryptKeyManager;
@@ -38,6 +39,8 @@ import com.avaje.ebeaninternal.api.SpiSqlQuery;
 import com.avaje.ebeaninternal.api.SpiTransaction;
 import com.avaje.ebeaninternal.api.TransactionEventTable;
 import com.avaje.ebeaninternal.server.autotune.AutoTuneService;
+import com.avaje.ebeaninternal.server.cache.CacheWarming;
+import com.avaje.ebeaninternal.server.cache.SingleFlight;
 import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
 import com.avaje.ebeaninternal.server.deploy.BeanDescriptorManager;
 import com.avaje.ebeaninternal.server.deploy.BeanProperty;
@@ -45,19 +48,25 @@ import com.avaje.ebeaninternal.server.deploy.DNativeQuery;
 import com.avaje.ebeaninternal.server.deploy.DeployNamedQuery;
 import com.avaje.ebeaninternal.server.deploy.DeployNamedUpdate;
 import com.avaje.ebeaninternal.server.deploy.InheritInfo;
+import com.avaje.ebeaninternal.server.dto.DtoBeanManager;
 import com.avaje.ebeaninternal.server.el.ElFilter;
 import com.avaje.ebeaninternal.server.lib.ShutdownManager;
 import com.avaje.ebeaninternal.server.query.CQuery;
 import com.avaje.ebeaninternal.server.query.CQueryEngine;
+import com.avaje.ebeaninternal.server.query.CQueryPlanWarmup;
 import com.avaje.ebeaninternal.server.query.CallableQueryIds;
 import com.avaje.ebeaninternal.server.query.CallableQueryList;
 import com.avaje.ebeaninternal.server.query.CallableQueryRowCount;
 import com.avaje.ebeaninternal.server.query.CallableSqlQueryList;
+import com.avaje.ebeaninternal.server.query.DtoQueryEngine;
+import com.avaje.ebeaninternal.server.query.KeysetPaging;
 import com.avaje.ebeaninternal.server.query.LimitOffsetPagedList;
 import com.avaje.ebeaninternal.server.query.QueryFutureIds;
 import com.avaje.ebeaninternal.server.query.QueryFutureList;
 import com.avaje.ebeaninternal.server.query.QueryFutureRowCount;
+import com.avaje.ebeaninternal.server.query.QueryStream;
 import com.avaje.ebeaninternal.server.query.SqlQueryFutureList;
+import com.avaje.ebeaninternal.server.querydefn.DefaultDtoQuery;
 import com.avaje.ebeaninternal.server.querydefn.DefaultOrmQuery;
 import com.avaje.ebeaninternal.server.querydefn.DefaultOrmUpdate;
 import com.avaje.ebeaninternal.server.querydefn.DefaultRelationalQuery;
@@ -85,6 +94,7 @@ import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
 
 /**
  * The default server side implementation of EbeanServer.
@@ -128,6 +138,10 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
 
   private final RelationalQueryEngine relationalQueryEngine;
 
+  private final DtoQueryEngine dtoQueryEngine;
+
+  private final DtoBeanManager dtoBeanManager;
+
   private final ServerCacheManager serverCacheManager;
 
   private final BeanDescriptorManager beanDescriptorManager;
@@ -148,6 +162,16 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
 
   private final SpiBackgroundExecutor backgroundExecutor;
 
+  /**
+   * The most recent run of the cache warming queries (not started until the first run).
+   */
+  private volatile CacheWarming cacheWarming = new CacheWarming(1, 0);
+
+  /**
+   * Writes and warms up the manifest of hot query plans (null when not configured).
+   */
+  private final CQueryPlanWarmup queryPlanWarmup;
+
   private final DefaultBeanLoader beanLoader;
 
   private final EncryptKeyManager encryptKeyManager;
@@ -215,6 +239,9 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     this.beanDescriptorManager = config.getBeanDescriptorManager();
     beanDescriptorManager.setEbeanServer(this);
 
+    String warmupFile = serverConfig.getQueryPlanWarmupFile();
+    this.queryPlanWarmup = (warmupFile == null) ? null : new CQueryPlanWarmup(this, warmupFile, serverConfig.getQueryPlanWarmupMaxPlans());
+
     this.updateAllPropertiesInBatch = serverConfig.isUpdateAllPropertiesInBatch();
     this.collectQueryOrigins = serverConfig.isCollectQueryOrigins();
     this.collectQueryStatsByNode = serverConfig.isCollectQueryStatsByNode();
@@ -227,6 +254,8 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     this.persister = config.createPersister(this);
     this.queryEngine = config.createOrmQueryEngine();
     this.relationalQueryEngine = config.createRelationalQueryEngine();
+    this.dtoQueryEngine = config.createDtoQueryEngine();
+    this.dtoBeanManager = config.createDtoBeanManager();
 
     this.autoTuneService = config.createAutoTuneService(this);
     this.readAuditPrepare = config.getReadAuditPrepare();
@@ -366,6 +395,10 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     if (migrationConfig != null) {
       migrationConfig.generateOnStart(this);
     }
+    if (queryPlanWarmup != null) {
+      // build the hot query plans of the previous run before traffic arrives
+      backgroundExecutor.execute(queryPlanWarmup);
+    }
   }
 
   /**
@@ -399,6 +432,7 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
       return;
     }
     shutdownPlugins();
+    writeQueryPlanWarmup();
 
     autoTuneService.shutdown();
     // shutdown background threads
@@ -408,6 +442,20 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     shutdown = true;
   }
 
+  /**
+   * Write the manifest of hot query plans warmed up on the next startup.
+   */
+  private void writeQueryPlanWarmup() {
+    if (queryPlanWarmup != null) {
+      try {
+        int count = queryPlanWarmup.writeManifest();
+        logger.debug("Wrote {} query plans to the query plan warm up manifest", count);
+      } catch (Throwable e) {
+        logger.error("Error writing the query plan warm up manifest", e);
+      }
+    }
+  }
+
   private void shutdownPlugins() {
 
     for (SpiServerPlugin plugin : serverPlugins) {
@@ -438,10 +486,12 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
    * Run the cache warming queries on all beans that have them defined.
    */
   public void runCacheWarming() {
+    CacheWarming warming = createCacheWarming();
     List<BeanDescriptor<?>> descList = beanDescriptorManager.getBeanDescriptorList();
     for (int i = 0; i < descList.size(); i++) {
-      descList.get(i).runCacheWarming();
+      descList.get(i).addCacheWarming(warming);
     }
+    warming.run(backgroundExecutor);
   }
 
   public void runCacheWarming(Class<?> beanType) {
@@ -450,10 +500,22 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
       String msg = "Is " + beanType + " an entity? Could not find a BeanDescriptor";
       throw new PersistenceException(msg);
     } else {
-      desc.runCacheWarming();
+      CacheWarming warming = createCacheWarming();
+      desc.addCacheWarming(warming);
+      warming.run(backgroundExecutor);
     }
   }
 
+  private CacheWarming createCacheWarming() {
+    CacheWarming warming = new CacheWarming(serverConfig.getCacheWarmingThreads(), serverConfig.getCacheWarmingRangeSize());
+    this.cacheWarming = warming;
+    return warming;
+  }
+
+  public CacheWarmingStatistics getCacheWarmingStatistics() {
+    return cacheWarming.getStatistics();
+  }
+
   /**
    * Compile a query. Only valid for ORM queries.
    */
@@ -770,7 +832,7 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
         if (isolation != null) {
           isoLevel = isolation.getLevel();
         }
-        t = transactionManager.createTransaction(true, isoLevel);
+        t = transactionManager.createTransaction(true, isoLevel, txScope.isReadonly());
       }
     }
 
@@ -1006,6 +1068,11 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     return new DefaultRelationalQuery(this, sql);
   }
 
+  @Override
+  public <T> DtoQuery<T> findDto(Class<T> dtoType, String sql) {
+    return new DefaultDtoQuery<T>(this, dtoBeanManager.getDescriptor(dtoType), sql);
+  }
+
   public SqlQuery createNamedSqlQuery(String namedQuery) {
     DNativeQuery nq = beanDescriptorManager.getNativeQuery(namedQuery);
     if (nq == null) {
@@ -1182,7 +1249,65 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
       if (bean != null) {
         return bean;
       }
+      if (desc.calculateUseCache(spiQuery.isUseBeanCache())) {
+        // a transaction may have inserted a bean recorded as missing
+        boolean useMissing = isNoTransaction(t);
+        if (useMissing && desc.cacheMissingContains(spiQuery.getId())) {
+          // known not to exist
+          return null;
+        }
+        SingleFlight singleFlight = desc.cacheBeanSingleFlight();
+        if (singleFlight != null) {
+          Object id = spiQuery.getId();
+          if (singleFlight.begin(id)) {
+            try {
+              return findIdQueryMissing(desc, spiQuery, t);
+            } finally {
+              singleFlight.end(id);
+            }
+          }
+          // waited for the same bean loaded by another thread
+          bean = findIdCheckPersistenceContextAndCache(t, desc, spiQuery);
+          if (bean != null || (useMissing && desc.cacheMissingContains(spiQuery.getId()))) {
+            return bean;
+          }
+        }
+        return findIdQueryMissing(desc, spiQuery, t);
+      }
+    }
+
+    return findIdQuery(desc, spiQuery, t);
+  }
+
+  /**
+   * Find by id recording the id as missing when not found.
+   */
+  private <T> T findIdQueryMissing(BeanDescriptor<T> desc, SpiQuery<T> spiQuery, Transaction t) {
+
+    boolean recordMissing = isNoTransaction(t);
+    long stamp = desc.queryCacheStamp();
+    T bean = findIdQuery(desc, spiQuery, t);
+    if (bean == null && recordMissing) {
+      desc.cacheMissingPut(spiQuery.getId(), stamp);
     }
+    return bean;
+  }
+
+  /**
+   * Return true if the query does not execute in an existing transaction.
+   * <p>
+   * Ids and natural keys are only recorded as missing when not found outside of a
+   * transaction as a transaction may have uncommitted changes that are rolled back.
+   * Likewise they are only read as missing outside of a transaction as a transaction
+   * may have inserted them.
+   * </p>
+   */
+  private boolean isNoTransaction(Transaction t) {
+    return t == null && getCurrentServerTransaction() == null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T findIdQuery(BeanDescriptor<T> desc, SpiQuery<T> spiQuery, Transaction t) {
 
     SpiOrmQueryRequest<T> request = createQueryRequest(desc, spiQuery, t);
     try {
@@ -1205,13 +1330,25 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
 
     BeanDescriptor<T> desc = beanDescriptorManager.getBeanDescriptor(query.getBeanType());
 
-    T bean = desc.cacheNaturalKeyLookup((SpiQuery<T>) query, (SpiTransaction) t);
+    SpiQuery<T> spiQuery = (SpiQuery<T>) query;
+    T bean = desc.cacheNaturalKeyLookup(spiQuery, (SpiTransaction) t);
     if (bean != null) {
       return bean;
     }
+    // a transaction may have inserted a bean with a natural key recorded as missing
+    boolean noTransaction = isNoTransaction(t);
+    if (noTransaction && desc.cacheNaturalKeyMissing(spiQuery)) {
+      // natural key known not to exist
+      return null;
+    }
+
+    long stamp = desc.queryCacheStamp();
 
     // a query that is expected to return either 0 or 1 rows
     List<T> list = findList(query, t);
+    if (list.isEmpty() && noTransaction) {
+      desc.cacheNaturalKeyMissingPut(spiQuery, stamp);
+    }
     return extractUnique(list);
   }
 
@@ -1243,6 +1380,7 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
 
     } finally {
       request.endTransIfRequired();
+      request.endQueryCacheLoad();
     }
   }
 
@@ -1262,6 +1400,7 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
 
     } finally {
       request.endTransIfRequired();
+      request.endQueryCacheLoad();
     }
   }
 
@@ -1389,6 +1528,22 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     return new LimitOffsetPagedList<T>(this, spiQuery);
   }
 
+  @Override
+  public <T> KeysetPage<T> findKeysetPage(Query<T> query, Transaction transaction, String cursor, int pageSize) {
+    return createKeysetPaging(query).findPage(this, transaction, cursor, pageSize);
+  }
+
+  @Override
+  public <T> KeysetPage<T> findKeysetPage(Query<T> query, Transaction transaction, Object[] lastKeyValues, int pageSize) {
+    return createKeysetPaging(query).findPage(this, transaction, lastKeyValues, pageSize);
+  }
+
+  private <T> KeysetPaging<T> createKeysetPaging(Query<T> query) {
+    SpiQuery<T> spiQuery = (SpiQuery<T>) query;
+    BeanDescriptor<T> desc = getBeanDescriptor(spiQuery.getBeanType());
+    return new KeysetPaging<T>(desc, spiQuery, databasePlatform.isKeysetInExpandedForm());
+  }
+
   public <T> void findEach(Query<T> query, QueryEachConsumer<T> consumer, Transaction t) {
 
     SpiOrmQueryRequest<T> request = createQueryRequest(Type.ITERATE, query, t);
@@ -1421,6 +1576,11 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     }
   }
 
+  @Override
+  public <T> Stream<T> findStream(Query<T> query, Transaction t) {
+    return QueryStream.create(this, query, t);
+  }
+
   @Override
   public <T> List<Version<T>> findVersions(Query<T> query, Transaction transaction) {
 
@@ -1437,6 +1597,44 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
   @SuppressWarnings("unchecked")
   public <T> List<T> findList(Query<T> query, Transaction t) {
 
+    CacheIdLookup<T> idLookup = createCacheIdLookup((SpiQuery<T>) query, t);
+    if (idLookup != null) {
+      if (idLookup.isAllHit()) {
+        return idLookup.getResult();
+      }
+      // only fetch the ids that are not in the bean cache
+      idLookup.queryMissing();
+      try {
+        return idLookup.getResult(findListQuery(query, t));
+      } finally {
+        idLookup.restore();
+      }
+    }
+    return findListQuery(query, t);
+  }
+
+  /**
+   * Return the bean cache lookup for an id in query (or null if it does not apply).
+   */
+  private <T> CacheIdLookup<T> createCacheIdLookup(SpiQuery<T> query, Transaction t) {
+
+    BeanDescriptor<T> desc = beanDescriptorManager.getBeanDescriptor(query.getBeanType());
+    if (desc == null || !desc.isBeanCaching()) {
+      return null;
+    }
+    if (t == null) {
+      t = getCurrentServerTransaction();
+    }
+    PersistenceContext context = null;
+    if (t != null && useTransactionPersistenceContext(query)) {
+      context = ((SpiTransaction) t).getPersistenceContext();
+    }
+    return CacheIdLookup.of(desc, query, context);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> List<T> findListQuery(Query<T> query, Transaction t) {
+
     SpiOrmQueryRequest<T> request = createQueryRequest(Type.LIST, query, t);
 
     Object result = request.getFromQueryCache();
@@ -1450,6 +1648,7 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
       
     } finally {
       request.endTransIfRequired();
+      request.endQueryCacheLoad();
     }
   }
 
@@ -1514,6 +1713,39 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     }
   }
 
+  @Override
+  public <T> List<T> findList(DtoQuery<T> query, Transaction t) {
+
+    DtoQueryRequest<T> request = new DtoQueryRequest<T>(this, dtoQueryEngine, query, t);
+    try {
+      request.initTransIfRequired();
+      return request.findList();
+
+    } finally {
+      request.endTransIfRequired();
+    }
+  }
+
+  @Override
+  public <T> void findEach(DtoQuery<T> query, QueryEachConsumer<T> consumer, Transaction t) {
+
+    DtoQueryRequest<T> request = new DtoQueryRequest<T>(this, dtoQueryEngine, query, t);
+    try {
+      request.initTransIfRequired();
+      request.findEach(consumer);
+
+    } finally {
+      request.endTransIfRequired();
+    }
+  }
+
+  @Override
+  public <T> T findUnique(DtoQuery<T> query, Transaction t) {
+
+    List<T> list = findList(query, t);
+    return extractUnique(list);
+  }
+
   /**
    * Persist the bean by either performing an insert or update.
    */
@@ -2114,6 +2346,10 @@ public final class DefaultServer implements SpiServer, SpiEbeanServer {
     return transactionManager.createQueryTransaction();
   }
 
+  public SpiTransaction createQueryTransaction(boolean useReadReplica) {
+    return transactionManager.createQueryTransaction(useReadReplica);
+  }
+
 
   /**
    * Create a CallStack object.
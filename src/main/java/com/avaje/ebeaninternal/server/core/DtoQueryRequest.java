@@ -0,0 +1,84 @@
+package com.avaje.ebeaninternal.server.core;
+
+import com.avaje.ebean.DtoQuery;
+import com.avaje.ebean.QueryEachConsumer;
+import com.avaje.ebean.Transaction;
+import com.avaje.ebeaninternal.api.SpiDtoQuery;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.api.SpiTransaction;
+import com.avaje.ebeaninternal.server.query.DtoQueryEngine;
+
+import java.util.List;
+
+/**
+ * Wraps the objects involved in executing a DtoQuery.
+ */
+public final class DtoQueryRequest<T> {
+
+  private final SpiDtoQuery<T> query;
+
+  private final DtoQueryEngine queryEngine;
+
+  private final SpiEbeanServer ebeanServer;
+
+  private SpiTransaction trans;
+
+  private boolean createdTransaction;
+
+  public DtoQueryRequest(SpiEbeanServer server, DtoQueryEngine engine, DtoQuery<T> q, Transaction t) {
+    this.ebeanServer = server;
+    this.queryEngine = engine;
+    this.query = (SpiDtoQuery<T>) q;
+    this.trans = (SpiTransaction) t;
+  }
+
+  /**
+   * Create a transaction if none currently exists.
+   */
+  public void initTransIfRequired() {
+    if (trans == null) {
+      trans = ebeanServer.getCurrentServerTransaction();
+      if (trans == null || !trans.isActive()) {
+        // create a local readOnly transaction
+        trans = ebeanServer.createServerTransaction(false, -1);
+        createdTransaction = true;
+      }
+    }
+  }
+
+  /**
+   * End the transaction if it was locally created.
+   */
+  public void endTransIfRequired() {
+    if (createdTransaction) {
+      trans.commit();
+    }
+  }
+
+  public List<T> findList() {
+    return queryEngine.findList(this);
+  }
+
+  public void findEach(QueryEachConsumer<T> consumer) {
+    queryEngine.findEach(this, consumer);
+  }
+
+  /**
+   * Return the query that is to be executed.
+   */
+  public SpiDtoQuery<T> getQuery() {
+    return query;
+  }
+
+  public SpiTransaction getTransaction() {
+    return trans;
+  }
+
+  public boolean isLogSql() {
+    return trans.isLogSql();
+  }
+
+  public boolean isLogSummary() {
+    return trans.isLogSummary();
+  }
+}
@@ -27,6 +27,7 @@ import com.avaje.ebeaninternal.server.deploy.generatedproperty.GeneratedProperty
 import com.avaje.ebeaninternal.server.deploy.parse.DeployCreateProperties;
 import com.avaje.ebeaninternal.server.deploy.parse.DeployInherit;
 import com.avaje.ebeaninternal.server.deploy.parse.DeployUtil;
+import com.avaje.ebeaninternal.server.dto.DtoBeanManager;
 import com.avaje.ebeaninternal.server.expression.DefaultExpressionFactory;
 import com.avaje.ebeaninternal.server.lib.sql.DataSourcePool;
 import com.avaje.ebeaninternal.server.persist.Binder;
@@ -34,6 +35,7 @@ import com.avaje.ebeaninternal.server.persist.DefaultPersister;
 import com.avaje.ebeaninternal.server.query.CQueryEngine;
 import com.avaje.ebeaninternal.server.query.DefaultOrmQueryEngine;
 import com.avaje.ebeaninternal.server.query.DefaultRelationalQueryEngine;
+import com.avaje.ebeaninternal.server.query.DtoQueryEngine;
 import com.avaje.ebeaninternal.server.readaudit.DefaultReadAuditLogger;
 import com.avaje.ebeaninternal.server.readaudit.DefaultReadAuditPrepare;
 import com.avaje.ebeaninternal.server.text.json.DJsonContext;
@@ -289,6 +291,14 @@ public class InternalConfiguration {
     return new DefaultRelationalQueryEngine(binder, serverConfig.getDatabaseBooleanTrue());
   }
 
+  public DtoQueryEngine createDtoQueryEngine() {
+    return new DtoQueryEngine(binder);
+  }
+
+  public DtoBeanManager createDtoBeanManager() {
+    return new DtoBeanManager(typeManager);
+  }
+
   public OrmQueryEngine createOrmQueryEngine() {
     return new DefaultOrmQueryEngine(cQueryEngine);
   }
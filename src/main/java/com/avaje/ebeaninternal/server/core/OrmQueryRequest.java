@@ -22,6 +22,7 @@ import com.avaje.ebeaninternal.api.SpiEbeanServer;
 import com.avaje.ebeaninternal.api.SpiQuery;
 import com.avaje.ebeaninternal.api.SpiQuery.Type;
 import com.avaje.ebeaninternal.api.SpiTransaction;
+import com.avaje.ebeaninternal.server.cache.SingleFlight;
 import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
 import com.avaje.ebeaninternal.server.deploy.BeanProperty;
 import com.avaje.ebeaninternal.server.deploy.BeanPropertyAssocMany;
@@ -57,6 +58,22 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
 
   private HashQueryPlan queryPlanHash;
 
+  private CQueryPlan queryPlan;
+
+  private long queryPlanStartNanos;
+
+  /**
+   * Copy of the query captured on a query plan miss for query plan warm up.
+   */
+  private SpiQuery<T> warmupQuery;
+
+  private long queryCacheStamp;
+
+  /**
+   * Set when this request executes the query for other requests waiting on the same query.
+   */
+  private SingleFlight queryCacheLoad;
+
   /**
    * Create the InternalQueryRequest.
    */
@@ -130,6 +147,12 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
    */
   public void calculateQueryPlanHash() {
     this.queryPlanHash = query.queryPlanHash(this);
+    if (beanDescriptor.isQueryPlanWarmup() && isWarmupCandidate() && !beanDescriptor.containsQueryPlan(queryPlanHash)) {
+      // capture the query in the state matching the hash such that the plan can be built after a restart
+      // (without the bind values as the query is written to the warm up manifest)
+      this.warmupQuery = query.copyForPlanKey();
+      warmupQuery.setType(query.getType());
+    }
   }
 
   public boolean isRawSql() {
@@ -184,7 +207,7 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
       transaction = ebeanServer.getCurrentServerTransaction();
       if (transaction == null) {
         // create an implicit transaction to execute this query
-        transaction = ebeanServer.createQueryTransaction();
+        transaction = ebeanServer.createQueryTransaction(query.isUseReadReplica());
         createdTransaction = true;
       }
     }
@@ -355,7 +378,14 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
    * query plan for this query exists.
    */
   public CQueryPlan getQueryPlan() {
-    return beanDescriptor.getQueryPlan(queryPlanHash);
+    CQueryPlan plan = beanDescriptor.getQueryPlan(queryPlanHash);
+    if (plan != null) {
+      this.queryPlan = plan;
+    } else {
+      // the query plan is built and then put
+      this.queryPlanStartNanos = System.nanoTime();
+    }
+    return plan;
   }
 
   /**
@@ -374,7 +404,35 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
    * Put the QueryPlan into the cache.
    */
   public void putQueryPlan(CQueryPlan queryPlan) {
-    beanDescriptor.putQueryPlan(queryPlanHash, queryPlan);
+    this.queryPlan = queryPlan;
+    if (warmupQuery != null) {
+      queryPlan.setWarmupQuery(warmupQuery);
+    }
+    beanDescriptor.putQueryPlan(queryPlanHash, queryPlan, System.nanoTime() - queryPlanStartNanos);
+  }
+
+  /**
+   * Return true if the query can be replayed to warm up its query plan.
+   * <p>
+   * This excludes lazy loading, raw sql and history queries along with the query types that
+   * do not use the query plan cache.
+   * </p>
+   */
+  private boolean isWarmupCandidate() {
+    if (query.getMode() != SpiQuery.Mode.NORMAL || query.isRawSql() || query.isSqlSelect()
+        || query.getTemporalMode() == SpiQuery.TemporalMode.VERSIONS) {
+      return false;
+    }
+    switch (query.getType()) {
+      case BEAN:
+      case ITERATE:
+      case LIST:
+      case SET:
+      case MAP:
+        return true;
+      default:
+        return false;
+    }
   }
 
   public boolean isUseBeanCache() {
@@ -391,8 +449,25 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
     }
 
     cacheKey = query.queryHash();
+    // read before executing the query such that concurrent changes invalidate the result
+    queryCacheStamp = beanDescriptor.queryCacheStamp();
+    if (query.isRefreshQueryCache()) {
+      // execute the query and replace the cached result
+      return null;
+    }
 
     BeanCollection<T> cached = beanDescriptor.queryCacheGet(cacheKey);
+    if (cached == null) {
+      SingleFlight singleFlight = beanDescriptor.queryCacheSingleFlight();
+      if (singleFlight != null) {
+        if (singleFlight.begin(cacheKey)) {
+          queryCacheLoad = singleFlight;
+        } else {
+          // waited for the same query executed by another thread
+          cached = beanDescriptor.queryCacheGet(cacheKey);
+        }
+      }
+    }
 
     if (cached != null && isAuditReads() && readAuditQueryType()) {
       // raw sql can't use L2 cache so normal queries only in here
@@ -425,8 +500,19 @@ public final class OrmQueryRequest<T> extends BeanRequest implements BeanQueryRe
     }
   }
 
+  public void endQueryCacheLoad() {
+    if (queryCacheLoad != null) {
+      queryCacheLoad.end(cacheKey);
+      queryCacheLoad = null;
+    }
+  }
+
+  /**
+   * Put the query result into the query cache along with the tables the query used.
+   */
   public void putToQueryCache(BeanCollection<T> queryResult) {
-    beanDescriptor.queryCachePut(cacheKey, queryResult);
+    String[] tables = (queryPlan == null) ? null : queryPlan.getDependentTables();
+    beanDescriptor.queryCachePut(cacheKey, queryResult, queryCacheStamp, tables, query);
   }
 
   /**
@@ -104,9 +104,19 @@ public interface SpiOrmQueryRequest<T> {
 
   /**
    * Try to get the query result from the query cache.
+   * <p>
+   * With single flight loading this may wait for the same query executed by another
+   * thread or make this request the one executing the query in which case
+   * endQueryCacheLoad() must be called after executing the query.
+   * </p>
    */
   BeanCollection<T> getFromQueryCache();
 
+  /**
+   * Release requests waiting for the query result this request executed (if any).
+   */
+  void endQueryCacheLoad();
+
   /**
    * Return the Database platform like clause.
    */
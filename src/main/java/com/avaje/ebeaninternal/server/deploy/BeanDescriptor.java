@@ -27,6 +27,7 @@ import com.avaje.ebean.event.readaudit.ReadAuditLogger;
 import com.avaje.ebean.event.readaudit.ReadAuditPrepare;
 import com.avaje.ebean.event.readaudit.ReadEvent;
 import com.avaje.ebean.meta.MetaBeanInfo;
+import com.avaje.ebean.meta.MetaQueryPlanCacheStatistic;
 import com.avaje.ebean.meta.MetaQueryPlanStatistic;
 import com.avaje.ebean.plugin.SpiBeanType;
 import com.avaje.ebeaninternal.api.HashQueryPlan;
@@ -36,6 +37,8 @@ import com.avaje.ebeaninternal.api.SpiTransaction;
 import com.avaje.ebeaninternal.api.SpiUpdatePlan;
 import com.avaje.ebeaninternal.api.TransactionEventTable.TableIUD;
 import com.avaje.ebeaninternal.server.cache.CachedBeanData;
+import com.avaje.ebeaninternal.server.cache.CacheWarming;
+import com.avaje.ebeaninternal.server.cache.SingleFlight;
 import com.avaje.ebeaninternal.server.core.CacheOptions;
 import com.avaje.ebeaninternal.server.core.DefaultSqlUpdate;
 import com.avaje.ebeaninternal.server.core.DiffHelp;
@@ -53,6 +56,7 @@ import com.avaje.ebeaninternal.server.el.ElPropertyDeploy;
 import com.avaje.ebeaninternal.server.el.ElPropertyValue;
 import com.avaje.ebeaninternal.server.persist.DmlUtil;
 import com.avaje.ebeaninternal.server.query.CQueryPlan;
+import com.avaje.ebeaninternal.server.query.CQueryPlanCache;
 import com.avaje.ebeaninternal.server.query.CQueryPlanStats.Snapshot;
 import com.avaje.ebeaninternal.server.query.SplitName;
 import com.avaje.ebeaninternal.server.querydefn.OrmQueryDetail;
@@ -87,7 +91,12 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
 
   private final ConcurrentHashMap<Integer, SpiUpdatePlan> updatePlanCache = new ConcurrentHashMap<Integer, SpiUpdatePlan>();
 
-  private final ConcurrentHashMap<HashQueryPlan, CQueryPlan> queryPlanCache = new ConcurrentHashMap<HashQueryPlan, CQueryPlan>();
+  private final CQueryPlanCache queryPlanCache;
+
+  /**
+   * Set when the queries that build query plans are captured for warm up after a restart.
+   */
+  private final boolean queryPlanWarmup;
 
   private final ConcurrentHashMap<String, ElPropertyValue> elCache = new ConcurrentHashMap<String, ElPropertyValue>();
 
@@ -442,7 +451,9 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     boolean noRelationships = propertiesOne.length + propertiesMany.length == 0;
     
     this.cacheSharableBeans = noRelationships && deploy.getCacheOptions().isReadOnly();
-    this.cacheHelp = new BeanDescriptorCacheHelp<T>(this, owner.getCacheManager(), deploy.getCacheOptions(), cacheSharableBeans, propertiesOneImported);
+    this.queryPlanCache = new CQueryPlanCache(beanType, queryPlanCacheMaxSize(owner));
+    this.queryPlanWarmup = owner.getServerConfig() != null && owner.getServerConfig().getQueryPlanWarmupFile() != null;
+    this.cacheHelp = new BeanDescriptorCacheHelp<T>(this, owner.getCacheManager(), deploy.getCacheOptions(), cacheSharableBeans, propertiesOneImported, owner.getTableVersions());
     this.jsonHelp = new BeanDescriptorJsonHelp<T>(this);
     this.draftHelp = new BeanDescriptorDraftHelp<T>(this);
     
@@ -832,10 +843,10 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
   }
 
   /**
-   * Execute the warming cache query (if defined) and load the cache.
+   * Add the warming cache query (if defined) to the cache warming run.
    */
-  public void runCacheWarming() {
-    cacheHelp.runCacheWarming(ebeanServer);
+  public void addCacheWarming(CacheWarming warming) {
+    cacheHelp.addCacheWarming(ebeanServer, warming);
   }
 
   /**
@@ -922,6 +933,34 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     cacheHelp.queryCacheClear();
   }
 
+  /**
+   * Invalidate cached query results that depend on the tables of this bean type.
+   */
+  public void queryCacheTableChanged() {
+    cacheHelp.queryCacheTableChanged();
+  }
+
+  /**
+   * Return the SingleFlight deduplicating query cache misses or null if not enabled.
+   */
+  public SingleFlight queryCacheSingleFlight() {
+    return cacheHelp.queryCacheSingleFlight();
+  }
+
+  /**
+   * Return the SingleFlight deduplicating bean cache misses or null if not enabled.
+   */
+  public SingleFlight cacheBeanSingleFlight() {
+    return cacheHelp.beanCacheSingleFlight();
+  }
+
+  /**
+   * Return the stamp to read before executing a query that may be put into the query cache.
+   */
+  public long queryCacheStamp() {
+    return cacheHelp.queryCacheStamp();
+  }
+
   /**
    * Get a query result from the query cache.
    */
@@ -932,8 +971,8 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
   /**
    * Put a query result into the query cache.
    */
-  public void queryCachePut(Object id, BeanCollection<T> query) {
-    cacheHelp.queryCachePut(id, query);
+  public void queryCachePut(Object id, BeanCollection<T> result, long stamp, String[] tables, SpiQuery<T> query) {
+    cacheHelp.queryCachePut(id, result, stamp, tables, query);
   }
 
   /**
@@ -983,6 +1022,13 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     cacheHelp.beanCachePut(bean);
   }
 
+  /**
+   * Put all the beans into the bean cache.
+   */
+  public void cacheBeanPutAll(Collection<?> beans) {
+    cacheHelp.beanCachePutAll(beans);
+  }
+
   /**
    * Return a bean from the bean cache (or null).
    */
@@ -990,12 +1036,33 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     return cacheHelp.beanCacheGet(query, context);
   }
 
+  /**
+   * Return the beans in the bean cache for the given ids (keyed by id).
+   */
+  public Map<Object, T> cacheBeanGetAll(Collection<?> ids, Boolean readOnly, PersistenceContext context) {
+    return cacheHelp.beanCacheGetAll(ids, readOnly, context);
+  }
+
+  /**
+   * Load the beans in the batch from the bean cache removing the ones that were loaded.
+   */
+  public void cacheBeanLoadAll(List<EntityBeanIntercept> batch) {
+    cacheHelp.beanCacheLoadAll(batch);
+  }
+
   /**
    * Remove a bean from the cache given its Id.
    */
   public void cacheBeanRemove(Object id) {
     cacheHelp.beanCacheRemove(id);
   }
+
+  /**
+   * Remove a bean from the near cache due to a change made by another server.
+   */
+  public void cacheBeanRemoveNear(Object id) {
+    cacheHelp.beanCacheRemoveNear(id);
+  }
   
   /**
    * Returns true if it managed to populate/load the bean from the cache.
@@ -1013,6 +1080,41 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     return cacheBeanLoad(bean, ebi, id);
   }
 
+  /**
+   * Return true if the id is known not to exist (negative caching).
+   */
+  public boolean cacheMissingContains(Object id) {
+    return cacheHelp.missingContains(id);
+  }
+
+  /**
+   * Record that the id was not found by a query executed after the stamp was read.
+   */
+  public void cacheMissingPut(Object id, long stamp) {
+    cacheHelp.missingPut(id, stamp);
+  }
+
+  /**
+   * Clear the ids and natural keys known not to exist.
+   */
+  public void cacheMissingClear() {
+    cacheHelp.missingClear();
+  }
+
+  /**
+   * Return true if the query is a natural key lookup for a key known not to exist.
+   */
+  public boolean cacheNaturalKeyMissing(SpiQuery<T> query) {
+    return cacheHelp.naturalKeyMissing(query);
+  }
+
+  /**
+   * Record that the natural key of the query was not found.
+   */
+  public void cacheNaturalKeyMissingPut(SpiQuery<T> query, long stamp) {
+    cacheHelp.naturalKeyMissingPut(query, stamp);
+  }
+
   /**
    * Try to hit the cache using the natural key.
    */
@@ -1135,8 +1237,9 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
   }
   
   public List<MetaQueryPlanStatistic> collectQueryPlanStatisticsInternal(boolean reset, boolean collectAll) {
-    List<MetaQueryPlanStatistic> list = new ArrayList<MetaQueryPlanStatistic>(queryPlanCache.size());
-    for (CQueryPlan queryPlan :  queryPlanCache.values()) {
+    List<CQueryPlan> plans = queryPlanCache.plans();
+    List<MetaQueryPlanStatistic> list = new ArrayList<MetaQueryPlanStatistic>(plans.size());
+    for (CQueryPlan queryPlan : plans) {
       Snapshot snapshot = queryPlan.getSnapshot(reset);
       if (collectAll || snapshot.getExecutionCount() > 0) {
         list.add(snapshot);
@@ -1145,11 +1248,16 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     return list;
   }
 
+  @Override
+  public MetaQueryPlanCacheStatistic getQueryPlanCacheStatistic(boolean reset) {
+    return queryPlanCache.getPlanStatistics(reset);
+  }
+
   /**
    * Reset the statistics on all the query plans.
    */
   public void clearQueryStatistics() {
-    for (CQueryPlan queryPlan : queryPlanCache.values()) {
+    for (CQueryPlan queryPlan : queryPlanCache.plans()) {
       queryPlan.resetStatistics();
     }
   }
@@ -1164,11 +1272,40 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
   }
 
   public CQueryPlan getQueryPlan(HashQueryPlan key) {
-    return queryPlanCache.get(key);
+    return queryPlanCache.getPlan(key);
+  }
+
+  /**
+   * Return true if the query plan is cached (without counting as a hit or miss).
+   */
+  public boolean containsQueryPlan(HashQueryPlan key) {
+    return queryPlanCache.containsPlan(key);
+  }
+
+  /**
+   * Put the query plan into the (size bounded) query plan cache.
+   */
+  public void putQueryPlan(HashQueryPlan key, CQueryPlan plan, long buildNanos) {
+    queryPlanCache.putPlan(key, plan, buildNanos);
+  }
+
+  /**
+   * Return the cached query plans.
+   */
+  public List<CQueryPlan> getQueryPlans() {
+    return queryPlanCache.plans();
   }
 
-  public void putQueryPlan(HashQueryPlan key, CQueryPlan plan) {
-    queryPlanCache.put(key, plan);
+  /**
+   * Return true if the queries that build query plans should be captured for warm up.
+   */
+  public boolean isQueryPlanWarmup() {
+    return queryPlanWarmup;
+  }
+
+  private static int queryPlanCacheMaxSize(BeanDescriptorMap owner) {
+    ServerConfig serverConfig = owner.getServerConfig();
+    return (serverConfig == null) ? 0 : serverConfig.getQueryPlanCacheMaxSize();
   }
 
   /**
@@ -2130,6 +2267,18 @@ public class BeanDescriptor<T> implements MetaBeanInfo, SpiBeanType<T> {
     return derivedTableJoins;
   }
 
+  /**
+   * Add the base table and any secondary tables (used to invalidate cached query results).
+   */
+  public void addDependentTables(Set<String> tables) {
+    if (baseTable != null) {
+      tables.add(baseTable);
+    }
+    for (int i = 0; i < derivedTableJoins.length; i++) {
+      tables.add(derivedTableJoins[i].getTable());
+    }
+  }
+
   /**
    * Return a collection of all BeanProperty. This includes transient properties.
    */
@@ -1,14 +1,25 @@
 package com.avaje.ebeaninternal.server.deploy;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avaje.ebean.EbeanServer;
 import com.avaje.ebean.Query;
+import com.avaje.ebean.QueryEachConsumer;
+import com.avaje.ebean.SqlRow;
 import com.avaje.ebean.bean.BeanCollection;
 import com.avaje.ebean.bean.EntityBean;
 import com.avaje.ebean.bean.EntityBeanIntercept;
@@ -18,11 +29,20 @@ import com.avaje.ebean.cache.ServerCacheManager;
 import com.avaje.ebeaninternal.api.SpiQuery;
 import com.avaje.ebeaninternal.api.SpiTransaction;
 import com.avaje.ebeaninternal.api.TransactionEventTable.TableIUD;
+import com.avaje.ebeaninternal.server.cache.CacheWarming;
+import com.avaje.ebeaninternal.server.cache.CacheWeigher;
 import com.avaje.ebeaninternal.server.cache.CachedBeanData;
 import com.avaje.ebeaninternal.server.cache.CachedBeanDataFromBean;
 import com.avaje.ebeaninternal.server.cache.CachedBeanDataToBean;
 import com.avaje.ebeaninternal.server.cache.CachedBeanDataUpdate;
 import com.avaje.ebeaninternal.server.cache.CachedManyIds;
+import com.avaje.ebeaninternal.server.cache.CachedQueryResult;
+import com.avaje.ebeaninternal.server.cache.DefaultServerCache;
+import com.avaje.ebeaninternal.server.cache.DefaultServerCacheManager;
+import com.avaje.ebeaninternal.server.cache.RefreshAheadLoader;
+import com.avaje.ebeaninternal.server.cache.SingleFlight;
+import com.avaje.ebeaninternal.server.cache.TableVersions;
+import com.avaje.ebeaninternal.server.cache.TwoTierServerCache;
 import com.avaje.ebeaninternal.server.core.CacheOptions;
 import com.avaje.ebeaninternal.server.core.PersistRequestBean;
 import com.avaje.ebeaninternal.server.querydefn.NaturalKeyBindParam;
@@ -41,6 +61,11 @@ public final class BeanDescriptorCacheHelp<T> {
   public static final Logger natLog = LoggerFactory.getLogger("org.avaje.ebean.cache.NATKEY");
   
   
+  /**
+   * The number of beans put into the bean cache at a time when warming the cache.
+   */
+  private static final int WARMING_BATCH_SIZE = 1000;
+
   private final BeanDescriptor<T> desc;
 
   private final ServerCacheManager cacheManager;
@@ -58,12 +83,36 @@ public final class BeanDescriptorCacheHelp<T> {
   
   private final BeanPropertyAssocOne<?>[] propertiesOneImported;
 
+  private final TableVersions tableVersions;
+
+  /**
+   * Estimates the size of bean and query cache entries for this bean type.
+   */
+  private final CacheWeigher weigher;
+
+  /**
+   * True if the bean cache has a remote tier shared by the servers of a cluster.
+   */
+  private final boolean sharedBeanCache;
+
   private ServerCache beanCache;
   private ServerCache naturalKeyCache;
   private ServerCache queryCache;
+  private ServerCache missingCache;
+
+  /**
+   * True once the missing cache has been obtained from the cache manager (which returns null
+   * when negative caching is not used).
+   */
+  private volatile boolean missingCacheResolved;
+
+  /**
+   * The stamp of the last query cache clear. Results stamped before this are not served.
+   */
+  private volatile long queryCacheClearStamp;
 
   public BeanDescriptorCacheHelp(BeanDescriptor<T> desc, ServerCacheManager cacheManager, CacheOptions cacheOptions,
-      boolean cacheSharableBeans, BeanPropertyAssocOne<?>[] propertiesOneImported) {
+      boolean cacheSharableBeans, BeanPropertyAssocOne<?>[] propertiesOneImported, TableVersions tableVersions) {
 
     this.desc = desc;
     this.beanType = desc.getBeanType();
@@ -72,6 +121,9 @@ public final class BeanDescriptorCacheHelp<T> {
     this.cacheOptions = cacheOptions;
     this.cacheSharableBeans = cacheSharableBeans;
     this.propertiesOneImported = propertiesOneImported;
+    this.tableVersions = tableVersions;
+    this.weigher = new CacheWeigher(desc.getPropertyCount());
+    this.sharedBeanCache = cacheManager instanceof DefaultServerCacheManager && ((DefaultServerCacheManager) cacheManager).isSharedBeanCache();
   }
 
   /**
@@ -82,26 +134,129 @@ public final class BeanDescriptorCacheHelp<T> {
       this.naturalKeyCache = cacheManager.getNaturalKeyCache(beanType);
     }
     if (cacheOptions.isUseCache()) {
-      this.beanCache = cacheManager.getBeanCache(beanType);
+      getBeanCache();
     }
   }
 
   /**
-   * Execute the warming cache query (if defined) and load the cache.
+   * Add the cache warming query (if defined) to the cache warming run.
+   * <p>
+   * A table with more rows than the range size (and an integer id) is split into ranges
+   * of ids that are loaded in parallel. Each range is streamed using findEach and put
+   * into the bean cache in batches such that the whole table is not held in memory.
+   * </p>
    */
-  public void runCacheWarming(EbeanServer ebeanServer) {
+  public void addCacheWarming(EbeanServer ebeanServer, CacheWarming warming) {
     if (cacheOptions == null) {
       return;
     }
     String warmingQuery = cacheOptions.getWarmingQuery();
-    if (warmingQuery != null && warmingQuery.trim().length() > 0) {
-      Query<?> query = ebeanServer.createQuery(beanType, warmingQuery);
-      query.setUseCache(true);
+    if (warmingQuery == null || warmingQuery.trim().length() == 0) {
+      return;
+    }
+    List<Callable<Long>> ranges = new ArrayList<Callable<Long>>();
+    long[] bounds = warmingRangeBounds(ebeanServer, warming.getRangeSize());
+    if (bounds == null) {
+      ranges.add(new WarmingRange(ebeanServer, warmingQuery, null, null));
+    } else {
+      for (int i = 0; i < bounds.length - 1; i++) {
+        ranges.add(new WarmingRange(ebeanServer, warmingQuery, bounds[i], bounds[i + 1]));
+      }
+    }
+    if (beanLog.isDebugEnabled()) {
+      beanLog.debug("   WARM {} in {} ranges", cacheName, ranges.size());
+    }
+    warming.add(cacheName, ranges);
+  }
+
+  /**
+   * Return the bounds of the id ranges to load or null if the table is not split.
+   */
+  private long[] warmingRangeBounds(EbeanServer ebeanServer, int rangeSize) {
+
+    BeanProperty idProperty = desc.getIdProperty();
+    if (rangeSize <= 0 || idProperty == null || idProperty.isEmbedded() || !isIntegerType(idProperty.getPropertyType())) {
+      return null;
+    }
+    String idColumn = idProperty.getDbColumn();
+    String sql = "select count(*) as row_count, min(" + idColumn + ") as min_id, max(" + idColumn + ") as max_id from " + desc.getBaseTable();
+    SqlRow row = ebeanServer.createSqlQuery(sql).findUnique();
+    Long rowCount = row.getLong("row_count");
+    if (rowCount == null || rowCount <= rangeSize) {
+      return null;
+    }
+    long minId = row.getLong("min_id");
+    long maxId = row.getLong("max_id");
+    long rangeCount = (rowCount + rangeSize - 1) / rangeSize;
+    long step = (maxId - minId) / rangeCount + 1;
+
+    List<Long> bounds = new ArrayList<Long>();
+    for (long from = minId; from <= maxId; from += step) {
+      bounds.add(from);
+    }
+    bounds.add(maxId + 1);
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  private static boolean isIntegerType(Class<?> type) {
+    return Long.class.equals(type) || long.class.equals(type) || Integer.class.equals(type)
+        || int.class.equals(type) || Short.class.equals(type) || short.class.equals(type);
+  }
+
+  /**
+   * Loads a range of ids (or the whole table) into the bean cache.
+   */
+  private class WarmingRange implements Callable<Long>, QueryEachConsumer<T> {
+
+    private final EbeanServer ebeanServer;
+
+    private final String warmingQuery;
+
+    private final Long fromId;
+
+    private final Long toId;
+
+    private final List<T> batch = new ArrayList<T>(WARMING_BATCH_SIZE);
+
+    private long count;
+
+    WarmingRange(EbeanServer ebeanServer, String warmingQuery, Long fromId, Long toId) {
+      this.ebeanServer = ebeanServer;
+      this.warmingQuery = warmingQuery;
+      this.fromId = fromId;
+      this.toId = toId;
+    }
+
+    @Override
+    public Long call() {
+      Query<T> query = ebeanServer.createQuery(beanType, warmingQuery);
       query.setReadOnly(true);
-      query.setLoadBeanCache(true);
-      List<?> list = query.findList();
-      if (beanLog.isInfoEnabled()) {
-        beanLog.info("Loaded {} cache with [{}] beans", cacheName, list.size());
+      if (fromId != null) {
+        String idName = desc.getIdProperty().getName();
+        query.where().ge(idName, fromId).lt(idName, toId);
+      }
+      query.findEach(this);
+      flush();
+      return count;
+    }
+
+    @Override
+    public void accept(T bean) {
+      batch.add(bean);
+      if (batch.size() >= WARMING_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (!batch.isEmpty()) {
+        beanCachePutAll(batch);
+        count += batch.size();
+        batch.clear();
       }
     }
   }
@@ -111,6 +266,7 @@ public final class BeanDescriptorCacheHelp<T> {
       getBeanCache();
     } else {
       beanCacheClear();
+      missingClear();
       beanCache = null;
     }
   }
@@ -137,6 +293,14 @@ public final class BeanDescriptorCacheHelp<T> {
     if (isBeanCaching() || isQueryCaching()) {
       return true;
     }
+    if (sharedBeanCache && cacheOptions.isUseCache()) {
+      // other servers may cache the beans in the shared remote tier
+      return true;
+    }
+    if (tableVersions.isTracked(desc.getBaseTable())) {
+      // cached query results of other bean types depend on the table
+      return true;
+    }
     for (int i = 0; i < propertiesOneImported.length; i++) {
       if (propertiesOneImported[i].getTargetDescriptor().isBeanCaching()) {
         return true;
@@ -151,8 +315,13 @@ public final class BeanDescriptorCacheHelp<T> {
 
   /**
    * Clear the query cache.
+   * <p>
+   * The clear is stamped such that a result from a query executed before the clear
+   * but put after it is not served.
+   * </p>
    */
   public void queryCacheClear() {
+    queryCacheClearStamp = tableVersions.advance();
     if (queryCache != null) {
       if (queryLog.isDebugEnabled()) {
         queryLog.debug("   CLEAR {}", cacheName);
@@ -162,29 +331,189 @@ public final class BeanDescriptorCacheHelp<T> {
   }
 
 
+  /**
+   * Invalidate cached query results that depend on the tables of this bean type.
+   * <p>
+   * This includes the intersection tables of ManyToMany properties as these are
+   * maintained when this bean type is persisted.
+   * </p>
+   */
+  public void queryCacheTableChanged() {
+    tableVersions.changed(desc.getBaseTable());
+    TableJoin[] tableJoins = desc.tableJoins();
+    for (int i = 0; i < tableJoins.length; i++) {
+      tableVersions.changed(tableJoins[i].getTable());
+    }
+    BeanPropertyAssocMany<?>[] manyToMany = desc.propertiesManyToMany();
+    for (int i = 0; i < manyToMany.length; i++) {
+      tableVersions.changed(manyToMany[i].getIntersectionTableJoin().getTable());
+    }
+  }
+
+  /**
+   * Return the SingleFlight deduplicating query cache misses or null if not enabled.
+   */
+  public SingleFlight queryCacheSingleFlight() {
+    return singleFlight(getQueryCache());
+  }
+
+  /**
+   * Return the SingleFlight deduplicating bean cache misses or null if not enabled.
+   */
+  public SingleFlight beanCacheSingleFlight() {
+    return singleFlight(beanCache);
+  }
+
+  private static SingleFlight singleFlight(ServerCache cache) {
+    if (cache instanceof DefaultServerCache) {
+      return ((DefaultServerCache) cache).getSingleFlight();
+    }
+    if (cache instanceof TwoTierServerCache) {
+      return ((TwoTierServerCache) cache).getSingleFlight();
+    }
+    return null;
+  }
+
+  /**
+   * Return the stamp to read before executing a query that may be put into the query cache.
+   */
+  public long queryCacheStamp() {
+    return tableVersions.current();
+  }
+
   /**
    * Get a query result from the query cache.
+   * <p>
+   * A result is removed rather than returned if any of the tables it depends on has
+   * been modified since the query was executed.
+   * </p>
    */
   @SuppressWarnings("unchecked")
   public BeanCollection<T> queryCacheGet(Object id) {
     if (queryCache == null) {
       return null;
-    } else {
-      return (BeanCollection<T>) queryCache.get(id);
     }
+    CachedQueryResult cached = (CachedQueryResult) queryCache.get(id);
+    if (cached == null) {
+      return null;
+    }
+    if (!cached.isValid() || cached.getStamp() < queryCacheClearStamp) {
+      if (queryLog.isDebugEnabled()) {
+        queryLog.debug("   REMOVE {} {} - tables modified or cleared", cacheName, id);
+      }
+      queryCache.remove(id);
+      return null;
+    }
+    return (BeanCollection<T>) cached.getResult();
   }
 
   /**
    * Put a query result into the query cache.
+   *
+   * @param id     the query cache key
+   * @param result the query result
+   * @param stamp  the stamp read before the query was executed
+   * @param tables the tables the query used (null if not known)
+   * @param query  the query (kept to refresh the result ahead of expiry)
    */
-  public void queryCachePut(Object id, BeanCollection<T> query) {
+  public void queryCachePut(Object id, BeanCollection<T> result, long stamp, String[] tables, SpiQuery<T> query) {
+    ServerCache queryCache = getQueryCache();
+    Set<String> dependentTables = new LinkedHashSet<String>();
+    desc.addDependentTables(dependentTables);
+    if (tables != null) {
+      for (int i = 0; i < tables.length; i++) {
+        dependentTables.add(tables[i]);
+      }
+    }
+    AtomicLong[] versions = tableVersions.track(dependentTables.toArray(new String[dependentTables.size()]));
+    if (queryLog.isDebugEnabled()) {
+      queryLog.debug("   PUT {} {} tables{}", cacheName, id, dependentTables);
+    }
+    SpiQuery<T> refreshQuery = null;
+    if (isRefreshAhead(queryCache)) {
+      refreshQuery = query.copy();
+      refreshQuery.setType(query.getType());
+    }
+    queryCache.put(id, new CachedQueryResult(result, versions, stamp, refreshQuery));
+    if (stamp < queryCacheClearStamp) {
+      // the query cache was cleared while the query was executing
+      queryCache.remove(id);
+    }
+  }
+
+  /**
+   * Return the query cache creating it if necessary.
+   */
+  private ServerCache getQueryCache() {
     if (queryCache == null) {
       queryCache = cacheManager.getQueryCache(beanType);
+      setRefreshAheadLoader(queryCache, new QueryCacheRefresh());
+      setWeigher(queryCache, weigher);
     }
-    if (queryLog.isDebugEnabled()) {
-      queryLog.debug("   PUT {} {}", cacheName, id);
+    return queryCache;
+  }
+
+  private static boolean isRefreshAhead(ServerCache cache) {
+    return (cache instanceof DefaultServerCache) && ((DefaultServerCache) cache).isRefreshAhead();
+  }
+
+  private static void setWeigher(ServerCache cache, CacheWeigher weigher) {
+    if (cache instanceof DefaultServerCache) {
+      ((DefaultServerCache) cache).setWeigher(weigher);
+    } else if (cache instanceof TwoTierServerCache) {
+      ((TwoTierServerCache) cache).setWeigher(weigher);
+    }
+  }
+
+  private static void setRefreshAheadLoader(ServerCache cache, RefreshAheadLoader loader) {
+    if (cache instanceof DefaultServerCache) {
+      ((DefaultServerCache) cache).setRefreshAheadLoader(loader);
+    } else if (cache instanceof TwoTierServerCache) {
+      ((TwoTierServerCache) cache).setRefreshAheadLoader(loader);
+    }
+  }
+
+  /**
+   * Refreshes a bean cache entry by loading the bean by id into the bean cache.
+   */
+  private class BeanCacheRefresh implements RefreshAheadLoader {
+
+    @Override
+    public void refresh(Object id, Object value) {
+      if (beanLog.isDebugEnabled()) {
+        beanLog.debug("   REFRESH {}({})", cacheName, id);
+      }
+      desc.getEbeanServer().find(beanType).setId(id).setUseCache(true).setLoadBeanCache(true).findUnique();
+    }
+  }
+
+  /**
+   * Refreshes a query cache entry by executing its query again.
+   */
+  private class QueryCacheRefresh implements RefreshAheadLoader {
+
+    @Override
+    public void refresh(Object id, Object value) {
+      SpiQuery<?> query = ((CachedQueryResult) value).getQuery();
+      if (query == null) {
+        return;
+      }
+      if (queryLog.isDebugEnabled()) {
+        queryLog.debug("   REFRESH {} {}", cacheName, id);
+      }
+      SpiQuery<?> refresh = query.copy();
+      refresh.setRefreshQueryCache(true);
+      switch (query.getType()) {
+        case SET:
+          refresh.findSet();
+          break;
+        case MAP:
+          refresh.findMap();
+          break;
+        default:
+          refresh.findList();
+      }
     }
-    queryCache.put(id, query);
   }
 
 
@@ -319,6 +648,47 @@ public final class BeanDescriptorCacheHelp<T> {
     return context;
   }
 
+  /**
+   * Return true if the query is a lookup by a natural key that is known not to exist.
+   */
+  public boolean naturalKeyMissing(SpiQuery<T> query) {
+    Object key = missingNaturalKey(query);
+    if (key == null) {
+      return false;
+    }
+    boolean missing = missingCache.get(key) != null;
+    if (missing && natLog.isDebugEnabled()) {
+      natLog.debug(" GET {}({}) - missing", cacheName, ((MissingNaturalKey) key).value);
+    }
+    return missing;
+  }
+
+  /**
+   * Record that the natural key of the query was not found.
+   *
+   * @param stamp the stamp read before the query was executed
+   */
+  public void naturalKeyMissingPut(SpiQuery<T> query, long stamp) {
+    Object key = missingNaturalKey(query);
+    if (key != null) {
+      missingPut(key, stamp);
+    }
+  }
+
+  /**
+   * Return the missing cache key if the query is a natural key lookup and negative caching is used.
+   */
+  private Object missingNaturalKey(SpiQuery<T> query) {
+    if (!isNaturalKeyCaching(query.isUseBeanCache())) {
+      return null;
+    }
+    NaturalKeyBindParam keyBindParam = query.getNaturalKeyBindParam();
+    if (keyBindParam == null || !isNaturalKey(keyBindParam.getName()) || getMissingCache() == null) {
+      return null;
+    }
+    return new MissingNaturalKey(keyBindParam.getValue());
+  }
+
   private boolean isNaturalKeyCaching(Boolean queryUseCache) {
     return naturalKeyCache != null && (queryUseCache == null || queryUseCache);
   }
@@ -347,16 +717,111 @@ public final class BeanDescriptorCacheHelp<T> {
 
   }
   
+  /**
+   * Return the bean cache to update or remove entries from when beans are persisted.
+   * <p>
+   * With a shared remote tier this is resolved even when bean caching is not on locally
+   * such that other servers do not read stale entries from the remote tier.
+   * </p>
+   */
+  private ServerCache persistBeanCache() {
+    if (beanCache == null && sharedBeanCache && cacheOptions.isUseCache()) {
+      return cacheManager.getBeanCache(beanType);
+    }
+    return beanCache;
+  }
+
   /**
    * Return the beanCache creating it if necessary.
    */
   private ServerCache getBeanCache() {
     if (beanCache == null) {
       beanCache = cacheManager.getBeanCache(beanType);
+      setRefreshAheadLoader(beanCache, new BeanCacheRefresh());
+      setWeigher(beanCache, weigher);
     }
     return beanCache;
   }
   
+  /**
+   * Return the cache of ids and natural keys not found (null if negative caching is not used).
+   */
+  private ServerCache getMissingCache() {
+    if (!missingCacheResolved) {
+      missingCache = cacheManager.getMissingCache(beanType);
+      missingCacheResolved = true;
+    }
+    return missingCache;
+  }
+
+  /**
+   * Return true if the id is known not to exist.
+   */
+  public boolean missingContains(Object id) {
+    ServerCache cache = getMissingCache();
+    if (cache == null || cache.get(id) == null) {
+      return false;
+    }
+    if (beanLog.isDebugEnabled()) {
+      beanLog.debug("   GET {}({}) - missing", cacheName, id);
+    }
+    return true;
+  }
+
+  /**
+   * Record that the id was not found.
+   *
+   * @param stamp the stamp read before the query was executed
+   */
+  public void missingPut(Object id, long stamp) {
+    ServerCache cache = getMissingCache();
+    if (cache == null) {
+      return;
+    }
+    if (tableVersions.isModifiedSince(desc.getBaseTable(), stamp)) {
+      // possibly inserted after the query executed
+      return;
+    }
+    if (beanLog.isDebugEnabled()) {
+      beanLog.debug("   PUT {}({}) - missing", cacheName, id);
+    }
+    cache.put(id, Boolean.TRUE);
+  }
+
+  /**
+   * Clear the ids and natural keys known not to exist.
+   */
+  public void missingClear() {
+    if (missingCache != null) {
+      if (beanLog.isDebugEnabled()) {
+        beanLog.debug("   CLEAR {} - missing", cacheName);
+      }
+      missingCache.clear();
+    }
+  }
+
+  /**
+   * Remove the id and natural key of an inserted or updated bean from the missing cache.
+   */
+  private void missingRemove(Object id, EntityBean bean) {
+    if (missingCache == null) {
+      return;
+    }
+    if (id != null) {
+      missingCache.remove(id);
+    }
+    String naturalKey = cacheOptions.getNaturalKey();
+    if (naturalKey != null) {
+      BeanProperty property = desc.findBeanProperty(naturalKey);
+      if (property != null) {
+        Object value = property.getValue(bean);
+        if (value != null) {
+          missingCache.remove(new MissingNaturalKey(value));
+        }
+      }
+    }
+  }
+
   /**
    * Clear the bean cache.
    */
@@ -401,6 +866,95 @@ public final class BeanDescriptorCacheHelp<T> {
     }
   }
 
+  /**
+   * Put all the beans into the bean cache.
+   */
+  public void beanCachePutAll(Collection<?> beans) {
+
+    if (beans.isEmpty()) {
+      return;
+    }
+    Map<Object, Object> map = new LinkedHashMap<Object, Object>(beans.size() * 2);
+    Map<Object, Object> naturalKeys = null;
+    for (Object bean : beans) {
+      CachedBeanData beanData = beanExtractData((EntityBean) bean);
+      Object id = desc.getId((EntityBean) bean);
+      map.put(id, beanData);
+      if (naturalKeyCache != null && beanData.isNaturalKeyUpdate()) {
+        Object naturalKey = beanData.getNaturalKey();
+        if (naturalKey != null) {
+          if (naturalKeys == null) {
+            naturalKeys = new HashMap<Object, Object>();
+          }
+          naturalKeys.put(naturalKey, id);
+        }
+      }
+    }
+    if (beanLog.isDebugEnabled()) {
+      beanLog.debug("   PUT ALL {}({})", cacheName, map.keySet());
+    }
+    getBeanCache().putAll(map);
+
+    if (naturalKeys != null) {
+      if (natLog.isDebugEnabled()) {
+        natLog.debug(" PUT ALL {}({})", cacheName, naturalKeys);
+      }
+      naturalKeyCache.putAll(naturalKeys);
+    }
+  }
+
+  /**
+   * Return the beans in the bean cache for the given ids keyed by id.
+   * <p>
+   * The returned map only contains the ids that were found in the cache.
+   * </p>
+   */
+  public Map<Object, T> beanCacheGetAll(Collection<?> ids, Boolean readOnly, PersistenceContext context) {
+
+    Map<Object, Object> hits = getBeanCache().getAll(new LinkedHashSet<Object>(ids));
+    if (beanLog.isTraceEnabled()) {
+      beanLog.trace("   GET ALL {}({}) - hits:{}", cacheName, ids, hits.keySet());
+    }
+    Map<Object, T> beans = new LinkedHashMap<Object, T>(hits.size() * 2);
+    for (Map.Entry<Object, Object> entry : hits.entrySet()) {
+      T bean = beanFromData(entry.getKey(), (CachedBeanData) entry.getValue(), readOnly);
+      setupContext(bean, context);
+      beans.put(entry.getKey(), bean);
+    }
+    return beans;
+  }
+
+  /**
+   * Load the beans in the batch from the bean cache removing the ones that were loaded.
+   */
+  public void beanCacheLoadAll(List<EntityBeanIntercept> batch) {
+
+    Set<Object> ids = new LinkedHashSet<Object>(batch.size() * 2);
+    for (int i = 0; i < batch.size(); i++) {
+      ids.add(desc.getId(batch.get(i).getOwner()));
+    }
+    Map<Object, Object> hits = getBeanCache().getAll(ids);
+    if (hits.isEmpty()) {
+      return;
+    }
+    Iterator<EntityBeanIntercept> iterator = batch.iterator();
+    while (iterator.hasNext()) {
+      EntityBeanIntercept ebi = iterator.next();
+      EntityBean bean = ebi.getOwner();
+      CachedBeanData cacheData = (CachedBeanData) hits.get(desc.getId(bean));
+      if (cacheData != null) {
+        int lazyLoadProperty = ebi.getLazyLoadPropertyIndex();
+        if (lazyLoadProperty == -1 || cacheData.isLoaded(lazyLoadProperty)) {
+          CachedBeanDataToBean.load(desc, bean, cacheData);
+          iterator.remove();
+        }
+      }
+    }
+    if (beanLog.isDebugEnabled()) {
+      beanLog.debug("   LOAD ALL {}({}) - hits:{}", cacheName, ids, hits.keySet());
+    }
+  }
+
   public CachedBeanData beanCacheGetData(Object id) {
     return (CachedBeanData) getBeanCache().get(id);
   }
@@ -416,7 +970,6 @@ public final class BeanDescriptorCacheHelp<T> {
   /**
    * Return a bean from the bean cache.
    */
-  @SuppressWarnings("unchecked")
   private T beanCacheGetInternal(Object id, Boolean readOnly) {
 
     CachedBeanData data = (CachedBeanData) getBeanCache().get(id);
@@ -426,6 +979,15 @@ public final class BeanDescriptorCacheHelp<T> {
       }
       return null;
     }
+    return beanFromData(id, data, readOnly);
+  }
+
+  /**
+   * Return a bean for the cached data.
+   */
+  @SuppressWarnings("unchecked")
+  private T beanFromData(Object id, CachedBeanData data, Boolean readOnly) {
+
     if (cacheSharableBeans && !Boolean.FALSE.equals(readOnly)) {
       Object bean = data.getSharableBean();
       if (bean != null) {
@@ -463,17 +1025,42 @@ public final class BeanDescriptorCacheHelp<T> {
    * Remove a bean from the cache given its Id.
    */
   public void beanCacheRemove(Object id) {
-    if (beanCache != null) {
+    ServerCache cache = persistBeanCache();
+    if (cache != null) {
       if (beanLog.isDebugEnabled()) {
         beanLog.debug("   REMOVE {}({})", cacheName, id);
       }
-      beanCache.remove(id);
+      cache.remove(id);
     }
     for (int i = 0; i < propertiesOneImported.length; i++) {
       propertiesOneImported[i].cacheClear();
     }
   }
 
+  /**
+   * Remove a bean from the cache due to a change made by another server in the cluster.
+   * <p>
+   * With a two tier cache only the near cache entry is removed as the other server has
+   * already updated the shared remote store (even when it is not caching the bean type
+   * locally).
+   * </p>
+   */
+  public void beanCacheRemoveNear(Object id) {
+    if (sharedBeanCache) {
+      if (beanCache instanceof TwoTierServerCache) {
+        if (beanLog.isDebugEnabled()) {
+          beanLog.debug("   REMOVE NEAR {}({})", cacheName, id);
+        }
+        ((TwoTierServerCache) beanCache).removeNear(id);
+      }
+      for (int i = 0; i < propertiesOneImported.length; i++) {
+        propertiesOneImported[i].cacheClear();
+      }
+    } else {
+      beanCacheRemove(id);
+    }
+  }
+
   /**
    * Returns true if it managed to populate/load the bean from the cache.
    */
@@ -505,17 +1092,13 @@ public final class BeanDescriptorCacheHelp<T> {
    * Remove a bean from the cache given its Id.
    */
   public void handleDelete(Object id, PersistRequestBean<T> deleteRequest) {
-    if (queryCache != null) {
-      if (queryLog.isDebugEnabled()) {
-        queryLog.debug("   CLEAR {}(*) - delete trigger", cacheName);
-      }
-      queryCache.clear();
-    }
-    if (beanCache != null) {
+    queryCacheTableChanged();
+    ServerCache cache = persistBeanCache();
+    if (cache != null) {
       if (beanLog.isDebugEnabled()) {
         beanLog.debug("   REMOVE {}({})", cacheName, id);
       }
-      beanCache.remove(id);
+      cache.remove(id);
     }
     for (int i = 0; i < propertiesOneImported.length; i++) {
       BeanPropertyAssocMany<?> many = propertiesOneImported[i].getRelationshipProperty();
@@ -526,12 +1109,9 @@ public final class BeanDescriptorCacheHelp<T> {
   }
 
   public void handleInsert(PersistRequestBean<T> insertRequest) {
-    if (queryCache != null) {
-      if (queryLog.isDebugEnabled()) {
-        queryLog.debug("   CLEAR {}(*) - insert trigger", cacheName);
-      }
-      queryCache.clear();
-    }
+    queryCacheTableChanged();
+    EntityBean bean = insertRequest.getEntityBean();
+    missingRemove(desc.getId(bean), bean);
     for (int i = 0; i < propertiesOneImported.length; i++) {
       propertiesOneImported[i].cacheDelete(false, insertRequest.getEntityBean());
     }
@@ -542,12 +1122,9 @@ public final class BeanDescriptorCacheHelp<T> {
    */
   public void handleUpdate(Object id, PersistRequestBean<T> updateRequest) {
 
-    if (queryCache != null) {
-      if (queryLog.isDebugEnabled()) {
-        queryLog.debug("   CLEAR {}(*) - update trigger", cacheName);
-      }
-      queryCache.clear();
-    }
+    queryCacheTableChanged();
+    // the natural key may have been updated to one recorded as missing
+    missingRemove(null, updateRequest.getEntityBean());
 
     List<BeanPropertyAssocMany<?>> manyCollections = updateRequest.getUpdatedManyCollections();
     if (manyCollections != null) {
@@ -558,10 +1135,11 @@ public final class BeanDescriptorCacheHelp<T> {
     }
     
     // check if the bean itself was updated
-    if (!updateRequest.isUpdatedManysOnly()) {
+    // also resolved when not caching locally if the remote tier is shared with other servers
+    ServerCache cache = persistBeanCache();
+    if (!updateRequest.isUpdatedManysOnly() && cache != null) {
       
       // update the bean cache entry if it exists
-      ServerCache cache = getBeanCache();
       CachedBeanData existingData = (CachedBeanData) cache.get(id);
       if (existingData != null) {
         
@@ -620,7 +1198,36 @@ public final class BeanDescriptorCacheHelp<T> {
     if (tableIUD.isUpdateOrDelete()) {
       beanCacheClear();
     }
-    // any change invalidates the query cache
-    queryCacheClear();
+    // cached query results are invalidated by the table version (see TableVersions)
+    missingClear();
+  }
+
+  /**
+   * Key of a natural key in the missing cache (distinct from the ids also held there).
+   */
+  private static final class MissingNaturalKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object value;
+
+    MissingNaturalKey(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 + value.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof MissingNaturalKey && value.equals(((MissingNaturalKey) obj).value);
+    }
+
+    @Override
+    public String toString() {
+      return "naturalKey:" + value;
+    }
   }
 }
@@ -24,6 +24,7 @@ import com.avaje.ebean.event.changelog.ChangeLogRegister;
 import com.avaje.ebean.plugin.SpiBeanType;
 import com.avaje.ebeaninternal.api.SpiEbeanServer;
 import com.avaje.ebeaninternal.api.TransactionEventTable;
+import com.avaje.ebeaninternal.server.cache.TableVersions;
 import com.avaje.ebeaninternal.server.core.BootupClasses;
 import com.avaje.ebeaninternal.server.core.InternString;
 import com.avaje.ebeaninternal.server.core.InternalConfiguration;
@@ -149,6 +150,8 @@ public class BeanDescriptorManager implements BeanDescriptorMap {
 
   private final ServerCacheManager cacheManager;
 
+  private final TableVersions tableVersions = new TableVersions();
+
   private final BackgroundExecutor backgroundExecutor;
 
   private final int dbSequenceBatchSize;
@@ -260,6 +263,10 @@ public class BeanDescriptorManager implements BeanDescriptorMap {
     return serverName;
   }
 
+  public TableVersions getTableVersions() {
+    return tableVersions;
+  }
+
   public ServerCacheManager getCacheManager() {
     return cacheManager;
   }
@@ -341,6 +348,9 @@ public class BeanDescriptorManager implements BeanDescriptorMap {
    */
   public void cacheNotify(TransactionEventTable.TableIUD tableIUD) {
 
+    // invalidates cached query results that depend on the table
+    tableVersions.changed(tableIUD.getTableName());
+
     List<BeanDescriptor<?>> list = getBeanDescriptors(tableIUD.getTableName());
     if (list != null) {
       for (int i = 0; i < list.size(); i++) {
@@ -1,6 +1,7 @@
 package com.avaje.ebeaninternal.server.deploy;
 
 import com.avaje.ebean.cache.ServerCacheManager;
+import com.avaje.ebeaninternal.server.cache.TableVersions;
 import com.avaje.ebean.config.EncryptKey;
 import com.avaje.ebean.config.ServerConfig;
 import com.avaje.ebeaninternal.server.deploy.id.IdBinder;
@@ -28,6 +29,11 @@ public interface BeanDescriptorMap {
    */
   ServerCacheManager getCacheManager();
 
+  /**
+   * Return the version stamps of tables used by the query cache.
+   */
+  TableVersions getTableVersions();
+
   /**
    * Return the BeanDescriptor for a given class.
    */
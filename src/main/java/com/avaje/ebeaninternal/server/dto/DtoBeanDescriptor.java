@@ -0,0 +1,190 @@
+package com.avaje.ebeaninternal.server.dto;
+
+import com.avaje.ebeaninternal.server.type.ScalarType;
+import com.avaje.ebeaninternal.server.type.ScalarTypeEnumStandard;
+import com.avaje.ebeaninternal.server.type.TypeManager;
+
+import javax.persistence.PersistenceException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Describes how a DTO bean type is populated from the columns of a ResultSet.
+ * <p>
+ * The public constructors and setter methods (with supported property types) are
+ * determined once. The mapping for each distinct set of column labels is then compiled
+ * into a DtoQueryPlan which is cached.
+ * </p>
+ * <p>
+ * A constructor that has the same number of parameters as there are columns is used
+ * (mapping the columns by position). Otherwise the default constructor is used with the
+ * columns mapped to setters by name ignoring case and underscores.
+ * </p>
+ */
+public class DtoBeanDescriptor<T> {
+
+  private final Class<T> dtoType;
+
+  private final TypeManager typeManager;
+
+  private final Constructor<T> defaultConstructor;
+
+  /**
+   * The public constructors with supported parameter types keyed by parameter count.
+   */
+  private final Map<Integer, List<Constructor<T>>> constructors = new HashMap<Integer, List<Constructor<T>>>();
+
+  /**
+   * The public setter methods with supported types keyed by normalised property name.
+   */
+  private final Map<String, Method> setters = new HashMap<String, Method>();
+
+  /**
+   * The compiled mappings keyed by the column labels.
+   */
+  private final ConcurrentHashMap<String, DtoQueryPlan<T>> planMap = new ConcurrentHashMap<String, DtoQueryPlan<T>>();
+
+  @SuppressWarnings("unchecked")
+  DtoBeanDescriptor(Class<T> dtoType, TypeManager typeManager) {
+    this.dtoType = dtoType;
+    this.typeManager = typeManager;
+
+    if (dtoType.isInterface() || Modifier.isAbstract(dtoType.getModifiers())) {
+      throw new IllegalArgumentException("DTO bean type " + dtoType.getName() + " must be a concrete class");
+    }
+
+    Constructor<T> defaultCon = null;
+    for (Constructor<?> constructor : dtoType.getConstructors()) {
+      Class<?>[] paramTypes = constructor.getParameterTypes();
+      if (paramTypes.length == 0) {
+        defaultCon = (Constructor<T>) constructor;
+      } else if (isSupported(paramTypes)) {
+        List<Constructor<T>> list = constructors.get(paramTypes.length);
+        if (list == null) {
+          list = new ArrayList<Constructor<T>>(2);
+          constructors.put(paramTypes.length, list);
+        }
+        constructor.setAccessible(true);
+        list.add((Constructor<T>) constructor);
+      }
+    }
+    this.defaultConstructor = defaultCon;
+    if (defaultCon != null) {
+      // allow a public constructor of a non public class
+      defaultCon.setAccessible(true);
+    }
+
+    for (Method method : dtoType.getMethods()) {
+      String name = method.getName();
+      if (name.length() > 3 && name.startsWith("set") && !Modifier.isStatic(method.getModifiers())) {
+        Class<?>[] paramTypes = method.getParameterTypes();
+        if (paramTypes.length == 1 && scalarType(paramTypes[0]) != null) {
+          method.setAccessible(true);
+          setters.put(normalise(name.substring(3)), method);
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the DTO bean type.
+   */
+  public Class<T> getType() {
+    return dtoType;
+  }
+
+  /**
+   * Return the compiled mapping for the given column labels.
+   */
+  public DtoQueryPlan<T> getQueryPlan(String[] columnLabels) {
+
+    String key = planKey(columnLabels);
+    DtoQueryPlan<T> plan = planMap.get(key);
+    if (plan == null) {
+      plan = createPlan(columnLabels);
+      planMap.put(key, plan);
+    }
+    return plan;
+  }
+
+  private String planKey(String[] columnLabels) {
+    StringBuilder sb = new StringBuilder(columnLabels.length * 12);
+    for (String columnLabel : columnLabels) {
+      sb.append(columnLabel).append(',');
+    }
+    return sb.toString();
+  }
+
+  private DtoQueryPlan<T> createPlan(String[] columnLabels) {
+
+    List<Constructor<T>> matching = constructors.get(columnLabels.length);
+    if (matching != null) {
+      if (matching.size() > 1) {
+        throw new PersistenceException("Ambiguous constructors with " + columnLabels.length + " parameters on DTO bean " + dtoType.getName());
+      }
+      Constructor<T> constructor = matching.get(0);
+      Class<?>[] paramTypes = constructor.getParameterTypes();
+      ScalarType<?>[] argTypes = new ScalarType<?>[paramTypes.length];
+      for (int i = 0; i < paramTypes.length; i++) {
+        argTypes[i] = scalarType(paramTypes[i]);
+      }
+      return new DtoQueryPlan<T>(constructor, argTypes, new ScalarType<?>[0], new Method[0]);
+    }
+
+    if (defaultConstructor == null) {
+      throw new PersistenceException("No constructor with " + columnLabels.length + " parameters or default constructor on DTO bean " + dtoType.getName());
+    }
+
+    ScalarType<?>[] setterTypes = new ScalarType<?>[columnLabels.length];
+    Method[] setterMethods = new Method[columnLabels.length];
+    for (int i = 0; i < columnLabels.length; i++) {
+      Method setter = setters.get(normalise(columnLabels[i]));
+      if (setter == null) {
+        throw new PersistenceException("No setter for column [" + columnLabels[i] + "] on DTO bean " + dtoType.getName());
+      }
+      setterMethods[i] = setter;
+      setterTypes[i] = scalarType(setter.getParameterTypes()[0]);
+    }
+    return new DtoQueryPlan<T>(defaultConstructor, new ScalarType<?>[0], setterTypes, setterMethods);
+  }
+
+  private boolean isSupported(Class<?>[] paramTypes) {
+    for (Class<?> paramType : paramTypes) {
+      if (scalarType(paramType) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return the ScalarType for a constructor parameter or setter type (null if not supported).
+   */
+  @SuppressWarnings("unchecked")
+  private ScalarType<?> scalarType(Class<?> type) {
+
+    ScalarType<?> scalarType = typeManager.getScalarType(type);
+    if (scalarType == null && type.isEnum()) {
+      // look for @DbEnumValue or @EnumValue annotations etc
+      scalarType = typeManager.createEnumScalarType((Class<? extends Enum<?>>) type);
+      if (scalarType == null) {
+        // default as per JPA spec is ORDINAL
+        scalarType = new ScalarTypeEnumStandard.OrdinalEnum(type);
+      }
+    }
+    return scalarType;
+  }
+
+  /**
+   * Return the name in lower case without underscores such that order_date matches orderDate.
+   */
+  private static String normalise(String name) {
+    return name.replace("_", "").toLowerCase();
+  }
+}
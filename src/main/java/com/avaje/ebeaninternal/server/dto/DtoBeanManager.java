@@ -0,0 +1,39 @@
+package com.avaje.ebeaninternal.server.dto;
+
+import com.avaje.ebeaninternal.server.type.TypeManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manages the descriptors of the DTO bean types used with DtoQuery.
+ * <p>
+ * The descriptor of a DTO bean type is created on first use and then cached.
+ * </p>
+ */
+public class DtoBeanManager {
+
+  private final TypeManager typeManager;
+
+  private final ConcurrentHashMap<Class<?>, DtoBeanDescriptor<?>> descriptorMap = new ConcurrentHashMap<Class<?>, DtoBeanDescriptor<?>>();
+
+  public DtoBeanManager(TypeManager typeManager) {
+    this.typeManager = typeManager;
+  }
+
+  /**
+   * Return the descriptor for the given DTO bean type.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> DtoBeanDescriptor<T> getDescriptor(Class<T> dtoType) {
+
+    DtoBeanDescriptor<?> descriptor = descriptorMap.get(dtoType);
+    if (descriptor == null) {
+      DtoBeanDescriptor<T> newDescriptor = new DtoBeanDescriptor<T>(dtoType, typeManager);
+      descriptor = descriptorMap.putIfAbsent(dtoType, newDescriptor);
+      if (descriptor == null) {
+        descriptor = newDescriptor;
+      }
+    }
+    return (DtoBeanDescriptor<T>) descriptor;
+  }
+}
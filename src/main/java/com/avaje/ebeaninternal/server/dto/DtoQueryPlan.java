@@ -0,0 +1,66 @@
+package com.avaje.ebeaninternal.server.dto;
+
+import com.avaje.ebeaninternal.server.type.DataReader;
+import com.avaje.ebeaninternal.server.type.ScalarType;
+
+import javax.persistence.PersistenceException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+
+/**
+ * The compiled mapping of a set of ResultSet columns to a DTO bean type.
+ * <p>
+ * The leading columns are passed as constructor arguments (none when using the default
+ * constructor) and the remaining columns are set via setter methods.
+ * </p>
+ */
+public class DtoQueryPlan<T> {
+
+  private final Constructor<T> constructor;
+
+  private final ScalarType<?>[] argTypes;
+
+  private final ScalarType<?>[] setterTypes;
+
+  private final Method[] setters;
+
+  DtoQueryPlan(Constructor<T> constructor, ScalarType<?>[] argTypes, ScalarType<?>[] setterTypes, Method[] setters) {
+    this.constructor = constructor;
+    this.argTypes = argTypes;
+    this.setterTypes = setterTypes;
+    this.setters = setters;
+  }
+
+  /**
+   * Read the current row of the DataReader returning the populated DTO bean.
+   */
+  public T readRow(DataReader dataReader) throws SQLException {
+
+    Object[] args = new Object[argTypes.length];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = argTypes[i].read(dataReader);
+    }
+    try {
+      T bean = constructor.newInstance(args);
+      for (int i = 0; i < setters.length; i++) {
+        Object value = setterTypes[i].read(dataReader);
+        if (value != null) {
+          setters[i].invoke(bean, value);
+        }
+      }
+      return bean;
+
+    } catch (InvocationTargetException e) {
+      throw new PersistenceException("Error populating DTO bean " + constructor.getDeclaringClass().getName(), e.getCause());
+    } catch (InstantiationException e) {
+      throw new PersistenceException("Error creating DTO bean " + constructor.getDeclaringClass().getName(), e);
+    } catch (IllegalAccessException e) {
+      throw new PersistenceException("Error creating DTO bean " + constructor.getDeclaringClass().getName(), e);
+    } catch (IllegalArgumentException e) {
+      // typically a null value for a primitive constructor parameter
+      throw new PersistenceException("Error creating DTO bean " + constructor.getDeclaringClass().getName(), e);
+    }
+  }
+}
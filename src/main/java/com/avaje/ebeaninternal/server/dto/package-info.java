@@ -0,0 +1,4 @@
+/**
+ * Mapping of SQL query results into plain (non entity) DTO beans.
+ */
+package com.avaje.ebeaninternal.server.dto;
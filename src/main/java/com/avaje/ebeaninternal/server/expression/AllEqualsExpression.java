@@ -1,5 +1,6 @@
 package com.avaje.ebeaninternal.server.expression;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -22,6 +23,17 @@ class AllEqualsExpression implements SpiExpression {
     this.propMap = propMap;
   }
 
+  /**
+   * Non null values are replaced as the sql only depends on which values are null.
+   */
+  public SpiExpression copyForPlanKey() {
+    Map<String, Object> copy = new LinkedHashMap<String, Object>();
+    for (Entry<String, Object> entry : propMap.entrySet()) {
+      copy.put(entry.getKey(), (entry.getValue() == null) ? null : Boolean.TRUE);
+    }
+    return new AllEqualsExpression(copy);
+  }
+
   protected String name(String propName) {
     return propName;
   }
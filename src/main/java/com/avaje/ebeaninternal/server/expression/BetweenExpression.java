@@ -2,6 +2,7 @@ package com.avaje.ebeaninternal.server.expression;
 
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 
 
@@ -21,6 +22,10 @@ class BetweenExpression extends AbstractExpression {
     this.valueHigh = valHigh;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new BetweenExpression(propName, null, null);
+  }
+
   public void addBindValues(SpiExpressionRequest request) {
     request.addBindValue(valueLow);
     request.addBindValue(valueHigh);
@@ -28,6 +28,10 @@ class BetweenPropertyExpression implements SpiExpression {
     this.value = value;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new BetweenPropertyExpression(lowProperty, highProperty, null);
+  }
+
   protected String name(String propName) {
     return propName;
   }
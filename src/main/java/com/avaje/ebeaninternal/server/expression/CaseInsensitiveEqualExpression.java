@@ -2,6 +2,7 @@ package com.avaje.ebeaninternal.server.expression;
 
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 import com.avaje.ebeaninternal.server.el.ElPropertyValue;
 
@@ -16,6 +17,10 @@ class CaseInsensitiveEqualExpression extends AbstractExpression {
     this.value = value.toLowerCase();
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new CaseInsensitiveEqualExpression(propName, "");
+  }
+
   public void addBindValues(SpiExpressionRequest request) {
 
     ElPropertyValue prop = getElProp(request);
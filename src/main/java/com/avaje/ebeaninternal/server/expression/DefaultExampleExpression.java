@@ -86,6 +86,31 @@ public class DefaultExampleExpression implements SpiExpression, ExampleExpressio
     this.likeType = likeType;
   }
 
+  /**
+   * Construct for a plan key copy with the expressions built from the example entity.
+   */
+  private DefaultExampleExpression(DefaultExampleExpression source, ArrayList<SpiExpression> list) {
+    this.entity = null;
+    this.caseInsensitive = source.caseInsensitive;
+    this.likeType = source.likeType;
+    this.includeZeros = source.includeZeros;
+    this.list = list;
+  }
+
+  /**
+   * Return a copy without the example entity holding copies of the expressions already
+   * built from it (queryPlanHash() is called before the copy is taken).
+   */
+  public SpiExpression copyForPlanKey() {
+    ArrayList<SpiExpression> copyList = new ArrayList<SpiExpression>();
+    if (list != null) {
+      for (int i = 0; i < list.size(); i++) {
+        copyList.add(list.get(i).copyForPlanKey());
+      }
+    }
+    return new DefaultExampleExpression(this, copyList);
+  }
+
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins whereManyJoins) {
     if (list != null) {
       for (int i = 0; i < list.size(); i++) {
@@ -178,7 +203,10 @@ public class DefaultExampleExpression implements SpiExpression, ExampleExpressio
 
     // this is always called once, and always called before
     // addSql() and addBindValues() methods
-    list = buildExpressions(request);
+    if (entity != null) {
+      // a plan key copy holds the expressions without the example entity
+      list = buildExpressions(request);
+    }
 
     builder.add(DefaultExampleExpression.class);
 
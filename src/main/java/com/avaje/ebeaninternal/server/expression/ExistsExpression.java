@@ -28,6 +28,10 @@ public class ExistsExpression implements SpiExpression {
     this.not = not;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new ExistsExpression(subQuery.copyForPlanKey(), not);
+  }
+
   public void queryAutoTuneHash(HashQueryPlanBuilder builder) {
     builder.add(ExistsExpression.class).add(not);
 
@@ -22,6 +22,10 @@ class IdExpression implements SpiExpression {
     this.value = value;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new IdExpression(null);
+  }
+
   /**
    * Always returns false.
    */
@@ -36,6 +40,10 @@ class IdExpression implements SpiExpression {
 
   public void addBindValues(SpiExpressionRequest request) {
 
+    if (value == null) {
+      // a plan key copy that is compiled but not executed
+      return;
+    }
     // 'flatten' EmbeddedId and multiple Id cases
     // into an array of the underlying scalar field values
     DefaultExpressionRequest r = (DefaultExpressionRequest) request;
@@ -1,5 +1,7 @@
 package com.avaje.ebeaninternal.server.expression;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.avaje.ebean.event.BeanQueryRequest;
@@ -25,6 +27,20 @@ public class IdInExpression implements SpiExpression {
     this.idList = idList;
   }
 
+  /**
+   * Return the list of id values.
+   */
+  public List<?> getIdList() {
+    return idList;
+  }
+
+  /**
+   * The number of ids is kept as the sql depends on it.
+   */
+  public SpiExpression copyForPlanKey() {
+    return new IdInExpression(new ArrayList<Object>(Collections.nCopies(idList.size(), null)));
+  }
+
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins manyWhereJoin) {
   }
 
@@ -42,7 +58,11 @@ public class IdInExpression implements SpiExpression {
     IdBinder idBinder = descriptor.getIdBinder();
 
     for (int i = 0; i < idList.size(); i++) {
-      idBinder.addIdInBindValue(request, idList.get(i));
+      Object id = idList.get(i);
+      if (id != null) {
+        // null for a plan key copy that is compiled but not executed
+        idBinder.addIdInBindValue(request, id);
+      }
     }
   }
 
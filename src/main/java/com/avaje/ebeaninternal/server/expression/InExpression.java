@@ -3,6 +3,7 @@ package com.avaje.ebeaninternal.server.expression;
 import com.avaje.ebean.bean.EntityBean;
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 import com.avaje.ebeaninternal.server.el.ElPropertyValue;
 
@@ -28,6 +29,13 @@ class InExpression extends AbstractExpression {
     this.not = not;
   }
 
+  /**
+   * The number of values is kept as the sql depends on it.
+   */
+  public SpiExpression copyForPlanKey() {
+    return new InExpression(propName, new Object[values.length], not);
+  }
+
   public void addBindValues(SpiExpressionRequest request) {
 
     ElPropertyValue prop = getElProp(request);
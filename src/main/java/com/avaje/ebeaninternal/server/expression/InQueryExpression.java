@@ -5,6 +5,7 @@ import java.util.List;
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
 import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 import com.avaje.ebeaninternal.api.SpiQuery;
 import com.avaje.ebeaninternal.server.query.CQuery;
@@ -28,6 +29,10 @@ class InQueryExpression extends AbstractExpression {
     this.not = not;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new InQueryExpression(propName, subQuery.copyForPlanKey(), not);
+  }
+
   public void queryAutoTuneHash(HashQueryPlanBuilder builder) {
     builder.add(InQueryExpression.class).add(propName).add(not);
     subQuery.queryAutoTuneHash(builder);
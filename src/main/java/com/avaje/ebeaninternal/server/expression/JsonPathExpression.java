@@ -2,8 +2,11 @@ package com.avaje.ebeaninternal.server.expression;
 
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 
+import java.math.BigDecimal;
+
 /**
  * Generally speaking tests the value at a given path in the JSON document.
  * <p>
@@ -57,6 +60,33 @@ class JsonPathExpression extends AbstractExpression {
     this.upperValue = upperValue;
   }
 
+  /**
+   * The bind values are replaced by placeholders of the same kind as the sql casts based on the value type.
+   */
+  @Override
+  public SpiExpression copyForPlanKey() {
+    if (operator == Op.BETWEEN) {
+      return new JsonPathExpression(propName, path, placeholder(value), placeholder(upperValue));
+    }
+    return new JsonPathExpression(propName, path, operator, placeholder(value));
+  }
+
+  private static Object placeholder(Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof Integer || value instanceof Long) {
+      return 0;
+    }
+    if (value instanceof Number) {
+      return BigDecimal.ZERO;
+    }
+    if (value instanceof Boolean) {
+      return Boolean.FALSE;
+    }
+    return "";
+  }
+
   @Override
   public void queryAutoTuneHash(HashQueryPlanBuilder builder) {
     builder.add(JsonPathExpression.class).add(propName).add(path).add(operator);
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import com.avaje.ebean.*;
 import com.avaje.ebean.event.BeanQueryRequest;
@@ -35,6 +36,10 @@ abstract class JunctionExpression<T> implements Junction<T>, SpiExpression, Expr
     Conjunction(com.avaje.ebean.Query<T> query, ExpressionList<T> parent) {
       super(false, AND, query, parent);
     }
+
+    Conjunction(DefaultExpressionList<T> exprList) {
+      super(false, AND, exprList);
+    }
   }
 
   static class Disjunction<T> extends JunctionExpression<T> {
@@ -44,6 +49,10 @@ abstract class JunctionExpression<T> implements Junction<T>, SpiExpression, Expr
     Disjunction(com.avaje.ebean.Query<T> query, ExpressionList<T> parent) {
       super(true, OR, query, parent);
     }
+
+    Disjunction(DefaultExpressionList<T> exprList) {
+      super(true, OR, exprList);
+    }
   }
 
   private final DefaultExpressionList<T> exprList;
@@ -61,6 +70,18 @@ abstract class JunctionExpression<T> implements Junction<T>, SpiExpression, Expr
     this.exprList = new DefaultExpressionList<T>(query, parent);
   }
 
+  JunctionExpression(boolean disjunction, String joinType, DefaultExpressionList<T> exprList) {
+    this.disjunction = disjunction;
+    this.joinType = joinType;
+    this.exprList = exprList;
+  }
+
+  @Override
+  public SpiExpression copyForPlanKey() {
+    DefaultExpressionList<T> copyList = exprList.copyForPlanKey(null);
+    return disjunction ? new Disjunction<T>(copyList) : new Conjunction<T>(copyList);
+  }
+
   @Override
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins manyWhereJoin) {
 
@@ -294,6 +315,11 @@ abstract class JunctionExpression<T> implements Junction<T>, SpiExpression, Expr
     return exprList.findIterate();
   }
 
+  @Override
+  public Stream<T> findStream() {
+    return exprList.findStream();
+  }
+
   @Override
   public List<T> findList() {
     return exprList.findList();
@@ -319,6 +345,16 @@ abstract class JunctionExpression<T> implements Junction<T>, SpiExpression, Expr
     return exprList.findPagedList();
   }
 
+  @Override
+  public KeysetPage<T> findKeysetPage(String cursor, int pageSize) {
+    return exprList.findKeysetPage(cursor, pageSize);
+  }
+
+  @Override
+  public KeysetPage<T> findKeysetPage(int pageSize, Object... lastKeyValues) {
+    return exprList.findKeysetPage(pageSize, lastKeyValues);
+  }
+
   @Override
   public int findRowCount() {
     return exprList.findRowCount();
@@ -0,0 +1,147 @@
+package com.avaje.ebeaninternal.server.expression;
+
+import com.avaje.ebean.event.BeanQueryRequest;
+import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.ManyWhereJoins;
+import com.avaje.ebeaninternal.api.SpiExpression;
+import com.avaje.ebeaninternal.api.SpiExpressionRequest;
+import com.avaje.ebeaninternal.api.SpiExpressionValidation;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.ebeaninternal.server.el.ElPropertyDeploy;
+
+import java.util.Arrays;
+
+/**
+ * Keyset (seek) pagination predicate for the rows after the last row of the prior page.
+ * <p>
+ * When all the order by properties have the same direction and the database supports row
+ * value comparison this is in the form <code>(a, b) > (?, ?)</code>. Otherwise it is
+ * expanded into the form <code>(a > ? or (a = ? and b > ?))</code> using less than for the
+ * descending order by properties.
+ * </p>
+ */
+public class KeysetExpression implements SpiExpression {
+
+  private static final long serialVersionUID = -2604164412290612715L;
+
+  private final String[] propertyNames;
+
+  private final boolean[] ascending;
+
+  private final Object[] values;
+
+  private final boolean expandedForm;
+
+  /**
+   * Construct with the order by properties and the values of the last row of the prior page.
+   */
+  public KeysetExpression(String[] propertyNames, boolean[] ascending, Object[] values, boolean expandedForm) {
+    this.propertyNames = propertyNames;
+    this.ascending = ascending;
+    this.values = values;
+    this.expandedForm = expandedForm || !isSameDirection(ascending);
+  }
+
+  @Override
+  public SpiExpression copyForPlanKey() {
+    return new KeysetExpression(propertyNames, ascending, new Object[values.length], expandedForm);
+  }
+
+  private static boolean isSameDirection(boolean[] ascending) {
+    for (int i = 1; i < ascending.length; i++) {
+      if (ascending[i] != ascending[0]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins manyWhereJoin) {
+    for (String propertyName : propertyNames) {
+      ElPropertyDeploy elProp = desc.getElPropertyDeploy(propertyName);
+      if (elProp != null && elProp.containsMany()) {
+        manyWhereJoin.add(elProp);
+      }
+    }
+  }
+
+  @Override
+  public void validate(SpiExpressionValidation validation) {
+    for (String propertyName : propertyNames) {
+      validation.validate(propertyName);
+    }
+  }
+
+  @Override
+  public void addSql(SpiExpressionRequest request) {
+
+    if (!expandedForm) {
+      request.append("(");
+      for (int i = 0; i < propertyNames.length; i++) {
+        if (i > 0) {
+          request.append(", ");
+        }
+        request.append(propertyNames[i]);
+      }
+      request.append(ascending[0] ? ") > (" : ") < (");
+      for (int i = 0; i < propertyNames.length; i++) {
+        request.append(i == 0 ? "?" : ", ?");
+      }
+      request.append(") ");
+      return;
+    }
+
+    request.append("(");
+    for (int i = 0; i < propertyNames.length; i++) {
+      if (i > 0) {
+        request.append(" or ");
+      }
+      if (i > 0) {
+        request.append("(");
+        for (int j = 0; j < i; j++) {
+          request.append(propertyNames[j]).append(" = ? and ");
+        }
+      }
+      request.append(propertyNames[i]).append(ascending[i] ? " > ?" : " < ?");
+      if (i > 0) {
+        request.append(")");
+      }
+    }
+    request.append(") ");
+  }
+
+  @Override
+  public void addBindValues(SpiExpressionRequest request) {
+    if (!expandedForm) {
+      for (Object value : values) {
+        request.addBindValue(value);
+      }
+    } else {
+      for (int i = 0; i < values.length; i++) {
+        for (int j = 0; j <= i; j++) {
+          request.addBindValue(values[j]);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void queryAutoTuneHash(HashQueryPlanBuilder builder) {
+    builder.add(KeysetExpression.class).add(expandedForm);
+    for (int i = 0; i < propertyNames.length; i++) {
+      builder.add(propertyNames[i]).add(ascending[i]);
+    }
+    builder.bind(expandedForm ? values.length * (values.length + 1) / 2 : values.length);
+  }
+
+  @Override
+  public void queryPlanHash(BeanQueryRequest<?> request, HashQueryPlanBuilder builder) {
+    queryAutoTuneHash(builder);
+  }
+
+  @Override
+  public int queryBindHash() {
+    return Arrays.hashCode(values);
+  }
+}
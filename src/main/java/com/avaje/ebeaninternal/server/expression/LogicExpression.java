@@ -49,6 +49,12 @@ abstract class LogicExpression implements SpiExpression {
     this.expTwo = (SpiExpression) expTwo;
   }
 
+  public SpiExpression copyForPlanKey() {
+    SpiExpression one = expOne.copyForPlanKey();
+    SpiExpression two = expTwo.copyForPlanKey();
+    return AND.equals(joinType) ? new And(one, two) : new Or(one, two);
+  }
+
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins manyWhereJoin) {
     expOne.containsMany(desc, manyWhereJoin);
     expTwo.containsMany(desc, manyWhereJoin);
@@ -15,6 +15,11 @@ class NoopExpression implements SpiExpression {
 
   protected static final NoopExpression INSTANCE = new NoopExpression();
 
+  @Override
+  public SpiExpression copyForPlanKey() {
+    return this;
+  }
+
   @Override
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins whereManyJoins) {
     // nothing to do
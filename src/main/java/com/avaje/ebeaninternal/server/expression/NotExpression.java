@@ -21,6 +21,10 @@ final class NotExpression implements SpiExpression {
     this.exp = (SpiExpression) exp;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new NotExpression(exp.copyForPlanKey());
+  }
+
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins manyWhereJoin) {
     exp.containsMany(desc, manyWhereJoin);
   }
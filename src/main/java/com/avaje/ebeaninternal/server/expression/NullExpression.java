@@ -2,6 +2,7 @@ package com.avaje.ebeaninternal.server.expression;
 
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 import com.avaje.ebeaninternal.server.el.ElPropertyValue;
 
@@ -20,6 +21,10 @@ class NullExpression extends AbstractExpression {
     this.notNull = notNull;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return this;
+  }
+
   public void addBindValues(SpiExpressionRequest request) {
 
   }
@@ -21,6 +21,10 @@ class RawExpression implements SpiExpression {
     this.values = values;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new RawExpression(sql, (values == null) ? null : new Object[values.length]);
+  }
+
   public void containsMany(BeanDescriptor<?> desc, ManyWhereJoins manyWhereJoin) {
 
   }
@@ -3,6 +3,7 @@ package com.avaje.ebeaninternal.server.expression;
 import com.avaje.ebean.bean.EntityBean;
 import com.avaje.ebean.event.BeanQueryRequest;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
+import com.avaje.ebeaninternal.api.SpiExpression;
 import com.avaje.ebeaninternal.api.SpiExpressionRequest;
 import com.avaje.ebeaninternal.server.el.ElPropertyValue;
 
@@ -20,6 +21,10 @@ public class SimpleExpression extends AbstractExpression {
     this.value = value;
   }
 
+  public SpiExpression copyForPlanKey() {
+    return new SimpleExpression(propName, type, null);
+  }
+
   public boolean isOpEquals() {
     return Op.EQ.equals(type);
   }
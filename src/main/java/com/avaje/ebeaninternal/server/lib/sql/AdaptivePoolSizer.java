@@ -0,0 +1,141 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Determines the target size of the pool from the demand observed over a sliding window.
+ * <p>
+ * Each window (the period between trims) records the peak number of busy connections,
+ * the peak number of waiting threads and the number of borrows that had to wait. The
+ * target size is the peak demand (busy plus waiting) over the recent windows plus some
+ * headroom such that the pool grows before borrowers need to wait. When the load drops
+ * the target shrinks by half the excess per window so a brief lull does not close
+ * connections that are needed again shortly after.
+ * </p>
+ * <p>
+ * The target is always within the minimum and maximum size of the pool.
+ * </p>
+ */
+class AdaptivePoolSizer {
+
+  /**
+   * Headroom above the observed peak demand as a percentage.
+   */
+  private static final int HEADROOM_PERCENT = 20;
+
+  private final int[] peakDemand;
+
+  private final int[] waits;
+
+  private final AtomicInteger currentPeakBusy = new AtomicInteger();
+
+  private final AtomicInteger currentWaits = new AtomicInteger();
+
+  private int currentPeakWaiting;
+
+  private int index;
+
+  private volatile int targetSize;
+
+  /**
+   * Create with the number of windows to remember and the initial target size.
+   */
+  AdaptivePoolSizer(int windows, int initialTarget) {
+    int size = Math.max(1, windows);
+    this.peakDemand = new int[size];
+    this.waits = new int[size];
+    this.targetSize = initialTarget;
+  }
+
+  /**
+   * Return the current target size of the pool.
+   */
+  int getTargetSize() {
+    return targetSize;
+  }
+
+  /**
+   * Return the number of spare connections to keep free (ahead of demand).
+   */
+  int getHeadroom() {
+    return headroom(targetSize);
+  }
+
+  private static int headroom(int size) {
+    return Math.max(1, (size * HEADROOM_PERCENT) / 100);
+  }
+
+  /**
+   * Record the number of busy connections after a borrow.
+   */
+  void recordBusy(int busy) {
+    for (; ; ) {
+      int peak = currentPeakBusy.get();
+      if (busy <= peak || currentPeakBusy.compareAndSet(peak, busy)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Record that a borrow had to wait with the current number of waiting threads. Must
+   * hold the pool lock.
+   */
+  void recordWait(int waiting) {
+    currentWaits.incrementAndGet();
+    if (waiting > currentPeakWaiting) {
+      currentPeakWaiting = waiting;
+    }
+  }
+
+  /**
+   * Return the number of borrows that waited over the recent windows.
+   */
+  int getWaitCount() {
+    int total = currentWaits.get();
+    for (int i = 0; i < waits.length; i++) {
+      total += waits[i];
+    }
+    return total;
+  }
+
+  /**
+   * Close the current window and return the new target size. Must hold the pool lock.
+   */
+  int roll(int minSize, int maxSize, int busyNow) {
+
+    // connections busy now carry over as the starting peak of the next window
+    int peakBusy = Math.max(currentPeakBusy.getAndSet(busyNow), busyNow);
+    int windowWaits = currentWaits.getAndSet(0);
+
+    peakDemand[index] = peakBusy + currentPeakWaiting;
+    waits[index] = windowWaits;
+    currentPeakWaiting = 0;
+    index = (index + 1) % peakDemand.length;
+
+    int peak = 0;
+    for (int i = 0; i < peakDemand.length; i++) {
+      if (peakDemand[i] > peak) {
+        peak = peakDemand[i];
+      }
+    }
+
+    int desired = peak + headroom(peak);
+    int current = targetSize;
+    int target;
+    if (desired >= current || windowWaits > 0) {
+      target = Math.max(desired, current);
+    } else {
+      // shrink gradually
+      target = current - Math.max(1, (current - desired) / 2);
+    }
+    if (target > maxSize) {
+      target = maxSize;
+    }
+    if (target < minSize) {
+      target = minSize;
+    }
+    targetSize = target;
+    return target;
+  }
+}
@@ -1,6 +1,9 @@
 package com.avaje.ebeaninternal.server.lib.sql;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,7 +13,10 @@ import com.avaje.ebeaninternal.server.lib.sql.PooledConnectionStatistics.LoadVal
 /**
  * A buffer especially designed for Busy PooledConnections.
  * <p>
- * All thread safety controlled externally (by PooledConnectionQueue).
+ * Add and remove are non-blocking (CAS on the slot) such that they can be
+ * performed without holding the pool lock. Growing the capacity is rare and
+ * synchronized, with slots transferred to the new array using a 'moved'
+ * marker so that concurrent add and remove retry against the new slots.
  * </p>
  * <p>
  * It has a set of 'slots' and PooledConnections know which slot they went into
@@ -24,13 +30,18 @@ class BusyConnectionBuffer {
 
   private static final Logger logger = LoggerFactory.getLogger(BusyConnectionBuffer.class);
 
-  private PooledConnection[] slots;
+  /**
+   * Marker for a slot that has been transferred to a new (larger) array.
+   */
+  private static final PooledConnection MOVED = new PooledConnection("moved");
+
+  private volatile AtomicReferenceArray<PooledConnection> slots;
 
   private final int growBy;
 
-  private int size;
+  private final AtomicInteger size = new AtomicInteger();
 
-  private int pos = -1;
+  private final AtomicInteger pos = new AtomicInteger(-1);
 
   /**
    * Create the buffer with an initial capacity and fixed growBy.
@@ -40,59 +51,77 @@ class BusyConnectionBuffer {
    * @param growBy   the fixed amount to grow the buffer by.
    */
   protected BusyConnectionBuffer(int capacity, int growBy) {
-    this.slots = new PooledConnection[capacity];
+    this.slots = new AtomicReferenceArray<PooledConnection>(capacity);
     this.growBy = growBy;
   }
 
   /**
    * We can only grow (not shrink) the capacity.
    */
-  protected void setCapacity(int newCapacity) {
-    if (newCapacity > slots.length) {
-      PooledConnection[] current = this.slots;
-      this.slots = new PooledConnection[newCapacity];
-      System.arraycopy(current, 0, this.slots, 0, current.length);
+  protected synchronized void setCapacity(int newCapacity) {
+    AtomicReferenceArray<PooledConnection> current = this.slots;
+    if (newCapacity > current.length()) {
+      AtomicReferenceArray<PooledConnection> newSlots = new AtomicReferenceArray<PooledConnection>(newCapacity);
+      for (int i = 0; i < current.length(); i++) {
+        // mark as moved such that concurrent add/remove on the old slots fail and retry
+        newSlots.set(i, current.getAndSet(i, MOVED));
+      }
+      this.slots = newSlots;
     }
   }
 
   public String toString() {
-    return Arrays.toString(slots);
+    return slots.toString();
   }
 
   protected int getCapacity() {
-    return slots.length;
+    return slots.length();
   }
 
   protected int size() {
-    return size;
+    return size.get();
   }
 
   protected boolean isEmpty() {
-    return size == 0;
+    return size.get() == 0;
   }
 
   protected int add(PooledConnection pc) {
-    if (size == slots.length) {
-      // grow the capacity
-      setCapacity(slots.length + growBy);
+    for (; ; ) {
+      AtomicReferenceArray<PooledConnection> current = this.slots;
+      if (size.get() >= current.length()) {
+        // grow the capacity
+        growCapacity(current.length());
+      }
+      if (addToEmptySlot(current, pc)) {
+        return size.incrementAndGet();
+      }
+    }
+  }
+
+  private synchronized void growCapacity(int currentCapacity) {
+    if (slots.length() == currentCapacity) {
+      setCapacity(currentCapacity + growBy);
     }
-    int slot = nextEmptySlot();
-    pc.setSlotId(slot);
-    slots[slot] = pc;
-    return ++size;
   }
 
   protected boolean remove(PooledConnection pc) {
 
     int slotId = pc.getSlotId();
-    if (slots[slotId] != pc) {
-      PooledConnection heldBy = slots[slotId];
-      logger.warn("Failed to remove from slot[{}] PooledConnection[{}] - HeldBy[{}]", pc.getSlotId(), pc, heldBy);
-      return false;
+    for (; ; ) {
+      AtomicReferenceArray<PooledConnection> current = this.slots;
+      if (slotId < current.length() && current.compareAndSet(slotId, pc, null)) {
+        size.decrementAndGet();
+        return true;
+      }
+      PooledConnection heldBy = (slotId < current.length()) ? current.get(slotId) : null;
+      if (heldBy != MOVED) {
+        logger.warn("Failed to remove from slot[{}] PooledConnection[{}] - HeldBy[{}]", pc.getSlotId(), pc, heldBy);
+        return false;
+      }
+      // slots are being transferred to a larger array so retry
+      Thread.yield();
     }
-    slots[slotId] = null;
-    --size;
-    return true;
   }
 
   /**
@@ -102,13 +131,31 @@ class BusyConnectionBuffer {
    */
   protected void collectStatistics(LoadValues values, boolean reset) {
 
-    for (int i = 0; i < slots.length; i++) {
-      if (slots[i] != null) {
-        values.plus(slots[i].getStatistics().getValues(reset));
+    AtomicReferenceArray<PooledConnection> current = this.slots;
+    for (int i = 0; i < current.length(); i++) {
+      PooledConnection pc = current.get(i);
+      if (pc != null && pc != MOVED) {
+        values.plus(pc.getStatistics().getValues(reset));
       }
     }
   }
 
+  /**
+   * Return the connections that are currently busy.
+   */
+  protected List<PooledConnection> getBusyConnections() {
+
+    List<PooledConnection> list = new ArrayList<PooledConnection>(size());
+    AtomicReferenceArray<PooledConnection> current = this.slots;
+    for (int i = 0; i < current.length(); i++) {
+      PooledConnection pc = current.get(i);
+      if (pc != null && pc != MOVED) {
+        list.add(pc);
+      }
+    }
+    return list;
+  }
+
   /**
    * Close connections that should be considered leaked.
    */
@@ -118,17 +165,16 @@ class BusyConnectionBuffer {
 
     logger.debug("Closing busy connections using leakTimeMinutes {}", leakTimeMinutes);
 
-    for (int i = 0; i < slots.length; i++) {
-      if (slots[i] != null) {
-        //tmp.add(slots[i]);
-        PooledConnection pc = slots[i];
+    AtomicReferenceArray<PooledConnection> current = this.slots;
+    for (int i = 0; i < current.length(); i++) {
+      PooledConnection pc = current.get(i);
+      if (pc != null && pc != MOVED) {
         //noinspection StatementWithEmptyBody
         if (pc.isLongRunning() || pc.getLastUsedTime() > olderThanTime) {
           // PooledConnection has been used recently or
           // expected to be longRunning so not closing...
-        } else {
-          slots[i] = null;
-          --size;
+        } else if (current.compareAndSet(i, pc, null)) {
+          size.decrementAndGet();
           closeBusyConnection(pc);
         }
       }
@@ -160,9 +206,10 @@ class BusyConnectionBuffer {
 
     StringBuilder sb = new StringBuilder();
 
-    for (int i = 0; i < slots.length; i++) {
-      if (slots[i] != null) {
-        PooledConnection pc = slots[i];
+    AtomicReferenceArray<PooledConnection> current = this.slots;
+    for (int i = 0; i < current.length(); i++) {
+      PooledConnection pc = current.get(i);
+      if (pc != null && pc != MOVED) {
         if (toLogger) {
           logger.info("Busy Connection - {}", pc.getFullDescription());
         } else {
@@ -176,26 +223,27 @@ class BusyConnectionBuffer {
 
 
   /**
-   * Return the position of the next empty slot.
+   * Add the connection to the next empty slot returning false if there was no empty slot.
    */
-  private int nextEmptySlot() {
-
-    // search forward
-    while (++pos < slots.length) {
-      if (slots[pos] == null) {
-        return pos;
+  private boolean addToEmptySlot(AtomicReferenceArray<PooledConnection> current, PooledConnection pc) {
+
+    int length = current.length();
+    int start = pos.get();
+    // search forward and then from the beginning
+    for (int i = 1; i <= length; i++) {
+      int slot = (start + i) % length;
+      if (slot < 0) {
+        slot += length;
       }
-    }
-    // search from beginning
-    pos = -1;
-    while (++pos < slots.length) {
-      if (slots[pos] == null) {
-        return pos;
+      if (current.get(slot) == null) {
+        pc.setSlotId(slot);
+        if (current.compareAndSet(slot, null, pc)) {
+          pos.set(slot);
+          return true;
+        }
       }
     }
-
-    // not expecting this
-    throw new RuntimeException("No Empty Slot Found?");
+    return false;
   }
 
 }
@@ -1,5 +1,6 @@
 package com.avaje.ebeaninternal.server.lib.sql;
 
+import com.avaje.ebean.BackgroundExecutor;
 import com.avaje.ebean.config.DataSourceConfig;
 import com.avaje.ebeaninternal.api.ClassUtil;
 import org.slf4j.Logger;
@@ -14,10 +15,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A robust DataSource.
@@ -30,6 +34,7 @@ import java.util.Set;
  * <li>Provides PreparedStatement caching
  * <li>Knows the busy connections
  * <li>Traces connections that have been leaked
+ * <li>Validates idle and suspect connections in the background
  * </ul>
  * </p>
  */
@@ -77,6 +82,10 @@ public class DataSourcePool implements DataSource {
 
   private final int heartbeatTimeoutSeconds;
 
+  /**
+   * Free connections idle for longer than this are validated by the heartbeat (0 to disable).
+   */
+  private final long validateIdleMillis;
 
   private final long trimPoolFreqMillis;
 
@@ -102,10 +111,20 @@ public class DataSourcePool implements DataSource {
   private final long maxAgeMillis;
 
   /**
-   * Flag set to true to capture stackTraces (can be expensive).
+   * Flag set to true to capture stackTraces on every borrow.
    */
   private boolean captureStackTrace;
 
+  /**
+   * Sampled capture of call sites to report connections held too long.
+   */
+  private final LeakDetector leakDetector;
+
+  /**
+   * The configured leak detection sample rate (when captureStackTrace is false).
+   */
+  private final int leakSampleRate;
+
   /**
    * The max size of the stack trace to report.
    */
@@ -152,13 +171,58 @@ public class DataSourcePool implements DataSource {
    */
   private final int waitTimeoutMillis;
 
+  /**
+   * The maximum number of threads that can wait for a connection (0 for no limit).
+   */
+  private final int maxWaiting;
+
+  /**
+   * The maximum number of threads used to create connections.
+   */
+  private final int createConnectionThreads;
+
+  /**
+   * Set to true for the pool size to adapt to the observed demand.
+   */
+  private final boolean adaptiveSizing;
+
+  /**
+   * The number of trim periods that adaptive sizing tracks demand over.
+   */
+  private final int adaptiveWindows;
+
   /**
    * The size of the preparedStatement cache;
    */
   private int pstmtCacheSize;
 
+  /**
+   * The number of the most frequently used statements to prepare on new connections.
+   */
+  private final int pstmtCacheWarmSize;
+
+  /**
+   * Pool wide frequency based admission and statistics for the preparedStatement caches.
+   */
+  private final PstmtCachePolicy pstmtCachePolicy;
+
   private final PooledConnectionQueue queue;
 
+  /**
+   * Histogram of the time threads wait to borrow a connection.
+   */
+  private final LatencyHistogram waitLatency = new LatencyHistogram();
+
+  /**
+   * Histogram of the time connections are held (borrowed until closed).
+   */
+  private final LatencyHistogram holdLatency = new LatencyHistogram();
+
+  /**
+   * Histogram of statement execution times.
+   */
+  private final LatencyHistogram executeLatency = new LatencyHistogram();
+
   /**
    * Used to find and close() leaked connections. Leaked connections are
    * thought to be busy but have not been used for some time. Each time a
@@ -168,6 +232,22 @@ public class DataSourcePool implements DataSource {
 
   private final Runnable heartbeatRunnable = new HeartBeatRunnable();
 
+  private final Runnable validationRunnable = new ValidationRunnable();
+
+  /**
+   * Executor used to validate suspect connections off the calling thread (optional).
+   */
+  private volatile BackgroundExecutor backgroundExecutor;
+
+  /**
+   * Connections that had errors and are waiting to be validated in the background.
+   */
+  private final ConcurrentLinkedQueue<PooledConnection> quarantined = new ConcurrentLinkedQueue<PooledConnection>();
+
+  private final AtomicBoolean validationScheduled = new AtomicBoolean();
+
+  private final AtomicBoolean checkRequested = new AtomicBoolean();
+
   public DataSourcePool(DataSourceAlert notify, String name, DataSourceConfig params) {
     this(notify, name, params, null);
   }
@@ -186,16 +266,25 @@ public class DataSourcePool implements DataSource {
     this.leakTimeMinutes = params.getLeakTimeMinutes();
     this.captureStackTrace = params.isCaptureStackTrace();
     this.maxStackTraceSize = params.getMaxStackTraceSize();
+    this.leakSampleRate = params.getLeakSampleRate();
+    this.leakDetector = new LeakDetector(captureStackTrace ? 1 : leakSampleRate, maxStackTraceSize, 1000L * params.getLeakReportSecs());
     this.databaseDriver = params.getDriver();
     this.databaseUrl = params.getUrl();
     this.pstmtCacheSize = params.getPstmtCacheSize();
+    this.pstmtCacheWarmSize = Math.min(params.getPstmtCacheWarmSize(), pstmtCacheSize - 1);
+    this.pstmtCachePolicy = new PstmtCachePolicy(Math.max(100, pstmtCacheSize * 10));
 
     this.minConnections = params.getMinConnections();
     this.maxConnections = params.getMaxConnections();
     this.waitTimeoutMillis = params.getWaitTimeoutMillis();
+    this.maxWaiting = params.getMaxWaiting();
+    this.createConnectionThreads = Math.max(1, params.getCreateConnectionThreads());
+    this.adaptiveSizing = params.isAdaptiveSizing();
+    this.adaptiveWindows = params.getAdaptiveWindows();
     this.heartbeatsql = params.getHeartbeatSql();
     this.heartbeatFreqSecs = params.getHeartbeatFreqSecs();
     this.heartbeatTimeoutSeconds = params.getHeartbeatTimeoutSeconds();
+    this.validateIdleMillis = 1000L * params.getValidateIdleSecs();
     this.trimPoolFreqMillis = 1000 * params.getTrimPoolFreqSecs();
 
     queue = new PooledConnectionQueue(this);
@@ -234,6 +323,13 @@ public class DataSourcePool implements DataSource {
     }
   }
 
+  class ValidationRunnable implements Runnable {
+    @Override
+    public void run() {
+      validateInBackground();
+    }
+  }
+
 
   @Override
   public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
@@ -368,6 +464,18 @@ public class DataSourcePool implements DataSource {
     return heartbeatRunnable;
   }
 
+  /**
+   * Set the executor used to validate suspect connections in the background.
+   * <p>
+   * When set, connections that had errors are quarantined and validated by the
+   * executor rather than by the thread closing the connection. Without an executor
+   * they are validated synchronously on close.
+   * </p>
+   */
+  public void setBackgroundExecutor(BackgroundExecutor backgroundExecutor) {
+    this.backgroundExecutor = backgroundExecutor;
+  }
+
   /**
    * Trim connections (in the free list) based on idle time and maximum age.
    */
@@ -394,6 +502,14 @@ public class DataSourcePool implements DataSource {
     // first trim idle connections
     trimIdleConnections();
 
+    reportLeaks();
+
+    if (validateIdleConnections()) {
+      // validated idle connections so skip the extra heartbeat round trip
+      notifyDataSourceIsUp();
+      return;
+    }
+
     Connection conn = null;
     try {
       // Get a connection from the pool and test it
@@ -419,6 +535,116 @@ public class DataSourcePool implements DataSource {
     }
   }
 
+  /**
+   * Validate the free connections that have not been used within validateIdleMillis.
+   * <p>
+   * Connections are claimed from the free list one at a time so at most one free
+   * connection is unavailable to borrowers while it is validated.
+   * Returns true if some connections were validated and all of them were good.
+   * </p>
+   */
+  private boolean validateIdleConnections() {
+
+    if (validateIdleMillis <= 0 || !dataSourceUp) {
+      return false;
+    }
+    long since = System.currentTimeMillis() - validateIdleMillis;
+    int validatedCount = 0;
+    int invalidCount = 0;
+    PooledConnection pc;
+    while ((pc = queue.claimIdleConnection(since)) != null) {
+      boolean valid = validateIdleConnection(pc);
+      validatedCount++;
+      if (!valid) {
+        invalidCount++;
+      }
+      queue.returnValidatedConnection(pc, valid);
+    }
+    if (invalidCount > 0) {
+      logger.warn("DataSourcePool [{}] closed [{}] of [{}] idle connections that failed validation", name, invalidCount, validatedCount);
+    }
+    return validatedCount > 0 && invalidCount == 0;
+  }
+
+  private boolean validateIdleConnection(PooledConnection pc) {
+    try {
+      return testConnection(pc.getUnderlyingConnection());
+
+    } catch (Exception e) {
+      logger.debug("Idle connection [{}] failed validation {}", pc.getName(), e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Quarantine a connection that had errors such that it is validated in the background.
+   * <p>
+   * Returns false if there is no background executor in which case the caller should
+   * validate the connection itself.
+   * </p>
+   */
+  protected boolean quarantineConnection(PooledConnection pooledConnection) {
+
+    if (backgroundExecutor == null) {
+      return false;
+    }
+    quarantined.offer(pooledConnection);
+    scheduleValidation();
+    return true;
+  }
+
+  /**
+   * Check the dataSource in the background if possible (otherwise check it now).
+   */
+  private void requestCheckDataSource() {
+
+    if (backgroundExecutor == null) {
+      checkDataSource();
+    } else {
+      checkRequested.set(true);
+      scheduleValidation();
+    }
+  }
+
+  private void scheduleValidation() {
+
+    BackgroundExecutor executor = backgroundExecutor;
+    if (executor != null && validationScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(validationRunnable);
+      } catch (RuntimeException e) {
+        // typically rejected due to shutdown so validate now
+        logger.debug("Unable to validate connections in background " + e);
+        validateInBackground();
+      }
+    }
+  }
+
+  /**
+   * Validate the quarantined connections returning good ones to the pool and closing bad ones.
+   */
+  private void validateInBackground() {
+
+    // clear first such that connections quarantined from here on schedule another run
+    validationScheduled.set(false);
+
+    boolean check = checkRequested.getAndSet(false);
+    PooledConnection pc;
+    while ((pc = quarantined.poll()) != null) {
+      if (validateConnection(pc)) {
+        pc.returnToPool();
+      } else {
+        // the connection is BAD, remove it, close it and test the pool
+        pc.markInvalid();
+        queue.returnPooledConnection(pc, true);
+        check = true;
+      }
+    }
+    if (check) {
+      checkDataSource();
+    }
+  }
+
   /**
    * Create a Connection that will not be part of the connection pool.
    * <p>
@@ -505,6 +731,44 @@ public class DataSourcePool implements DataSource {
     return waitTimeoutMillis;
   }
 
+  /**
+   * Return the maximum number of threads that can wait for a connection when the
+   * pool has hit the max size. Threads that would exceed this fail fast. A value
+   * of 0 means there is no limit.
+   */
+  public int getMaxWaiting() {
+    return maxWaiting;
+  }
+
+  /**
+   * Return the maximum number of threads used to create connections in parallel.
+   */
+  public int getCreateConnectionThreads() {
+    return createConnectionThreads;
+  }
+
+  /**
+   * Return true if the pool size adapts to the observed demand.
+   */
+  public boolean isAdaptiveSizing() {
+    return adaptiveSizing;
+  }
+
+  /**
+   * Return the number of trim periods that adaptive sizing tracks demand over.
+   */
+  public int getAdaptiveWindows() {
+    return adaptiveWindows;
+  }
+
+  /**
+   * Return the size the pool is currently maintaining. This is the minimum size unless
+   * adaptive sizing is on in which case it follows the observed demand.
+   */
+  public int getTargetSize() {
+    return queue.getTargetSize();
+  }
+
   /**
    * Return the time after which inactive connections are trimmed.
    */
@@ -608,7 +872,7 @@ public class DataSourcePool implements DataSource {
 
     if (forceClose) {
       // Got a bad connection so check the pool
-      checkDataSource();
+      requestCheckDataSource();
     }
   }
 
@@ -659,9 +923,10 @@ public class DataSourcePool implements DataSource {
 
   /**
    * Grow the pool by creating a new connection. The connection can either be
-   * added to the available list, or returned.
+   * added to the available list, or handed to a waiting thread.
    * <p>
-   * This method is protected by synchronization in calling methods.
+   * This is called by the background connection creation threads without holding
+   * the pool lock (and can be called concurrently).
    * </p>
    */
   protected PooledConnection createConnectionForQueue(int connId) throws SQLException {
@@ -670,6 +935,9 @@ public class DataSourcePool implements DataSource {
       Connection c = createUnpooledConnection();
 
       PooledConnection pc = new PooledConnection(this, connId, c);
+      if (pstmtCacheWarmSize > 0) {
+        pc.prepareStatements(pstmtCachePolicy.top(pstmtCacheWarmSize));
+      }
       pc.resetForUse();
 
       if (!dataSourceUp) {
@@ -708,6 +976,18 @@ public class DataSourcePool implements DataSource {
     return getPooledConnection();
   }
 
+  /**
+   * Return a pooled connection waiting at most waitMillis if the pool has hit its
+   * maximum size (rather than the default waitTimeoutMillis).
+   * <p>
+   * This is the per call deadline for callers that use the pool as a DataSource but
+   * have less time available than the configured wait timeout.
+   * </p>
+   */
+  public Connection getConnection(long waitMillis) throws SQLException {
+    return getPooledConnection(waitMillis);
+  }
+
   /**
    * Get a connection from the pool.
    * <p>
@@ -716,12 +996,21 @@ public class DataSourcePool implements DataSource {
    * </p>
    */
   public PooledConnection getPooledConnection() throws SQLException {
+    return getPooledConnection(waitTimeoutMillis);
+  }
+
+  /**
+   * Get a connection from the pool waiting at most waitMillis if the pool has
+   * hit its maximum size.
+   * <p>
+   * This allows a caller with a deadline to wait less than the default waitTimeoutMillis.
+   * </p>
+   */
+  public PooledConnection getPooledConnection(long waitMillis) throws SQLException {
 
-    PooledConnection c = queue.getPooledConnection();
+    PooledConnection c = queue.getPooledConnection(waitMillis);
 
-    if (captureStackTrace) {
-      c.setStackTrace(Thread.currentThread().getStackTrace());
-    }
+    c.setStackSignature(leakDetector.sample());
 
     if (poolListener != null) {
       poolListener.onAfterBorrowConnection(c);
@@ -796,6 +1085,27 @@ public class DataSourcePool implements DataSource {
    */
   public void setCaptureStackTrace(boolean captureStackTrace) {
     this.captureStackTrace = captureStackTrace;
+    this.leakDetector.setSampleRate(captureStackTrace ? 1 : leakSampleRate);
+  }
+
+  /**
+   * Return the leak detector with the call sites that have held connections too long.
+   */
+  public LeakDetector getLeakDetector() {
+    return leakDetector;
+  }
+
+  /**
+   * Log the call sites of sampled busy connections newly held longer than leakReportSecs.
+   */
+  void reportLeaks() {
+
+    Map<LeakDetector.StackSignature, Integer> overdue = leakDetector.check(queue.getBusyConnections(), System.currentTimeMillis());
+    for (Entry<LeakDetector.StackSignature, Integer> entry : overdue.entrySet()) {
+      LeakDetector.StackSignature signature = entry.getKey();
+      logger.warn("DataSourcePool [{}] has [{}] connection(s) held longer than [{}] secs (overdue total [{}] of [{}] sampled) obtained at {}",
+          name, entry.getValue(), leakDetector.getThresholdMillis() / 1000, signature.getOverdueCount(), signature.getBorrowCount(), signature);
+    }
   }
 
   /**
@@ -862,6 +1172,42 @@ public class DataSourcePool implements DataSource {
     return pstmtCacheSize;
   }
 
+  /**
+   * Return the pool wide frequency based admission policy for the preparedStatement caches.
+   */
+  public PstmtCachePolicy getPstmtCachePolicy() {
+    return pstmtCachePolicy;
+  }
+
+  /**
+   * Return the histogram of the time threads wait to borrow a connection.
+   */
+  LatencyHistogram getWaitLatency() {
+    return waitLatency;
+  }
+
+  /**
+   * Return the histogram of the time connections are held.
+   */
+  LatencyHistogram getHoldLatency() {
+    return holdLatency;
+  }
+
+  /**
+   * Return the histogram of statement execution times.
+   */
+  LatencyHistogram getExecuteLatency() {
+    return executeLatency;
+  }
+
+  /**
+   * Return the usage statistics of the most frequently used statements across
+   * all the connections (hits, misses and prepare time).
+   */
+  public List<PstmtStatistics> getPstmtStatistics(boolean reset) {
+    return pstmtCachePolicy.getStatistics(reset);
+  }
+
   /**
    * Set the preparedStatement cache size.
    */
@@ -873,13 +1219,21 @@ public class DataSourcePool implements DataSource {
    * Return the current status of the connection pool.
    * <p>
    * If you pass reset = true then the counters such as
-   * hitCount, waitCount and highWaterMark are reset.
+   * hitCount, waitCount and highWaterMark are reset along with the
+   * wait, hold and statement execution latency histograms.
    * </p>
    */
   public Status getStatus(boolean reset) {
     return queue.getStatus(reset);
   }
 
+  /**
+   * Return the current number of busy connections (without taking the pool lock).
+   */
+  public int getBusyCount() {
+    return queue.getBusyCount();
+  }
+
   /**
    * Return the aggregated load statistics collected on all the connections in the pool.
    */
@@ -911,9 +1265,18 @@ public class DataSourcePool implements DataSource {
     private final int highWaterMark;
     private final int waitCount;
     private final int hitCount;
+    private final LatencyHistogram.Snapshot waitLatency;
+    private final LatencyHistogram.Snapshot holdLatency;
+    private final LatencyHistogram.Snapshot executeLatency;
 
     protected Status(String name, int minSize, int maxSize, int free, int busy, int waiting, int highWaterMark,
                      int waitCount, int hitCount) {
+      this(name, minSize, maxSize, free, busy, waiting, highWaterMark, waitCount, hitCount, null, null, null);
+    }
+
+    protected Status(String name, int minSize, int maxSize, int free, int busy, int waiting, int highWaterMark,
+                     int waitCount, int hitCount, LatencyHistogram.Snapshot waitLatency,
+                     LatencyHistogram.Snapshot holdLatency, LatencyHistogram.Snapshot executeLatency) {
       this.name = name;
       this.minSize = minSize;
       this.maxSize = maxSize;
@@ -923,11 +1286,18 @@ public class DataSourcePool implements DataSource {
       this.highWaterMark = highWaterMark;
       this.waitCount = waitCount;
       this.hitCount = hitCount;
+      this.waitLatency = waitLatency;
+      this.holdLatency = holdLatency;
+      this.executeLatency = executeLatency;
     }
 
     public String toString() {
-      return "min[" + minSize + "] max[" + maxSize + "] free[" + free + "] busy[" + busy + "] waiting[" + waiting
+      String msg = "min[" + minSize + "] max[" + maxSize + "] free[" + free + "] busy[" + busy + "] waiting[" + waiting
           + "] highWaterMark[" + highWaterMark + "] waitCount[" + waitCount + "] hitCount[" + hitCount + "]";
+      if (waitLatency != null) {
+        msg += " wait{" + waitLatency + "} hold{" + holdLatency + "} execute{" + executeLatency + "}";
+      }
+      return msg;
     }
 
     /**
@@ -998,6 +1368,28 @@ public class DataSourcePool implements DataSource {
       return hitCount;
     }
 
+    /**
+     * Return the histogram of the time in micros threads waited to borrow a connection
+     * (includes borrows that did not need to wait).
+     */
+    public LatencyHistogram.Snapshot getWaitLatency() {
+      return waitLatency;
+    }
+
+    /**
+     * Return the histogram of the time in micros connections were held.
+     */
+    public LatencyHistogram.Snapshot getHoldLatency() {
+      return holdLatency;
+    }
+
+    /**
+     * Return the histogram of statement execution times in micros.
+     */
+    public LatencyHistogram.Snapshot getExecuteLatency() {
+      return executeLatency;
+    }
+
   }
 
 }
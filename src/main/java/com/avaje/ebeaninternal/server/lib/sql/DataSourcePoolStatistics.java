@@ -25,6 +25,14 @@ public class DataSourcePoolStatistics {
 
   private final long totalMicros;
 
+  private final int waiting;
+
+  private final int waitingHighWaterMark;
+
+  private final int shedCount;
+
+  private final int waitTimeoutCount;
+
   /**
    * No statistics collected.
    */
@@ -34,22 +42,39 @@ public class DataSourcePoolStatistics {
     this.errorCount = 0;
     this.hwmMicros = 0;
     this.totalMicros = 0;
+    this.waiting = 0;
+    this.waitingHighWaterMark = 0;
+    this.shedCount = 0;
+    this.waitTimeoutCount = 0;
   }
 
   /**
    * Construct with statistics collected.
    */
   public DataSourcePoolStatistics(long collectionStart, long count, long errorCount, long hwmMicros, long totalMicros) {
+    this(collectionStart, count, errorCount, hwmMicros, totalMicros, 0, 0, 0, 0);
+  }
+
+  /**
+   * Construct with statistics collected including the wait queue statistics.
+   */
+  public DataSourcePoolStatistics(long collectionStart, long count, long errorCount, long hwmMicros, long totalMicros,
+                                  int waiting, int waitingHighWaterMark, int shedCount, int waitTimeoutCount) {
     this.collectionStart = collectionStart;
     this.count = count;
     this.errorCount = errorCount;
     this.hwmMicros = hwmMicros;
     this.totalMicros = totalMicros;
+    this.waiting = waiting;
+    this.waitingHighWaterMark = waitingHighWaterMark;
+    this.shedCount = shedCount;
+    this.waitTimeoutCount = waitTimeoutCount;
   }
 
   public String toString() {
     return "count[" + count + "] errors[" + errorCount + "] totalMicros[" + totalMicros + "] hwmMicros[" + hwmMicros
-        + "] avgMicros[" + getAvgMicros() + "]";
+        + "] avgMicros[" + getAvgMicros() + "] waiting[" + waiting + "] waitingHwm[" + waitingHighWaterMark
+        + "] shed[" + shedCount + "] waitTimeouts[" + waitTimeoutCount + "]";
   }
 
   /**
@@ -94,4 +119,32 @@ public class DataSourcePoolStatistics {
     return (totalMicros == 0) ? 0 : totalMicros / count;
   }
 
+  /**
+   * Return the number of threads currently waiting for a connection (the wait queue depth).
+   */
+  public int getWaiting() {
+    return waiting;
+  }
+
+  /**
+   * Return the high water mark of the wait queue depth.
+   */
+  public int getWaitingHighWaterMark() {
+    return waitingHighWaterMark;
+  }
+
+  /**
+   * Return the number of requests that failed fast because the wait queue was full.
+   */
+  public int getShedCount() {
+    return shedCount;
+  }
+
+  /**
+   * Return the number of requests that timed out waiting for a connection.
+   */
+  public int getWaitTimeoutCount() {
+    return waitTimeoutCount;
+  }
+
 }
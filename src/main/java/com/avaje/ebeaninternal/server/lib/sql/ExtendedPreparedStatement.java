@@ -114,6 +114,7 @@ public class ExtendedPreparedStatement extends ExtendedStatement implements Prep
    * execute the statement.
    */
   public boolean execute() throws SQLException {
+    long startNanos = System.nanoTime();
     try {
       return pstmt.execute();
     } catch (SQLException e) {
@@ -121,6 +122,8 @@ public class ExtendedPreparedStatement extends ExtendedStatement implements Prep
       // this connection before returning it
       pooledConnection.addError(e);
       throw e;
+    } finally {
+      pooledConnection.recordExecute(startNanos);
     }
   }
 
@@ -128,6 +131,7 @@ public class ExtendedPreparedStatement extends ExtendedStatement implements Prep
    * Execute teh query.
    */
   public ResultSet executeQuery() throws SQLException {
+    long startNanos = System.nanoTime();
     try {
       return pstmt.executeQuery();
     } catch (SQLException e) {
@@ -135,6 +139,8 @@ public class ExtendedPreparedStatement extends ExtendedStatement implements Prep
       // this connection before returning it
       pooledConnection.addError(e);
       throw e;
+    } finally {
+      pooledConnection.recordExecute(startNanos);
     }
   }
 
@@ -142,6 +148,7 @@ public class ExtendedPreparedStatement extends ExtendedStatement implements Prep
    * Execute the dml statement.
    */
   public int executeUpdate() throws SQLException {
+    long startNanos = System.nanoTime();
     try {
       return pstmt.executeUpdate();
     } catch (SQLException e) {
@@ -149,6 +156,8 @@ public class ExtendedPreparedStatement extends ExtendedStatement implements Prep
       // this connection before returning it
       pooledConnection.addError(e);
       throw e;
+    } finally {
+      pooledConnection.recordExecute(startNanos);
     }
   }
 
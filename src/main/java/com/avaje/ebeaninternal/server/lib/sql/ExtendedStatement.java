@@ -72,12 +72,15 @@ public abstract class ExtendedStatement extends PreparedStatementDelegator {
    * Execute the sql.
    */
   public boolean execute(String sql) throws SQLException {
+    long startNanos = System.nanoTime();
     try {
       pooledConnection.setLastStatement(sql);
       return pstmt.execute(sql);
     } catch (SQLException e) {
       pooledConnection.addError(e);
       throw e;
+    } finally {
+      pooledConnection.recordExecute(startNanos);
     }
   }
 
@@ -85,12 +88,15 @@ public abstract class ExtendedStatement extends PreparedStatementDelegator {
    * Execute the query.
    */
   public ResultSet executeQuery(String sql) throws SQLException {
+    long startNanos = System.nanoTime();
     try {
       pooledConnection.setLastStatement(sql);
       return pstmt.executeQuery(sql);
     } catch (SQLException e) {
       pooledConnection.addError(e);
       throw e;
+    } finally {
+      pooledConnection.recordExecute(startNanos);
     }
   }
 
@@ -98,12 +104,15 @@ public abstract class ExtendedStatement extends PreparedStatementDelegator {
    * Execute the dml sql.
    */
   public int executeUpdate(String sql) throws SQLException {
+    long startNanos = System.nanoTime();
     try {
       pooledConnection.setLastStatement(sql);
       return pstmt.executeUpdate(sql);
     } catch (SQLException e) {
       pooledConnection.addError(e);
       throw e;
+    } finally {
+      pooledConnection.recordExecute(startNanos);
     }
   }
 
@@ -111,7 +120,12 @@ public abstract class ExtendedStatement extends PreparedStatementDelegator {
    * Standard Statement method call.
    */
   public int[] executeBatch() throws SQLException {
-    return pstmt.executeBatch();
+    long startNanos = System.nanoTime();
+    try {
+      return pstmt.executeBatch();
+    } finally {
+      pooledConnection.recordExecute(startNanos);
+    }
   }
 
   /**
@@ -2,8 +2,9 @@ package com.avaje.ebeaninternal.server.lib.sql;
 
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,7 +14,15 @@ import com.avaje.ebeaninternal.server.lib.sql.PooledConnectionStatistics.LoadVal
 /**
  * A buffer designed especially to hold free pooled connections.
  * <p>
- * All thread safety controlled externally (by PooledConnectionQueue).
+ * Adding and removing connections is non-blocking (CAS based) such that
+ * borrowing and returning connections does not require the pool lock. A
+ * connection is only handed out by a successful claim on its pool state so
+ * the buffer can contain 'stale' entries for connections that were claimed
+ * directly (via the thread affine fast path) and these are skipped on remove.
+ * </p>
+ * <p>
+ * Trim and closeAll are expected to be called holding the pool lock (by
+ * PooledConnectionQueue) but can safely run concurrently with add and remove.
  * </p>
  */
 class FreeConnectionBuffer {
@@ -23,31 +32,78 @@ class FreeConnectionBuffer {
   /**
    * Buffer oriented for add and remove.
    */
-  private final LinkedList<PooledConnection> freeBuffer = new LinkedList<PooledConnection>();
+  private final ConcurrentLinkedQueue<PooledConnection> freeBuffer = new ConcurrentLinkedQueue<PooledConnection>();
+
+  /**
+   * The number of free connections (ConcurrentLinkedQueue.size() is not constant time).
+   */
+  private final AtomicInteger size = new AtomicInteger();
 
   protected FreeConnectionBuffer() {
   }
 
   protected int size() {
-    return freeBuffer.size();
+    return size.get();
   }
 
   protected boolean isEmpty() {
-    return freeBuffer.isEmpty();
+    return size.get() <= 0;
   }
 
   /**
    * Add connection to the free list.
    */
   protected void add(PooledConnection pc) {
-    freeBuffer.addLast(pc);
+    pc.setPoolStateFree();
+    size.incrementAndGet();
+    if (pc.markQueued()) {
+      // only add if not already in the buffer (a stale entry that will be claimed on remove)
+      freeBuffer.offer(pc);
+    }
   }
 
   /**
-   * Remove a connection from the free list.
+   * Remove a connection from the free list returning null if there are no free connections.
    */
   protected PooledConnection remove() {
-    return freeBuffer.removeFirst();
+    PooledConnection pc;
+    while ((pc = freeBuffer.poll()) != null) {
+      pc.clearQueued();
+      if (pc.claimFromPool()) {
+        size.decrementAndGet();
+        return pc;
+      }
+      // stale entry for a connection that was claimed directly or removed
+    }
+    return null;
+  }
+
+  /**
+   * Claim a specific connection (typically the connection last returned by this thread).
+   * <p>
+   * Returns false if the connection is no longer free (claimed by another thread or removed).
+   * </p>
+   */
+  protected boolean claim(PooledConnection pc) {
+    if (pc.claimFromPool()) {
+      size.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Claim one free connection that has not been used or validated since the given time
+   * (for validation) returning null if there is none.
+   */
+  protected PooledConnection claimIdle(long since) {
+
+    for (PooledConnection pc : freeBuffer) {
+      if (pc.getLastUsedTime() < since && pc.getLastValidatedTime() < since && claim(pc)) {
+        return pc;
+      }
+    }
+    return null;
   }
 
   /**
@@ -56,16 +112,19 @@ class FreeConnectionBuffer {
   protected void closeAll(boolean logErrors) {
 
     // create a temporary list
-    List<PooledConnection> tempList = new ArrayList<PooledConnection>(freeBuffer.size());
+    List<PooledConnection> tempList = new ArrayList<PooledConnection>(size());
 
-    // add all the connections into it
-    for (PooledConnection c : freeBuffer) {
-      tempList.add(c);
+    // remove all the free connections from the buffer and add them to it
+    Iterator<PooledConnection> iterator = freeBuffer.iterator();
+    while (iterator.hasNext()) {
+      PooledConnection pc = iterator.next();
+      if (pc.removeFromPool()) {
+        iterator.remove();
+        size.decrementAndGet();
+        tempList.add(pc);
+      }
     }
 
-    // clear the buffer (in case it takes some time to close these connections).
-    freeBuffer.clear();
-
     logger.debug("... closing all {} connections from the free list with logErrors: {}", tempList.size(), logErrors);
     for (int i = 0; i < tempList.size(); i++) {
       PooledConnection pooledConnection = tempList.get(i);
@@ -84,8 +143,30 @@ class FreeConnectionBuffer {
     Iterator<PooledConnection> iterator = freeBuffer.iterator();
     while (iterator.hasNext()) {
       PooledConnection pooledConnection = iterator.next();
-      if (pooledConnection.shouldTrim(usedSince, createdSince)) {
+      if (pooledConnection.shouldTrim(usedSince, createdSince) && pooledConnection.removeFromPool()) {
         iterator.remove();
+        size.decrementAndGet();
+        pooledConnection.closeConnectionFully(true);
+        trimCount++;
+      }
+    }
+
+    return trimCount;
+  }
+
+  /**
+   * Close up to count free connections starting with those free the longest.
+   */
+  protected int trimExcess(int count) {
+
+    int trimCount = 0;
+
+    Iterator<PooledConnection> iterator = freeBuffer.iterator();
+    while (trimCount < count && iterator.hasNext()) {
+      PooledConnection pooledConnection = iterator.next();
+      if (pooledConnection.removeFromPool()) {
+        iterator.remove();
+        size.decrementAndGet();
         pooledConnection.closeConnectionFully(true);
         trimCount++;
       }
@@ -100,7 +181,9 @@ class FreeConnectionBuffer {
   protected void collectStatistics(LoadValues values, boolean reset) {
 
     for (PooledConnection c : freeBuffer) {
-      values.plus(c.getStatistics().getValues(reset));
+      if (c.isPoolStateFree()) {
+        values.plus(c.getStatistics().getValues(reset));
+      }
     }
   }
 }
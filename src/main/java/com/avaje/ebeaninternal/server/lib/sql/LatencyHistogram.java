@@ -0,0 +1,173 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory, lock free histogram of latencies in microseconds.
+ * <p>
+ * Values are recorded into log2 buckets each split into 8 linear sub-buckets (in the
+ * style of HdrHistogram) such that any recorded value is reported to within 12.5%
+ * with a fixed number of counters regardless of the range of values. Recording is a
+ * single atomic increment.
+ * </p>
+ * <p>
+ * Reading with reset is not an atomic snapshot across all the buckets. Values recorded
+ * concurrently with the reset are either in this snapshot or the next one.
+ * </p>
+ */
+public class LatencyHistogram {
+
+  /**
+   * The number of linear sub-buckets per power of 2 (as a power of 2).
+   */
+  private static final int SUB_BITS = 3;
+
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+
+  /**
+   * Values above this (about 19 hours in micros) are recorded in the last bucket.
+   */
+  private static final long MAX_VALUE = (1L << 36) - 1;
+
+  private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Record a duration in nanoseconds.
+   */
+  public void recordNanos(long nanos) {
+    record(TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  /**
+   * Record a duration in microseconds.
+   */
+  public void record(long micros) {
+    counts.incrementAndGet(indexOf(micros));
+  }
+
+  /**
+   * Return the bucket index for the given value.
+   */
+  static int indexOf(long value) {
+    if (value < SUB_COUNT) {
+      return (value < 0) ? 0 : (int) value;
+    }
+    if (value > MAX_VALUE) {
+      value = MAX_VALUE;
+    }
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+    return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_COUNT - 1));
+  }
+
+  /**
+   * Return the highest value that is recorded in the bucket with the given index.
+   */
+  static long highestValueOf(int index) {
+    if (index < SUB_COUNT) {
+      return index;
+    }
+    int shift = (index >>> SUB_BITS) - 1;
+    long sub = (index & (SUB_COUNT - 1)) | SUB_COUNT;
+    return ((sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Return a snapshot of the histogram optionally resetting the counters.
+   */
+  public Snapshot getSnapshot(boolean reset) {
+
+    long[] values = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      values[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+    }
+    return new Snapshot(values);
+  }
+
+  /**
+   * The counts of a histogram at a point in time with percentiles in microseconds.
+   */
+  public static class Snapshot {
+
+    private final long[] counts;
+
+    private final long count;
+
+    Snapshot(long[] counts) {
+      this.counts = counts;
+      long total = 0;
+      for (long c : counts) {
+        total += c;
+      }
+      this.count = total;
+    }
+
+    public String toString() {
+      return "count[" + count + "] p50[" + getPercentile(50) + "] p99[" + getPercentile(99)
+          + "] p999[" + getPercentile(99.9) + "] max[" + getMax() + "]";
+    }
+
+    /**
+     * Return the number of values recorded.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Return the value in micros at the given percentile (for example 99.9).
+     */
+    public long getPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil((percentile / 100d) * count);
+      if (rank < 1) {
+        rank = 1;
+      }
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return highestValueOf(i);
+        }
+      }
+      return getMax();
+    }
+
+    /**
+     * Return the median value in micros.
+     */
+    public long getP50() {
+      return getPercentile(50);
+    }
+
+    /**
+     * Return the 99th percentile value in micros.
+     */
+    public long getP99() {
+      return getPercentile(99);
+    }
+
+    /**
+     * Return the 99.9th percentile value in micros.
+     */
+    public long getP999() {
+      return getPercentile(99.9);
+    }
+
+    /**
+     * Return the maximum value in micros (to the precision of the buckets).
+     */
+    public long getMax() {
+      for (int i = counts.length - 1; i >= 0; i--) {
+        if (counts[i] > 0) {
+          return highestValueOf(i);
+        }
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Low overhead detection of connections that are held too long (potential leaks).
+ * <p>
+ * The stack is captured for 1 in sampleRate borrows, filtered to start at the first
+ * frame outside of ebean and truncated to maxDepth frames. Identical call sites share
+ * a single interned StackSignature so a busy connection only holds a reference to its
+ * signature. The heartbeat then reports the call sites of sampled connections that
+ * have been busy for longer than the threshold.
+ * </p>
+ * <p>
+ * The sample counter is not updated atomically. Lost increments under contention
+ * only change the effective sample rate slightly.
+ * </p>
+ */
+public class LeakDetector {
+
+  /**
+   * The maximum number of interned signatures (beyond this signatures are not shared).
+   */
+  private static final int MAX_SIGNATURES = 1000;
+
+  private final ConcurrentHashMap<StackSignature, StackSignature> signatures = new ConcurrentHashMap<StackSignature, StackSignature>();
+
+  private final int maxDepth;
+
+  private final long thresholdMillis;
+
+  private volatile int sampleRate;
+
+  private int sampleCounter;
+
+  /**
+   * Create with the sample rate (0 for off), stack depth and held time threshold.
+   */
+  public LeakDetector(int sampleRate, int maxDepth, long thresholdMillis) {
+    this.sampleRate = sampleRate;
+    this.maxDepth = Math.max(1, maxDepth);
+    this.thresholdMillis = thresholdMillis;
+  }
+
+  /**
+   * Return the sample rate (capture 1 in sampleRate borrows, 0 means off).
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Set the sample rate (capture 1 in sampleRate borrows, 0 means off).
+   */
+  public void setSampleRate(int sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Return the time in millis after which a sampled busy connection is reported.
+   */
+  public long getThresholdMillis() {
+    return thresholdMillis;
+  }
+
+  /**
+   * Return the signature of the current call site if this borrow is sampled or null.
+   */
+  StackSignature sample() {
+    int rate = sampleRate;
+    if (rate <= 0) {
+      return null;
+    }
+    if (rate > 1) {
+      if (++sampleCounter < rate) {
+        return null;
+      }
+      sampleCounter = 0;
+    }
+    return capture(new Throwable().getStackTrace());
+  }
+
+  /**
+   * Return the interned signature for the given stack.
+   */
+  StackSignature capture(StackTraceElement[] stack) {
+
+    int start = 0;
+    while (start < stack.length - 1 && skipElement(stack[start].toString())) {
+      start++;
+    }
+    int end = Math.min(stack.length, start + maxDepth);
+    StackSignature signature = new StackSignature(Arrays.copyOfRange(stack, start, end));
+
+    StackSignature existing = signatures.get(signature);
+    if (existing == null && signatures.size() < MAX_SIGNATURES) {
+      existing = signatures.putIfAbsent(signature, signature);
+    }
+    if (existing != null) {
+      signature = existing;
+    }
+    signature.borrowCount.incrementAndGet();
+    return signature;
+  }
+
+  static boolean skipElement(String methodLine) {
+    if (methodLine.startsWith("java.lang.")) {
+      return true;
+    } else if (methodLine.startsWith("java.util.")) {
+      return true;
+    } else if (methodLine.startsWith("com.avaje.ebeaninternal.server.query.CallableQuery.<init>")) {
+      // creating connection on future...
+      return true;
+    } else if (methodLine.startsWith("com.avaje.ebeaninternal.server.query.Callable")) {
+      // it is a future task being executed...
+      return false;
+    } else {
+      return methodLine.startsWith("com.avaje.ebeaninternal");
+    }
+  }
+
+  /**
+   * Check the busy connections returning the call sites with connections newly held
+   * longer than the threshold (with the number of such connections).
+   */
+  Map<StackSignature, Integer> check(List<PooledConnection> busy, long now) {
+
+    Map<StackSignature, Integer> overdue = new IdentityHashMap<StackSignature, Integer>();
+    if (thresholdMillis <= 0) {
+      return overdue;
+    }
+    long startedBefore = now - thresholdMillis;
+    for (PooledConnection pc : busy) {
+      StackSignature signature = pc.getStackSignature();
+      if (signature != null && !pc.isLongRunning() && pc.getStartUseTime() < startedBefore && pc.markLeakReported()) {
+        signature.overdueCount.incrementAndGet();
+        Integer count = overdue.get(signature);
+        overdue.put(signature, (count == null) ? 1 : count + 1);
+      }
+    }
+    return overdue;
+  }
+
+  /**
+   * Return the call sites that have held connections longer than the threshold
+   * ordered by the number of times they have done so.
+   */
+  public List<StackSignature> getOverdueSignatures() {
+
+    List<StackSignature> list = new ArrayList<StackSignature>();
+    for (StackSignature signature : signatures.values()) {
+      if (signature.getOverdueCount() > 0) {
+        list.add(signature);
+      }
+    }
+    Collections.sort(list, new Comparator<StackSignature>() {
+      @Override
+      public int compare(StackSignature o1, StackSignature o2) {
+        long c1 = o1.getOverdueCount();
+        long c2 = o2.getOverdueCount();
+        return (c1 < c2) ? 1 : ((c1 == c2) ? 0 : -1);
+      }
+    });
+    return list;
+  }
+
+  /**
+   * Return the number of interned signatures.
+   */
+  int getSignatureCount() {
+    return signatures.size();
+  }
+
+  /**
+   * A bounded call site stack shared by all the borrows from that call site.
+   */
+  public static class StackSignature {
+
+    private final StackTraceElement[] stackTrace;
+
+    private final int hash;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong overdueCount = new AtomicLong();
+
+    StackSignature(StackTraceElement[] stackTrace) {
+      this.stackTrace = stackTrace;
+      this.hash = Arrays.hashCode(stackTrace);
+    }
+
+    public String toString() {
+      return Arrays.toString(stackTrace);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof StackSignature)) {
+        return false;
+      }
+      StackSignature other = (StackSignature) obj;
+      return hash == other.hash && Arrays.equals(stackTrace, other.stackTrace);
+    }
+
+    /**
+     * Return the (filtered and truncated) stack of the call site.
+     */
+    public StackTraceElement[] getStackTrace() {
+      return stackTrace.clone();
+    }
+
+    /**
+     * Return the first frame of the call site (the method that got the connection).
+     */
+    public String getCallSite() {
+      return (stackTrace.length == 0) ? null : stackTrace[0].toString();
+    }
+
+    /**
+     * Return the number of sampled borrows from this call site.
+     */
+    public long getBorrowCount() {
+      return borrowCount.get();
+    }
+
+    /**
+     * Return the number of sampled borrows from this call site held longer than the threshold.
+     */
+    public long getOverdueCount() {
+      return overdueCount.get();
+    }
+  }
+}
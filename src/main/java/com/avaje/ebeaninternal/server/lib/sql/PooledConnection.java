@@ -8,9 +8,9 @@ import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Savepoint;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +56,11 @@ public class PooledConnection extends ConnectionDelegator {
    */
   private static final String REASON_RESET = "reset";
 
+  /**
+   * Marker for when the connection is closed due to failing validation.
+   */
+  private static final String REASON_INVALID = "invalid";
+
   /**
    * Set when connection is idle in the pool. In general when in the pool the
    * connection should not be modified.
@@ -72,6 +77,32 @@ public class PooledConnection extends ConnectionDelegator {
    */
   private static final int STATUS_ENDED = 87;
 
+  /**
+   * Set when closed by the client after errors and handed off for background validation.
+   */
+  private static final int STATUS_QUARANTINED = 86;
+
+  /**
+   * Pool state when the connection is free (available to be claimed).
+   */
+  private static final int POOL_FREE = 0;
+
+  /**
+   * Pool state when the connection has been claimed (busy).
+   */
+  private static final int POOL_BUSY = 1;
+
+  /**
+   * Pool state when the connection has been removed from the pool (trimmed or closed).
+   */
+  private static final int POOL_REMOVED = 2;
+
+  private static final AtomicIntegerFieldUpdater<PooledConnection> POOL_STATE
+      = AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "poolState");
+
+  private static final AtomicIntegerFieldUpdater<PooledConnection> QUEUED
+      = AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "queued");
+
   /**
    * Name used to identify the PooledConnection for logging.
    */
@@ -97,6 +128,21 @@ public class PooledConnection extends ConnectionDelegator {
    */
   private final PstmtCache pstmtCache;
 
+  /**
+   * Pool wide statement frequency and statistics (can be null).
+   */
+  private final PstmtCachePolicy pstmtCachePolicy;
+
+  /**
+   * Pool wide histogram of the time connections are held (can be null).
+   */
+  private final LatencyHistogram holdLatency;
+
+  /**
+   * Pool wide histogram of statement execution times (can be null).
+   */
+  private final LatencyHistogram executeLatency;
+
   private final Object pstmtMonitor = new Object();
 
   /**
@@ -139,6 +185,11 @@ public class PooledConnection extends ConnectionDelegator {
    */
   private long lastUseTime;
 
+  /**
+   * The time this connection was last validated while idle in the pool.
+   */
+  private long lastValidatedTime;
+
   private long exeStartNanos;
 
   /**
@@ -152,11 +203,14 @@ public class PooledConnection extends ConnectionDelegator {
   private String createdByMethod;
 
   /**
-   * Used to find connection pool leaks.
+   * The sampled call site that got the connection. Used to find connection pool leaks.
    */
-  private StackTraceElement[] stackTrace;
+  private LeakDetector.StackSignature stackSignature;
 
-  private final int maxStackTrace;
+  /**
+   * Set when this borrow has been reported as held longer than the leak threshold.
+   */
+  private boolean leakReported;
 
   /**
    * Slot position in the BusyConnectionBuffer.
@@ -165,6 +219,16 @@ public class PooledConnection extends ConnectionDelegator {
 
   private boolean resetIsolationReadOnlyRequired;
 
+  /**
+   * The pool state FREE, BUSY or REMOVED. Claiming a connection is a CAS on this state.
+   */
+  private volatile int poolState;
+
+  /**
+   * Set to 1 when the connection has an entry in the FreeConnectionBuffer.
+   */
+  private volatile int queued;
+
 
   /**
    * Construct the connection that can refer back to the pool it belongs to.
@@ -179,8 +243,10 @@ public class PooledConnection extends ConnectionDelegator {
     this.pool = pool;
     this.connection = connection;
     this.name = pool.getName() + "." + uniqueId;
-    this.pstmtCache = new PstmtCache(name, pool.getPstmtCacheSize());
-    this.maxStackTrace = pool.getMaxStackTraceSize();
+    this.pstmtCachePolicy = pool.getPstmtCachePolicy();
+    this.pstmtCache = new PstmtCache(name, pool.getPstmtCacheSize(), pstmtCachePolicy);
+    this.holdLatency = pool.getHoldLatency();
+    this.executeLatency = pool.getExecuteLatency();
     this.creationTime = System.currentTimeMillis();
     this.lastUseTime = creationTime;
   }
@@ -194,7 +260,9 @@ public class PooledConnection extends ConnectionDelegator {
     this.pool = null;
     this.connection = null;
     this.pstmtCache = null;
-    this.maxStackTrace = 0;
+    this.pstmtCachePolicy = null;
+    this.holdLatency = null;
+    this.executeLatency = null;
     this.creationTime = System.currentTimeMillis();
     this.lastUseTime = creationTime;
   }
@@ -228,6 +296,58 @@ public class PooledConnection extends ConnectionDelegator {
     return getDescription();
   }
 
+  /**
+   * Claim this connection from the pool returning true if successful.
+   * <p>
+   * Only one thread can successfully claim a free connection.
+   * </p>
+   */
+  final boolean claimFromPool() {
+    return POOL_STATE.compareAndSet(this, POOL_FREE, POOL_BUSY);
+  }
+
+  /**
+   * Remove this free connection from the pool (for trimming) returning true if successful.
+   */
+  final boolean removeFromPool() {
+    return POOL_STATE.compareAndSet(this, POOL_FREE, POOL_REMOVED);
+  }
+
+  /**
+   * Mark this connection as busy (a newly created connection given directly to a client).
+   */
+  final void setPoolStateBusy() {
+    poolState = POOL_BUSY;
+  }
+
+  /**
+   * Mark this connection as free (available to be claimed).
+   */
+  final void setPoolStateFree() {
+    poolState = POOL_FREE;
+  }
+
+  /**
+   * Return true if this connection is currently free in the pool.
+   */
+  final boolean isPoolStateFree() {
+    return poolState == POOL_FREE;
+  }
+
+  /**
+   * Mark this connection as having an entry in the free buffer returning false if it already has one.
+   */
+  final boolean markQueued() {
+    return QUEUED.compareAndSet(this, 0, 1);
+  }
+
+  /**
+   * Clear the flag indicating this connection has an entry in the free buffer.
+   */
+  final void clearQueued() {
+    queued = 0;
+  }
+
   public long getBusySeconds() {
     return (System.currentTimeMillis() - startUseTime) / 1000;
   }
@@ -387,20 +507,29 @@ public class PooledConnection extends ConnectionDelegator {
       synchronized (pstmtMonitor) {
         lastStatement = sql;
 
+        PstmtCachePolicy.SqlEntry sqlEntry = (pstmtCachePolicy == null) ? null : pstmtCachePolicy.record(cacheKey, sql, useFlag, flag);
+
         // try to get a matching cached PStmt from the cache.
         ExtendedPreparedStatement pstmt = pstmtCache.remove(cacheKey);
 
         if (pstmt != null) {
+          if (sqlEntry != null) {
+            sqlEntry.hit();
+          }
           return pstmt;
         }
 
         // create a new PreparedStatement
+        long startNanos = System.nanoTime();
         PreparedStatement actualPstmt;
         if (useFlag) {
           actualPstmt = connection.prepareStatement(sql, flag);
         } else {
           actualPstmt = connection.prepareStatement(sql);
         }
+        if (sqlEntry != null) {
+          sqlEntry.prepared(System.nanoTime() - startNanos);
+        }
         return new ExtendedPreparedStatement(this, actualPstmt, sql, cacheKey);
       }
 
@@ -410,6 +539,38 @@ public class PooledConnection extends ConnectionDelegator {
     }
   }
 
+  /**
+   * Prepare the given (most frequently used) statements adding them to the PstmtCache.
+   * <p>
+   * This is done when a new connection is created such that it does not need to
+   * re-prepare the hot statements when it is first used.
+   * </p>
+   */
+  void prepareStatements(List<PstmtCachePolicy.SqlEntry> entries) {
+
+    synchronized (pstmtMonitor) {
+      for (PstmtCachePolicy.SqlEntry entry : entries) {
+        if (pstmtCache.containsKey(entry.cacheKey)) {
+          continue;
+        }
+        try {
+          PreparedStatement actualPstmt;
+          if (entry.useFlag) {
+            actualPstmt = connection.prepareStatement(entry.sql, entry.flag);
+          } else {
+            actualPstmt = connection.prepareStatement(entry.sql);
+          }
+          pstmtCache.put(entry.cacheKey, new ExtendedPreparedStatement(this, actualPstmt, entry.sql, entry.cacheKey));
+
+        } catch (SQLException e) {
+          // not fatal, the statement will be prepared when used
+          logger.warn("Error preparing statement on new connection [" + name + "] sql[" + entry.sql + "]", e);
+          return;
+        }
+      }
+    }
+  }
+
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurreny) throws SQLException {
 
     if (status == STATUS_IDLE) {
@@ -434,6 +595,7 @@ public class PooledConnection extends ConnectionDelegator {
     this.startUseTime = System.currentTimeMillis();
     this.exeStartNanos = System.nanoTime();
     this.createdByMethod = null;
+    this.leakReported = false;
     this.lastStatement = null;
     this.hadErrors = false;
     this.longRunning = false;
@@ -465,11 +627,25 @@ public class PooledConnection extends ConnectionDelegator {
     if (status == STATUS_IDLE) {
       throw new SQLException(IDLE_CONNECTION_ACCESSED_ERROR + "close()");
     }
+    if (status == STATUS_QUARANTINED) {
+      // already closed and handed off for validation (close() called again)
+      return;
+    }
 
     long durationNanos = System.nanoTime() - exeStartNanos;
     stats.add(durationNanos, hadErrors);
+    if (holdLatency != null) {
+      holdLatency.recordNanos(durationNanos);
+    }
 
     if (hadErrors) {
+      // mark before the hand off such that a second close() is a no-op
+      status = STATUS_QUARANTINED;
+      if (pool.quarantineConnection(this)) {
+        // validated in the background and then returned to the pool or closed
+        return;
+      }
+      status = STATUS_ACTIVE;
       if (!pool.validateConnection(this)) {
         // the connection is BAD, remove it, close it and test the pool
         pool.returnConnectionForceClose(this);
@@ -477,6 +653,13 @@ public class PooledConnection extends ConnectionDelegator {
       }
     }
 
+    returnToPool();
+  }
+
+  /**
+   * Reset the connection state and return it to the pool (assumed to be GOOD).
+   */
+  void returnToPool() {
     try {
       // reset the autoCommit back if client code changed it
       if (connection.getAutoCommit() != pool.getAutoCommit()) {
@@ -548,6 +731,29 @@ public class PooledConnection extends ConnectionDelegator {
     return exceedsMaxAge(maxAgeMillis);
   }
 
+  /**
+   * Record the execution time of a statement started at startNanos.
+   */
+  void recordExecute(long startNanos) {
+    if (executeLatency != null) {
+      executeLatency.recordNanos(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Return the underlying connection (used to validate idle connections).
+   */
+  Connection getUnderlyingConnection() {
+    return connection;
+  }
+
+  /**
+   * Mark the connection as having failed validation (prior to closing it).
+   */
+  void markInvalid() {
+    this.closeReason = REASON_INVALID;
+  }
+
   /**
    * Return true if the connection has been idle for too long or is too old.
    */
@@ -586,6 +792,20 @@ public class PooledConnection extends ConnectionDelegator {
     return lastUseTime;
   }
 
+  /**
+   * Return the time this connection was last validated while idle in the pool.
+   */
+  long getLastValidatedTime() {
+    return lastValidatedTime;
+  }
+
+  /**
+   * Mark this connection as validated while idle in the pool.
+   */
+  void markValidated() {
+    lastValidatedTime = System.currentTimeMillis();
+  }
+
   /**
    * Returns the last sql statement executed.
    */
@@ -893,78 +1113,52 @@ public class PooledConnection extends ConnectionDelegator {
     if (createdByMethod != null) {
       return createdByMethod;
     }
-    if (stackTrace == null) {
+    if (stackSignature == null) {
       return null;
     }
+    createdByMethod = stackSignature.getCallSite();
+    return createdByMethod;
+  }
 
-    for (int j = 0; j < stackTrace.length; j++) {
-      String methodLine = stackTrace[j].toString();
-      if (!skipElement(methodLine)) {
-        createdByMethod = methodLine;
-        return createdByMethod;
-      }
-    }
-
-    return null;
+  /**
+   * Set the sampled call site (null when not sampled) to help find connection pool leaks.
+   */
+  protected void setStackSignature(LeakDetector.StackSignature stackSignature) {
+    this.stackSignature = stackSignature;
   }
 
-  private boolean skipElement(String methodLine) {
-    if (methodLine.startsWith("java.lang.")) {
-      return true;
-    } else if (methodLine.startsWith("java.util.")) {
-      return true;
-    } else if (methodLine.startsWith("com.avaje.ebeaninternal.server.query.CallableQuery.<init>")) {
-      // creating connection on future...
-      return true;
-    } else if (methodLine.startsWith("com.avaje.ebeaninternal.server.query.Callable")) {
-      // it is a future task being executed...
-      return false;
-    } else {
-      return methodLine.startsWith("com.avaje.ebeaninternal");
-    }
+  /**
+   * Return the sampled call site that got the connection (null when not sampled).
+   */
+  public LeakDetector.StackSignature getStackSignature() {
+    return stackSignature;
   }
 
   /**
-   * Set the stack trace to help find connection pool leaks.
+   * Mark this borrow as reported held too long returning false if it already was.
    */
-  protected void setStackTrace(StackTraceElement[] stackTrace) {
-    this.stackTrace = stackTrace;
+  boolean markLeakReported() {
+    if (leakReported) {
+      return false;
+    }
+    leakReported = true;
+    return true;
   }
 
   /**
    * Return the stackTrace as a String for logging purposes.
    */
   public String getStackTraceAsString() {
-    StackTraceElement[] stackTrace = getStackTrace();
-    if (stackTrace == null) {
-      return "";
-    }
-    return Arrays.toString(stackTrace);
+    return (stackSignature == null) ? "" : stackSignature.toString();
   }
 
   /**
-   * Return the full stack trace that got the connection from the pool. You
-   * could use this if getCreatedByMethod() doesn't work for you.
+   * Return the stack trace that got the connection from the pool (filtered and
+   * truncated to maxStackTraceSize). You could use this if getCreatedByMethod()
+   * doesn't work for you.
    */
   public StackTraceElement[] getStackTrace() {
-
-    if (stackTrace == null) {
-      return null;
-    }
-
-    // filter off the top of the stack that we are not interested in
-    ArrayList<StackTraceElement> filteredList = new ArrayList<StackTraceElement>();
-    boolean include = false;
-    for (int i = 0; i < stackTrace.length; i++) {
-      if (!include && !skipElement(stackTrace[i].toString())) {
-        include = true;
-      }
-      if (include && filteredList.size() < maxStackTrace) {
-        filteredList.add(stackTrace[i]);
-      }
-    }
-    return filteredList.toArray(new StackTraceElement[filteredList.size()]);
-
+    return (stackSignature == null) ? null : stackSignature.getStackTrace();
   }
 
 }
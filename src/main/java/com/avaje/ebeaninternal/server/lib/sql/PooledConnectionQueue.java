@@ -1,16 +1,48 @@
 package com.avaje.ebeaninternal.server.lib.sql;
 
+import java.lang.ref.WeakReference;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avaje.ebeaninternal.server.lib.DaemonThreadPool;
 import com.avaje.ebeaninternal.server.lib.sql.DataSourcePool.Status;
 import com.avaje.ebeaninternal.server.lib.sql.PooledConnectionStatistics.LoadValues;
-
+import com.avaje.ebeaninternal.server.util.LongAdder;
+
+/**
+ * The queue of free and busy connections for a DataSourcePool.
+ * <p>
+ * Borrowing and returning connections is non-blocking in the common case. A
+ * borrowing thread first tries to claim the connection it last returned (thread
+ * affine fast path) and then tries the free buffer. The pool lock is only taken
+ * to grow the pool, when waiting for a connection and for trim, reset and shutdown.
+ * </p>
+ * <p>
+ * When the pool is at its maximum size threads wait in a FIFO queue and returned
+ * connections are handed directly to the longest waiting thread. The number of
+ * waiting threads can be bounded (maxWaiting) in which case threads that would
+ * exceed this bound fail fast (are shed) rather than wait.
+ * </p>
+ * <p>
+ * New connections are created by a bounded set of background threads without
+ * holding the lock. A thread that needs the pool to grow requests a connection
+ * and waits in the FIFO queue for a hand-off such that a slow connect does not
+ * block other borrowers. On startup the pool is warmed up to its minimum size
+ * creating connections in parallel.
+ * </p>
+ */
 public class PooledConnectionQueue {
 
   private static final Logger logger = LoggerFactory.getLogger(PooledConnectionQueue.class);
@@ -43,19 +75,49 @@ public class PooledConnectionQueue {
   private LoadValues accumulatedValues = new LoadValues();
 
   /**
-   * Main lock guarding all access
+   * The connection last returned by each thread (thread affine fast path).
+   * <p>
+   * Weakly referenced and cleared when next used such that worker threads do not keep
+   * trimmed or closed connections reachable.
+   * </p>
+   */
+  private final ThreadLocal<WeakReference<PooledConnection>> lastReturned = new ThreadLocal<WeakReference<PooledConnection>>();
+
+  /**
+   * Main lock guarding growth, waiting, trim, reset and shutdown.
    */
   private final ReentrantLock lock;
 
   /**
-   * Condition for threads waiting to take a connection
+   * Threads waiting for a connection in FIFO order (guarded by lock).
    */
-  private final Condition notEmpty;
+  private final ArrayDeque<ConnectionWaiter> waiters = new ArrayDeque<ConnectionWaiter>();
 
-  private int connectionId;
+  private final AtomicInteger connectionId = new AtomicInteger();
+
+  /**
+   * Background threads that create new connections.
+   */
+  private final DaemonThreadPool creator;
+
+  /**
+   * The number of connections currently being created (guarded by lock).
+   */
+  private int pendingCreates;
+
+  /**
+   * The total number of connections (free and busy). Free and busy sizes can not be
+   * used for this as connections move between them without the lock.
+   */
+  private final AtomicInteger connectionCount = new AtomicInteger();
 
   private final long waitTimeoutMillis;
 
+  /**
+   * The maximum number of threads that can wait for a connection (0 for no limit).
+   */
+  private final int maxWaiting;
+
   private final long leakTimeMinutes;
 
   private final long maxAgeMillis;
@@ -66,33 +128,58 @@ public class PooledConnectionQueue {
 
   private int minSize;
 
+  /**
+   * Adjusts the target size to the observed demand (null when adaptive sizing is off).
+   */
+  private final AdaptivePoolSizer sizer;
+
   /**
    * Number of threads in the wait queue.
    */
-  private int waitingThreads;
+  private volatile int waitingThreads;
 
   /**
    * Number of times a thread had to wait.
    */
   private int waitCount;
 
+  /**
+   * The high water mark of waiting threads.
+   */
+  private int waitingHighWaterMark;
+
+  /**
+   * Number of requests shed (failed fast) as the wait queue was full.
+   */
+  private final AtomicInteger shedCount = new AtomicInteger();
+
+  /**
+   * Number of requests that timed out waiting for a connection.
+   */
+  private final AtomicInteger waitTimeoutCount = new AtomicInteger();
+
   /**
    * Number of times a connection was got from this queue.
    */
-  private int hitCount;
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * Histogram of the time taken to borrow a connection.
+   */
+  private final LatencyHistogram waitLatency;
 
   /**
    * The high water mark for the queue size.
    */
-  private int highWaterMark;
+  private final AtomicInteger highWaterMark = new AtomicInteger();
 
   /**
    * Last time the pool was reset. Used to close busy connections as they are
    * returned to the pool that where created prior to the lastResetTime.
    */
-  private long lastResetTime;
+  private volatile long lastResetTime;
 
-  private boolean doingShutdown;
+  private volatile boolean doingShutdown;
 
   public PooledConnectionQueue(DataSourcePool pool) {
 
@@ -103,18 +190,29 @@ public class PooledConnectionQueue {
 
     this.warningSize = pool.getWarningSize();
     this.waitTimeoutMillis = pool.getWaitTimeoutMillis();
+    this.maxWaiting = pool.getMaxWaiting();
     this.leakTimeMinutes = pool.getLeakTimeMinutes();
     this.maxAgeMillis = pool.getMaxAgeMillis();
+    this.waitLatency = pool.getWaitLatency();
+    this.sizer = (pool.isAdaptiveSizing()) ? new AdaptivePoolSizer(pool.getAdaptiveWindows(), minSize) : null;
 
     this.busyList = new BusyConnectionBuffer(maxSize, 20);
     this.freeList = new FreeConnectionBuffer();
 
     this.lock = new ReentrantLock(false);
-    this.notEmpty = lock.newCondition();
+
+    int createThreads = pool.getCreateConnectionThreads();
+    this.creator = new DaemonThreadPool(createThreads, createThreads, 60, 5, "ds-" + name + "-create-");
   }
 
   private Status createStatus() {
-    return new Status(name, minSize, maxSize, freeList.size(), busyList.size(), waitingThreads, highWaterMark, waitCount, hitCount);
+    return createStatus(false);
+  }
+
+  private Status createStatus(boolean resetLatency) {
+    return new Status(name, minSize, maxSize, freeList.size(), busyList.size(), waitingThreads, highWaterMark.get(), waitCount, hitCount.intValue(),
+        pool.getWaitLatency().getSnapshot(resetLatency), pool.getHoldLatency().getSnapshot(resetLatency),
+        pool.getExecuteLatency().getSnapshot(resetLatency));
   }
 
   public String toString() {
@@ -132,6 +230,7 @@ public class PooledConnectionQueue {
    */
   protected void reportClosingConnection(PooledConnection pooledConnection) {
 
+    connectionCount.decrementAndGet();
     collectedStats.add(pooledConnection.getStatistics());
   }
 
@@ -150,7 +249,15 @@ public class PooledConnectionQueue {
 
       this.accumulatedValues = (reset) ? new LoadValues() : aggregate;
 
-      return new DataSourcePoolStatistics(aggregate.getCollectionStart(), aggregate.getCount(), aggregate.getErrorCount(), aggregate.getHwmMicros(), aggregate.getTotalMicros());
+      int waitingHwm = waitingHighWaterMark;
+      int shed = (reset) ? shedCount.getAndSet(0) : shedCount.get();
+      int timeouts = (reset) ? waitTimeoutCount.getAndSet(0) : waitTimeoutCount.get();
+      if (reset) {
+        waitingHighWaterMark = waitingThreads;
+      }
+
+      return new DataSourcePoolStatistics(aggregate.getCollectionStart(), aggregate.getCount(), aggregate.getErrorCount(), aggregate.getHwmMicros(), aggregate.getTotalMicros(),
+          waitingThreads, waitingHwm, shed, timeouts);
 
     } finally {
       lock.unlock();
@@ -161,10 +268,10 @@ public class PooledConnectionQueue {
     final ReentrantLock lock = this.lock;
     lock.lock();
     try {
-      Status s = createStatus();
+      Status s = createStatus(reset);
       if (reset) {
-        highWaterMark = busyList.size();
-        hitCount = 0;
+        highWaterMark.set(busyList.size());
+        hitCount.reset();
         waitCount = 0;
       }
       return s;
@@ -173,6 +280,20 @@ public class PooledConnectionQueue {
     }
   }
 
+  /**
+   * Return a snapshot of the busy connections (without the lock).
+   */
+  List<PooledConnection> getBusyConnections() {
+    return busyList.getBusyConnections();
+  }
+
+  /**
+   * Return the number of busy connections (without the lock).
+   */
+  int getBusyCount() {
+    return busyList.size();
+  }
+
   public void setMinSize(int minSize) {
     final ReentrantLock lock = this.lock;
     lock.lock();
@@ -214,22 +335,151 @@ public class PooledConnectionQueue {
   }
 
   private int totalConnections() {
-    return freeList.size() + busyList.size();
+    return connectionCount.get();
   }
 
+  /**
+   * Create connections up to the minimum size in parallel and wait for them to be created.
+   * <p>
+   * This is used to warm up the pool on startup and throws the first error if any of
+   * the connections could not be created.
+   * </p>
+   */
   public void ensureMinimumConnections() throws SQLException {
+
+    List<CreateTask> tasks = requestMinimumConnections();
+    SQLException error = null;
+    for (int i = 0; i < tasks.size(); i++) {
+      CreateTask task = tasks.get(i);
+      try {
+        task.done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted creating connections for pool " + name);
+      }
+      if (error == null) {
+        error = task.error;
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Request connections be created in the background up to the minimum size.
+   */
+  private List<CreateTask> requestMinimumConnections() {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      int add = getTargetSize() - totalConnections() - pendingCreates;
+      if (add <= 0) {
+        return Collections.emptyList();
+      }
+      List<CreateTask> tasks = new ArrayList<CreateTask>(add);
+      for (int i = 0; i < add; i++) {
+        tasks.add(requestCreate(null));
+      }
+      return tasks;
+
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Return the size the pool maintains (the minimum size or the adaptive target size).
+   */
+  int getTargetSize() {
+    return (sizer == null) ? minSize : Math.max(minSize, sizer.getTargetSize());
+  }
+
+  /**
+   * Adaptive sizing creates a connection in the background when the free connections
+   * drop below the headroom such that borrowers do not need to wait.
+   */
+  private void growAhead() {
+    if (freeList.size() >= sizer.getHeadroom()) {
+      return;
+    }
+    final ReentrantLock lock = this.lock;
+    if (lock.tryLock()) {
+      try {
+        if (!doingShutdown && pendingCreates == 0 && freeList.size() < sizer.getHeadroom() && totalConnections() < maxSize) {
+          requestCreate(null);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Request a new connection be created in the background. Must hold the lock.
+   *
+   * @param waiter the thread waiting for the connection (null when topping up the pool)
+   */
+  private CreateTask requestCreate(ConnectionWaiter waiter) {
+    CreateTask task = new CreateTask(waiter);
+    pendingCreates++;
+    try {
+      creator.execute(task);
+    } catch (RejectedExecutionException e) {
+      // the pool is shutting down
+      pendingCreates--;
+      task.error = new SQLException("Trying to create a connection when the pool is shutting down");
+      task.done.countDown();
+    }
+    return task;
+  }
+
+  /**
+   * A connection was created in the background so hand it to the longest waiting
+   * thread or add it to the free list.
+   */
+  private void createdConnection(PooledConnection c) {
     final ReentrantLock lock = this.lock;
     lock.lock();
     try {
-      int add = minSize - totalConnections();
-      if (add > 0) {
-        for (int i = 0; i < add; i++) {
-          PooledConnection c = pool.createConnectionForQueue(connectionId++);
-          freeList.add(c);
+      pendingCreates--;
+      connectionCount.incrementAndGet();
+      if (doingShutdown) {
+        c.closeConnectionFully(false);
+        return;
+      }
+      ConnectionWaiter waiter = waiters.pollFirst();
+      if (waiter == null) {
+        freeList.add(c);
+      } else {
+        c.setPoolStateBusy();
+        int busySize = registerBusyConnection(c);
+        if (logger.isDebugEnabled()) {
+          logger.debug("DataSourcePool [{}] grow; id[{}] busy[{}] max[{}]", name, c.getName(), busySize, maxSize);
         }
-        notEmpty.signal();
+        waiter.handOff(c);
       }
+      checkForWarningSize();
+
+    } finally {
+      lock.unlock();
+    }
+  }
 
+  /**
+   * Creating a connection failed so fail the thread that requested it (rather than have it
+   * wait for the timeout, typically the database is down). Other waiting threads are left to
+   * be served by the other pending creates or by returned connections.
+   */
+  private void createFailed(ConnectionWaiter waiter, SQLException e) {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      pendingCreates--;
+      if (waiter != null && waiters.remove(waiter)) {
+        // still waiting (not already handed a returned connection)
+        waiter.fail(e);
+      }
     } finally {
       lock.unlock();
     }
@@ -240,35 +490,119 @@ public class PooledConnectionQueue {
    */
   protected void returnPooledConnection(PooledConnection c, boolean forceClose) {
 
+    if (!busyList.remove(c)) {
+      logger.error("Connection [{}] not found in BusyList? ", c);
+    }
+    releaseConnection(c, forceClose);
+  }
+
+  /**
+   * Release a connection that is not in the busy list back to the pool (or close it).
+   */
+  private void releaseConnection(PooledConnection c, boolean forceClose) {
+
+    if (forceClose || doingShutdown || c.shouldTrimOnReturn(lastResetTime, maxAgeMillis)) {
+      c.closeConnectionFully(false);
+
+    } else if (waitingThreads > 0) {
+      // strict FIFO hand off to the longest waiting thread
+      handOff(c);
+
+    } else {
+      lastReturned.set(new WeakReference<PooledConnection>(c));
+      freeList.add(c);
+      if (waitingThreads > 0) {
+        // a thread started waiting concurrently
+        handOffFree();
+      }
+    }
+  }
+
+  /**
+   * Hand the returned connection to the longest waiting thread or add it to the free list.
+   */
+  private void handOff(PooledConnection c) {
     final ReentrantLock lock = this.lock;
     lock.lock();
     try {
-      if (!busyList.remove(c)) {
-        logger.error("Connection [{}] not found in BusyList? ", c);
-      }
-      if (forceClose || c.shouldTrimOnReturn(lastResetTime, maxAgeMillis)) {
-        c.closeConnectionFully(false);
-
-      } else {
+      ConnectionWaiter waiter = waiters.pollFirst();
+      if (waiter == null) {
         freeList.add(c);
-        notEmpty.signal();
+      } else {
+        registerBusyConnection(c);
+        waiter.handOff(c);
       }
     } finally {
       lock.unlock();
     }
   }
 
+  /**
+   * Hand free connections to waiting threads.
+   */
+  private void handOffFree() {
+    final ReentrantLock lock = this.lock;
+    lock.lock();
+    try {
+      serviceWaiters();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Hand any free connections to waiting threads (in FIFO order). Must hold the lock.
+   */
+  private void serviceWaiters() {
+    while (!waiters.isEmpty()) {
+      PooledConnection c = extractFromFreeList();
+      if (c == null) {
+        return;
+      }
+      waiters.pollFirst().handOff(c);
+    }
+  }
+
+  /**
+   * Return a free connection without taking the lock or null if there are no free connections.
+   * <p>
+   * This first tries to claim the connection this thread last returned.
+   * </p>
+   */
   private PooledConnection extractFromFreeList() {
-    PooledConnection c = freeList.remove();
+    PooledConnection c = null;
+    WeakReference<PooledConnection> ref = lastReturned.get();
+    if (ref != null) {
+      lastReturned.remove();
+      c = ref.get();
+    }
+    if (c == null || !freeList.claim(c)) {
+      c = freeList.remove();
+      if (c == null) {
+        return null;
+      }
+    }
     registerBusyConnection(c);
     return c;
   }
 
   public PooledConnection getPooledConnection() throws SQLException {
+    return getPooledConnection(waitTimeoutMillis);
+  }
 
+  /**
+   * Return a PooledConnection waiting at most waitMillis if the pool is at its maximum size.
+   */
+  public PooledConnection getPooledConnection(long waitMillis) throws SQLException {
+
+    long startNanos = System.nanoTime();
     try {
-      PooledConnection pc = _getPooledConnection();
+      PooledConnection pc = _getPooledConnection(waitMillis);
+      waitLatency.recordNanos(System.nanoTime() - startNanos);
       pc.resetForUse();
+      if (sizer != null) {
+        growAhead();
+      }
       return pc;
 
     } catch (InterruptedException e) {
@@ -282,13 +616,36 @@ public class PooledConnectionQueue {
    */
   private int registerBusyConnection(PooledConnection c) {
     int busySize = busyList.add(c);
-    if (busySize > highWaterMark) {
-      highWaterMark = busySize;
+    if (sizer != null) {
+      sizer.recordBusy(busySize);
+    }
+    for (; ; ) {
+      int hwm = highWaterMark.get();
+      if (busySize <= hwm || highWaterMark.compareAndSet(hwm, busySize)) {
+        return busySize;
+      }
     }
-    return busySize;
   }
 
-  private PooledConnection _getPooledConnection() throws InterruptedException, SQLException {
+  private PooledConnection _getPooledConnection(long waitMillis) throws InterruptedException, SQLException {
+
+    if (doingShutdown) {
+      throw new SQLException("Trying to access the Connection Pool when it is shutting down");
+    }
+
+    // this includes attempts that fail with InterruptedException
+    // or SQLException but that is ok as its only an indicator
+    hitCount.increment();
+
+    // are other threads already waiting? (they get priority)
+    if (waitingThreads == 0) {
+      // fast path without the lock
+      PooledConnection c = extractFromFreeList();
+      if (c != null) {
+        return c;
+      }
+    }
+
     final ReentrantLock lock = this.lock;
     lock.lockInterruptibly();
     try {
@@ -296,37 +653,46 @@ public class PooledConnectionQueue {
         throw new SQLException("Trying to access the Connection Pool when it is shutting down");
       }
 
-      // this includes attempts that fail with InterruptedException
-      // or SQLException but that is ok as its only an indicator
-      hitCount++;
-
       // are other threads already waiting? (they get priority)
       if (waitingThreads == 0) {
-
-        if (!freeList.isEmpty()) {
+        PooledConnection free = extractFromFreeList();
+        if (free != null) {
           // we have a free connection to return
-          return extractFromFreeList();
+          return free;
         }
+      }
 
-        if (busyList.size() < maxSize) {
-          // grow the connection pool
-          PooledConnection c = pool.createConnectionForQueue(connectionId++);
-          int busySize = registerBusyConnection(c);
-
-          if (logger.isDebugEnabled()) {
-            logger.debug("DataSourcePool [{}] grow; id[{}] busy[{}] max[{}]", name, c.getName(), busySize, maxSize);
-          }
-          checkForWarningSize();
-          return c;
-        }
+      ConnectionWaiter waiter = new ConnectionWaiter(lock.newCondition());
+      boolean grow = pendingCreates <= waitingThreads && totalConnections() + pendingCreates < maxSize;
+      if (grow) {
+        // grow the connection pool in the background and wait for the hand off
+        requestCreate(waiter);
+
+      } else if (maxWaiting > 0 && waitingThreads >= maxWaiting) {
+        // fail fast rather than pile up more waiting threads
+        shedCount.incrementAndGet();
+        throw new SQLException("DataSourcePool [" + name + "] is at its maximum size [" + maxSize + "] and the wait queue is full ["
+            + maxWaiting + "] - failing fast rather than waiting for a connection");
       }
 
-      try {
-        // The pool is at maximum size. We are going to go into
-        // a wait loop until connections are returned into the pool.
+      // The pool is at maximum size (or growing). We are going to go into
+      // a wait loop until connections are handed to this thread.
+      if (!grow) {
         waitCount++;
-        waitingThreads++;
-        return _getPooledConnectionWaitLoop();
+      }
+      waiters.addLast(waiter);
+      waitingThreads++;
+      if (waitingThreads > waitingHighWaterMark) {
+        waitingHighWaterMark = waitingThreads;
+      }
+      if (sizer != null) {
+        sizer.recordWait(waitingThreads);
+      }
+      try {
+        // a connection may have been returned to the free list before
+        // waitingThreads was incremented so service the waiters
+        serviceWaiters();
+        return _getPooledConnectionWaitLoop(waiter, waitMillis);
       } finally {
         waitingThreads--;
       }
@@ -337,15 +703,33 @@ public class PooledConnectionQueue {
   }
 
   /**
-   * Got into a loop waiting for connections to be returned to the pool.
+   * Got into a loop waiting for a connection to be handed to this thread.
    */
-  private PooledConnection _getPooledConnectionWaitLoop() throws SQLException, InterruptedException {
+  private PooledConnection _getPooledConnectionWaitLoop(ConnectionWaiter waiter, long waitMillis) throws SQLException, InterruptedException {
 
-    long nanos = MILLIS_TIME_UNIT.toNanos(waitTimeoutMillis);
+    long nanos = MILLIS_TIME_UNIT.toNanos(waitMillis);
     for (; ; ) {
 
+      if (waiter.connection != null) {
+        // successfully waited
+        return waiter.connection;
+      }
+
+      if (waiter.error != null) {
+        // failed to create a new connection
+        throw waiter.error;
+      }
+
       if (nanos <= 0) {
-        String msg = "Unsuccessfully waited [" + waitTimeoutMillis + "] millis for a connection to be returned."
+        waiters.remove(waiter);
+        waitTimeoutCount.incrementAndGet();
+        if (pendingCreates > 0) {
+          // the pool is below its maximum size but creating connections is slow
+          throw new SQLException("Unsuccessfully waited [" + waitMillis + "] millis for a connection to be created."
+              + " The pool is growing (size [" + totalConnections() + "] with [" + pendingCreates + "] being created, max ["
+              + maxSize + "]) but creating a connection is slow - check the database and network");
+        }
+        String msg = "Unsuccessfully waited [" + waitMillis + "] millis for a connection to be returned."
             + " No connections are free. You need to Increase the max connections of [" + maxSize + "]"
             + " or look for a connection pool leak using datasource.xxx.capturestacktrace=true";
         if (pool.isCaptureStackTrace()) {
@@ -356,13 +740,19 @@ public class PooledConnectionQueue {
       }
 
       try {
-        nanos = notEmpty.awaitNanos(nanos);
-        if (!freeList.isEmpty()) {
-          // successfully waited
-          return extractFromFreeList();
-        }
+        nanos = waiter.handedOff.awaitNanos(nanos);
       } catch (InterruptedException ie) {
-        notEmpty.signal(); // propagate to non-interrupted thread
+        if (!waiters.remove(waiter) && waiter.connection != null) {
+          // pass the connection on to the next waiting thread
+          PooledConnection c = waiter.connection;
+          ConnectionWaiter next = waiters.pollFirst();
+          if (next != null) {
+            next.handOff(c);
+          } else {
+            busyList.remove(c);
+            freeList.add(c);
+          }
+        }
         throw ie;
       }
     }
@@ -387,6 +777,8 @@ public class PooledConnectionQueue {
     } finally {
       lock.unlock();
     }
+    // outside the lock as connections being created close themselves on completion
+    creator.shutdown();
   }
 
   /**
@@ -418,18 +810,65 @@ public class PooledConnectionQueue {
     final ReentrantLock lock = this.lock;
     lock.lock();
     try {
-      if (trimInactiveConnections(maxInactiveMillis, maxAgeMillis) > 0) {
-        try {
-          ensureMinimumConnections();
-        } catch (SQLException e) {
-          logger.error("Error trying to ensure minimum connections", e);
-        }
+      int trimmed = trimInactiveConnections(maxInactiveMillis, maxAgeMillis);
+      if (sizer != null) {
+        trimmed += adjustTargetSize();
+      }
+      if (trimmed > 0 || sizer != null) {
+        requestMinimumConnections();
       }
     } finally {
       lock.unlock();
     }
   }
 
+  /**
+   * Close a window of adaptive sizing and close free connections above the new target
+   * size returning the number closed. Must hold the lock.
+   */
+  private int adjustTargetSize() {
+
+    int before = sizer.getTargetSize();
+    int target = Math.max(minSize, sizer.roll(minSize, maxSize, busyList.size()));
+    if (target != before) {
+      logger.debug("DataSourcePool [{}] adaptive target size [{}] was [{}] busy[{}] waits[{}]", name, target, before, busyList.size(), sizer.getWaitCount());
+    }
+    int excess = totalConnections() - target;
+    if (excess <= 0) {
+      return 0;
+    }
+    // keep the headroom free and only close connections that are free
+    int trimmed = freeList.trimExcess(Math.min(excess, freeList.size() - sizer.getHeadroom()));
+    if (trimmed > 0) {
+      logger.debug("DataSourcePool [{}] adaptive sizing trimmed [{}] connections. New size[{}]", name, trimmed, totalConnections());
+    }
+    return trimmed;
+  }
+
+  /**
+   * Claim one free connection that has not been used or validated since the given time
+   * such that it can be validated (without holding the lock).
+   * <p>
+   * The claimed connection is not available to borrowers and must be passed back
+   * via {@link #returnValidatedConnection(PooledConnection, boolean)}.
+   * </p>
+   */
+  PooledConnection claimIdleConnection(long since) {
+    return freeList.claimIdle(since);
+  }
+
+  /**
+   * Return a connection claimed for validation back to the pool or close it if invalid.
+   */
+  void returnValidatedConnection(PooledConnection c, boolean valid) {
+    if (valid) {
+      c.markValidated();
+    } else {
+      c.markInvalid();
+    }
+    releaseConnection(c, !valid);
+  }
+
   /**
    * Trim connections that have been not used for some time.
    */
@@ -528,5 +967,74 @@ public class PooledConnectionQueue {
     }
   }
 
-}
+  /**
+   * A thread waiting for a connection to be handed to it.
+   */
+  private static final class ConnectionWaiter {
+
+    /**
+     * Signalled when a connection is handed to this waiter.
+     */
+    final Condition handedOff;
+
+    /**
+     * The connection handed to this waiter (guarded by the lock).
+     */
+    PooledConnection connection;
+
+    /**
+     * The error creating a connection for this waiter (guarded by the lock).
+     */
+    SQLException error;
+
+    ConnectionWaiter(Condition handedOff) {
+      this.handedOff = handedOff;
+    }
+
+    void handOff(PooledConnection c) {
+      this.connection = c;
+      handedOff.signal();
+    }
+
+    void fail(SQLException e) {
+      this.error = e;
+      handedOff.signal();
+    }
+  }
+
+  /**
+   * Creates a connection in the background (without holding the lock).
+   */
+  private final class CreateTask implements Runnable {
+
+    final CountDownLatch done = new CountDownLatch(1);
 
+    final ConnectionWaiter waiter;
+
+    SQLException error;
+
+    CreateTask(ConnectionWaiter waiter) {
+      this.waiter = waiter;
+    }
+
+    @Override
+    public void run() {
+      try {
+        PooledConnection c = pool.createConnectionForQueue(connectionId.getAndIncrement());
+        createdConnection(c);
+
+      } catch (SQLException e) {
+        error = e;
+        createFailed(waiter, e);
+
+      } catch (RuntimeException e) {
+        error = new SQLException("Error creating connection for pool " + name, e);
+        createFailed(waiter, error);
+
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+
+}
@@ -9,6 +9,11 @@ import java.util.Map;
 
 /**
  * A LRU based cache for PreparedStatements.
+ * <p>
+ * When a PstmtCachePolicy is supplied it is used for admission when the cache
+ * is full. A returning statement is only added if it is used more frequently
+ * (across the pool) than the least recently used statement it would evict.
+ * </p>
  */
 public class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement> {
 
@@ -26,6 +31,11 @@ public class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement>
    */
   private final int maxSize;
 
+  /**
+   * Pool wide frequency based admission policy (can be null).
+   */
+  private final PstmtCachePolicy policy;
+
   /**
    * The total number of entries removed from this cache.
    */
@@ -46,19 +56,29 @@ public class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement>
    */
   private int putCounter;
 
+  /**
+   * The number of returning statements not admitted to the full cache.
+   */
+  private int rejectCounter;
+
   public PstmtCache(String cacheName, int maxCacheSize) {
+    this(cacheName, maxCacheSize, null);
+  }
+
+  public PstmtCache(String cacheName, int maxCacheSize, PstmtCachePolicy policy) {
 
     // note = access ordered list.  This is what gives it the LRU order
     super(maxCacheSize * 3, 0.75f, true);
     this.cacheName = cacheName;
     this.maxSize = maxCacheSize;
+    this.policy = policy;
   }
 
   /**
    * Return a summary description of this cache.
    */
   public String getDescription() {
-    return "size[" + size() + "] max[" + maxSize + "] hits[" + hitCounter + "] miss[" + missCounter + "] hitRatio[" + getHitRatio() + "] removes[" + removeCounter + "]";
+    return "size[" + size() + "] max[" + maxSize + "] hits[" + hitCounter + "] miss[" + missCounter + "] hitRatio[" + getHitRatio() + "] removes[" + removeCounter + "] rejects[" + rejectCounter + "]";
   }
 
   /**
@@ -101,10 +121,18 @@ public class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement>
     return putCounter;
   }
 
+  /**
+   * The number of returning statements not admitted as the cache was full.
+   */
+  public int getRejectCounter() {
+    return rejectCounter;
+  }
+
   /**
    * Try to add the returning statement to the cache. If there is already a
-   * matching ExtendedPreparedStatement in the cache return false else add
-   * the statement to the cache and return true.
+   * matching ExtendedPreparedStatement in the cache (or the statement is not
+   * admitted to the full cache) return false else add the statement to the
+   * cache and return true.
    */
   public boolean returnStatement(ExtendedPreparedStatement pstmt) {
 
@@ -112,6 +140,14 @@ public class PstmtCache extends LinkedHashMap<String, ExtendedPreparedStatement>
     if (alreadyInCache != null) {
       return false;
     }
+    if (policy != null && size() + 1 >= maxSize && !isEmpty()) {
+      // adding will evict so check the frequency of the statement versus the LRU victim
+      String victimKey = keySet().iterator().next();
+      if (!policy.admit(pstmt.getCacheKey(), victimKey)) {
+        rejectCounter++;
+        return false;
+      }
+    }
     // add the returning prepared statement to the cache.
     // Note that the LRUCache will automatically close fully old unused
     // PStmts when the cache has hit its maximum size.
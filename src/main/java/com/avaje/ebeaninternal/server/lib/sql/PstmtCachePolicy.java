@@ -0,0 +1,281 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.avaje.ebeaninternal.server.util.LongAdder;
+
+/**
+ * Pool wide frequency based admission policy for the PstmtCache of each connection.
+ * <p>
+ * The frequency of each SQL statement is tracked across all the connections of the
+ * DataSourcePool using a count-min sketch (TinyLFU). When the PstmtCache of a
+ * connection is full a statement is only admitted if it is used more frequently
+ * than the least recently used statement it would evict. This means one off SQL
+ * does not evict the hot statements. The counters are periodically halved such that
+ * the frequencies reflect recent usage.
+ * </p>
+ * <p>
+ * Per SQL hit, miss and prepare time statistics are also collected for a bounded
+ * number of statements and these are used to prepare the most frequently used
+ * statements when a new connection is created. When the tracked statements are full
+ * a statement that is used more frequently than the coldest tracked statement replaces
+ * it, such that statements that become hot later are still tracked.
+ * </p>
+ * <p>
+ * The sketch counters are not updated atomically. Lost increments under contention
+ * are acceptable as the frequencies are only an approximation.
+ * </p>
+ */
+public class PstmtCachePolicy {
+
+  private static final int[] SEEDS = {0x97cb3127, 0x9e3779b9, 0xc2b2ae35, 0x85ebca6b};
+
+  private static final int DEPTH = SEEDS.length;
+
+  /**
+   * The maximum value of a counter.
+   */
+  private static final int MAX_COUNT = 0xffff;
+
+  private final int[] table;
+
+  private final int mask;
+
+  /**
+   * The number of increments after which all the counters are halved.
+   */
+  private final int sampleSize;
+
+  private final AtomicInteger additions = new AtomicInteger();
+
+  /**
+   * The maximum number of statements to collect statistics for.
+   */
+  private final int maxTracked;
+
+  private final ConcurrentHashMap<String, SqlEntry> entries = new ConcurrentHashMap<String, SqlEntry>();
+
+  /**
+   * The (approximate) frequency of the coldest tracked statement that an untracked
+   * statement must exceed to replace it.
+   */
+  private volatile int minTrackedFrequency;
+
+  /**
+   * Create with the maximum number of statements to collect statistics for.
+   */
+  public PstmtCachePolicy(int maxTracked) {
+    this.maxTracked = maxTracked;
+    int width = 1024;
+    while (width < maxTracked * 8) {
+      width <<= 1;
+    }
+    this.table = new int[width * DEPTH];
+    this.mask = width - 1;
+    this.sampleSize = width * 10;
+  }
+
+  /**
+   * Record that a statement is being used returning the SqlEntry (null when not tracked).
+   */
+  SqlEntry record(String cacheKey, String sql, boolean useFlag, int flag) {
+
+    increment(cacheKey.hashCode());
+
+    SqlEntry entry = entries.get(cacheKey);
+    if (entry == null) {
+      if (entries.size() < maxTracked) {
+        SqlEntry newEntry = new SqlEntry(cacheKey, sql, useFlag, flag);
+        entry = entries.putIfAbsent(cacheKey, newEntry);
+        if (entry == null) {
+          entry = newEntry;
+        }
+      } else if (frequency(cacheKey) > minTrackedFrequency) {
+        entry = replaceColdest(cacheKey, sql, useFlag, flag);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Track the statement in place of the coldest tracked statement if it is used more
+   * frequently returning null if it is not.
+   */
+  private synchronized SqlEntry replaceColdest(String cacheKey, String sql, boolean useFlag, int flag) {
+
+    SqlEntry entry = entries.get(cacheKey);
+    if (entry != null) {
+      return entry;
+    }
+
+    SqlEntry coldest = null;
+    int coldestFrequency = Integer.MAX_VALUE;
+    int nextFrequency = Integer.MAX_VALUE;
+    for (SqlEntry tracked : entries.values()) {
+      int trackedFrequency = frequency(tracked.cacheKey);
+      if (trackedFrequency < coldestFrequency) {
+        nextFrequency = coldestFrequency;
+        coldestFrequency = trackedFrequency;
+        coldest = tracked;
+      } else if (trackedFrequency < nextFrequency) {
+        nextFrequency = trackedFrequency;
+      }
+    }
+
+    int candidateFrequency = frequency(cacheKey);
+    if (coldest == null || candidateFrequency <= coldestFrequency) {
+      minTrackedFrequency = (coldest == null) ? 0 : coldestFrequency;
+      return null;
+    }
+
+    entries.remove(coldest.cacheKey);
+    SqlEntry newEntry = new SqlEntry(cacheKey, sql, useFlag, flag);
+    entries.put(cacheKey, newEntry);
+    minTrackedFrequency = Math.min(candidateFrequency, nextFrequency);
+    return newEntry;
+  }
+
+  /**
+   * Return true if the candidate statement should be admitted to a full cache evicting the victim.
+   */
+  boolean admit(String candidateKey, String victimKey) {
+    return frequency(candidateKey) > frequency(victimKey);
+  }
+
+  /**
+   * Return the estimated frequency of use of the statement.
+   */
+  public int frequency(String cacheKey) {
+    int hash = spread(cacheKey.hashCode());
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < DEPTH; i++) {
+      int count = table[indexOf(hash, i)];
+      if (count < min) {
+        min = count;
+      }
+    }
+    return min;
+  }
+
+  private void increment(int hashCode) {
+    int hash = spread(hashCode);
+    for (int i = 0; i < DEPTH; i++) {
+      int index = indexOf(hash, i);
+      if (table[index] < MAX_COUNT) {
+        table[index]++;
+      }
+    }
+    if (additions.incrementAndGet() >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Halve all the counters (aging) such that frequencies reflect recent use.
+   */
+  private synchronized void reset() {
+    if (additions.get() >= sampleSize) {
+      for (int i = 0; i < table.length; i++) {
+        table[i] >>>= 1;
+      }
+      minTrackedFrequency >>>= 1;
+      additions.set(0);
+    }
+  }
+
+  private int indexOf(int hash, int row) {
+    long h = (hash + SEEDS[row]) * (long) SEEDS[row];
+    h += h >>> 32;
+    return (row * (mask + 1)) + ((int) h & mask);
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  /**
+   * Return the most frequently used statements (for preparing on new connections).
+   */
+  synchronized List<SqlEntry> top(int count) {
+
+    if (count <= 0 || entries.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<SqlEntry> list = new ArrayList<SqlEntry>(entries.values());
+    for (int i = 0; i < list.size(); i++) {
+      SqlEntry entry = list.get(i);
+      entry.sortFrequency = frequency(entry.cacheKey);
+    }
+    Collections.sort(list, new Comparator<SqlEntry>() {
+      @Override
+      public int compare(SqlEntry o1, SqlEntry o2) {
+        return (o1.sortFrequency < o2.sortFrequency) ? 1 : ((o1.sortFrequency == o2.sortFrequency) ? 0 : -1);
+      }
+    });
+    return (list.size() <= count) ? list : list.subList(0, count);
+  }
+
+  /**
+   * Return the per SQL statistics ordered by frequency of use.
+   */
+  public List<PstmtStatistics> getStatistics(boolean reset) {
+
+    List<SqlEntry> list = top(entries.size());
+    List<PstmtStatistics> stats = new ArrayList<PstmtStatistics>(list.size());
+    for (SqlEntry entry : list) {
+      stats.add(entry.getStatistics(reset));
+    }
+    return stats;
+  }
+
+  /**
+   * Statement usage statistics for a given SQL statement.
+   */
+  static class SqlEntry {
+
+    final String cacheKey;
+
+    final String sql;
+
+    final boolean useFlag;
+
+    final int flag;
+
+    final LongAdder hits = new LongAdder();
+
+    final LongAdder misses = new LongAdder();
+
+    final LongAdder prepareNanos = new LongAdder();
+
+    int sortFrequency;
+
+    SqlEntry(String cacheKey, String sql, boolean useFlag, int flag) {
+      this.cacheKey = cacheKey;
+      this.sql = sql;
+      this.useFlag = useFlag;
+      this.flag = flag;
+    }
+
+    void hit() {
+      hits.increment();
+    }
+
+    void prepared(long nanos) {
+      misses.increment();
+      prepareNanos.add(nanos);
+    }
+
+    PstmtStatistics getStatistics(boolean reset) {
+      if (reset) {
+        return new PstmtStatistics(sql, sortFrequency, hits.sumThenReset(), misses.sumThenReset(), prepareNanos.sumThenReset() / 1000);
+      }
+      return new PstmtStatistics(sql, sortFrequency, hits.sum(), misses.sum(), prepareNanos.sum() / 1000);
+    }
+  }
+}
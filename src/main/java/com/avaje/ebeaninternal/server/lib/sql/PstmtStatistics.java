@@ -0,0 +1,72 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+/**
+ * Usage statistics for a SQL statement collected across all the connections of a DataSourcePool.
+ */
+public class PstmtStatistics {
+
+  private final String sql;
+
+  private final int frequency;
+
+  private final long hitCount;
+
+  private final long missCount;
+
+  private final long prepareMicros;
+
+  public PstmtStatistics(String sql, int frequency, long hitCount, long missCount, long prepareMicros) {
+    this.sql = sql;
+    this.frequency = frequency;
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.prepareMicros = prepareMicros;
+  }
+
+  public String toString() {
+    return "frequency[" + frequency + "] hits[" + hitCount + "] misses[" + missCount + "] prepareMicros[" + prepareMicros
+        + "] avgPrepareMicros[" + getAvgPrepareMicros() + "] sql[" + sql + "]";
+  }
+
+  /**
+   * Return the SQL statement.
+   */
+  public String getSql() {
+    return sql;
+  }
+
+  /**
+   * Return the estimated (recent) frequency of use of the statement.
+   */
+  public int getFrequency() {
+    return frequency;
+  }
+
+  /**
+   * Return the number of times the statement was found in a connection PstmtCache.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Return the number of times the statement was prepared (not found in the PstmtCache).
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Return the total time spent preparing the statement.
+   */
+  public long getPrepareMicros() {
+    return prepareMicros;
+  }
+
+  /**
+   * Return the average time to prepare the statement.
+   */
+  public long getAvgPrepareMicros() {
+    return (missCount == 0) ? 0 : prepareMicros / missCount;
+  }
+}
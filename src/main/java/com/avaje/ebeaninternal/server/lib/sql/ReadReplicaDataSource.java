@@ -0,0 +1,176 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that routes to one of several read replica DataSources.
+ * <p>
+ * Replicas are selected round robin or, when leastBusy is true, the replica with the
+ * fewest busy connections is used (for DataSourcePool replicas). If getting a connection
+ * from the selected replica fails the other replicas are tried in turn.
+ * </p>
+ */
+public class ReadReplicaDataSource implements DataSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReadReplicaDataSource.class);
+
+  private final DataSource[] replicas;
+
+  private final boolean leastBusy;
+
+  private final AtomicInteger counter = new AtomicInteger();
+
+  /**
+   * Create with the replica DataSources and selection mode.
+   */
+  public ReadReplicaDataSource(List<? extends DataSource> replicas, boolean leastBusy) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("No read replica DataSources");
+    }
+    this.replicas = replicas.toArray(new DataSource[replicas.size()]);
+    this.leastBusy = leastBusy;
+  }
+
+  /**
+   * Return the replica DataSources.
+   */
+  public List<DataSource> getReplicas() {
+    List<DataSource> list = new ArrayList<DataSource>(replicas.length);
+    Collections.addAll(list, replicas);
+    return list;
+  }
+
+  /**
+   * Return true if the least busy replica is selected (rather than round robin).
+   */
+  public boolean isLeastBusy() {
+    return leastBusy;
+  }
+
+  /**
+   * Return the index of the replica to try first.
+   */
+  private int select() {
+    if (replicas.length == 1) {
+      return 0;
+    }
+    if (leastBusy) {
+      int best = -1;
+      int bestBusy = Integer.MAX_VALUE;
+      for (int i = 0; i < replicas.length; i++) {
+        if (replicas[i] instanceof DataSourcePool) {
+          DataSourcePool pool = (DataSourcePool) replicas[i];
+          int busy = pool.isDataSourceUp() ? pool.getBusyCount() : Integer.MAX_VALUE - 1;
+          if (busy < bestBusy) {
+            bestBusy = busy;
+            best = i;
+          }
+        }
+      }
+      if (best > -1) {
+        return best;
+      }
+    }
+    return (counter.getAndIncrement() & Integer.MAX_VALUE) % replicas.length;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+
+    int start = select();
+    SQLException error = null;
+    for (int i = 0; i < replicas.length; i++) {
+      DataSource replica = replicas[(start + i) % replicas.length];
+      try {
+        return replica.getConnection();
+      } catch (SQLException e) {
+        logger.warn("Failed to get connection from read replica, trying next replica " + e.getMessage());
+        error = e;
+      }
+    }
+    throw error;
+  }
+
+  /**
+   * Shutdown the replicas that are DataSourcePools.
+   */
+  public void shutdown(boolean deregisterDriver) {
+    for (DataSource replica : replicas) {
+      if (replica instanceof DataSourcePool) {
+        ((DataSourcePool) replica).shutdown(deregisterDriver);
+      }
+    }
+  }
+
+  /**
+   * Not implemented and shouldn't be used.
+   */
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLException("Method not supported");
+  }
+
+  /**
+   * Returns null.
+   */
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return null;
+  }
+
+  /**
+   * Not implemented.
+   */
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    throw new SQLException("Method not supported");
+  }
+
+  /**
+   * Not implemented and shouldn't be used.
+   */
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    throw new SQLException("Method not supported");
+  }
+
+  /**
+   * Not implemented and shouldn't be used.
+   */
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    throw new SQLException("Method not supported");
+  }
+
+  @Override
+  public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("We do not support java.util.logging");
+  }
+
+  /**
+   * Not Implemented.
+   */
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    throw new SQLException("Not Implemented");
+  }
+
+  /**
+   * Returns false.
+   */
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return false;
+  }
+}
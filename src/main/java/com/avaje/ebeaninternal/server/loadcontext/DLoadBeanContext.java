@@ -12,7 +12,6 @@ import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
 import com.avaje.ebeaninternal.server.querydefn.OrmQueryProperties;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -180,14 +179,8 @@ public class DLoadBeanContext extends DLoadBaseContext implements LoadBeanContex
       }
 
       if (context.hitCache) {
-        // Check each of the beans in the batch to see if they are in the L2 cache.
-        Iterator<EntityBeanIntercept> iterator = list.iterator();
-        while (iterator.hasNext()) {
-          EntityBeanIntercept bean = iterator.next();
-          if (context.desc.cacheBeanLoad(bean)) {
-            iterator.remove();
-          }
-        }
+        // Load the beans in the batch that are in the L2 cache (with one getAll)
+        context.desc.cacheBeanLoadAll(list);
       }
 
       LoadBeanRequest req = new LoadBeanRequest(this, ebi.getLazyLoadProperty(), context.hitCache);
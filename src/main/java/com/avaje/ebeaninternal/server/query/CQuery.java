@@ -284,18 +284,18 @@ public class CQuery<T> implements DbReadContext, CancelableQuery {
   /**
    * Prepare bind and execute query with Forward only hints.
    */
-  public boolean prepareBindExecuteQueryForwardOnly(boolean dbPlatformForwardOnlyHint) throws SQLException {
-    return prepareBindExecuteQueryWithOption(dbPlatformForwardOnlyHint);
+  public boolean prepareBindExecuteQueryForwardOnly(boolean dbPlatformForwardOnlyHint, int dbPlatformFetchSize) throws SQLException {
+    return prepareBindExecuteQueryWithOption(dbPlatformForwardOnlyHint, dbPlatformFetchSize);
   }
 
   /**
    * Prepare bind and execute the query normally.
    */
   public boolean prepareBindExecuteQuery() throws SQLException {
-    return prepareBindExecuteQueryWithOption(false);
+    return prepareBindExecuteQueryWithOption(false, 0);
   }
 
-  private boolean prepareBindExecuteQueryWithOption(boolean forwardOnlyHint) throws SQLException {
+  private boolean prepareBindExecuteQueryWithOption(boolean forwardOnlyHint, int defaultFetchSize) throws SQLException {
 
     synchronized (this) {
       if (cancelled || query.isCancelled()) {
@@ -333,6 +333,8 @@ public class CQuery<T> implements DbReadContext, CancelableQuery {
       }
       if (query.getBufferFetchSizeHint() > 0) {
         pstmt.setFetchSize(query.getBufferFetchSizeHint());
+      } else if (defaultFetchSize > 0 && !forwardOnlyHint) {
+        pstmt.setFetchSize(defaultFetchSize);
       }
 
       DataBind dataBind = new DataBind(pstmt);
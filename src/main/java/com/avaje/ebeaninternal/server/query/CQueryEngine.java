@@ -37,12 +37,15 @@ public class CQueryEngine {
 
   private final boolean forwardOnlyHintOnFindIterate;
 
+  private final int streamFetchSize;
+
   private final CQueryBuilder queryBuilder;
 
   private final CQueryHistorySupport historySupport;
 
   public CQueryEngine(DatabasePlatform dbPlatform, Binder binder, Map<String, String> asOfTableMapping, String asOfSysPeriod, Map<String, String> draftTableMap) {
     this.forwardOnlyHintOnFindIterate = dbPlatform.isForwardOnlyHintOnFindIterate();
+    this.streamFetchSize = dbPlatform.getStreamFetchSize();
     this.historySupport = new CQueryHistorySupport(dbPlatform.getHistorySupport(), asOfTableMapping, asOfSysPeriod);
     this.queryBuilder = new CQueryBuilder(dbPlatform, binder, historySupport, new CQueryDraftSupport(draftTableMap));
   }
@@ -152,7 +155,7 @@ public class CQueryEngine {
 
     try {
 
-      if (!cquery.prepareBindExecuteQueryForwardOnly(forwardOnlyHintOnFindIterate)) {
+      if (!cquery.prepareBindExecuteQueryForwardOnly(forwardOnlyHintOnFindIterate, streamFetchSize)) {
         // query has been cancelled already
         logger.trace("Future fetch already cancelled");
         return null;
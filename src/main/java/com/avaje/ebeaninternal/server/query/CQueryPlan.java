@@ -3,12 +3,15 @@ package com.avaje.ebeaninternal.server.query;
 import java.security.MessageDigest;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import com.avaje.ebean.bean.ObjectGraphNode;
 import com.avaje.ebean.config.dbplatform.SqlLimitResponse;
 import com.avaje.ebeaninternal.api.HashQueryPlan;
 import com.avaje.ebeaninternal.api.HashQueryPlanBuilder;
 import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.api.SpiQuery;
 import com.avaje.ebeaninternal.server.core.OrmQueryRequest;
 import com.avaje.ebeaninternal.server.deploy.BeanProperty;
 import com.avaje.ebeaninternal.server.query.CQueryPlanStats.Snapshot;
@@ -57,6 +60,11 @@ public class CQueryPlan {
 
   private final SqlTree sqlTree;
 
+  /**
+   * The tables read by the query (determined on first use).
+   */
+  private String[] dependentTables;
+
   /**
    * Encrypted properties required additional binding.
    */
@@ -71,6 +79,11 @@ public class CQueryPlan {
    */
   private volatile String auditQueryHash;
 
+  /**
+   * A copy of the query that built this plan used to warm up the plan after a restart.
+   */
+  private volatile SpiQuery<?> warmupQuery;
+
   /**
    * Create a query plan based on a OrmQueryRequest.
    */
@@ -201,6 +214,24 @@ public class CQueryPlan {
     return sqlTree;
   }
 
+  /**
+   * Return the names of the tables read by the query including the tables of fetch
+   * joins and extra joins added for predicates.
+   */
+  public String[] getDependentTables() {
+    String[] tables = dependentTables;
+    if (tables == null) {
+      Set<String> set = new LinkedHashSet<String>();
+      SqlTreeNode rootNode = sqlTree.getRootNode();
+      if (rootNode != null) {
+        rootNode.addDependentTables(set);
+      }
+      tables = set.toArray(new String[set.size()]);
+      dependentTables = tables;
+    }
+    return tables;
+  }
+
   public boolean isRawSql() {
     return rawSql;
   }
@@ -250,4 +281,18 @@ public class CQueryPlan {
     return stats.getLastQueryTime();
   }
 
+  /**
+   * Return the copy of the query that built this plan (null if not captured for warm up).
+   */
+  public SpiQuery<?> getWarmupQuery() {
+    return warmupQuery;
+  }
+
+  /**
+   * Set the copy of the query that built this plan for warm up after a restart.
+   */
+  public void setWarmupQuery(SpiQuery<?> warmupQuery) {
+    this.warmupQuery = warmupQuery;
+  }
+
 }
@@ -0,0 +1,159 @@
+package com.avaje.ebeaninternal.server.query;
+
+import com.avaje.ebean.cache.ServerCacheStatistics;
+import com.avaje.ebean.meta.MetaQueryPlanCacheStatistic;
+import com.avaje.ebeaninternal.api.HashQueryPlan;
+import com.avaje.ebeaninternal.server.cache.DefaultServerCache;
+import com.avaje.ebeaninternal.server.util.LongAdder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The query plans of a bean type bounded by a max size.
+ * <p>
+ * Queries built with dynamic where clauses or fetch paths can produce an unbounded number
+ * of plans. This uses the W-TinyLFU eviction of DefaultServerCache such that the plans
+ * of frequently executed queries are kept and rarely used plans are evicted. There is no
+ * idle or time to live based eviction.
+ * </p>
+ */
+public class CQueryPlanCache extends DefaultServerCache {
+
+  private final Class<?> beanType;
+
+  private final LongAdder compileCount = new LongAdder();
+
+  private final LongAdder compileNanos = new LongAdder();
+
+  /**
+   * Create for a bean type with the max number of plans (0 for unbounded).
+   */
+  public CQueryPlanCache(Class<?> beanType, int maxSize) {
+    super(beanType.getName() + "_queryPlan", new ConcurrentHashMap<Object, CacheEntry>(), maxSize, 0, 0, 0);
+    this.beanType = beanType;
+  }
+
+  /**
+   * Return the query plan for the hash or null if not cached.
+   */
+  public CQueryPlan getPlan(HashQueryPlan key) {
+    return (CQueryPlan) get(key);
+  }
+
+  /**
+   * Return true if the query plan is cached (without counting as a hit or miss).
+   */
+  public boolean containsPlan(HashQueryPlan key) {
+    return map.containsKey(key);
+  }
+
+  /**
+   * Put the query plan including the time taken to build it.
+   */
+  public void putPlan(HashQueryPlan key, CQueryPlan plan, long buildNanos) {
+    compileCount.increment();
+    compileNanos.add(buildNanos);
+    put(key, plan);
+  }
+
+  /**
+   * Return the cached query plans.
+   */
+  public List<CQueryPlan> plans() {
+    List<CQueryPlan> plans = new ArrayList<CQueryPlan>(map.size());
+    for (CacheEntry entry : map.values()) {
+      plans.add((CQueryPlan) entry.getValue());
+    }
+    return plans;
+  }
+
+  /**
+   * Return the plan cache statistics.
+   */
+  public MetaQueryPlanCacheStatistic getPlanStatistics(boolean reset) {
+    ServerCacheStatistics stats = getStatistics(reset);
+    long compiles = reset ? compileCount.sumThenReset() : compileCount.sum();
+    long nanos = reset ? compileNanos.sumThenReset() : compileNanos.sum();
+    return new Snapshot(beanType, stats.getSize(), stats.getMaxSize(), stats.getHitCount(), stats.getMissCount(),
+        stats.getEvictByLRU(), compiles, nanos / 1000);
+  }
+
+  /**
+   * A snapshot of the statistics of the query plan cache.
+   */
+  static class Snapshot implements MetaQueryPlanCacheStatistic {
+
+    private final Class<?> beanType;
+    private final int planCount;
+    private final int maxSize;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long compileCount;
+    private final long compileMicros;
+
+    Snapshot(Class<?> beanType, int planCount, int maxSize, long hitCount, long missCount, long evictionCount,
+             long compileCount, long compileMicros) {
+      this.beanType = beanType;
+      this.planCount = planCount;
+      this.maxSize = maxSize;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.compileCount = compileCount;
+      this.compileMicros = compileMicros;
+    }
+
+    public String toString() {
+      return beanType.getName() + " plans:" + planCount + " maxSize:" + maxSize + " hit:" + hitCount + " miss:" + missCount
+          + " evict:" + evictionCount + " compile:" + compileCount + " compileMicros:" + compileMicros;
+    }
+
+    @Override
+    public Class<?> getBeanType() {
+      return beanType;
+    }
+
+    @Override
+    public int getPlanCount() {
+      return planCount;
+    }
+
+    @Override
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    @Override
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    @Override
+    public long getMissCount() {
+      return missCount;
+    }
+
+    @Override
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    @Override
+    public long getCompileCount() {
+      return compileCount;
+    }
+
+    @Override
+    public long getTotalCompileMicros() {
+      return compileMicros;
+    }
+
+    @Override
+    public long getMeanCompileMicros() {
+      return (compileCount == 0) ? 0 : compileMicros / compileCount;
+    }
+  }
+}
@@ -89,6 +89,13 @@ public final class CQueryPlanStats {
     }
   }
 
+  /**
+   * Return the number of times this query was executed.
+   */
+  public long getExecutionCount() {
+    return count.sum();
+  }
+
   /**
    * Return the last time this query was executed.
    */
@@ -0,0 +1,368 @@
+package com.avaje.ebeaninternal.server.query;
+
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.api.SpiQuery;
+import com.avaje.ebeaninternal.server.core.OrmQueryRequest;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.ebeaninternal.server.deploy.BeanProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persists the hot query plans to a manifest file and warms them up on startup.
+ * <p>
+ * Each entry of the manifest is a serialised copy of a query that built a query plan and the
+ * entries are ordered by the execution count of their plans. On startup the queries are
+ * compiled (not executed) in the background such that their query plans are in the query
+ * plan cache before the first queries execute.
+ * </p>
+ * <p>
+ * The queries are captured without their bind values and a query that can not be serialised
+ * is skipped. A query plan that is not built the same way after a restart (for example after
+ * a change to the bean type) is simply not used.
+ * </p>
+ * <p>
+ * When reading the manifest only the exact classes that make up a plan key copy of a query
+ * (the query definition and expression types, String, primitive wrappers, a few collection
+ * types and the entity bean and id types of the server) are deserialised such that a
+ * manipulated manifest can not instantiate arbitrary classes.
+ * </p>
+ */
+public class CQueryPlanWarmup implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CQueryPlanWarmup.class);
+
+  private static final int VERSION = 1;
+
+  /**
+   * The classes (other than the entity bean and id types) written to the manifest.
+   */
+  private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(
+      "[Z",
+      "[Ljava.lang.Object;",
+      "[Ljava.lang.String;",
+      "java.lang.Boolean",
+      "java.lang.Byte",
+      "java.lang.Character",
+      "java.lang.Double",
+      "java.lang.Enum",
+      "java.lang.Float",
+      "java.lang.Integer",
+      "java.lang.Long",
+      "java.lang.Number",
+      "java.lang.Short",
+      "java.math.BigDecimal",
+      "java.util.ArrayList",
+      "java.util.HashMap",
+      "java.util.HashSet",
+      "java.util.LinkedHashMap",
+      "java.util.LinkedHashSet",
+      "com.avaje.ebean.FetchConfig",
+      "com.avaje.ebean.LikeType",
+      "com.avaje.ebean.OrderBy",
+      "com.avaje.ebean.OrderBy$Property",
+      "com.avaje.ebean.PersistenceContextScope",
+      "com.avaje.ebeaninternal.api.BindParams",
+      "com.avaje.ebeaninternal.api.BindParams$Param",
+      "com.avaje.ebeaninternal.api.SpiQuery$Mode",
+      "com.avaje.ebeaninternal.api.SpiQuery$TemporalMode",
+      "com.avaje.ebeaninternal.api.SpiQuery$Type",
+      "com.avaje.ebeaninternal.server.expression.AbstractExpression",
+      "com.avaje.ebeaninternal.server.expression.AllEqualsExpression",
+      "com.avaje.ebeaninternal.server.expression.BetweenExpression",
+      "com.avaje.ebeaninternal.server.expression.BetweenPropertyExpression",
+      "com.avaje.ebeaninternal.server.expression.CaseInsensitiveEqualExpression",
+      "com.avaje.ebeaninternal.server.expression.DefaultExampleExpression",
+      "com.avaje.ebeaninternal.server.expression.ExistsExpression",
+      "com.avaje.ebeaninternal.server.expression.FilterExprPath",
+      "com.avaje.ebeaninternal.server.expression.IdExpression",
+      "com.avaje.ebeaninternal.server.expression.IdInExpression",
+      "com.avaje.ebeaninternal.server.expression.InExpression",
+      "com.avaje.ebeaninternal.server.expression.InQueryExpression",
+      "com.avaje.ebeaninternal.server.expression.JsonPathExpression",
+      "com.avaje.ebeaninternal.server.expression.JunctionExpression",
+      "com.avaje.ebeaninternal.server.expression.JunctionExpression$Conjunction",
+      "com.avaje.ebeaninternal.server.expression.JunctionExpression$Disjunction",
+      "com.avaje.ebeaninternal.server.expression.KeysetExpression",
+      "com.avaje.ebeaninternal.server.expression.LikeExpression",
+      "com.avaje.ebeaninternal.server.expression.LogicExpression",
+      "com.avaje.ebeaninternal.server.expression.LogicExpression$And",
+      "com.avaje.ebeaninternal.server.expression.LogicExpression$Or",
+      "com.avaje.ebeaninternal.server.expression.NoopExpression",
+      "com.avaje.ebeaninternal.server.expression.NotExpression",
+      "com.avaje.ebeaninternal.server.expression.NullExpression",
+      "com.avaje.ebeaninternal.server.expression.Op",
+      "com.avaje.ebeaninternal.server.expression.RawExpression",
+      "com.avaje.ebeaninternal.server.expression.SimpleExpression",
+      "com.avaje.ebeaninternal.server.querydefn.DefaultOrmQuery",
+      "com.avaje.ebeaninternal.server.querydefn.OrmQueryDetail",
+      "com.avaje.ebeaninternal.server.querydefn.OrmQueryProperties",
+      "com.avaje.ebeaninternal.util.DefaultExpressionList",
+      "com.avaje.ebeaninternal.util.FilterExpressionList"
+  ));
+
+  private final SpiEbeanServer server;
+
+  private final File file;
+
+  private final int maxPlans;
+
+  /**
+   * Construct with the manifest file and max number of query plans written to it.
+   */
+  public CQueryPlanWarmup(SpiEbeanServer server, String fileName, int maxPlans) {
+    this.server = server;
+    this.file = new File(fileName);
+    this.maxPlans = maxPlans;
+  }
+
+  /**
+   * Warm up the query plans of the manifest (run in the background on startup).
+   */
+  @Override
+  public void run() {
+    try {
+      int count = warmup();
+      logger.debug("Query plan warm up compiled {} query plans from {}", count, file);
+    } catch (Throwable e) {
+      logger.error("Error warming up query plans from " + file, e);
+    }
+  }
+
+  /**
+   * Compile the queries of the manifest returning the number of queries compiled.
+   */
+  public int warmup() throws IOException {
+
+    List<byte[]> entries = readManifest();
+    Set<String> entityClassNames = entityClassNames();
+    int count = 0;
+    for (byte[] entry : entries) {
+      try {
+        if (compile((SpiQuery<?>) deserialise(entry, entityClassNames))) {
+          count++;
+        }
+      } catch (Exception e) {
+        logger.warn("Skipping query plan warm up entry due to " + e);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Build the query plan (without executing the query) returning false for an unknown bean type.
+   */
+  private <T> boolean compile(SpiQuery<T> serialQuery) {
+
+    BeanDescriptor<T> desc = server.getBeanDescriptor(serialQuery.getBeanType());
+    if (desc == null) {
+      // no longer an entity bean type of this server
+      return false;
+    }
+
+    SpiQuery<T> query = serialQuery.copy(server);
+    query.setType(serialQuery.getType());
+    query.setBeanDescriptor(desc);
+
+    OrmQueryRequest<T> request = (OrmQueryRequest<T>) server.createQueryRequest(desc, query, null);
+    if (isPagingQuery(query)) {
+      // as per CQueryEngine.findMany() after the query plan hash is calculated
+      desc.appendOrderById(query);
+    }
+    server.getQueryEngine().buildQuery(request);
+    return true;
+  }
+
+  private boolean isPagingQuery(SpiQuery<?> query) {
+    SpiQuery.Type type = query.getType();
+    boolean many = (type == SpiQuery.Type.LIST || type == SpiQuery.Type.SET || type == SpiQuery.Type.MAP);
+    return many && (query.getMaxRows() > 1 || query.getFirstRow() > 0);
+  }
+
+  /**
+   * Write the manifest of the most frequently executed query plans returning the number written.
+   */
+  public int writeManifest() throws IOException {
+
+    List<Entry> entries = new ArrayList<Entry>();
+    for (BeanDescriptor<?> desc : server.getBeanDescriptors()) {
+      for (CQueryPlan plan : desc.getQueryPlans()) {
+        SpiQuery<?> query = plan.getWarmupQuery();
+        long executionCount = plan.getQueryStats().getExecutionCount();
+        if (query != null && executionCount > 0) {
+          entries.add(new Entry(executionCount, query));
+        }
+      }
+    }
+
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry o1, Entry o2) {
+        return (o1.executionCount < o2.executionCount) ? 1 : ((o1.executionCount == o2.executionCount) ? 0 : -1);
+      }
+    });
+
+    List<byte[]> content = new ArrayList<byte[]>();
+    for (Entry entry : entries) {
+      if (content.size() >= maxPlans) {
+        break;
+      }
+      try {
+        content.add(serialise(entry.query));
+      } catch (IOException e) {
+        logger.debug("Query not included in query plan warm up manifest due to " + e);
+      }
+    }
+
+    // write to a temporary file and rename such that a partially written manifest is never read
+    File tempFile = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+    try {
+      out.writeInt(VERSION);
+      out.writeInt(content.size());
+      for (byte[] bytes : content) {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    } finally {
+      out.close();
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Unable to replace query plan warm up manifest " + file);
+    }
+    if (!tempFile.renameTo(file)) {
+      throw new IOException("Unable to rename " + tempFile + " to " + file);
+    }
+    return content.size();
+  }
+
+  /**
+   * Read the serialised queries of the manifest (empty if there is no manifest).
+   */
+  private List<byte[]> readManifest() throws IOException {
+
+    List<byte[]> entries = new ArrayList<byte[]>();
+    if (!file.exists()) {
+      return entries;
+    }
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      int version = in.readInt();
+      if (version != VERSION) {
+        logger.info("Ignoring query plan warm up manifest {} with version {}", file, version);
+        return entries;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        entries.add(bytes);
+      }
+      return entries;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static byte[] serialise(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(value);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialise(byte[] bytes, Set<String> entityClassNames) throws IOException, ClassNotFoundException {
+    ObjectInputStream in = new ManifestInputStream(new ByteArrayInputStream(bytes), entityClassNames);
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Return the names of the entity bean types (with their super types) and id types.
+   */
+  private Set<String> entityClassNames() {
+    Set<String> names = new HashSet<String>();
+    for (BeanDescriptor<?> desc : server.getBeanDescriptors()) {
+      Class<?> beanType = desc.getBeanType();
+      while (beanType != null && beanType != Object.class) {
+        names.add(beanType.getName());
+        beanType = beanType.getSuperclass();
+      }
+      BeanProperty idProperty = desc.getIdProperty();
+      if (idProperty != null) {
+        names.add(idProperty.getPropertyType().getName());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * ObjectInputStream that only resolves the classes that make up a query.
+   */
+  private static class ManifestInputStream extends ObjectInputStream {
+
+    private final Set<String> entityClassNames;
+
+    ManifestInputStream(InputStream in, Set<String> entityClassNames) throws IOException {
+      super(in);
+      this.entityClassNames = entityClassNames;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+      String className = desc.getName();
+      if (!ALLOWED_CLASSES.contains(className) && !entityClassNames.contains(className)) {
+        throw new InvalidClassException(className, "Not allowed in the query plan warm up manifest");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+      throw new InvalidClassException("Proxy classes are not allowed in the query plan warm up manifest");
+    }
+  }
+
+  /**
+   * A query plan's query and execution count.
+   */
+  private static class Entry {
+
+    final long executionCount;
+
+    final SpiQuery<?> query;
+
+    Entry(long executionCount, SpiQuery<?> query) {
+      this.executionCount = executionCount;
+      this.query = query;
+    }
+  }
+}
@@ -12,7 +12,6 @@ import com.avaje.ebeaninternal.server.core.OrmQueryEngine;
 import com.avaje.ebeaninternal.server.core.OrmQueryRequest;
 import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
 
-import java.util.Collection;
 import java.util.List;
 
 /**
@@ -99,10 +98,7 @@ public class DefaultOrmQueryEngine implements OrmQueryEngine {
     if (query.isLoadBeanCache()) {
       // load the individual beans into the bean cache
       BeanDescriptor<T> descriptor = request.getBeanDescriptor();
-      Collection<T> c = result.getActualDetails();
-      for (T bean : c) {
-        descriptor.cacheBeanPutData((EntityBean) bean);
-      }
+      descriptor.cacheBeanPutAll(result.getActualDetails());
     }
 
     if (!result.isEmpty() && query.isUseQueryCache()) {
@@ -0,0 +1,157 @@
+package com.avaje.ebeaninternal.server.query;
+
+import com.avaje.ebean.QueryEachConsumer;
+import com.avaje.ebeaninternal.api.BindParams;
+import com.avaje.ebeaninternal.api.SpiDtoQuery;
+import com.avaje.ebeaninternal.api.SpiTransaction;
+import com.avaje.ebeaninternal.server.core.DtoQueryRequest;
+import com.avaje.ebeaninternal.server.core.Message;
+import com.avaje.ebeaninternal.server.dto.DtoQueryPlan;
+import com.avaje.ebeaninternal.server.lib.util.Str;
+import com.avaje.ebeaninternal.server.persist.Binder;
+import com.avaje.ebeaninternal.server.transaction.TransactionManager;
+import com.avaje.ebeaninternal.server.type.DataBind;
+import com.avaje.ebeaninternal.server.type.RsetDataReader;
+import com.avaje.ebeaninternal.server.util.BindParamsParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Execute native sql queries reading the rows directly into DTO beans.
+ * <p>
+ * Unlike entity queries there is no EntityBeanIntercept, persistence context or load
+ * context involved. The mapping of columns to the DTO bean is compiled once per column
+ * set and each row is read via the ScalarTypes straight into the constructor or setters.
+ * </p>
+ */
+public class DtoQueryEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(DtoQueryEngine.class);
+
+  private final Binder binder;
+
+  public DtoQueryEngine(Binder binder) {
+    this.binder = binder;
+  }
+
+  /**
+   * Execute the query returning the list of DTO beans.
+   */
+  public <T> List<T> findList(DtoQueryRequest<T> request) {
+
+    final List<T> list = new ArrayList<T>();
+    findEach(request, new QueryEachConsumer<T>() {
+      @Override
+      public void accept(T bean) {
+        list.add(bean);
+      }
+    });
+    return list;
+  }
+
+  /**
+   * Execute the query passing each DTO bean to the consumer.
+   */
+  public <T> void findEach(DtoQueryRequest<T> request, QueryEachConsumer<T> consumer) {
+
+    SpiDtoQuery<T> query = request.getQuery();
+
+    long startTime = System.currentTimeMillis();
+
+    SpiTransaction t = request.getTransaction();
+    Connection conn = t.getInternalConnection();
+    ResultSet rset = null;
+    PreparedStatement pstmt = null;
+
+    String sql = query.getQuery();
+
+    BindParams bindParams = query.getBindParams();
+    if (!bindParams.isEmpty()) {
+      // convert any named parameters if required
+      sql = BindParamsParser.parse(bindParams, sql);
+    }
+
+    try {
+      String bindLog = "";
+
+      pstmt = conn.prepareStatement(sql);
+      if (query.getTimeout() > 0) {
+        pstmt.setQueryTimeout(query.getTimeout());
+      }
+      if (query.getBufferFetchSizeHint() > 0) {
+        pstmt.setFetchSize(query.getBufferFetchSizeHint());
+      }
+      if (!bindParams.isEmpty()) {
+        bindLog = binder.bind(bindParams, new DataBind(pstmt));
+      }
+
+      if (request.isLogSql()) {
+        String logSql = sql;
+        if (TransactionManager.SQL_LOGGER.isTraceEnabled()) {
+          logSql = Str.add(logSql, "; --bind(", bindLog, ")");
+        }
+        t.logSql(logSql);
+      }
+
+      rset = pstmt.executeQuery();
+
+      DtoQueryPlan<T> plan = query.getDescriptor().getQueryPlan(getColumnLabels(rset));
+      RsetDataReader dataReader = new RsetDataReader(rset);
+
+      int maxRows = query.getMaxRows();
+      int rowCount = 0;
+      while (dataReader.next()) {
+        dataReader.resetColumnPosition();
+        consumer.accept(plan.readRow(dataReader));
+        if (++rowCount == maxRows) {
+          break;
+        }
+      }
+
+      if (request.isLogSummary()) {
+        long exeTime = System.currentTimeMillis() - startTime;
+        String msg = "DtoQuery  type[" + query.getDescriptor().getType().getSimpleName() + "] rows[" + rowCount + "] time[" + exeTime + "] bind[" + bindLog + "]";
+        t.logSummary(msg);
+      }
+
+    } catch (SQLException e) {
+      String m = Message.msg("fetch.error", e.getMessage(), sql);
+      throw new PersistenceException(m, e);
+
+    } finally {
+      try {
+        if (rset != null) {
+          rset.close();
+        }
+      } catch (SQLException e) {
+        logger.error(null, e);
+      }
+      try {
+        if (pstmt != null) {
+          pstmt.close();
+        }
+      } catch (SQLException e) {
+        logger.error(null, e);
+      }
+    }
+  }
+
+  private String[] getColumnLabels(ResultSet rset) throws SQLException {
+
+    ResultSetMetaData metaData = rset.getMetaData();
+    String[] labels = new String[metaData.getColumnCount()];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = metaData.getColumnLabel(i + 1);
+    }
+    return labels;
+  }
+}
@@ -0,0 +1,263 @@
+package com.avaje.ebeaninternal.server.query;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.KeysetPage;
+import com.avaje.ebean.OrderBy;
+import com.avaje.ebean.Transaction;
+import com.avaje.ebean.bean.EntityBean;
+import com.avaje.ebeaninternal.api.SpiQuery;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.ebeaninternal.server.el.ElPropertyValue;
+import com.avaje.ebeaninternal.server.expression.KeysetExpression;
+import com.avaje.ebeaninternal.server.type.ScalarType;
+
+import javax.persistence.PersistenceException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.List;
+
+/**
+ * Keyset (seek) pagination of a query based on its order by properties.
+ * <p>
+ * The next page is found using a predicate on the order by properties with the values of
+ * the last bean of the prior page. One more bean than the page size is fetched to determine
+ * if there is a next page.
+ * </p>
+ * <p>
+ * The cursor holds the formatted values of the order by properties of the last bean. It is
+ * URL safe and intended to be passed back by clients without being interpreted.
+ * </p>
+ * <p>
+ * The order by properties must not be nullable as a null value can not be compared by the
+ * keyset predicate (and the database specific ordering of nulls would skip beans).
+ * </p>
+ * <p>
+ * Each page is found using a copy of the query such that the query passed in is not modified
+ * and can be used again.
+ * </p>
+ *
+ * @param <T> the entity bean type
+ */
+public class KeysetPaging<T> {
+
+  private static final String UTF8 = "UTF-8";
+
+  private final BeanDescriptor<T> desc;
+
+  private final SpiQuery<T> query;
+
+  private final boolean expandedForm;
+
+  private final String[] propertyNames;
+
+  private final boolean[] ascending;
+
+  private final ElPropertyValue[] properties;
+
+  /**
+   * Construct for a copy of the query appending the id property to the order by if required.
+   */
+  public KeysetPaging(BeanDescriptor<T> desc, SpiQuery<T> query, boolean expandedForm) {
+    this.desc = desc;
+    this.expandedForm = expandedForm;
+
+    OrderBy<T> orderBy = query.getOrderBy();
+    if (orderBy == null || orderBy.isEmpty()) {
+      throw new PersistenceException("An orderBy must be specified for findKeysetPage() query on " + desc.getFullName());
+    }
+    this.query = query.copy();
+    // ensure the ordering is unique
+    desc.appendOrderById(this.query);
+
+    List<OrderBy.Property> orderProperties = this.query.getOrderBy().getProperties();
+    int size = orderProperties.size();
+    this.propertyNames = new String[size];
+    this.ascending = new boolean[size];
+    this.properties = new ElPropertyValue[size];
+    for (int i = 0; i < size; i++) {
+      OrderBy.Property orderProperty = orderProperties.get(i);
+      propertyNames[i] = orderProperty.getProperty();
+      ascending[i] = orderProperty.isAscending();
+      properties[i] = desc.getElGetValue(propertyNames[i]);
+      if (properties[i] == null || properties[i].getBeanProperty() == null || properties[i].getBeanProperty().getScalarType() == null) {
+        throw new PersistenceException("Unsupported orderBy property [" + propertyNames[i] + "] for findKeysetPage() query on " + desc.getFullName());
+      }
+      if (isNullable(propertyNames[i])) {
+        throw new PersistenceException("Nullable orderBy property [" + propertyNames[i] + "] is not supported for findKeysetPage() query on " + desc.getFullName());
+      }
+    }
+  }
+
+  /**
+   * Return true if the property or an association on its path is nullable.
+   */
+  private boolean isNullable(String propertyName) {
+    int pos = -1;
+    while ((pos = propertyName.indexOf('.', pos + 1)) > -1) {
+      ElPropertyValue assocProperty = desc.getElGetValue(propertyName.substring(0, pos));
+      if (assocProperty == null || assocProperty.getBeanProperty() == null || assocProperty.getBeanProperty().isNullable()) {
+        return true;
+      }
+    }
+    return desc.getElGetValue(propertyName).getBeanProperty().isNullable();
+  }
+
+  /**
+   * Find the page after the bean with the given order by property values (null for the first page).
+   */
+  public KeysetPage<T> findPage(EbeanServer server, Transaction transaction, Object[] lastKeyValues, int pageSize) {
+
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize must be greater than 0 but was " + pageSize);
+    }
+    SpiQuery<T> pageQuery = query.copy();
+    if (lastKeyValues != null && lastKeyValues.length > 0) {
+      pageQuery.where().add(new KeysetExpression(propertyNames, ascending, convert(lastKeyValues), expandedForm));
+    }
+    pageQuery.setFirstRow(0);
+    pageQuery.setMaxRows(pageSize + 1);
+
+    List<T> list = server.findList(pageQuery, transaction);
+    boolean hasNext = list.size() > pageSize;
+    if (hasNext) {
+      list.remove(pageSize);
+    }
+    Object[] lastValues = list.isEmpty() ? null : keyValues((EntityBean) list.get(list.size() - 1));
+    String nextCursor = hasNext ? formatCursor(lastValues) : null;
+    return new Page<T>(list, hasNext, nextCursor, lastValues);
+  }
+
+  /**
+   * Find the page after the given cursor (null for the first page).
+   */
+  public KeysetPage<T> findPage(EbeanServer server, Transaction transaction, String cursor, int pageSize) {
+    return findPage(server, transaction, parseCursor(cursor), pageSize);
+  }
+
+  /**
+   * Return the values converted to the types of the order by properties.
+   */
+  private Object[] convert(Object[] lastKeyValues) {
+    if (lastKeyValues.length != properties.length) {
+      throw new PersistenceException("Expected " + properties.length + " key values for the orderBy " + query.getOrderBy()
+          + " but got " + lastKeyValues.length);
+    }
+    Object[] values = new Object[lastKeyValues.length];
+    for (int i = 0; i < values.length; i++) {
+      if (lastKeyValues[i] == null) {
+        throw new PersistenceException("Null key value for orderBy property [" + propertyNames[i] + "] is not supported by findKeysetPage()");
+      }
+      values[i] = properties[i].elConvertType(lastKeyValues[i]);
+    }
+    return values;
+  }
+
+  private Object[] keyValues(EntityBean bean) {
+    Object[] values = new Object[properties.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = properties[i].elGetValue(bean);
+    }
+    return values;
+  }
+
+  /**
+   * Return the cursor for the given order by property values.
+   */
+  String formatCursor(Object[] values) {
+    StringBuilder sb = new StringBuilder(50);
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        throw new PersistenceException("Null value for orderBy property [" + propertyNames[i] + "] is not supported by findKeysetPage()");
+      }
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(encode(scalarType(i).format(values[i])));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Return the order by property values of the cursor (null for a null or empty cursor).
+   */
+  Object[] parseCursor(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    String[] parts = cursor.split(",", -1);
+    if (parts.length != properties.length) {
+      throw new PersistenceException("Invalid cursor [" + cursor + "] for the orderBy " + query.getOrderBy());
+    }
+    Object[] values = new Object[parts.length];
+    try {
+      for (int i = 0; i < parts.length; i++) {
+        values[i] = scalarType(i).parse(decode(parts[i]));
+      }
+    } catch (RuntimeException e) {
+      throw new PersistenceException("Invalid cursor [" + cursor + "] for the orderBy " + query.getOrderBy(), e);
+    }
+    return values;
+  }
+
+  private ScalarType<Object> scalarType(int position) {
+    return properties[position].getBeanProperty().getScalarType();
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, UTF8);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, UTF8);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * A page of beans with the cursor for the next page.
+   */
+  static class Page<T> implements KeysetPage<T> {
+
+    private final List<T> list;
+
+    private final boolean hasNext;
+
+    private final String nextCursor;
+
+    private final Object[] lastKeyValues;
+
+    Page(List<T> list, boolean hasNext, String nextCursor, Object[] lastKeyValues) {
+      this.list = list;
+      this.hasNext = hasNext;
+      this.nextCursor = nextCursor;
+      this.lastKeyValues = lastKeyValues;
+    }
+
+    @Override
+    public List<T> getList() {
+      return list;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return hasNext;
+    }
+
+    @Override
+    public String getNextCursor() {
+      return nextCursor;
+    }
+
+    @Override
+    public Object[] getLastKeyValues() {
+      return lastKeyValues;
+    }
+  }
+}
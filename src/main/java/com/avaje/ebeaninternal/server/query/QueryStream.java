@@ -0,0 +1,83 @@
+package com.avaje.ebeaninternal.server.query;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.Query;
+import com.avaje.ebean.QueryIterator;
+import com.avaje.ebean.Transaction;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily evaluated Stream of the beans of a query backed by a QueryIterator.
+ * <p>
+ * The query is executed on the first terminal operation of the stream (rather than when
+ * the stream is created) and the underlying QueryIterator (and hence jdbc statement and
+ * resultSet) is closed when the beans are exhausted or when the stream is closed.
+ * </p>
+ *
+ * @param <T> the entity bean type
+ */
+public class QueryStream<T> extends Spliterators.AbstractSpliterator<T> implements Runnable {
+
+  private final EbeanServer server;
+
+  private final Query<T> query;
+
+  private final Transaction transaction;
+
+  private QueryIterator<T> iterator;
+
+  private boolean closed;
+
+  /**
+   * Create the lazily evaluated Stream for the query.
+   */
+  public static <T> Stream<T> create(EbeanServer server, Query<T> query, Transaction transaction) {
+    QueryStream<T> spliterator = new QueryStream<T>(server, query, transaction);
+    return StreamSupport.stream(spliterator, false).onClose(spliterator);
+  }
+
+  private QueryStream(EbeanServer server, Query<T> query, Transaction transaction) {
+    super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+    this.server = server;
+    this.query = query;
+    this.transaction = transaction;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (closed) {
+      return false;
+    }
+    if (iterator == null) {
+      iterator = server.findIterate(query, transaction);
+      if (iterator == null) {
+        closed = true;
+        return false;
+      }
+    }
+    if (!iterator.hasNext()) {
+      run();
+      return false;
+    }
+    action.accept(iterator.next());
+    return true;
+  }
+
+  /**
+   * Close the underlying QueryIterator (on stream close or when the beans are exhausted).
+   */
+  @Override
+  public void run() {
+    if (!closed) {
+      closed = true;
+      if (iterator != null) {
+        iterator.close();
+      }
+    }
+  }
+}
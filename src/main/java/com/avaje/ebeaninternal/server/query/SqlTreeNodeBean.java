@@ -5,6 +5,7 @@ import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.avaje.ebean.Version;
 import com.avaje.ebean.bean.BeanCollection;
@@ -493,6 +494,20 @@ public class SqlTreeNodeBean implements SqlTreeNode {
     }
   }
 
+  public void addDependentTables(Set<String> tables) {
+
+    desc.addDependentTables(tables);
+    if (nodeBeanProp instanceof BeanPropertyAssocMany<?>) {
+      BeanPropertyAssocMany<?> manyProp = (BeanPropertyAssocMany<?>) nodeBeanProp;
+      if (manyProp.isManyToMany()) {
+        tables.add(manyProp.getIntersectionTableJoin().getTable());
+      }
+    }
+    for (int i = 0; i < children.length; i++) {
+      children[i].addDependentTables(tables);
+    }
+  }
+
   public void addAsOfTableAlias(SpiQuery<?> query) {
     // if history on this bean type add it's alias
     // for each alias we add an effect date predicate
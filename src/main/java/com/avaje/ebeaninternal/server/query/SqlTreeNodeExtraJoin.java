@@ -12,6 +12,7 @@ import com.avaje.ebeaninternal.server.deploy.TableJoin;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The purpose is to add an extra join to the query.
@@ -55,6 +56,19 @@ public class SqlTreeNodeExtraJoin implements SqlTreeNode {
     // nothing to do here
   }
 
+  @Override
+  public void addDependentTables(Set<String> tables) {
+    assocBeanProperty.getTargetDescriptor().addDependentTables(tables);
+    if (manyJoin && ((BeanPropertyAssocMany<?>) assocBeanProperty).isManyToMany()) {
+      tables.add(((BeanPropertyAssocMany<?>) assocBeanProperty).getIntersectionTableJoin().getTable());
+    }
+    if (children != null) {
+      for (int i = 0; i < children.size(); i++) {
+        children.get(i).addDependentTables(tables);
+      }
+    }
+  }
+
   /**
    * Return true if the extra join is a many join.
    * <p>
@@ -12,6 +12,7 @@ import com.avaje.ebeaninternal.server.deploy.TableJoin;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Join to Many (or child of a many) to support where clause predicates on many properties.
@@ -49,6 +50,14 @@ public class SqlTreeNodeManyWhereJoin implements SqlTreeNode {
     // do nothing here ...
   }
 
+  @Override
+  public void addDependentTables(Set<String> tables) {
+    nodeBeanProp.getTargetDescriptor().addDependentTables(tables);
+    if (nodeBeanProp instanceof BeanPropertyAssocMany<?> && ((BeanPropertyAssocMany<?>) nodeBeanProp).isManyToMany()) {
+      tables.add(((BeanPropertyAssocMany<?>) nodeBeanProp).getIntersectionTableJoin().getTable());
+    }
+  }
+
   /**
    * Append to the FROM clause for this node.
    */
@@ -0,0 +1,100 @@
+package com.avaje.ebeaninternal.server.querydefn;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.QueryEachConsumer;
+import com.avaje.ebeaninternal.api.BindParams;
+import com.avaje.ebeaninternal.api.SpiDtoQuery;
+import com.avaje.ebeaninternal.server.dto.DtoBeanDescriptor;
+
+import java.util.List;
+
+/**
+ * Default implementation of DtoQuery.
+ */
+public class DefaultDtoQuery<T> implements SpiDtoQuery<T> {
+
+  private final EbeanServer server;
+
+  private final DtoBeanDescriptor<T> descriptor;
+
+  private final String query;
+
+  private final BindParams bindParams = new BindParams();
+
+  private int maxRows;
+
+  private int timeout;
+
+  private int bufferFetchSizeHint;
+
+  public DefaultDtoQuery(EbeanServer server, DtoBeanDescriptor<T> descriptor, String query) {
+    this.server = server;
+    this.descriptor = descriptor;
+    this.query = query;
+  }
+
+  public List<T> findList() {
+    return server.findList(this, null);
+  }
+
+  public void findEach(QueryEachConsumer<T> consumer) {
+    server.findEach(this, consumer, null);
+  }
+
+  public T findUnique() {
+    return server.findUnique(this, null);
+  }
+
+  public DefaultDtoQuery<T> setParameter(int position, Object value) {
+    bindParams.setParameter(position, value);
+    return this;
+  }
+
+  public DefaultDtoQuery<T> setParameter(String paramName, Object value) {
+    bindParams.setParameter(paramName, value);
+    return this;
+  }
+
+  public DefaultDtoQuery<T> setMaxRows(int maxRows) {
+    this.maxRows = maxRows;
+    return this;
+  }
+
+  public DefaultDtoQuery<T> setTimeout(int secs) {
+    this.timeout = secs;
+    return this;
+  }
+
+  public DefaultDtoQuery<T> setBufferFetchSizeHint(int bufferFetchSizeHint) {
+    this.bufferFetchSizeHint = bufferFetchSizeHint;
+    return this;
+  }
+
+  public DtoBeanDescriptor<T> getDescriptor() {
+    return descriptor;
+  }
+
+  public String getQuery() {
+    return query;
+  }
+
+  public BindParams getBindParams() {
+    return bindParams;
+  }
+
+  public int getMaxRows() {
+    return maxRows;
+  }
+
+  public int getTimeout() {
+    return timeout;
+  }
+
+  public int getBufferFetchSizeHint() {
+    return bufferFetchSizeHint;
+  }
+
+  public String toString() {
+    return "DtoQuery [" + descriptor.getType().getName() + "] [" + query + "]";
+  }
+}
@@ -37,6 +37,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Default implementation of an Object Relational query.
@@ -194,8 +195,12 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
 
   private Boolean useQueryCache;
 
+  private boolean refreshQueryCache;
+
   private Boolean readOnly;
 
+  private boolean useReadReplica;
+
   private PersistenceContextScope persistenceContextScope;
 
   private boolean sqlSelect;
@@ -505,9 +510,38 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     return copy(server);
   }
 
+  @Override
+  public DefaultOrmQuery<T> copyForPlanKey() {
+
+    DefaultOrmQuery<T> copy = copy(server);
+    if (id != null) {
+      // only the existence of the id effects the query plan
+      copy.id = Boolean.TRUE;
+    }
+    // the origin (with its call stack) is not part of the query plan
+    copy.parentNode = null;
+    if (detail != null) {
+      copy.detail = detail.copyForPlanKey();
+    }
+    if (bindParams != null) {
+      copy.bindParams = bindParams.copyForPlanKey();
+    }
+    if (whereExpressions != null) {
+      copy.whereExpressions = whereExpressions.copyForPlanKey(copy);
+      copy.whereExpressions.setExpressionFactory(copy.expressionFactory);
+    }
+    if (havingExpressions != null) {
+      copy.havingExpressions = havingExpressions.copyForPlanKey(copy);
+      copy.havingExpressions.setExpressionFactory(copy.expressionFactory);
+    }
+    return copy;
+  }
+
   public DefaultOrmQuery<T> copy(EbeanServer server) {
 
-    DefaultOrmQuery<T> copy = new DefaultOrmQuery<T>(beanType, server, expressionFactory, (String) null);
+    // the expressionFactory is null for a deserialised query
+    ExpressionFactory exprFactory = (expressionFactory != null) ? expressionFactory : server.getExpressionFactory();
+    DefaultOrmQuery<T> copy = new DefaultOrmQuery<T>(beanType, server, exprFactory, (String) null);
     copy.name = name;
     copy.includeTableJoin = includeTableJoin;
     copy.profilingListener = profilingListener;
@@ -525,6 +559,7 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     copy.useBeanCache = useBeanCache;
     copy.useQueryCache = useQueryCache;
     copy.readOnly = readOnly;
+    copy.useReadReplica = useReadReplica;
     copy.sqlSelect = sqlSelect;
     if (detail != null) {
       copy.detail = detail.copy();
@@ -544,9 +579,11 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     }
     if (whereExpressions != null) {
       copy.whereExpressions = whereExpressions.copy(copy);
+      copy.whereExpressions.setExpressionFactory(exprFactory);
     }
     if (havingExpressions != null) {
       copy.havingExpressions = havingExpressions.copy(copy);
+      copy.havingExpressions.setExpressionFactory(exprFactory);
     }
     copy.persistenceContextScope = persistenceContextScope;
     copy.usageProfiling = usageProfiling;
@@ -950,6 +987,15 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     return this;
   }
 
+  public boolean isUseReadReplica() {
+    return useReadReplica;
+  }
+
+  public DefaultOrmQuery<T> setUseReadReplica(boolean useReadReplica) {
+    this.useReadReplica = useReadReplica;
+    return this;
+  }
+
   public boolean isLoadBeanCache() {
     // not using L2 cache for asDraft() query
     return !isAsDraft() && loadBeanCache;
@@ -960,6 +1006,14 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     return this;
   }
 
+  public boolean isRefreshQueryCache() {
+    return refreshQueryCache;
+  }
+
+  public void setRefreshQueryCache(boolean refreshQueryCache) {
+    this.refreshQueryCache = refreshQueryCache;
+  }
+
   public DefaultOrmQuery<T> setTimeout(int secs) {
     this.timeout = secs;
     return this;
@@ -1058,6 +1112,10 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     return server.findIterate(this, null);
   }
 
+  public Stream<T> findStream() {
+    return server.findStream(this, null);
+  }
+
   public List<T> findList() {
     return server.findList(this, null);
   }
@@ -1102,6 +1160,16 @@ public class DefaultOrmQuery<T> implements SpiQuery<T> {
     return server.findPagedList(this, null);
   }
 
+  @Override
+  public KeysetPage<T> findKeysetPage(String cursor, int pageSize) {
+    return server.findKeysetPage(this, null, cursor, pageSize);
+  }
+
+  @Override
+  public KeysetPage<T> findKeysetPage(int pageSize, Object... lastKeyValues) {
+    return server.findKeysetPage(this, null, lastKeyValues, pageSize);
+  }
+
   /**
    * Set an ordered bind parameter according to its position. Note that the position starts at 1 to
    * be consistent with JDBC PreparedStatement. You need to set a parameter value for each ? you
@@ -62,6 +62,18 @@ public class OrmQueryDetail implements Serializable {
     return copy;
   }
 
+  /**
+   * Return a copy with the filterMany expressions copied without their bind values.
+   */
+  public OrmQueryDetail copyForPlanKey() {
+    OrmQueryDetail copy = copy();
+    copy.baseProps = baseProps.copyForPlanKey();
+    for (Map.Entry<String, OrmQueryProperties> entry : fetchPaths.entrySet()) {
+      copy.fetchPaths.put(entry.getKey(), entry.getValue().copyForPlanKey());
+    }
+    return copy;
+  }
+
   /**
    * Calculate the hash for the query plan.
    */
@@ -282,6 +282,18 @@ public class OrmQueryProperties implements Serializable {
     return copy;
   }
 
+  /**
+   * Creates a copy with the filterMany expressions copied without their bind values.
+   */
+  @SuppressWarnings("unchecked")
+  public OrmQueryProperties copyForPlanKey() {
+    OrmQueryProperties copy = copy();
+    if (filterMany != null) {
+      copy.filterMany = filterMany.copyForPlanKey(null);
+    }
+    return copy;
+  }
+
   public boolean hasSelectClause() {
     if ("*".equals(trimmedProperties)) {
       // explicitly selected all properties
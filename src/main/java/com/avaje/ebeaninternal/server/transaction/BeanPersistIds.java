@@ -233,8 +233,12 @@ public class BeanPersistIds implements Serializable {
 
     BeanPersistListener listener = beanDescriptor.getPersistListener();
 
-    // any change invalidates the query cache
-    beanDescriptor.queryCacheClear();
+    // any change invalidates query results using the tables
+    beanDescriptor.queryCacheTableChanged();
+    if (insertIds != null || updateIds != null) {
+      // natural keys of the remote changes are not known
+      beanDescriptor.cacheMissingClear();
+    }
 
     if (insertIds != null) {
       if (listener != null) {
@@ -249,7 +253,7 @@ public class BeanPersistIds implements Serializable {
         Serializable id = updateIds.get(i);
 
         // remove from cache
-        beanDescriptor.cacheBeanRemove(id);
+        beanDescriptor.cacheBeanRemoveNear(id);
         if (listener != null) {
           // notify listener
           listener.remoteInsert(id);
@@ -261,7 +265,7 @@ public class BeanPersistIds implements Serializable {
         Serializable id = deleteIds.get(i);
 
         // remove from cache
-        beanDescriptor.cacheBeanRemove(id);
+        beanDescriptor.cacheBeanRemoveNear(id);
         if (listener != null) {
           // notify listener
           listener.remoteInsert(id);
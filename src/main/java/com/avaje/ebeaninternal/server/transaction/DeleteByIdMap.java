@@ -25,7 +25,7 @@ public final class DeleteByIdMap {
       BeanDescriptor<?> d = deleteIds.getBeanDescriptor();
       List<Serializable> idValues = deleteIds.getDeleteIds();
       if (idValues != null) {
-        d.queryCacheClear();
+        d.queryCacheTableChanged();
         for (int i = 0; i < idValues.size(); i++) {
           d.cacheBeanRemove(idValues.get(i));
         }
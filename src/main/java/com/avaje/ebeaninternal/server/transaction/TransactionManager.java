@@ -17,6 +17,7 @@ import com.avaje.ebeaninternal.server.cluster.ClusterManager;
 import com.avaje.ebeaninternal.server.core.BootupClasses;
 import com.avaje.ebeaninternal.server.deploy.BeanDescriptorManager;
 import com.avaje.ebeaninternal.server.lib.sql.DataSourcePool;
+import com.avaje.ebeaninternal.server.lib.sql.ReadReplicaDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +59,21 @@ public class TransactionManager {
    */
   protected final DataSource dataSource;
 
+  /**
+   * The read only dataSource (read replicas) or null.
+   */
+  protected final DataSource readOnlyDataSource;
+
+  /**
+   * Time after committing changes that a thread reads from the primary dataSource.
+   */
+  protected final long readYourWritesMillis;
+
+  /**
+   * The time each thread last committed changes (for read your writes).
+   */
+  private final ThreadLocal<Long> lastCommitTime = new ThreadLocal<Long>();
+
   /**
    * Flag to indicate the default Isolation is READ COMMITTED. This enables us
    * to close queryOnly transactions rather than commit or rollback them.
@@ -109,6 +125,8 @@ public class TransactionManager {
     this.serverName = config.getName();
     this.backgroundExecutor = backgroundExecutor;
     this.dataSource = config.getDataSource();
+    this.readOnlyDataSource = config.getReadOnlyDataSource();
+    this.readYourWritesMillis = config.getReadYourWritesMillis();
     this.bulkEventListenerMap = new BulkEventListenerMap(config.getBulkTableEventListeners());
 
     List<TransactionEventListener> transactionEventListeners = bootupClasses.getTransactionEventListeners();
@@ -124,15 +142,34 @@ public class TransactionManager {
   }
 
   private void initialiseHeartbeat() {
+    initialiseHeartbeat(dataSource);
+    if (readOnlyDataSource instanceof ReadReplicaDataSource) {
+      for (DataSource replica : ((ReadReplicaDataSource) readOnlyDataSource).getReplicas()) {
+        initialiseHeartbeat(replica);
+      }
+    } else {
+      initialiseHeartbeat(readOnlyDataSource);
+    }
+  }
+
+  private void initialiseHeartbeat(DataSource dataSource) {
     if (dataSource instanceof DataSourcePool) {
       DataSourcePool ds = (DataSourcePool) dataSource;
+      ds.setBackgroundExecutor(backgroundExecutor);
       backgroundExecutor.executePeriodically(ds.getHeartbeatRunnable(), ds.getHeartbeatFreqSecs(), TimeUnit.SECONDS);
     }
   }
 
   public void shutdown(boolean shutdownDataSource, boolean deregisterDriver) {
-    if (shutdownDataSource && (dataSource instanceof DataSourcePool)) {
-      ((DataSourcePool) dataSource).shutdown(deregisterDriver);
+    if (shutdownDataSource) {
+      if (readOnlyDataSource instanceof ReadReplicaDataSource) {
+        ((ReadReplicaDataSource) readOnlyDataSource).shutdown(false);
+      } else if (readOnlyDataSource instanceof DataSourcePool) {
+        ((DataSourcePool) readOnlyDataSource).shutdown(false);
+      }
+      if (dataSource instanceof DataSourcePool) {
+        ((DataSourcePool) dataSource).shutdown(deregisterDriver);
+      }
     }
   }
 
@@ -225,6 +262,36 @@ public class TransactionManager {
     return dataSource;
   }
 
+  /**
+   * Return the read only DataSource (or null if there is not one).
+   */
+  public DataSource getReadOnlyDataSource() {
+    return readOnlyDataSource;
+  }
+
+  /**
+   * Return the DataSource to use for read only work.
+   * <p>
+   * This is the primary DataSource if there is no read only DataSource or if this thread
+   * committed changes within readYourWritesMillis (read your writes).
+   * </p>
+   */
+  protected DataSource getReadDataSource() {
+    if (readOnlyDataSource == null) {
+      return dataSource;
+    }
+    if (readYourWritesMillis > 0) {
+      Long lastCommit = lastCommitTime.get();
+      if (lastCommit != null) {
+        if (System.currentTimeMillis() - lastCommit < readYourWritesMillis) {
+          return dataSource;
+        }
+        lastCommitTime.remove();
+      }
+    }
+    return readOnlyDataSource;
+  }
+
   /**
    * Defines the type of behavior to use when closing a transaction that was used to query data only.
    */
@@ -257,9 +324,16 @@ public class TransactionManager {
    * Create a new Transaction.
    */
   public SpiTransaction createTransaction(boolean explicit, int isolationLevel) {
+    return createTransaction(explicit, isolationLevel, false);
+  }
+
+  /**
+   * Create a new Transaction using the read only DataSource when readOnly is true.
+   */
+  public SpiTransaction createTransaction(boolean explicit, int isolationLevel, boolean readOnly) {
     Connection c = null;
     try {
-      c = dataSource.getConnection();
+      c = (readOnly) ? getReadDataSource().getConnection() : dataSource.getConnection();
       long id = transactionCounter.incrementAndGet();
 
       SpiTransaction t = createTransaction(explicit, c, id);
@@ -287,9 +361,16 @@ public class TransactionManager {
   }
 
   public SpiTransaction createQueryTransaction() {
+    return createQueryTransaction(false);
+  }
+
+  /**
+   * Create a transaction for a query optionally using the read only DataSource.
+   */
+  public SpiTransaction createQueryTransaction(boolean useReadReplica) {
     Connection c = null;
     try {
-      c = dataSource.getConnection();
+      c = (useReadReplica) ? getReadDataSource().getConnection() : dataSource.getConnection();
       long id = transactionCounter.incrementAndGet();
 
       return createTransaction(false, c, id);
@@ -391,6 +472,11 @@ public class TransactionManager {
         TXN_LOGGER.debug(transaction.getLogPrefix() + "Commit");
       }
 
+      if (readOnlyDataSource != null && readYourWritesMillis > 0) {
+        // read from the primary for a while (read your writes)
+        lastCommitTime.set(System.currentTimeMillis());
+      }
+
       PostCommitProcessing postCommit = new PostCommitProcessing(clusterManager, this, transaction.getEvent());
 
       postCommit.notifyLocalCacheIndex();
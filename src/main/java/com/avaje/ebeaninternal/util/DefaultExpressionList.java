@@ -6,6 +6,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import com.avaje.ebean.*;
 import com.avaje.ebean.event.BeanQueryRequest;
@@ -88,6 +89,18 @@ public class DefaultExpressionList<T> implements SpiExpressionList<T> {
     return copy;
   }
 
+  /**
+   * Return a copy of the expression list with copies of the expressions without the bind values.
+   */
+  @Override
+  public DefaultExpressionList<T> copyForPlanKey(Query<T> query) {
+    DefaultExpressionList<T> copy = new DefaultExpressionList<T>(query, expr, null);
+    for (int i = 0; i < list.size(); i++) {
+      copy.list.add(list.get(i).copyForPlanKey());
+    }
+    return copy;
+  }
+
   /**
    * Return true if one of the expressions is related to a Many property.
    */
@@ -206,6 +219,16 @@ public class DefaultExpressionList<T> implements SpiExpressionList<T> {
     return query.findPagedList();
   }
 
+  @Override
+  public KeysetPage<T> findKeysetPage(String cursor, int pageSize) {
+    return query.findKeysetPage(cursor, pageSize);
+  }
+
+  @Override
+  public KeysetPage<T> findKeysetPage(int pageSize, Object... lastKeyValues) {
+    return query.findKeysetPage(pageSize, lastKeyValues);
+  }
+
   @Override
   public int findRowCount() {
     return query.findRowCount();
@@ -231,6 +254,11 @@ public class DefaultExpressionList<T> implements SpiExpressionList<T> {
     return query.findIterate();
   }
 
+  @Override
+  public Stream<T> findStream() {
+    return query.findStream();
+  }
+
   @Override
   public List<T> findList() {
     return query.findList();
@@ -36,6 +36,15 @@ public class FilterExpressionList<T> extends DefaultExpressionList<T> {
     return new FilterExpressionList<T>(pathPrefix.trimPath(prefixTrim), this);
   }
 
+  @Override
+  public FilterExpressionList<T> copyForPlanKey(Query<T> rootQuery) {
+    FilterExpressionList<T> copy = new FilterExpressionList<T>(pathPrefix, expr, rootQuery);
+    for (int i = 0; i < list.size(); i++) {
+      copy.list.add(list.get(i).copyForPlanKey());
+    }
+    return copy;
+  }
+
   @Override
   public ExpressionList<T> filterMany(String prop) {
     return rootQuery.filterMany(prop);
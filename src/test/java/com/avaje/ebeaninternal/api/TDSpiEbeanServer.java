@@ -5,6 +5,7 @@ import com.avaje.ebean.bean.BeanCollection;
 import com.avaje.ebean.bean.CallStack;
 import com.avaje.ebean.bean.EntityBeanIntercept;
 import com.avaje.ebean.bean.ObjectGraphNode;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
 import com.avaje.ebean.cache.ServerCacheManager;
 import com.avaje.ebean.config.ServerConfig;
 import com.avaje.ebean.config.dbplatform.DatabasePlatform;
@@ -28,6 +29,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 
 /**
@@ -142,6 +144,11 @@ public class TDSpiEbeanServer implements SpiEbeanServer {
     return null;
   }
 
+  @Override
+  public SpiTransaction createQueryTransaction(boolean useReadReplica) {
+    return null;
+  }
+
   @Override
   public void remoteTransactionEvent(RemoteTransactionEvent event) {
 
@@ -322,6 +329,11 @@ public class TDSpiEbeanServer implements SpiEbeanServer {
     return null;
   }
 
+  @Override
+  public <T> DtoQuery<T> findDto(Class<T> dtoType, String sql) {
+    return null;
+  }
+
   @Override
   public SqlQuery createNamedSqlQuery(String namedQuery) {
     return null;
@@ -467,6 +479,11 @@ public class TDSpiEbeanServer implements SpiEbeanServer {
     return null;
   }
 
+  @Override
+  public <T> Stream<T> findStream(Query<T> query, Transaction transaction) {
+    return null;
+  }
+
   @Override
   public <T> void findEach(Query<T> query, QueryEachConsumer<T> consumer, Transaction transaction) {
 
@@ -512,6 +529,16 @@ public class TDSpiEbeanServer implements SpiEbeanServer {
     return null;
   }
 
+  @Override
+  public <T> KeysetPage<T> findKeysetPage(Query<T> query, Transaction transaction, String cursor, int pageSize) {
+    return null;
+  }
+
+  @Override
+  public <T> KeysetPage<T> findKeysetPage(Query<T> query, Transaction transaction, Object[] lastKeyValues, int pageSize) {
+    return null;
+  }
+
   @Override
   public <T> Set<T> findSet(Query<T> query, Transaction transaction) {
     return null;
@@ -547,6 +574,21 @@ public class TDSpiEbeanServer implements SpiEbeanServer {
     return null;
   }
 
+  @Override
+  public <T> List<T> findList(DtoQuery<T> query, Transaction transaction) {
+    return null;
+  }
+
+  @Override
+  public <T> void findEach(DtoQuery<T> query, QueryEachConsumer<T> consumer, Transaction transaction) {
+
+  }
+
+  @Override
+  public <T> T findUnique(DtoQuery<T> query, Transaction transaction) {
+    return null;
+  }
+
   @Override
   public void save(Object bean) throws OptimisticLockException {
 
@@ -737,6 +779,11 @@ public class TDSpiEbeanServer implements SpiEbeanServer {
 
   }
 
+  @Override
+  public CacheWarmingStatistics getCacheWarmingStatistics() {
+    return null;
+  }
+
   @Override
   public JsonContext json() {
     return null;
@@ -0,0 +1,88 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import com.avaje.ebean.BackgroundExecutor;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CacheWarmingTest {
+
+  private final BackgroundExecutor executor = new BackgroundExecutor() {
+    @Override
+    public void execute(Runnable r) {
+      new Thread(r).start();
+    }
+
+    @Override
+    public void executePeriodically(Runnable r, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+  };
+
+  private List<Callable<Long>> ranges(long... counts) {
+    List<Callable<Long>> ranges = new ArrayList<Callable<Long>>();
+    for (final long count : counts) {
+      ranges.add(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          if (count < 0) {
+            throw new IllegalStateException("range failed");
+          }
+          return count;
+        }
+      });
+    }
+    return ranges;
+  }
+
+  @Test
+  public void run_loadsAllRanges() {
+
+    CacheWarming warming = new CacheWarming(3, 100);
+    assertFalse(warming.getStatistics().isStarted());
+
+    warming.add("a", ranges(10, 20, 30, 40));
+    warming.add("b", ranges(5));
+    warming.add("c", ranges());
+    warming.run(executor);
+
+    CacheWarmingStatistics statistics = warming.getStatistics();
+    assertTrue(statistics.isStarted());
+    assertTrue(statistics.isComplete());
+    assertEquals(2, statistics.getBeanTypeCount());
+    assertEquals(2, statistics.getBeanTypesLoaded());
+    assertEquals(5, statistics.getRangeCount());
+    assertEquals(5, statistics.getRangesLoaded());
+    assertEquals(105, statistics.getBeanCount());
+    assertEquals(0, statistics.getErrorCount());
+  }
+
+  @Test
+  public void run_whenRangeFails_completesWithError() {
+
+    CacheWarming warming = new CacheWarming(2, 100);
+    warming.add("a", ranges(10, -1, 30));
+    warming.run(executor);
+
+    CacheWarmingStatistics statistics = warming.getStatistics();
+    assertTrue(statistics.isComplete());
+    assertEquals(1, statistics.getBeanTypesLoaded());
+    assertEquals(3, statistics.getRangesLoaded());
+    assertEquals(40, statistics.getBeanCount());
+    assertEquals(1, statistics.getErrorCount());
+  }
+
+  @Test
+  public void run_nothingToLoad_isComplete() {
+
+    CacheWarming warming = new CacheWarming(4, 100);
+    warming.run(executor);
+    assertTrue(warming.getStatistics().isComplete());
+  }
+}
@@ -0,0 +1,51 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CacheWeigherTest {
+
+  private CachedBeanData beanData(Object... values) {
+    return new CachedBeanData(null, new boolean[values.length], values, null, null);
+  }
+
+  @Test
+  public void weigh_largerValue_weighsMore() {
+
+    CacheWeigher weigher = new CacheWeigher(3);
+
+    int small = weigher.weigh(1L, beanData(1L, "short", null));
+    int large = weigher.weigh(1L, beanData(1L, "a much much longer value held in the cache", null));
+
+    assertTrue(small > CacheWeigher.ENTRY_OVERHEAD);
+    assertEquals(2 * (42 - 5), large - small);
+  }
+
+  @Test
+  public void weigh_manyIds_byNumberOfIds() {
+
+    List<Object> ids = new ArrayList<Object>();
+    for (long i = 0; i < 10; i++) {
+      ids.add(i);
+    }
+    int ten = CacheWeigher.DEFAULT.weigh(1L, new CachedManyIds(ids));
+    ids.addAll(new ArrayList<Object>(ids));
+    int twenty = CacheWeigher.DEFAULT.weigh(1L, new CachedManyIds(ids));
+
+    assertTrue(twenty > ten);
+  }
+
+  @Test
+  public void sizeOf_scalars() {
+
+    assertEquals(0, CacheWeigher.sizeOf(null));
+    assertEquals(16, CacheWeigher.sizeOf(42));
+    assertEquals(24, CacheWeigher.sizeOf(42L));
+    assertEquals(40 + 2 * 3, CacheWeigher.sizeOf("abc"));
+    assertEquals(24, CacheWeigher.sizeOf(new byte[8]));
+  }
+}
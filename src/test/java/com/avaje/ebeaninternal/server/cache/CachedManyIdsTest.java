@@ -0,0 +1,83 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CachedManyIdsTest {
+
+  private List<Object> ids(Object... ids) {
+    return new ArrayList<Object>(Arrays.asList(ids));
+  }
+
+  private void assertRoundTrip(List<Object> ids) {
+    CachedManyIds manyIds = new CachedManyIds(ids);
+    assertEquals(ids.size(), manyIds.size());
+    assertEquals(ids, manyIds.getIdList());
+  }
+
+  @Test
+  public void longIds_ascending_heldAsDeltas() {
+
+    List<Object> ids = new ArrayList<Object>();
+    for (long i = 0; i < 1000; i++) {
+      ids.add(1000000L + i * 3);
+    }
+    assertRoundTrip(ids);
+
+    Object packed = new CachedManyIds(ids).getIds();
+    assertTrue(packed instanceof byte[]);
+    // one byte per id plus the first
+    assertTrue(((byte[]) packed).length < 1010);
+  }
+
+  @Test
+  public void longIds_notAscending_heldAsArray() {
+
+    List<Object> ids = ids(5L, 3L, 10L, -7L);
+    assertRoundTrip(ids);
+    assertTrue(new CachedManyIds(ids).getIds() instanceof long[]);
+  }
+
+  @Test
+  public void longIds_extremes() {
+
+    assertRoundTrip(ids(Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE));
+    assertRoundTrip(ids(Long.MIN_VALUE, Long.MAX_VALUE));
+    assertRoundTrip(ids(-100L, -50L, -50L, 20L));
+  }
+
+  @Test
+  public void intIds_decodedAsInteger() {
+
+    List<Object> ascending = ids(1, 2, 3, 200, 70000);
+    assertRoundTrip(ascending);
+    assertTrue(new CachedManyIds(ascending).getIdList().get(0) instanceof Integer);
+
+    List<Object> unsorted = ids(9, 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    assertRoundTrip(unsorted);
+    assertTrue(new CachedManyIds(unsorted).getIds() instanceof int[]);
+  }
+
+  @Test
+  public void uuidIds() {
+
+    List<Object> ids = ids(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+    assertRoundTrip(ids);
+    assertTrue(new CachedManyIds(ids).getIds() instanceof long[]);
+  }
+
+  @Test
+  public void otherIds_heldAsList() {
+
+    assertRoundTrip(ids("NZ", "AU"));
+    assertRoundTrip(ids(1L, 2, 3L));
+    assertRoundTrip(ids(1L, null));
+    assertRoundTrip(ids());
+  }
+}
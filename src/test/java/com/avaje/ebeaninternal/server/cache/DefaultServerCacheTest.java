@@ -1,8 +1,11 @@
 package com.avaje.ebeaninternal.server.cache;
 
 import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebean.cache.ServerCacheStatistics;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 public class DefaultServerCacheTest {
@@ -56,4 +59,111 @@ public class DefaultServerCacheTest {
     DefaultServerCache cache = createCache();
     assertEquals(90, cache.getTrimSize());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void put_boundedByMaxSize() throws Exception {
+
+    DefaultServerCache cache = createCache();
+    for (int i = 0; i < 1000; i++) {
+      cache.put("k" + i, i);
+      assertTrue(cache.size() <= 100);
+    }
+    assertEquals(100, cache.size());
+    assertEquals(100, cache.policy.size());
+    assertEquals(900, cache.getStatistics(false).getEvictByLRU());
+  }
+
+  @Test
+  public void put_scanDoesNotEvictFrequentlyUsed() throws Exception {
+
+    DefaultServerCache cache = createCache();
+    for (int i = 0; i < 20; i++) {
+      cache.put("hot" + i, i);
+    }
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 20; i++) {
+        assertNotNull(cache.get("hot" + i));
+      }
+    }
+
+    // one off keys are not admitted over the frequently used ones
+    for (int i = 0; i < 1000; i++) {
+      cache.put("scan" + i, i);
+    }
+    for (int i = 0; i < 20; i++) {
+      assertNotNull(cache.get("hot" + i));
+    }
+  }
+
+  @Test
+  public void removeAndClear_untrackedByPolicy() throws Exception {
+
+    DefaultServerCache cache = createCache();
+    cache.put("A", "A");
+    cache.put("B", "B");
+    cache.put("A", "A2");
+    assertEquals(2, cache.policy.size());
+
+    cache.remove("A");
+    assertEquals(1, cache.policy.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.policy.size());
+  }
+
+  @Test
+  public void setOptions_smallerMaxSize_evicts() throws Exception {
+
+    DefaultServerCache cache = createCache();
+    for (int i = 0; i < 100; i++) {
+      cache.put("k" + i, i);
+    }
+    ServerCacheOptions options = cache.getOptions();
+    options.setMaxSize(10);
+    cache.setOptions(options);
+    assertEquals(10, cache.size());
+  }
+
+  @Test
+  public void put_boundedByMaxWeight() throws Exception {
+
+    ServerCacheOptions cacheOptions = new ServerCacheOptions();
+    cacheOptions.setMaxWeightBytes(10000);
+    DefaultServerCache cache = new DefaultServerCache("weighted", cacheOptions);
+
+    char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    String large = new String(chars);
+
+    for (int i = 0; i < 100; i++) {
+      cache.put("k" + i, large);
+      assertTrue(cache.getWeightBytes() <= 10000);
+    }
+    // each entry is over 2000 bytes
+    assertTrue(cache.size() < 5);
+    assertTrue(cache.size() > 0);
+
+    ServerCacheStatistics statistics = cache.getStatistics(false);
+    assertEquals(10000, statistics.getMaxWeightBytes());
+    assertEquals(cache.getWeightBytes(), statistics.getWeightBytes());
+  }
+
+  @Test
+  public void removeAndClear_reducesWeight() throws Exception {
+
+    DefaultServerCache cache = createCache();
+    cache.put("A", "A");
+    long weightA = cache.getWeightBytes();
+    assertTrue(weightA > 0);
+
+    cache.put("B", "Some longer value for B");
+    assertTrue(cache.getWeightBytes() > 2 * weightA);
+
+    cache.remove("B");
+    assertEquals(weightA, cache.getWeightBytes());
+
+    cache.clear();
+    assertEquals(0, cache.getWeightBytes());
+  }
+}
@@ -0,0 +1,100 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapArenaTest {
+
+  @Test
+  public void store_read_free() {
+
+    OffHeapArena arena = new OffHeapArena(2 * OffHeapArena.PAGE_SIZE);
+
+    OffHeapValue a = arena.store(new byte[]{1, 2, 3});
+    OffHeapValue b = arena.store(new byte[100]);
+    assertNotNull(a);
+    assertNotNull(b);
+    assertArrayEquals(new byte[]{1, 2, 3}, arena.read(a));
+    assertEquals(100, arena.read(b).length);
+    // 32 byte block and 128 byte block
+    assertEquals(160, arena.getUsedBytes());
+    assertEquals(2 * OffHeapArena.PAGE_SIZE, arena.getAllocatedBytes());
+
+    arena.free(a);
+    assertNull(arena.read(a));
+    assertEquals(128, arena.getUsedBytes());
+
+    // freeing twice has no effect
+    arena.free(a);
+    assertEquals(128, arena.getUsedBytes());
+
+    // the block is reused but the old handle no longer reads it
+    OffHeapValue c = arena.store(new byte[]{4, 5});
+    assertEquals(a.address, c.address);
+    assertNull(arena.read(a));
+    assertArrayEquals(new byte[]{4, 5}, arena.read(c));
+  }
+
+  @Test
+  public void store_whenFull_returnsNull() {
+
+    OffHeapArena arena = new OffHeapArena(OffHeapArena.PAGE_SIZE);
+    assertNotNull(arena.store(new byte[10]));
+
+    // the only page is used by the 32 byte blocks
+    assertNull(arena.store(new byte[1000]));
+    assertNull(arena.store(new byte[OffHeapArena.PAGE_SIZE]));
+  }
+
+  @Test
+  public void free_emptyPage_reusedBySizeClass() {
+
+    OffHeapArena arena = new OffHeapArena(2 * OffHeapArena.PAGE_SIZE);
+
+    // fill the first page of the 32 byte blocks and start a second page
+    int blocksPerPage = OffHeapArena.PAGE_SIZE / 32;
+    OffHeapValue[] values = new OffHeapValue[blocksPerPage + 1];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = arena.store(new byte[]{1});
+      assertNotNull(values[i]);
+    }
+    assertEquals(2 * OffHeapArena.PAGE_SIZE, arena.getAllocatedBytes());
+
+    // no page for the 1000 byte blocks
+    assertNull(arena.store(new byte[1000]));
+
+    // free all the blocks of the first page such that it is returned to the arena
+    for (int i = 0; i < blocksPerPage; i++) {
+      arena.free(values[i]);
+    }
+    assertEquals(1, arena.getFreePageCount());
+    assertArrayEquals(new byte[]{1}, arena.read(values[blocksPerPage]));
+
+    // the empty page is reused by another size class and the old handles do not read it
+    OffHeapValue large = arena.store(new byte[1000]);
+    assertNotNull(large);
+    assertEquals(0, arena.getFreePageCount());
+    assertEquals(1000, arena.read(large).length);
+    for (int i = 0; i < blocksPerPage; i++) {
+      assertNull(arena.read(values[i]));
+    }
+
+    // freeing a stale handle does not free the reused block
+    arena.free(values[0]);
+    assertEquals(1000, arena.read(large).length);
+  }
+
+  @Test
+  public void free_lastPageOfSizeClass_kept() {
+
+    OffHeapArena arena = new OffHeapArena(OffHeapArena.PAGE_SIZE);
+
+    OffHeapValue value = arena.store(new byte[10]);
+    arena.free(value);
+
+    // the page is kept by the size class as it has no other free blocks
+    assertEquals(0, arena.getFreePageCount());
+    assertNotNull(arena.store(new byte[10]));
+  }
+}
@@ -0,0 +1,98 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+  @Test
+  public void begin_whenInFlight_waitsForEnd() throws InterruptedException {
+
+    final SingleFlight singleFlight = new SingleFlight(10000);
+    assertTrue(singleFlight.begin("a"));
+    assertEquals(1, singleFlight.size());
+
+    final AtomicBoolean loader = new AtomicBoolean(true);
+    Thread other = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        loader.set(singleFlight.begin("a"));
+      }
+    });
+    other.start();
+
+    while (singleFlight.getWaitCount(false) == 0) {
+      Thread.sleep(5);
+    }
+    assertTrue(other.isAlive());
+
+    singleFlight.end("a");
+    other.join(5000);
+    assertFalse(other.isAlive());
+    assertFalse(loader.get());
+    assertEquals(0, singleFlight.size());
+    assertEquals(1, singleFlight.getWaitCount(true));
+    assertEquals(0, singleFlight.getWaitCount(false));
+  }
+
+  @Test
+  public void begin_whenNestedInSameThread_doesNotWait() {
+
+    SingleFlight singleFlight = new SingleFlight(10000);
+    assertTrue(singleFlight.begin("a"));
+    assertFalse(singleFlight.begin("a"));
+    assertTrue(singleFlight.begin("b"));
+
+    singleFlight.end("a");
+    singleFlight.end("b");
+    assertEquals(0, singleFlight.size());
+    assertEquals(0, singleFlight.getWaitCount(false));
+  }
+
+  @Test
+  public void begin_whenMaxWaitExceeded_returns() {
+
+    final SingleFlight singleFlight = new SingleFlight(10);
+    assertTrue(singleFlight.begin("a"));
+
+    final AtomicBoolean loader = new AtomicBoolean(true);
+    Thread other = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        loader.set(singleFlight.begin("a"));
+      }
+    });
+    other.start();
+    try {
+      other.join(5000);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    assertFalse(other.isAlive());
+    assertFalse(loader.get());
+    assertEquals(1, singleFlight.size());
+  }
+
+  @Test
+  public void end_whenNotOwner_ignored() throws InterruptedException {
+
+    final SingleFlight singleFlight = new SingleFlight(10000);
+    assertTrue(singleFlight.begin("a"));
+
+    Thread other = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        singleFlight.end("a");
+      }
+    });
+    other.start();
+    other.join(5000);
+
+    assertEquals(1, singleFlight.size());
+    singleFlight.end("a");
+    assertEquals(0, singleFlight.size());
+  }
+}
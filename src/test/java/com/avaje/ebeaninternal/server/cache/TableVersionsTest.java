@@ -0,0 +1,67 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TableVersionsTest {
+
+  @Test
+  public void changed_when_notTracked_expect_versionRecorded() {
+
+    TableVersions versions = new TableVersions();
+    long stamp = versions.current();
+    versions.changed("o_customer");
+
+    assertFalse(versions.isTracked("o_customer"));
+    AtomicLong[] tracked = versions.track(new String[]{"o_customer"});
+    assertTrue(versions.isTracked("o_customer"));
+    assertFalse(new CachedQueryResult("r", tracked, stamp).isValid());
+  }
+
+  @Test
+  public void isValid_when_dependentTableChanged_expect_invalid() {
+
+    TableVersions versions = new TableVersions();
+    long stamp = versions.current();
+    AtomicLong[] tracked = versions.track(new String[]{"o_order", "O_CUSTOMER"});
+
+    CachedQueryResult result = new CachedQueryResult("r", tracked, stamp);
+    assertTrue(result.isValid());
+    assertTrue(versions.isTracked("o_customer"));
+
+    versions.changed("o_product");
+    assertTrue(result.isValid());
+
+    versions.changed("o_customer");
+    assertFalse(result.isValid());
+  }
+
+  @Test
+  public void track_when_alreadyTracked_expect_sameVersion() {
+
+    TableVersions versions = new TableVersions();
+    AtomicLong[] first = versions.track(new String[]{"o_order"});
+    AtomicLong[] second = versions.track(new String[]{"O_ORDER"});
+
+    assertTrue(first[0] == second[0]);
+  }
+
+  @Test
+  public void isModifiedSince_when_changedAfterStamp() {
+
+    TableVersions versions = new TableVersions();
+    assertFalse(versions.isModifiedSince("o_country", versions.current()));
+
+    long stamp = versions.current();
+    versions.changed("o_product");
+    assertFalse(versions.isModifiedSince("o_country", stamp));
+
+    versions.changed("O_COUNTRY");
+    assertTrue(versions.isModifiedSince("o_country", stamp));
+    assertFalse(versions.isModifiedSince("o_country", versions.current()));
+  }
+}
@@ -0,0 +1,137 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import java.sql.Timestamp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.bean.EntityBean;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.tests.model.basic.Address;
+import com.avaje.tests.model.basic.Country;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.basic.Customer.Status;
+import com.avaje.tests.model.embedded.EAddress;
+import com.avaje.tests.model.embedded.EPerson;
+
+public class TestOffHeapServerCache extends BaseTestCase {
+
+  private ServerCache createCache(OffHeapServerCacheFactory factory, Class<?> beanType) {
+
+    ServerCacheOptions options = new ServerCacheOptions();
+    options.setMaxSize(100);
+    return factory.createCache(beanType.getName(), options);
+  }
+
+  @Test
+  public void putGet() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<Customer> desc = server.getBeanDescriptor(Customer.class);
+
+    OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory(4 * OffHeapArena.PAGE_SIZE);
+    factory.init(server);
+    ServerCache cache = createCache(factory, Customer.class);
+    Assert.assertTrue(cache instanceof OffHeapServerCache);
+
+    Customer c = new Customer();
+    c.setId(98989);
+    c.setName("Rob");
+    c.setCretime(new Timestamp(System.currentTimeMillis()));
+    c.setStatus(Status.ACTIVE);
+    c.setSmallnote(null);
+
+    Address billingAddress = new Address();
+    billingAddress.setId((short) 12);
+    billingAddress.setCountry(server.getReference(Country.class, "NZ"));
+    c.setBillingAddress(billingAddress);
+    ((EntityBean) c)._ebean_getIntercept().setNewBeanForUpdate();
+
+    CachedBeanData data = desc.cacheBeanExtractData((EntityBean) c);
+    cache.put(c.getId(), data);
+    Assert.assertTrue(factory.getUsedBytes() > 0);
+
+    CachedBeanData cached = (CachedBeanData) cache.get(c.getId());
+    Assert.assertNotSame(data, cached);
+    Assert.assertEquals(data.getWhenCreated(), cached.getWhenCreated());
+
+    Customer newCustomer = new Customer();
+    CachedBeanDataToBean.load(desc, (EntityBean) newCustomer, cached);
+    Assert.assertEquals(c.getId(), newCustomer.getId());
+    Assert.assertEquals("Rob", newCustomer.getName());
+    Assert.assertEquals(Status.ACTIVE, newCustomer.getStatus());
+    Assert.assertEquals(c.getCretime(), newCustomer.getCretime());
+    Assert.assertNull(newCustomer.getSmallnote());
+    Assert.assertEquals(c.getBillingAddress().getId(), newCustomer.getBillingAddress().getId());
+
+    cache.remove(c.getId());
+    Assert.assertNull(cache.get(c.getId()));
+    Assert.assertEquals(0, factory.getUsedBytes());
+  }
+
+  @Test
+  public void putGet_embedded() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<EPerson> desc = server.getBeanDescriptor(EPerson.class);
+
+    OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory(4 * OffHeapArena.PAGE_SIZE);
+    factory.init(server);
+    ServerCache cache = createCache(factory, EPerson.class);
+
+    EAddress address = new EAddress();
+    address.setStreet("92 Someplace Else");
+    address.setCity("Auckland");
+
+    EPerson person = new EPerson();
+    person.setId(98989L);
+    person.setName("Rob");
+    person.setAddress(address);
+
+    cache.put(person.getId(), desc.cacheBeanExtractData((EntityBean) person));
+
+    EPerson newPerson = new EPerson();
+    desc.cacheBeanLoadData((EntityBean) newPerson, (CachedBeanData) cache.get(person.getId()));
+    Assert.assertEquals(person.getId(), newPerson.getId());
+    Assert.assertEquals("Rob", newPerson.getName());
+    Assert.assertEquals("92 Someplace Else", newPerson.getAddress().getStreet());
+    Assert.assertEquals("Auckland", newPerson.getAddress().getCity());
+
+    // replacing and clearing frees the memory
+    cache.put(person.getId(), desc.cacheBeanExtractData((EntityBean) person));
+    Assert.assertEquals(1, cache.size());
+    cache.clear();
+    Assert.assertEquals(0, factory.getUsedBytes());
+  }
+
+  @Test
+  public void put_whenArenaFull_heldOnHeapAndCounted() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<EPerson> desc = server.getBeanDescriptor(EPerson.class);
+
+    // the only page is used by a single large block
+    OffHeapArena arena = new OffHeapArena(OffHeapArena.PAGE_SIZE);
+    Assert.assertNotNull(arena.store(new byte[arena.getMaxValueSize()]));
+
+    ServerCacheOptions options = new ServerCacheOptions();
+    options.setMaxSize(100);
+    OffHeapServerCache cache = new OffHeapServerCache("EPerson", options, arena, new CachedBeanDataCodec(desc));
+
+    EPerson person = new EPerson();
+    person.setId(98990L);
+    person.setName("Rob");
+    CachedBeanData data = desc.cacheBeanExtractData((EntityBean) person);
+    cache.put(person.getId(), data);
+
+    Assert.assertSame(data, cache.get(person.getId()));
+    Assert.assertEquals(1, cache.getStatistics(false).getOffHeapFallbackCount());
+    Assert.assertEquals(1, cache.getStatistics(true).getOffHeapFallbackCount());
+    Assert.assertEquals(0, cache.getStatistics(false).getOffHeapFallbackCount());
+  }
+}
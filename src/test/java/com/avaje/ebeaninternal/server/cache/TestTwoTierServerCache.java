@@ -0,0 +1,167 @@
+package com.avaje.ebeaninternal.server.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.bean.EntityBean;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.server.core.CacheOptions;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptorCacheHelp;
+import com.avaje.ebeaninternal.server.deploy.BeanPropertyAssocOne;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.embedded.EPerson;
+
+public class TestTwoTierServerCache extends BaseTestCase {
+
+  private ServerCache createCache(SpiEbeanServer server, InMemoryServerCacheRemoteStore store, String cacheKey) {
+
+    TwoTierServerCacheFactory factory = new TwoTierServerCacheFactory(store);
+    factory.init(server);
+    ServerCacheOptions options = new ServerCacheOptions();
+    options.setMaxSize(10);
+    return factory.createCache(cacheKey, options);
+  }
+
+  private CachedBeanData data(BeanDescriptor<Customer> desc, int id, String name) {
+    Customer customer = new Customer();
+    customer.setId(id);
+    customer.setName(name);
+    return desc.cacheBeanExtractData((EntityBean) customer);
+  }
+
+  @Test
+  public void sharedBetweenServers() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<Customer> desc = server.getBeanDescriptor(Customer.class);
+    InMemoryServerCacheRemoteStore store = new InMemoryServerCacheRemoteStore();
+    String cacheName = Customer.class.getName();
+
+    TwoTierServerCache cacheA = (TwoTierServerCache) createCache(server, store, cacheName);
+    TwoTierServerCache cacheB = (TwoTierServerCache) createCache(server, store, cacheName);
+
+    cacheA.put(1, data(desc, 1, "one"));
+    Assert.assertEquals(1, store.size(cacheName));
+    Assert.assertEquals(0, cacheB.size());
+
+    // near miss and remote hit on B
+    CachedBeanData data = (CachedBeanData) cacheB.get(1);
+    Assert.assertEquals("one", data.getData(desc.getBeanProperty("name").getPropertyIndex()));
+    Assert.assertEquals(1, cacheB.getRemoteHitCount());
+    Assert.assertEquals(1, cacheB.size());
+
+    // A updates and B is notified by the remote transaction event
+    cacheA.put(1, data(desc, 1, "uno"));
+    cacheB.removeNear(1);
+    Assert.assertEquals(1, store.size(cacheName));
+    data = (CachedBeanData) cacheB.get(1);
+    Assert.assertEquals("uno", data.getData(desc.getBeanProperty("name").getPropertyIndex()));
+
+    // A deletes
+    cacheA.remove(1);
+    cacheB.removeNear(1);
+    Assert.assertNull(cacheB.get(1));
+    Assert.assertEquals(1, cacheB.getRemoteMissCount());
+  }
+
+  @Test
+  public void getAll_fromBothTiers() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<Customer> desc = server.getBeanDescriptor(Customer.class);
+    InMemoryServerCacheRemoteStore store = new InMemoryServerCacheRemoteStore();
+    String cacheName = Customer.class.getName();
+
+    ServerCache cacheA = createCache(server, store, cacheName);
+    ServerCache cacheB = createCache(server, store, cacheName);
+
+    Map<Object, Object> values = new HashMap<Object, Object>();
+    values.put(1, data(desc, 1, "one"));
+    values.put(2, data(desc, 2, "two"));
+    cacheA.putAll(values);
+    cacheB.put(3, data(desc, 3, "three"));
+
+    Set<Object> keys = new LinkedHashSet<Object>();
+    keys.add(1);
+    keys.add(2);
+    keys.add(3);
+    keys.add(4);
+    Assert.assertEquals(3, cacheB.getAll(keys).size());
+    Assert.assertEquals(3, cacheB.size());
+    Assert.assertEquals(3, cacheA.getAll(keys).size());
+
+    cacheA.clear();
+    Assert.assertEquals(0, store.size(cacheName));
+  }
+
+  @Test
+  public void otherCaches_localOnly() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    InMemoryServerCacheRemoteStore store = new InMemoryServerCacheRemoteStore();
+
+    ServerCache queryCache = createCache(server, store, Customer.class.getName() + "_query");
+    Assert.assertTrue(queryCache instanceof DefaultServerCache);
+  }
+
+  @Test
+  public void persist_whenNotCachingLocally_removesSharedEntry() {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<Customer> desc = server.getBeanDescriptor(Customer.class);
+    InMemoryServerCacheRemoteStore store = new InMemoryServerCacheRemoteStore();
+    String cacheName = Customer.class.getName();
+
+    DefaultServerCacheManager cacheManager = new DefaultServerCacheManager(new TwoTierServerCacheFactory(store), new ServerCacheOptions(), new ServerCacheOptions());
+    cacheManager.init(server);
+    CacheOptions cacheOptions = new CacheOptions();
+    cacheOptions.setUseCache(true);
+    BeanDescriptorCacheHelp<Customer> cacheHelp = new BeanDescriptorCacheHelp<Customer>(desc, cacheManager, cacheOptions, true, new BeanPropertyAssocOne<?>[0], new TableVersions());
+    cacheHelp.setUseCache(false);
+    Assert.assertFalse(cacheHelp.isBeanCaching());
+    Assert.assertTrue(cacheHelp.isCacheNotify());
+
+    // another server caches the bean in the shared remote tier
+    ServerCache otherServer = createCache(server, store, cacheName);
+    otherServer.put(1, data(desc, 1, "one"));
+
+    // a remote event does not touch the shared entry
+    cacheHelp.beanCacheRemoveNear(1);
+    Assert.assertEquals(1, store.size(cacheName));
+
+    // a local persist removes it although bean caching is off locally
+    cacheHelp.beanCacheRemove(1);
+    Assert.assertEquals(0, store.size(cacheName));
+    Assert.assertFalse(cacheHelp.isBeanCaching());
+  }
+
+  @Test
+  public void get_whenDifferentLayout_missAndRemoved() throws Exception {
+
+    SpiEbeanServer server = (SpiEbeanServer) Ebean.getServer(null);
+    BeanDescriptor<EPerson> personDesc = server.getBeanDescriptor(EPerson.class);
+    InMemoryServerCacheRemoteStore store = new InMemoryServerCacheRemoteStore();
+    String cacheName = Customer.class.getName();
+
+    // data written by a server with a different layout of the bean
+    EPerson person = new EPerson();
+    person.setId(1L);
+    person.setName("Rob");
+    store.put(cacheName, 1, new CachedBeanDataCodec(personDesc).toBytes(personDesc.cacheBeanExtractData((EntityBean) person)));
+
+    TwoTierServerCache cache = (TwoTierServerCache) createCache(server, store, cacheName);
+    Assert.assertNull(cache.get(1));
+    Assert.assertEquals(1, cache.getRemoteMissCount());
+    Assert.assertEquals(0, store.size(cacheName));
+  }
+}
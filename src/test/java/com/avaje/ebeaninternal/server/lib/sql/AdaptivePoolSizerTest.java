@@ -0,0 +1,83 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import java.sql.Connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptivePoolSizerTest {
+
+  @Test
+  public void roll_growsWithDemand_shrinksGradually() {
+
+    AdaptivePoolSizer sizer = new AdaptivePoolSizer(3, 2);
+    assertEquals(2, sizer.getTargetSize());
+
+    sizer.recordBusy(10);
+    sizer.recordWait(5);
+    // peak demand 15 plus 20% headroom
+    assertEquals(18, sizer.roll(2, 50, 0));
+    assertEquals(1, sizer.getWaitCount());
+
+    // the peak is remembered for the following windows
+    assertEquals(18, sizer.roll(2, 50, 0));
+    assertEquals(18, sizer.roll(2, 50, 0));
+
+    // peak has left the window so shrink by half the excess each time
+    assertEquals(10, sizer.roll(2, 50, 0));
+    assertEquals(6, sizer.roll(2, 50, 0));
+    assertEquals(4, sizer.roll(2, 50, 0));
+    assertEquals(3, sizer.roll(2, 50, 0));
+    assertEquals(2, sizer.roll(2, 50, 0));
+    assertEquals(2, sizer.roll(2, 50, 0));
+  }
+
+  @Test
+  public void roll_withinBounds() {
+
+    AdaptivePoolSizer sizer = new AdaptivePoolSizer(2, 5);
+    sizer.recordBusy(100);
+    assertEquals(20, sizer.roll(5, 20, 0));
+
+    // busy connections carry over to the next window
+    assertEquals(20, sizer.roll(5, 20, 15));
+    // demand of 15 (plus headroom 18) so shrink towards that
+    assertEquals(19, sizer.roll(5, 20, 0));
+  }
+
+  @Test
+  public void pool_growsAheadOfDemand() throws Exception {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:adaptiveSizing");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(5);
+    config.setAdaptiveSizing(true);
+
+    DataSourcePool pool = new DataSourcePool(null, "adaptiveSizing", config);
+    try {
+      Connection connection = pool.getConnection();
+
+      // a spare connection is created in the background without anyone waiting
+      for (int i = 0; i < 100 && pool.getStatus(false).getFree() == 0; i++) {
+        Thread.sleep(10);
+      }
+      DataSourcePool.Status status = pool.getStatus(false);
+      assertEquals(1, status.getBusy());
+      assertEquals(1, status.getFree());
+      assertEquals(0, status.getWaitCount());
+      assertTrue(pool.getTargetSize() >= 1);
+
+      connection.close();
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+}
@@ -0,0 +1,364 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertTrue;
+
+public class DataSourcePoolConcurrentTest {
+
+  private DataSourcePool createPool(String name, int min, int max) {
+    return createPool(name, min, max, 0);
+  }
+
+  private DataSourcePool createPool(String name, int min, int max, int maxWaiting) {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:" + name);
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(min);
+    config.setMaxConnections(max);
+    config.setWaitTimeoutMillis(5000);
+    config.setMaxWaiting(maxWaiting);
+
+    return new DataSourcePool(null, name, config);
+  }
+
+  @Test
+  public void lastReturned_isReusedBySameThread() throws Exception {
+
+    DataSourcePool pool = createPool("concurrentReuse", 2, 4);
+    try {
+      Connection first = pool.getConnection();
+      first.close();
+
+      Connection second = pool.getConnection();
+      assertTrue(first == second);
+      second.close();
+
+      DataSourcePool.Status status = pool.getStatus(false);
+      assertEquals(0, status.getBusy());
+      assertEquals(2, status.getFree());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void concurrentBorrow_neverSharesConnection() throws Exception {
+
+    final DataSourcePool pool = createPool("concurrentBorrow", 2, 5);
+    final Set<PooledConnection> inUse = java.util.Collections.newSetFromMap(new ConcurrentHashMap<PooledConnection, Boolean>());
+    final AtomicInteger errors = new AtomicInteger();
+
+    int threadCount = 16;
+    final int loops = 500;
+    final CountDownLatch latch = new CountDownLatch(threadCount);
+
+    try {
+      for (int i = 0; i < threadCount; i++) {
+        new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              for (int j = 0; j < loops; j++) {
+                PooledConnection connection = pool.getPooledConnection();
+                if (!inUse.add(connection)) {
+                  errors.incrementAndGet();
+                }
+                inUse.remove(connection);
+                connection.close();
+              }
+            } catch (Exception e) {
+              errors.incrementAndGet();
+            } finally {
+              latch.countDown();
+            }
+          }
+        }).start();
+      }
+
+      latch.await();
+      assertEquals(0, errors.get());
+
+      DataSourcePool.Status status = pool.getStatus(false);
+      assertEquals(0, status.getBusy());
+      assertTrue(status.getFree() <= 5);
+      assertTrue(status.getHighWaterMark() <= 5);
+      assertEquals(threadCount * loops, status.getHitCount());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void waitQueueFull_failsFast() throws Exception {
+
+    final DataSourcePool pool = createPool("concurrentShed", 1, 1, 1);
+    try {
+      Connection held = pool.getConnection();
+
+      // first waiter takes the only wait queue position
+      final List<Connection> handedOff = java.util.Collections.synchronizedList(new ArrayList<Connection>());
+      Thread waiter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            handedOff.add(pool.getConnection());
+          } catch (SQLException e) {
+            // not expected
+          }
+        }
+      });
+      waiter.start();
+      while (pool.getStatus(false).getWaiting() == 0) {
+        Thread.sleep(5);
+      }
+
+      long start = System.currentTimeMillis();
+      try {
+        pool.getPooledConnection(2000);
+        fail("expected to be shed");
+      } catch (SQLException e) {
+        // failed fast rather than waiting
+        assertTrue(System.currentTimeMillis() - start < 1000);
+      }
+
+      // returned connection is handed to the waiting thread
+      held.close();
+      waiter.join(2000);
+      assertEquals(1, handedOff.size());
+      assertTrue(handedOff.get(0) == held);
+      handedOff.get(0).close();
+
+      DataSourcePoolStatistics statistics = pool.getStatistics(true);
+      assertEquals(1, statistics.getShedCount());
+      assertEquals(1, statistics.getWaitingHighWaterMark());
+      assertEquals(0, statistics.getWaiting());
+      assertEquals(0, pool.getStatistics(false).getShedCount());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void perCallWait_timesOut() throws Exception {
+
+    DataSourcePool pool = createPool("concurrentDeadline", 1, 1);
+    try {
+      Connection held = pool.getConnection();
+      long start = System.currentTimeMillis();
+      try {
+        pool.getPooledConnection(50);
+        fail("expected timeout");
+      } catch (SQLException e) {
+        assertTrue(System.currentTimeMillis() - start < 2000);
+      }
+      assertEquals(1, pool.getStatistics(false).getWaitTimeoutCount());
+
+      start = System.currentTimeMillis();
+      try {
+        pool.getConnection(50);
+        fail("expected timeout");
+      } catch (SQLException e) {
+        assertTrue(System.currentTimeMillis() - start < 2000);
+      }
+      assertEquals(2, pool.getStatistics(false).getWaitTimeoutCount());
+      held.close();
+
+      Connection connection = pool.getPooledConnection(50);
+      assertNotNull(connection);
+      connection.close();
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void warmUp_createsMinimumConnections() throws Exception {
+
+    DataSourcePool pool = createPool("concurrentWarmUp", 6, 10);
+    try {
+      DataSourcePool.Status status = pool.getStatus(false);
+      assertEquals(6, status.getFree());
+      assertEquals(0, status.getBusy());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void burst_growsPoolForEachWaitingThread() throws Exception {
+
+    final DataSourcePool pool = createPool("concurrentBurst", 1, 8);
+    final int threadCount = 8;
+    final CountDownLatch allHeld = new CountDownLatch(threadCount);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger errors = new AtomicInteger();
+    List<Thread> threads = new ArrayList<Thread>();
+
+    try {
+      for (int i = 0; i < threadCount; i++) {
+        Thread thread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Connection connection = pool.getConnection();
+              allHeld.countDown();
+              release.await();
+              connection.close();
+            } catch (Exception e) {
+              errors.incrementAndGet();
+              allHeld.countDown();
+            }
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+
+      allHeld.await();
+      DataSourcePool.Status status = pool.getStatus(false);
+      release.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertEquals(0, errors.get());
+      assertEquals(8, status.getBusy());
+      assertEquals(8, pool.getStatus(false).getFree());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void slowCreate_reportedDistinctFromMaxSize() throws Exception {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:concurrentSlowCreate");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(0);
+    config.setMaxConnections(2);
+
+    DataSourcePool pool = new DataSourcePool(null, "concurrentSlowCreate", config) {
+      @Override
+      protected PooledConnection createConnectionForQueue(int connId) throws SQLException {
+        try {
+          Thread.sleep(300);
+        } catch (InterruptedException e) {
+          throw new SQLException(e);
+        }
+        return super.createConnectionForQueue(connId);
+      }
+    };
+    try {
+      try {
+        pool.getPooledConnection(50);
+        fail("expected timeout");
+      } catch (SQLException e) {
+        assertTrue(e.getMessage().contains("to be created"));
+      }
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void failedCreate_doesNotFailOtherWaiter() throws Exception {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:concurrentFailedCreate");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(0);
+    config.setMaxConnections(2);
+    config.setWaitTimeoutMillis(5000);
+
+    final AtomicInteger createCount = new AtomicInteger();
+    final DataSourcePool pool = new DataSourcePool(null, "concurrentFailedCreate", config) {
+      @Override
+      protected PooledConnection createConnectionForQueue(int connId) throws SQLException {
+        if (createCount.incrementAndGet() == 2) {
+          // the create requested by the first waiting thread is slow and fails
+          try {
+            Thread.sleep(300);
+          } catch (InterruptedException e) {
+            throw new SQLException(e);
+          }
+          throw new SQLException("create failed");
+        }
+        return super.createConnectionForQueue(connId);
+      }
+    };
+
+    final AtomicInteger errors = new AtomicInteger();
+    final CountDownLatch secondServed = new CountDownLatch(1);
+    try {
+      Connection held = pool.getConnection();
+
+      // grows the pool (with the failing create) and is then served by the returned connection
+      Thread first = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Connection connection = pool.getConnection();
+            Thread.sleep(500);
+            connection.close();
+          } catch (Exception e) {
+            errors.incrementAndGet();
+          }
+        }
+      });
+      first.start();
+      Thread.sleep(100);
+      held.close();
+
+      // waits for the connection held by the first thread (the pool is not grown for it)
+      Thread second = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Connection connection = pool.getConnection();
+            secondServed.countDown();
+            connection.close();
+          } catch (Exception e) {
+            errors.incrementAndGet();
+          }
+        }
+      });
+      second.start();
+
+      first.join();
+      second.join();
+      assertEquals(0, errors.get());
+      assertEquals(0, secondServed.getCount());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.BackgroundExecutor;
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DataSourcePoolValidationTest {
+
+  private DataSourcePool createPool(String name, int validateIdleSecs) {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:" + name);
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(2);
+    config.setMaxConnections(4);
+    config.setValidateIdleSecs(validateIdleSecs);
+
+    return new DataSourcePool(null, name, config);
+  }
+
+  /**
+   * Executor that holds the tasks such that the test controls when they run.
+   */
+  static class ManualExecutor implements BackgroundExecutor {
+
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+
+    @Override
+    public void execute(Runnable r) {
+      tasks.add(r);
+    }
+
+    @Override
+    public void executePeriodically(Runnable r, long delay, TimeUnit unit) {
+    }
+
+    void runAll() {
+      List<Runnable> run = new ArrayList<Runnable>(tasks);
+      tasks.clear();
+      for (Runnable task : run) {
+        task.run();
+      }
+    }
+  }
+
+  @Test
+  public void checkDataSource_closesDeadIdleConnections() throws Exception {
+
+    DataSourcePool pool = createPool("validateIdle", 1);
+    try {
+      PooledConnection first = pool.getPooledConnection();
+      PooledConnection second = pool.getPooledConnection();
+      first.close();
+      second.close();
+
+      // simulate the database dropping the connection while idle in the pool
+      first.getUnderlyingConnection().close();
+
+      Thread.sleep(1100);
+      pool.checkDataSource();
+
+      DataSourcePool.Status status = pool.getStatus(false);
+      assertEquals(0, status.getBusy());
+      assertEquals(1, status.getFree());
+
+      PooledConnection next = pool.getPooledConnection();
+      assertTrue(next == second);
+      next.close();
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  @Test
+  public void claimIdle_skipsRecentlyUsedConnections() throws InterruptedException {
+
+    FreeConnectionBuffer buffer = new FreeConnectionBuffer();
+    PooledConnection p0 = new PooledConnection("p0");
+    PooledConnection p1 = new PooledConnection("p1");
+    buffer.add(p0);
+    buffer.add(p1);
+
+    // used within the recency window so not claimed for validation
+    assertNull(buffer.claimIdle(System.currentTimeMillis() - 60000));
+    assertEquals(2, buffer.size());
+
+    // claimed one at a time such that the other remains available to borrowers
+    long since = System.currentTimeMillis() + 1000;
+    PooledConnection claimed = buffer.claimIdle(since);
+    assertTrue(claimed == p0);
+    assertEquals(1, buffer.size());
+
+    // validated connections go back and are not claimed again in the same run
+    Thread.sleep(5);
+    claimed.markValidated();
+    buffer.add(claimed);
+    assertTrue(buffer.claimIdle(claimed.getLastValidatedTime()) == p1);
+    buffer.add(p1);
+    assertEquals(2, buffer.size());
+    assertTrue(buffer.remove() == p0);
+    assertTrue(buffer.remove() == p1);
+    assertTrue(buffer.remove() == null);
+  }
+
+  @Test
+  public void close_withErrors_quarantinedAndValidatedInBackground() throws Exception {
+
+    ManualExecutor executor = new ManualExecutor();
+    DataSourcePool pool = createPool("validateQuarantine", 0);
+    pool.setBackgroundExecutor(executor);
+    try {
+      PooledConnection good = pool.getPooledConnection();
+      PooledConnection bad = pool.getPooledConnection();
+
+      good.addError(new SQLException("suspect"));
+      bad.addError(new SQLException("suspect"));
+      bad.getUnderlyingConnection().close();
+
+      good.close();
+      bad.close();
+      // closing again (finally blocks etc) does not quarantine again
+      good.close();
+
+      // not validated on the closing thread
+      assertEquals(2, pool.getStatus(false).getBusy());
+      assertEquals(1, executor.tasks.size());
+
+      executor.runAll();
+
+      DataSourcePool.Status status = pool.getStatus(false);
+      assertEquals(0, status.getBusy());
+      assertEquals(1, status.getFree());
+
+      PooledConnection next = pool.getPooledConnection();
+      assertTrue(next == good);
+      next.close();
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void indexOf_highestValueOf_boundaries() {
+
+    for (long value = 0; value < 100000; value++) {
+      int index = LatencyHistogram.indexOf(value);
+      assertTrue(value <= LatencyHistogram.highestValueOf(index));
+      if (index > 0) {
+        assertTrue(value > LatencyHistogram.highestValueOf(index - 1));
+      }
+    }
+  }
+
+  @Test
+  public void percentiles_withinPrecision() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10000; i++) {
+      histogram.record(i);
+    }
+
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot(false);
+    assertEquals(10000, snapshot.getCount());
+    assertWithin(5000, snapshot.getP50());
+    assertWithin(9900, snapshot.getP99());
+    assertWithin(9990, snapshot.getP999());
+    assertWithin(10000, snapshot.getMax());
+  }
+
+  @Test
+  public void getSnapshot_reset() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordNanos(2000000);
+    histogram.record(Long.MAX_VALUE);
+    histogram.record(-1);
+
+    assertEquals(3, histogram.getSnapshot(true).getCount());
+
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot(false);
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getP99());
+    assertEquals(0, snapshot.getMax());
+  }
+
+  @Test
+  public void pool_exportsLatencyViaStatus() throws Exception {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:latencyHistogram");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+
+    DataSourcePool pool = new DataSourcePool(null, "latencyHistogram", config);
+    try {
+      for (int i = 0; i < 5; i++) {
+        Connection connection = pool.getConnection();
+        PreparedStatement stmt = connection.prepareStatement("select 1");
+        stmt.executeQuery().close();
+        stmt.close();
+        connection.close();
+      }
+
+      DataSourcePool.Status status = pool.getStatus(true);
+      assertEquals(5, status.getWaitLatency().getCount());
+      assertEquals(5, status.getHoldLatency().getCount());
+      assertEquals(5, status.getExecuteLatency().getCount());
+
+      status = pool.getStatus(false);
+      assertEquals(0, status.getWaitLatency().getCount());
+      assertEquals(0, status.getExecuteLatency().getCount());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+
+  private void assertWithin(long expected, long actual) {
+    assertTrue("expected " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.125);
+  }
+}
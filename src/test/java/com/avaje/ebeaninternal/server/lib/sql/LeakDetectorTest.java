@@ -0,0 +1,109 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeakDetectorTest {
+
+  private StackTraceElement[] stack(String appMethod) {
+    return new StackTraceElement[]{
+        new StackTraceElement("com.avaje.ebeaninternal.server.lib.sql.DataSourcePool", "getConnection", "DataSourcePool.java", 10),
+        new StackTraceElement("org.example.app.Service", appMethod, "Service.java", 20),
+        new StackTraceElement("org.example.app.Controller", "handle", "Controller.java", 30),
+        new StackTraceElement("org.example.app.Router", "route", "Router.java", 40),
+        new StackTraceElement("org.example.app.Main", "main", "Main.java", 50)
+    };
+  }
+
+  @Test
+  public void sample_oneInN() {
+
+    LeakDetector detector = new LeakDetector(4, 5, 1000);
+    int sampled = 0;
+    for (int i = 0; i < 40; i++) {
+      if (detector.sample() != null) {
+        sampled++;
+      }
+    }
+    assertEquals(10, sampled);
+
+    detector.setSampleRate(0);
+    assertNull(detector.sample());
+  }
+
+  @Test
+  public void sample_sameCallSite_interned() {
+
+    LeakDetector detector = new LeakDetector(1, 3, 1000);
+    LeakDetector.StackSignature first = detector.capture(stack("find"));
+    LeakDetector.StackSignature second = detector.capture(stack("find"));
+
+    assertTrue(first == second);
+    assertEquals(2, first.getBorrowCount());
+    assertEquals(3, first.getStackTrace().length);
+    assertTrue(first.getCallSite().startsWith("org.example.app.Service.find"));
+    assertEquals(1, detector.getSignatureCount());
+
+    assertTrue(first != detector.capture(stack("save")));
+    assertEquals(2, detector.getSignatureCount());
+  }
+
+  @Test
+  public void check_reportsOverdueOncePerBorrow() {
+
+    LeakDetector detector = new LeakDetector(1, 5, 1000);
+    PooledConnection held = new PooledConnection("held");
+    PooledConnection notSampled = new PooledConnection("notSampled");
+    held.setStackSignature(detector.capture(stack("find")));
+
+    List<PooledConnection> busy = Arrays.asList(held, notSampled);
+    long now = System.currentTimeMillis();
+
+    // resetForUse() not called so startUseTime is 0 (held a long time)
+    Map<LeakDetector.StackSignature, Integer> overdue = detector.check(busy, now);
+    assertEquals(1, overdue.size());
+    assertEquals(Integer.valueOf(1), overdue.get(held.getStackSignature()));
+
+    assertTrue(detector.check(busy, now).isEmpty());
+    assertEquals(1, detector.getOverdueSignatures().size());
+    assertEquals(1, detector.getOverdueSignatures().get(0).getOverdueCount());
+  }
+
+  @Test
+  public void pool_capturesSampledCallSite() throws Exception {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:leakDetector");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setLeakSampleRate(1);
+
+    DataSourcePool pool = new DataSourcePool(null, "leakDetector", config);
+    try {
+      Connection connection = pool.getConnection();
+      PooledConnection pc = (PooledConnection) connection;
+      assertNotNull(pc.getStackSignature());
+      assertNotNull(pc.getCreatedByMethod());
+      connection.close();
+
+      pool.setCaptureStackTrace(false);
+      assertEquals(1, pool.getLeakDetector().getSampleRate());
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manual throughput comparison of borrow/return on the lock free FreeConnectionBuffer
+ * (with thread affine fast path) versus a LinkedList guarded by a single ReentrantLock
+ * (as the pool used previously) at 1 to 64 threads.
+ * <p>
+ * The borrow/return through a DataSourcePool (PooledConnectionQueue.getPooledConnection()
+ * and returnPooledConnection() on H2 in memory connections) is also measured to show the
+ * end to end cost of the lock free path including the pool bookkeeping.
+ * </p>
+ */
+public class MainFreeConnectionBufferThroughput {
+
+  private static final int POOL_SIZE = 20;
+
+  private static final int OPS_PER_THREAD = 500000;
+
+  /**
+   * Fewer operations through the pool as each return resets the (H2) connection.
+   */
+  private static final int POOL_OPS_PER_THREAD = 20000;
+
+  interface Borrower {
+
+    PooledConnection borrow(PooledConnection last);
+
+    void release(PooledConnection pc);
+  }
+
+  /**
+   * The previous approach with a single lock around the free list.
+   */
+  static class LockedBorrower implements Borrower {
+
+    final ReentrantLock lock = new ReentrantLock(false);
+    final LinkedList<PooledConnection> free = new LinkedList<PooledConnection>();
+
+    LockedBorrower() {
+      for (int i = 0; i < POOL_SIZE; i++) {
+        free.add(new PooledConnection("c" + i));
+      }
+    }
+
+    public PooledConnection borrow(PooledConnection last) {
+      lock.lock();
+      try {
+        return free.isEmpty() ? null : free.removeFirst();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public void release(PooledConnection pc) {
+      lock.lock();
+      try {
+        free.addLast(pc);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * The lock free approach.
+   */
+  static class LockFreeBorrower implements Borrower {
+
+    final FreeConnectionBuffer free = new FreeConnectionBuffer();
+
+    LockFreeBorrower() {
+      for (int i = 0; i < POOL_SIZE; i++) {
+        free.add(new PooledConnection("c" + i));
+      }
+    }
+
+    public PooledConnection borrow(PooledConnection last) {
+      if (last != null && free.claim(last)) {
+        return last;
+      }
+      return free.remove();
+    }
+
+    public void release(PooledConnection pc) {
+      free.add(pc);
+    }
+  }
+
+  /**
+   * The lock free approach through the pool (PooledConnectionQueue).
+   */
+  static class PoolBorrower implements Borrower {
+
+    final DataSourcePool pool;
+
+    PoolBorrower(String name) {
+      DataSourceConfig config = new DataSourceConfig();
+      config.setDriver("org.h2.Driver");
+      config.setUrl("jdbc:h2:mem:" + name);
+      config.setUsername("sa");
+      config.setPassword("");
+      config.setMinConnections(POOL_SIZE);
+      config.setMaxConnections(POOL_SIZE);
+      config.setWaitTimeoutMillis(60000);
+      this.pool = new DataSourcePool(null, name, config);
+    }
+
+    public PooledConnection borrow(PooledConnection last) {
+      try {
+        return pool.getPooledConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public void release(PooledConnection pc) {
+      try {
+        pc.close();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    void shutdown() {
+      pool.shutdown(false);
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+
+    int[] threadCounts = {1, 2, 4, 8, 16, 32, 64};
+
+    // warm up
+    run(new LockedBorrower(), 8, OPS_PER_THREAD);
+    run(new LockFreeBorrower(), 8, OPS_PER_THREAD);
+    PoolBorrower pool = new PoolBorrower("throughput");
+    try {
+      run(pool, 8, POOL_OPS_PER_THREAD);
+
+      for (int threads : threadCounts) {
+        long lockedNanos = run(new LockedBorrower(), threads, OPS_PER_THREAD);
+        long lockFreeNanos = run(new LockFreeBorrower(), threads, OPS_PER_THREAD);
+        long poolNanos = run(pool, threads, POOL_OPS_PER_THREAD);
+        System.out.println("threads[" + threads + "] locked ops/ms[" + opsPerMilli(threads, OPS_PER_THREAD, lockedNanos)
+            + "] lockFree ops/ms[" + opsPerMilli(threads, OPS_PER_THREAD, lockFreeNanos)
+            + "] pool ops/ms[" + opsPerMilli(threads, POOL_OPS_PER_THREAD, poolNanos) + "]");
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static long opsPerMilli(int threads, int opsPerThread, long nanos) {
+    return (threads * (long) opsPerThread * 1000000L) / Math.max(1, nanos);
+  }
+
+  private static long run(final Borrower borrower, int threads, final int opsPerThread) throws InterruptedException {
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+
+    for (int i = 0; i < threads; i++) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            PooledConnection last = null;
+            int count = 0;
+            while (count < opsPerThread) {
+              PooledConnection pc = borrower.borrow(last);
+              if (pc == null) {
+                // pool exhausted, other threads hold all the connections
+                Thread.yield();
+                continue;
+              }
+              borrower.release(pc);
+              last = pc;
+              count++;
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    done.await();
+    return System.nanoTime() - startNanos;
+  }
+}
@@ -0,0 +1,114 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PstmtCachePolicyTest {
+
+  @Test
+  public void admit_basedOnFrequency() {
+
+    PstmtCachePolicy policy = new PstmtCachePolicy(100);
+    for (int i = 0; i < 10; i++) {
+      policy.record("hot", "hot", false, 0);
+    }
+    policy.record("cold", "cold", false, 0);
+
+    assertTrue(policy.frequency("hot") >= 10);
+    assertTrue(policy.admit("hot", "cold"));
+    assertFalse(policy.admit("cold", "hot"));
+    assertFalse(policy.admit("neverUsed", "cold"));
+  }
+
+  @Test
+  public void top_orderedByFrequency() {
+
+    PstmtCachePolicy policy = new PstmtCachePolicy(100);
+    for (int i = 0; i < 5; i++) {
+      policy.record("a", "a", false, 0);
+    }
+    for (int i = 0; i < 10; i++) {
+      policy.record("b", "b", false, 0);
+    }
+    policy.record("c", "c", false, 0);
+
+    List<PstmtCachePolicy.SqlEntry> top = policy.top(2);
+    assertEquals(2, top.size());
+    assertEquals("b", top.get(0).sql);
+    assertEquals("a", top.get(1).sql);
+  }
+
+  @Test
+  public void tracked_replacedByLaterHotStatement() {
+
+    PstmtCachePolicy policy = new PstmtCachePolicy(10);
+    for (int i = 0; i < 10; i++) {
+      assertNotNull(policy.record("cold" + i, "cold" + i, false, 0));
+    }
+
+    // a one off statement does not replace a tracked statement
+    assertNull(policy.record("once", "once", false, 0));
+
+    PstmtCachePolicy.SqlEntry hot = null;
+    for (int i = 0; i < 5; i++) {
+      hot = policy.record("hot", "hot", false, 0);
+    }
+    assertNotNull(hot);
+
+    List<PstmtCachePolicy.SqlEntry> top = policy.top(20);
+    assertEquals(10, top.size());
+    assertEquals("hot", top.get(0).sql);
+  }
+
+  @Test
+  public void newConnection_preparesTopStatements() throws Exception {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:pstmtWarm");
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(2);
+    config.setPstmtCacheWarmSize(5);
+
+    DataSourcePool pool = new DataSourcePool(null, "pstmtWarm", config);
+    try {
+      Connection first = pool.getConnection();
+      for (int i = 0; i < 3; i++) {
+        PreparedStatement stmt = first.prepareStatement("select 1");
+        stmt.executeQuery().close();
+        stmt.close();
+      }
+
+      // grow the pool, the new connection has 'select 1' already prepared
+      Connection second = pool.getConnection();
+      assertTrue(first != second);
+      PreparedStatement stmt = second.prepareStatement("select 1");
+      stmt.close();
+
+      List<PstmtStatistics> statistics = pool.getPstmtStatistics(false);
+      assertEquals(1, statistics.size());
+      PstmtStatistics select1 = statistics.get(0);
+      assertEquals("select 1", select1.getSql());
+      assertEquals(1, select1.getMissCount());
+      assertEquals(3, select1.getHitCount());
+
+      first.close();
+      second.close();
+
+    } finally {
+      pool.shutdown(false);
+    }
+  }
+}
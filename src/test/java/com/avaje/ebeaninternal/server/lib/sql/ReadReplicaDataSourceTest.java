@@ -0,0 +1,112 @@
+package com.avaje.ebeaninternal.server.lib.sql;
+
+import com.avaje.ebean.config.DataSourceConfig;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReadReplicaDataSourceTest {
+
+  private DataSourcePool createPool(String name) {
+
+    DataSourceConfig config = new DataSourceConfig();
+    config.setDriver("org.h2.Driver");
+    config.setUrl("jdbc:h2:mem:" + name);
+    config.setUsername("sa");
+    config.setPassword("");
+    config.setMinConnections(1);
+    config.setMaxConnections(4);
+
+    return new DataSourcePool(null, name, config);
+  }
+
+  private ReadReplicaDataSource create(boolean leastBusy, DataSource... replicas) {
+    List<DataSource> list = new ArrayList<DataSource>();
+    for (DataSource replica : replicas) {
+      list.add(replica);
+    }
+    return new ReadReplicaDataSource(list, leastBusy);
+  }
+
+  @Test
+  public void getConnection_roundRobin() throws SQLException {
+
+    DataSourcePool r0 = createPool("replicaRoundRobin0");
+    DataSourcePool r1 = createPool("replicaRoundRobin1");
+    ReadReplicaDataSource ds = create(false, r0, r1);
+    try {
+      Connection c0 = ds.getConnection();
+      Connection c1 = ds.getConnection();
+      assertEquals(1, r0.getBusyCount());
+      assertEquals(1, r1.getBusyCount());
+      c0.close();
+      c1.close();
+    } finally {
+      ds.shutdown(false);
+    }
+  }
+
+  @Test
+  public void getConnection_leastBusy() throws SQLException {
+
+    DataSourcePool r0 = createPool("replicaLeastBusy0");
+    DataSourcePool r1 = createPool("replicaLeastBusy1");
+    ReadReplicaDataSource ds = create(true, r0, r1);
+    try {
+      Connection held = r0.getConnection();
+
+      Connection c0 = ds.getConnection();
+      assertEquals(1, r1.getBusyCount());
+      Connection c1 = ds.getConnection();
+      assertEquals(2, r0.getBusyCount());
+      Connection c2 = ds.getConnection();
+      assertEquals(2, r1.getBusyCount());
+
+      c0.close();
+      c1.close();
+      c2.close();
+      held.close();
+    } finally {
+      ds.shutdown(false);
+    }
+  }
+
+  @Test
+  public void getConnection_failsOverToNextReplica() throws SQLException {
+
+    DataSourcePool r1 = createPool("replicaFailover1");
+    ReadReplicaDataSource ds = create(false, new FailingDataSource(r1), r1);
+    try {
+      for (int i = 0; i < 4; i++) {
+        Connection c = ds.getConnection();
+        assertTrue(c instanceof PooledConnection);
+        c.close();
+      }
+    } finally {
+      ds.shutdown(false);
+    }
+  }
+
+  /**
+   * A replica that is down.
+   */
+  static class FailingDataSource extends ReadReplicaDataSource {
+
+    FailingDataSource(DataSource any) {
+      super(Collections.singletonList(any), false);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      throw new SQLException("replica down");
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.avaje.tests.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.tests.model.basic.Country;
+import com.avaje.tests.model.basic.ResetBasicData;
+
+public class TestCacheIdInQuery extends BaseTestCase {
+
+  @Test
+  public void idIn_servedFromBeanCache() {
+
+    ResetBasicData.reset();
+
+    ServerCache countryCache = Ebean.getServerCacheManager().getBeanCache(Country.class);
+    countryCache.clear();
+
+    // load one country into the bean cache
+    Country nz = Ebean.find(Country.class, "NZ");
+    Assert.assertNotNull(nz);
+    Assert.assertEquals(1, countryCache.size());
+
+    countryCache.getStatistics(true);
+
+    List<Country> list = Ebean.find(Country.class).where().idIn(Arrays.asList("AU", "NZ")).findList();
+    Assert.assertEquals(2, list.size());
+    // in the order of the ids
+    Assert.assertEquals("AU", list.get(0).getCode());
+    Assert.assertEquals("NZ", list.get(1).getCode());
+
+    // NZ was a hit and AU was fetched and put into the cache
+    Assert.assertEquals(1, countryCache.getStatistics(false).getHitCount());
+    Assert.assertEquals(2, countryCache.size());
+
+    countryCache.getStatistics(true);
+    list = Ebean.find(Country.class).where().idIn(Arrays.asList("NZ", "AU")).findList();
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals("NZ", list.get(0).getCode());
+    Assert.assertEquals("AU", list.get(1).getCode());
+    Assert.assertEquals(2, countryCache.getStatistics(false).getHitCount());
+  }
+
+  @Test
+  public void idIn_missingIdsNotReturned() {
+
+    ResetBasicData.reset();
+
+    ServerCache countryCache = Ebean.getServerCacheManager().getBeanCache(Country.class);
+    countryCache.clear();
+
+    List<Object> ids = new ArrayList<Object>();
+    ids.add("NZ");
+    ids.add("XX");
+    List<Country> list = Ebean.find(Country.class).where().idIn(ids).findList();
+    Assert.assertEquals(1, list.size());
+    Assert.assertEquals("NZ", list.get(0).getCode());
+
+    // the query is restored after fetching the missing ids
+    list = Ebean.find(Country.class).where().idIn(ids).findList();
+    Assert.assertEquals(1, list.size());
+  }
+}
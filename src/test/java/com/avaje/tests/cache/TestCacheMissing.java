@@ -0,0 +1,122 @@
+package com.avaje.tests.cache;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.EbeanServerFactory;
+import com.avaje.ebean.SqlUpdate;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.config.ServerConfig;
+import com.avaje.tests.model.basic.Country;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCacheMissing extends BaseTestCase {
+
+  EbeanServer server;
+
+  @Before
+  public void setup() {
+
+    ServerConfig config = new ServerConfig();
+    config.setName("h2other");
+    config.loadFromProperties();
+
+    config.setDdlGenerate(true);
+    config.setDdlRun(true);
+    config.setDefaultServer(false);
+    config.setRegister(false);
+    config.setCacheMissingTimeToLive(60);
+
+    config.addClass(Country.class);
+
+    server = EbeanServerFactory.create(config);
+  }
+
+  @After
+  public void shutdown() {
+    server.shutdown(true, false);
+  }
+
+  @Test
+  public void findId_missing_cachedUntilInsert() {
+
+    ServerCache missingCache = server.getServerCacheManager().getMissingCache(Country.class);
+    assertNotNull(missingCache);
+
+    assertNull(server.find(Country.class, "XM"));
+    assertEquals(1, missingCache.size());
+
+    missingCache.getStatistics(true);
+    assertNull(server.find(Country.class, "XM"));
+    assertEquals(1, missingCache.getStatistics(false).getHitCount());
+
+    // insert removes the id from the missing cache
+    Country country = new Country();
+    country.setCode("XM");
+    country.setName("Missing");
+    server.save(country);
+    assertEquals(0, missingCache.size());
+
+    Country found = server.find(Country.class, "XM");
+    assertNotNull(found);
+    assertEquals("Missing", found.getName());
+  }
+
+  @Test
+  public void findId_missing_clearedBySqlInsert() {
+
+    ServerCache missingCache = server.getServerCacheManager().getMissingCache(Country.class);
+
+    assertNull(server.find(Country.class, "XS"));
+    assertEquals(1, missingCache.size());
+
+    SqlUpdate insert = server.createSqlUpdate("insert into o_country (code, name) values (:code, :name)");
+    insert.setParameter("code", "XS");
+    insert.setParameter("name", "Sql");
+    insert.execute();
+
+    assertEquals(0, missingCache.size());
+    assertNotNull(server.find(Country.class, "XS"));
+  }
+
+  @Test
+  public void findId_inTransaction_notRecorded() {
+
+    ServerCache missingCache = server.getServerCacheManager().getMissingCache(Country.class);
+
+    server.beginTransaction();
+    try {
+      assertNull(server.find(Country.class, "XT"));
+    } finally {
+      server.endTransaction();
+    }
+    assertEquals(0, missingCache.size());
+  }
+
+  @Test
+  public void findId_insertedInTransaction_found() {
+
+    ServerCache missingCache = server.getServerCacheManager().getMissingCache(Country.class);
+
+    assertNull(server.find(Country.class, "XI"));
+    assertEquals(1, missingCache.size());
+
+    server.beginTransaction();
+    try {
+      SqlUpdate insert = server.createSqlUpdate("insert into o_country (code, name) values (:code, :name)");
+      insert.setParameter("code", "XI");
+      insert.setParameter("name", "InTransaction");
+      insert.execute();
+
+      // the missing cache is not read inside the transaction
+      Country found = server.find(Country.class, "XI");
+      assertNotNull(found);
+      assertEquals("InTransaction", found.getName());
+    } finally {
+      server.endTransaction();
+    }
+  }
+}
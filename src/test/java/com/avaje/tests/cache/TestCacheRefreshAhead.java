@@ -0,0 +1,96 @@
+package com.avaje.tests.cache;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.tests.model.basic.Country;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.basic.ResetBasicData;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestCacheRefreshAhead extends BaseTestCase {
+
+  /**
+   * Refresh entries 10 millis after being put.
+   */
+  private ServerCacheOptions refreshAhead(ServerCache cache) {
+    ServerCacheOptions original = cache.getOptions();
+    ServerCacheOptions options = original.copy();
+    options.setMaxSecsToLive(1);
+    options.setRefreshAheadPercent(1);
+    cache.setOptions(options);
+    return original;
+  }
+
+  private void awaitUpdate(ServerCache cache, long updateCount) throws InterruptedException {
+    for (int i = 0; i < 500 && cache.getStatistics(false).getUpdateCount() == updateCount; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void beanCache_refreshedInBackground() throws InterruptedException {
+
+    ResetBasicData.reset();
+
+    ServerCache countryCache = Ebean.getServerCacheManager().getBeanCache(Country.class);
+    ServerCacheOptions original = refreshAhead(countryCache);
+    try {
+      countryCache.clear();
+      countryCache.getStatistics(true);
+
+      Ebean.find(Country.class, "NZ");
+      Ebean.find(Country.class, "NZ");
+      Thread.sleep(20);
+      assertEquals(0, countryCache.getStatistics(false).getRefreshAheadCount());
+
+      // frequently read and past the refresh point
+      Country nz = Ebean.find(Country.class, "NZ");
+      assertNotNull(nz);
+      assertEquals(1, countryCache.getStatistics(false).getRefreshAheadCount());
+
+      awaitUpdate(countryCache, 0);
+      assertEquals(1, countryCache.getStatistics(false).getUpdateCount());
+      assertEquals("NZ", Ebean.find(Country.class, "NZ").getCode());
+
+    } finally {
+      countryCache.setOptions(original);
+    }
+  }
+
+  @Test
+  public void queryCache_refreshedInBackground() throws InterruptedException {
+
+    ResetBasicData.reset();
+
+    ServerCache queryCache = Ebean.getServerCacheManager().getQueryCache(Customer.class);
+    ServerCacheOptions original = refreshAhead(queryCache);
+    try {
+      queryCache.clear();
+      queryCache.getStatistics(true);
+
+      List<Customer> list0 = Ebean.find(Customer.class).setUseQueryCache(true).where().ilike("name", "Rob%").findList();
+      assertSame(list0, Ebean.find(Customer.class).setUseQueryCache(true).where().ilike("name", "Rob%").findList());
+      Thread.sleep(20);
+
+      // the cached result is returned while it is refreshed
+      assertSame(list0, Ebean.find(Customer.class).setUseQueryCache(true).where().ilike("name", "Rob%").findList());
+      assertEquals(1, queryCache.getStatistics(false).getRefreshAheadCount());
+
+      awaitUpdate(queryCache, 0);
+      assertEquals(1, queryCache.getStatistics(false).getUpdateCount());
+
+      List<Customer> list1 = Ebean.find(Customer.class).setUseQueryCache(true).where().ilike("name", "Rob%").findList();
+      assertNotSame(list0, list1);
+      assertEquals(list0.size(), list1.size());
+
+    } finally {
+      queryCache.setOptions(original);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.avaje.tests.cache;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.cache.ServerCacheOptions;
+import com.avaje.ebeaninternal.server.cache.DefaultServerCache;
+import com.avaje.ebeaninternal.server.cache.SingleFlight;
+import com.avaje.tests.model.basic.Country;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.basic.ResetBasicData;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TestCacheSingleFlight extends BaseTestCase {
+
+  private void setSingleFlight(ServerCache cache, boolean singleFlight) {
+    ServerCacheOptions options = cache.getOptions();
+    options.setSingleFlight(singleFlight);
+    cache.setOptions(options);
+  }
+
+  @Test
+  public void beanCacheMiss_waitsForLoadInFlight() throws InterruptedException {
+
+    ResetBasicData.reset();
+
+    ServerCache countryCache = Ebean.getServerCacheManager().getBeanCache(Country.class);
+    setSingleFlight(countryCache, true);
+    try {
+      countryCache.clear();
+      countryCache.getStatistics(true);
+
+      SingleFlight singleFlight = ((DefaultServerCache) countryCache).getSingleFlight();
+      assertNotNull(singleFlight);
+
+      // act as the thread loading NZ
+      assertTrue(singleFlight.begin("NZ"));
+
+      final AtomicReference<Country> found = new AtomicReference<Country>();
+      Thread other = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          found.set(Ebean.find(Country.class, "NZ"));
+        }
+      });
+      other.start();
+
+      while (countryCache.getStatistics(false).getSingleFlightWaitCount() == 0) {
+        Thread.sleep(5);
+      }
+
+      // load NZ into the cache and release the waiting thread
+      assertNotNull(Ebean.find(Country.class, "NZ"));
+      long hits = countryCache.getStatistics(false).getHitCount();
+      singleFlight.end("NZ");
+
+      other.join(5000);
+      assertNotNull(found.get());
+      assertEquals("NZ", found.get().getCode());
+      // the waiting thread read NZ from the cache
+      assertEquals(hits + 1, countryCache.getStatistics(false).getHitCount());
+      assertEquals(1, countryCache.getStatistics(false).getSingleFlightWaitCount());
+      assertEquals(0, singleFlight.size());
+
+    } finally {
+      setSingleFlight(countryCache, false);
+    }
+  }
+
+  @Test
+  public void queryCache_withSingleFlight() {
+
+    ResetBasicData.reset();
+
+    ServerCache queryCache = Ebean.getServerCacheManager().getQueryCache(Customer.class);
+    setSingleFlight(queryCache, true);
+    try {
+      queryCache.clear();
+
+      List<Customer> list0 = Ebean.find(Customer.class).setUseQueryCache(true).where().ilike("name", "Rob%").findList();
+      List<Customer> list1 = Ebean.find(Customer.class).setUseQueryCache(true).where().ilike("name", "Rob%").findList();
+      assertSame(list0, list1);
+      assertEquals(0, ((DefaultServerCache) queryCache).getSingleFlight().size());
+
+    } finally {
+      setSingleFlight(queryCache, false);
+    }
+  }
+
+  @Test
+  public void notEnabled_noSingleFlight() {
+
+    ServerCache countryCache = Ebean.getServerCacheManager().getBeanCache(Country.class);
+    assertNull(((DefaultServerCache) countryCache).getSingleFlight());
+    assertFalse(countryCache.getOptions().isSingleFlight());
+  }
+}
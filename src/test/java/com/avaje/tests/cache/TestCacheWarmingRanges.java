@@ -0,0 +1,73 @@
+package com.avaje.tests.cache;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.EbeanServerFactory;
+import com.avaje.ebean.cache.CacheWarmingStatistics;
+import com.avaje.ebean.cache.ServerCache;
+import com.avaje.ebean.config.ServerConfig;
+import com.avaje.tests.model.basic.Product;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCacheWarmingRanges extends BaseTestCase {
+
+  EbeanServer server;
+
+  @Before
+  public void setup() {
+
+    ServerConfig config = new ServerConfig();
+    config.setName("h2other");
+    config.loadFromProperties();
+
+    config.setDdlGenerate(true);
+    config.setDdlRun(true);
+    config.setDefaultServer(false);
+    config.setRegister(false);
+    config.setCacheWarmingRangeSize(3);
+    config.setCacheWarmingThreads(2);
+
+    config.addClass(Product.class);
+
+    server = EbeanServerFactory.create(config);
+  }
+
+  @After
+  public void shutdown() {
+    server.shutdown(true, false);
+  }
+
+  @Test
+  public void runCacheWarming_splitsLargeTableIntoRanges() {
+
+    assertFalse(server.getCacheWarmingStatistics().isStarted());
+
+    for (int i = 0; i < 10; i++) {
+      Product product = new Product();
+      product.setName("warm" + i);
+      product.setSku("W" + i);
+      server.save(product);
+    }
+
+    ServerCache beanCache = server.getServerCacheManager().getBeanCache(Product.class);
+    beanCache.clear();
+
+    server.runCacheWarming(Product.class);
+
+    CacheWarmingStatistics statistics = server.getCacheWarmingStatistics();
+    assertTrue(statistics.isStarted());
+    assertTrue(statistics.isComplete());
+    assertEquals(1, statistics.getBeanTypeCount());
+    assertEquals(1, statistics.getBeanTypesLoaded());
+    assertTrue(statistics.getRangeCount() >= 4);
+    assertEquals(statistics.getRangeCount(), statistics.getRangesLoaded());
+    assertEquals(10, statistics.getBeanCount());
+    assertEquals(0, statistics.getErrorCount());
+
+    assertEquals(10, beanCache.size());
+  }
+}
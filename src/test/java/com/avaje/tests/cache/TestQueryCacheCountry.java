@@ -49,15 +49,15 @@ public class TestQueryCacheCountry extends BaseTestCase {
     nz.setName("New Zealandia");
     Ebean.save(nz);
     
-    statistics = queryCache.getStatistics(false);
-    Assert.assertEquals(0, statistics.getSize());
-    
+    // the result is invalidated by the table version and replaced on the next query
     List<Country> countryList2 = Ebean.find(Country.class)
         .setUseQueryCache(true)
         .order().asc("name")
         .findList();
   
     Assert.assertNotSame(countryList2, countryList0);
+    statistics = queryCache.getStatistics(false);
+    Assert.assertEquals(1, statistics.getSize());
   }
 
 }
@@ -0,0 +1,105 @@
+package com.avaje.tests.cache;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.common.BeanList;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.server.deploy.BeanDescriptor;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.basic.Order;
+import com.avaje.tests.model.basic.Product;
+import com.avaje.tests.model.basic.ResetBasicData;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestQueryCacheTableVersions extends BaseTestCase {
+
+  private List<Order> findOrders() {
+    return Ebean.find(Order.class).setUseQueryCache(true)
+        .fetch("customer", "name")
+        .where().gt("id", 0)
+        .findList();
+  }
+
+  @Test
+  public void test_when_unrelatedTableModified_expect_stillCached() {
+
+    ResetBasicData.reset();
+    Ebean.getServerCacheManager().getQueryCache(Order.class).clear();
+
+    List<Order> list = findOrders();
+    assertSame(list, findOrders());
+
+    Product product = new Product();
+    product.setName("tableVersions");
+    product.setSku("TV1");
+    Ebean.save(product);
+
+    assertSame(list, findOrders());
+    Ebean.delete(product);
+  }
+
+  @Test
+  public void test_when_fetchJoinedTableModified_expect_invalidated() {
+
+    ResetBasicData.reset();
+    Ebean.getServerCacheManager().getQueryCache(Order.class).clear();
+
+    List<Order> list = findOrders();
+    assertSame(list, findOrders());
+
+    Customer customer = Ebean.find(Customer.class, list.get(0).getCustomer().getId());
+    String smallnote = customer.getSmallnote();
+    customer.setSmallnote("tableVersions");
+    Ebean.save(customer);
+
+    List<Order> list2 = findOrders();
+    assertNotSame(list, list2);
+    assertSame(list2, findOrders());
+
+    customer.setSmallnote(smallnote);
+    Ebean.save(customer);
+  }
+
+  @Test
+  public void test_when_baseTableModified_expect_invalidated() {
+
+    ResetBasicData.reset();
+    Ebean.getServerCacheManager().getQueryCache(Order.class).clear();
+
+    List<Order> list = findOrders();
+    assertSame(list, findOrders());
+
+    Order order = Ebean.find(Order.class, list.get(0).getId());
+    Order.Status status = order.getStatus();
+    order.setStatus(status == Order.Status.SHIPPED ? Order.Status.APPROVED : Order.Status.SHIPPED);
+    Ebean.save(order);
+
+    assertNotSame(list, findOrders());
+
+    order.setStatus(status);
+    Ebean.save(order);
+  }
+
+  @Test
+  public void test_when_putStampedBeforeClear_expect_notServed() {
+
+    BeanDescriptor<Order> desc = ((SpiEbeanServer) Ebean.getServer(null)).getBeanDescriptor(Order.class);
+
+    // stamp read before a query executes concurrently with a clear
+    long stamp = desc.queryCacheStamp();
+    desc.queryCacheClear();
+    desc.queryCachePut("clearRace", new BeanList<Order>(), stamp, null, null);
+    assertNull(desc.queryCacheGet("clearRace"));
+
+    BeanList<Order> result = new BeanList<Order>();
+    desc.queryCachePut("clearRace", result, desc.queryCacheStamp(), null, null);
+    assertSame(result, desc.queryCacheGet("clearRace"));
+    desc.queryCacheClear();
+  }
+}
@@ -0,0 +1,136 @@
+package com.avaje.tests.query;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.QueryEachConsumer;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.basic.ResetBasicData;
+import org.junit.Test;
+
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestQueryFindDto extends BaseTestCase {
+
+  @Test
+  public void test_constructor() {
+
+    ResetBasicData.reset();
+
+    List<Customer> customers = Ebean.find(Customer.class).orderBy("id").findList();
+
+    List<CustomerConstructorDto> list = Ebean.findDto(CustomerConstructorDto.class, "select id, name, status from o_customer order by id")
+        .findList();
+
+    assertEquals(customers.size(), list.size());
+    for (int i = 0; i < list.size(); i++) {
+      assertEquals(customers.get(i).getId(), list.get(i).getId());
+      assertEquals(customers.get(i).getName(), list.get(i).getName());
+      assertEquals(customers.get(i).getStatus(), list.get(i).getStatus());
+    }
+  }
+
+  @Test
+  public void test_setters_namedParameter() {
+
+    ResetBasicData.reset();
+
+    Customer customer = Ebean.find(Customer.class).orderBy("id").setMaxRows(1).findUnique();
+    assertNotNull(customer);
+
+    CustomerSetterDto dto = Ebean.findDto(CustomerSetterDto.class, "select id, name as customer_name from o_customer where id = :id")
+        .setParameter("id", customer.getId())
+        .findUnique();
+
+    assertNotNull(dto);
+    assertEquals(customer.getId(), dto.getId());
+    assertEquals(customer.getName(), dto.getCustomerName());
+
+    CustomerSetterDto none = Ebean.findDto(CustomerSetterDto.class, "select id, name as customer_name from o_customer where id = ?")
+        .setParameter(1, -1)
+        .findUnique();
+
+    assertNull(none);
+  }
+
+  @Test
+  public void test_findEach_maxRows() {
+
+    ResetBasicData.reset();
+
+    final List<CustomerSetterDto> list = new ArrayList<CustomerSetterDto>();
+    Ebean.findDto(CustomerSetterDto.class, "select id, name customerName from o_customer order by id")
+        .setMaxRows(2)
+        .findEach(new QueryEachConsumer<CustomerSetterDto>() {
+          @Override
+          public void accept(CustomerSetterDto bean) {
+            list.add(bean);
+          }
+        });
+
+    assertEquals(2, list.size());
+  }
+
+  @Test(expected = PersistenceException.class)
+  public void test_unmappedColumn() {
+
+    ResetBasicData.reset();
+
+    Ebean.findDto(CustomerSetterDto.class, "select id, name, smallnote from o_customer").findList();
+  }
+
+  public static class CustomerConstructorDto {
+
+    private final Integer id;
+
+    private final String name;
+
+    private final Customer.Status status;
+
+    public CustomerConstructorDto(Integer id, String name, Customer.Status status) {
+      this.id = id;
+      this.name = name;
+      this.status = status;
+    }
+
+    public Integer getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Customer.Status getStatus() {
+      return status;
+    }
+  }
+
+  public static class CustomerSetterDto {
+
+    private Integer id;
+
+    private String customerName;
+
+    public Integer getId() {
+      return id;
+    }
+
+    public void setId(Integer id) {
+      this.id = id;
+    }
+
+    public String getCustomerName() {
+      return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+      this.customerName = customerName;
+    }
+  }
+}
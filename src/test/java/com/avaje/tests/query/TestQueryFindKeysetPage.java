@@ -0,0 +1,147 @@
+package com.avaje.tests.query;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.KeysetPage;
+import com.avaje.ebean.Query;
+import com.avaje.tests.model.basic.Customer;
+import com.avaje.tests.model.basic.Order;
+import com.avaje.tests.model.basic.ResetBasicData;
+import org.avaje.ebeantest.LoggedSqlCollector;
+import org.junit.Test;
+
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestQueryFindKeysetPage extends BaseTestCase {
+
+  @Test(expected = PersistenceException.class)
+  public void test_noOrderBy() {
+
+    Ebean.find(Order.class).findKeysetPage(null, 10);
+  }
+
+  @Test(expected = PersistenceException.class)
+  public void test_invalidCursor() {
+
+    Ebean.find(Customer.class).orderBy("name, id").findKeysetPage("junk", 10);
+  }
+
+  @Test(expected = PersistenceException.class)
+  public void test_nullableOrderBy() {
+
+    Ebean.find(Order.class).orderBy("status, id").findKeysetPage(null, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_pageSizeZero() {
+
+    Ebean.find(Customer.class).orderBy("name, id").findKeysetPage(null, 0);
+  }
+
+  @Test
+  public void test_cursor_allPages() {
+
+    ResetBasicData.reset();
+
+    List<Object> expectedIds = Ebean.find(Customer.class).orderBy("name, id").findIds();
+
+    List<Object> pagedIds = new ArrayList<Object>();
+    KeysetPage<Customer> page = Ebean.find(Customer.class).orderBy("name, id").findKeysetPage(null, 2);
+    addIds(pagedIds, page);
+
+    LoggedSqlCollector.start();
+    while (page.hasNext()) {
+      page = Ebean.find(Customer.class).orderBy("name, id").findKeysetPage(page.getNextCursor(), 2);
+      assertTrue(page.getList().size() <= 2);
+      addIds(pagedIds, page);
+    }
+    List<String> loggedSql = LoggedSqlCollector.stop();
+
+    assertEquals(expectedIds, pagedIds);
+    assertNull(page.getNextCursor());
+    assertThat(loggedSql).isNotEmpty();
+    if (!Ebean.getDefaultServer().getPluginApi().getDatabasePlatform().isKeysetInExpandedForm()) {
+      assertThat(loggedSql.get(0)).contains("(t0.name, t0.id) > (?, ?)");
+    }
+  }
+
+  @Test
+  public void test_mixedDirection_expandedForm() {
+
+    ResetBasicData.reset();
+
+    List<Object> expectedIds = Ebean.find(Customer.class).orderBy("name desc, id").findIds();
+
+    List<Object> pagedIds = new ArrayList<Object>();
+    KeysetPage<Customer> page = Ebean.find(Customer.class).where().orderBy("name desc, id").findKeysetPage(null, 2);
+    addIds(pagedIds, page);
+
+    LoggedSqlCollector.start();
+    while (page.hasNext()) {
+      page = Ebean.find(Customer.class).where().orderBy("name desc, id").findKeysetPage(page.getNextCursor(), 2);
+      addIds(pagedIds, page);
+    }
+    List<String> loggedSql = LoggedSqlCollector.stop();
+
+    assertEquals(expectedIds, pagedIds);
+    assertThat(loggedSql).isNotEmpty();
+    assertThat(loggedSql.get(0)).contains("(t0.name < ? or (t0.name = ? and t0.id > ?))");
+  }
+
+  @Test
+  public void test_lastKeyValues_idAppended() {
+
+    ResetBasicData.reset();
+
+    List<Order> all = Ebean.find(Order.class).orderBy("id").findList();
+    assertTrue(all.size() > 2);
+
+    Order first = all.get(0);
+    KeysetPage<Order> page = Ebean.find(Order.class).orderBy().asc("id").findKeysetPage(100, first.getId());
+
+    assertFalse(page.hasNext());
+    assertNull(page.getNextCursor());
+    assertEquals(all.size() - 1, page.getList().size());
+    assertEquals(all.get(1).getId(), page.getList().get(0).getId());
+
+    Order last = all.get(all.size() - 1);
+    assertEquals(last.getId(), page.getLastKeyValues()[0]);
+  }
+
+  @Test
+  public void test_queryReused_notModified() {
+
+    ResetBasicData.reset();
+
+    List<Object> expectedIds = Ebean.find(Customer.class).orderBy("name, id").findIds();
+
+    Query<Customer> query = Ebean.find(Customer.class).orderBy("name");
+
+    List<Object> pagedIds = new ArrayList<Object>();
+    KeysetPage<Customer> page = query.findKeysetPage(null, 2);
+    addIds(pagedIds, page);
+    while (page.hasNext()) {
+      page = query.findKeysetPage(page.getNextCursor(), 2);
+      addIds(pagedIds, page);
+    }
+
+    assertEquals(expectedIds, pagedIds);
+    assertEquals("name", query.orderBy().toStringFormat());
+    assertEquals(0, query.getMaxRows());
+    assertEquals(expectedIds.size(), query.findList().size());
+  }
+
+  private void addIds(List<Object> ids, KeysetPage<Customer> page) {
+    for (Customer customer : page.getList()) {
+      ids.add(customer.getId());
+    }
+  }
+}
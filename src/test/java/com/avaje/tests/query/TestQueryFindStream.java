@@ -0,0 +1,87 @@
+package com.avaje.tests.query;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.config.dbplatform.MySqlPlatform;
+import com.avaje.ebean.config.dbplatform.PostgresPlatform;
+import com.avaje.tests.model.basic.Order;
+import com.avaje.tests.model.basic.ResetBasicData;
+import org.avaje.ebeantest.LoggedSqlCollector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestQueryFindStream extends BaseTestCase {
+
+  @Test
+  public void test_lazyExecution() {
+
+    ResetBasicData.reset();
+
+    LoggedSqlCollector.start();
+    Stream<Order> stream = Ebean.find(Order.class).where().gt("id", 0).findStream();
+    assertThat(LoggedSqlCollector.stop()).isEmpty();
+
+    LoggedSqlCollector.start();
+    long count = stream.count();
+    List<String> loggedSql = LoggedSqlCollector.stop();
+
+    assertEquals(Ebean.find(Order.class).where().gt("id", 0).findRowCount(), count);
+    assertEquals(1, loggedSql.size());
+  }
+
+  @Test
+  public void test_sameAsFindList() {
+
+    ResetBasicData.reset();
+
+    List<Integer> expectedIds = new ArrayList<Integer>();
+    for (Order order : Ebean.find(Order.class).orderBy("id").findList()) {
+      expectedIds.add(order.getId());
+    }
+
+    List<Integer> streamIds = new ArrayList<Integer>();
+    Iterator<Order> it = Ebean.find(Order.class).orderBy("id").findStream().iterator();
+    while (it.hasNext()) {
+      streamIds.add(it.next().getId());
+    }
+
+    assertEquals(expectedIds, streamIds);
+  }
+
+  @Test
+  public void test_limitAndClose() {
+
+    ResetBasicData.reset();
+
+    Stream<Order> stream = Ebean.find(Order.class).orderBy("id").findStream();
+    try {
+      Iterator<Order> it = stream.limit(1).iterator();
+      assertTrue(it.hasNext());
+      it.next();
+      assertFalse(it.hasNext());
+    } finally {
+      stream.close();
+    }
+
+    // close of a stream that was never consumed does not execute the query
+    LoggedSqlCollector.start();
+    Ebean.find(Order.class).findStream().close();
+    assertThat(LoggedSqlCollector.stop()).isEmpty();
+  }
+
+  @Test
+  public void test_platformStreamFetchSize() {
+
+    assertTrue(new PostgresPlatform().getStreamFetchSize() > 0);
+    assertTrue(new MySqlPlatform().isForwardOnlyHintOnFindIterate());
+  }
+}
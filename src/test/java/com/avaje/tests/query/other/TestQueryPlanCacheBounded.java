@@ -0,0 +1,78 @@
+package com.avaje.tests.query.other;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.EbeanServerFactory;
+import com.avaje.ebean.config.ServerConfig;
+import com.avaje.ebean.meta.MetaInfoManager;
+import com.avaje.ebean.meta.MetaQueryPlanCacheStatistic;
+import com.avaje.tests.model.basic.Country;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestQueryPlanCacheBounded extends BaseTestCase {
+
+  EbeanServer server;
+
+  @Before
+  public void setup() {
+
+    ServerConfig config = new ServerConfig();
+    config.setName("h2other");
+    config.loadFromProperties();
+
+    config.setDdlGenerate(true);
+    config.setDdlRun(true);
+    config.setDefaultServer(false);
+    config.setRegister(false);
+    config.setQueryPlanCacheMaxSize(5);
+
+    config.addClass(Country.class);
+
+    server = EbeanServerFactory.create(config);
+  }
+
+  @After
+  public void shutdown() {
+    server.shutdown(true, false);
+  }
+
+  @Test
+  public void dynamicQueries_planCacheBoundedByMaxSize() {
+
+    MetaInfoManager infoManager = server.getMetaInfoManager();
+    infoManager.collectQueryPlanCacheStatistics(true);
+
+    // the same query plan executed repeatedly
+    for (int i = 0; i < 10; i++) {
+      server.find(Country.class).where().eq("name", "x" + i).findList();
+    }
+
+    MetaQueryPlanCacheStatistic statistic = infoManager.getMetaBeanInfo(Country.class).getQueryPlanCacheStatistic(true);
+    assertEquals(1, statistic.getPlanCount());
+    assertEquals(1, statistic.getCompileCount());
+    assertEquals(1, statistic.getMissCount());
+    assertEquals(9, statistic.getHitCount());
+
+    // a distinct query plan per query
+    for (int i = 0; i < 20; i++) {
+      server.find(Country.class).where().raw("name = 'dynamic" + i + "'").findList();
+    }
+
+    statistic = infoManager.getMetaBeanInfo(Country.class).getQueryPlanCacheStatistic(false);
+    assertEquals(5, statistic.getMaxSize());
+    assertTrue(statistic.getPlanCount() <= 5);
+    assertEquals(20, statistic.getCompileCount());
+    assertEquals(16, statistic.getEvictionCount());
+    assertTrue(statistic.getMeanCompileMicros() >= 0);
+
+    List<MetaQueryPlanCacheStatistic> list = infoManager.collectQueryPlanCacheStatistics(false);
+    assertEquals(1, list.size());
+    assertEquals(Country.class, list.get(0).getBeanType());
+  }
+}
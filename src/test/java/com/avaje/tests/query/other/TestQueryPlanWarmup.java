@@ -0,0 +1,181 @@
+package com.avaje.tests.query.other;
+
+import com.avaje.ebean.BaseTestCase;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.EbeanServerFactory;
+import com.avaje.ebean.config.ServerConfig;
+import com.avaje.ebean.meta.MetaQueryPlanCacheStatistic;
+import com.avaje.ebeaninternal.api.SpiEbeanServer;
+import com.avaje.ebeaninternal.api.SpiQuery;
+import com.avaje.ebeaninternal.server.query.CQueryPlanWarmup;
+import com.avaje.tests.model.basic.Country;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestQueryPlanWarmup extends BaseTestCase {
+
+  EbeanServer server;
+
+  File manifest;
+
+  @After
+  public void shutdown() {
+    if (server != null) {
+      server.shutdown(true, false);
+    }
+    if (manifest != null) {
+      manifest.delete();
+    }
+  }
+
+  private EbeanServer createServer() {
+
+    ServerConfig config = new ServerConfig();
+    config.setName("h2other");
+    config.loadFromProperties();
+
+    config.setDdlGenerate(true);
+    config.setDdlRun(true);
+    config.setDefaultServer(false);
+    config.setRegister(false);
+    config.setQueryPlanWarmupFile(manifest.getAbsolutePath());
+
+    config.addClass(Country.class);
+
+    return EbeanServerFactory.create(config);
+  }
+
+  private void runQueries() {
+    server.find(Country.class).where().eq("name", "New Zealand").findList();
+    server.find(Country.class).where().startsWith("name", "Aus").orderBy("name").setMaxRows(10).findList();
+    server.find(Country.class).where().eq("code", "NZ").findUnique();
+    server.find(Country.class).where().idIn(Arrays.asList("NZ", "AU")).icontains("name", "land").findList();
+  }
+
+  @Test
+  public void restart_hotQueryPlansWarmedUp() throws Exception {
+
+    manifest = File.createTempFile("queryplan", ".warmup");
+    assertTrue(manifest.delete());
+
+    server = createServer();
+    runQueries();
+    runQueries();
+    server.shutdown(true, false);
+    assertTrue(manifest.exists());
+
+    // restart with the query plans built in the background from the manifest
+    server = createServer();
+    MetaQueryPlanCacheStatistic statistic = awaitPlans(4);
+    assertEquals(4, statistic.getCompileCount());
+
+    server.getMetaInfoManager().getMetaBeanInfo(Country.class).getQueryPlanCacheStatistic(true);
+    runQueries();
+
+    statistic = server.getMetaInfoManager().getMetaBeanInfo(Country.class).getQueryPlanCacheStatistic(false);
+    assertEquals(4, statistic.getHitCount());
+    assertEquals(0, statistic.getMissCount());
+    assertEquals(0, statistic.getCompileCount());
+  }
+
+  @Test
+  public void manifest_withoutBindValues() throws Exception {
+
+    manifest = File.createTempFile("queryplan", ".warmup");
+    assertTrue(manifest.delete());
+
+    server = createServer();
+    runQueries();
+    server.shutdown(true, false);
+    server = null;
+
+    String content = new String(readAllBytes(manifest), "ISO-8859-1");
+    assertTrue(content.contains("name"));
+    assertFalse(content.contains("New Zealand"));
+    assertFalse(content.contains("Aus"));
+  }
+
+  @Test
+  public void warmup_disallowedClass_skipped() throws Exception {
+
+    manifest = File.createTempFile("queryplan", ".warmup");
+    assertTrue(manifest.delete());
+
+    server = createServer();
+
+    SpiQuery<Country> allowed = (SpiQuery<Country>) server.find(Country.class).where().eq("name", "NZ").query();
+    allowed.setType(SpiQuery.Type.LIST);
+    writeManifest(allowed);
+    assertEquals(1, new CQueryPlanWarmup((SpiEbeanServer) server, manifest.getAbsolutePath(), 10).warmup());
+
+    SpiQuery<Country> disallowed = (SpiQuery<Country>) server.find(Country.class).where().eq("name", new File("NZ")).query();
+    disallowed.setType(SpiQuery.Type.LIST);
+    writeManifest(disallowed);
+    assertEquals(0, new CQueryPlanWarmup((SpiEbeanServer) server, manifest.getAbsolutePath(), 10).warmup());
+  }
+
+  private void writeManifest(Object query) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+    objectOut.writeObject(query);
+    objectOut.close();
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(manifest));
+    try {
+      out.writeInt(1);
+      out.writeInt(1);
+      out.writeInt(bytes.size());
+      out.write(bytes.toByteArray());
+    } finally {
+      out.close();
+    }
+  }
+
+  private byte[] readAllBytes(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      in.readFully(bytes);
+      return bytes;
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void noManifest_startsWithEmptyPlanCache() throws IOException {
+
+    manifest = File.createTempFile("queryplan", ".warmup");
+    assertTrue(manifest.delete());
+
+    server = createServer();
+    runQueries();
+
+    MetaQueryPlanCacheStatistic statistic = server.getMetaInfoManager().getMetaBeanInfo(Country.class).getQueryPlanCacheStatistic(false);
+    assertEquals(4, statistic.getMissCount());
+  }
+
+  private MetaQueryPlanCacheStatistic awaitPlans(int planCount) throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      MetaQueryPlanCacheStatistic statistic = server.getMetaInfoManager().getMetaBeanInfo(Country.class).getQueryPlanCacheStatistic(false);
+      if (statistic.getPlanCount() >= planCount) {
+        return statistic;
+      }
+      Thread.sleep(50);
+    }
+    fail("query plans not warmed up");
+    return null;
+  }
+}